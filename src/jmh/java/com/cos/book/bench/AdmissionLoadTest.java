@@ -0,0 +1,174 @@
+package com.cos.book.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 과부하 부하 테스트 (JMH가 아니라 main 으로 돈다. -P jmh 로 컴파일 후)
+ *   java -cp target/test-classes:target/classes:<jmh 클래스패스> com.cos.book.bench.AdmissionLoadTest [배수=3] [초=10]
+ * 1. 워밍업 후 닫힌 부하(동시 16)로 GET /book?limit=100 의 처리량(capacity)을 잰다.
+ * 2. capacity * 배수 로 열린 부하(정해진 간격으로 보냄, 응답을 기다리지 않음)를 book.admission.enabled=false/true 로 각각 건다.
+ * latency 는 보내기로 한 시각부터 잰다. (밀려서 늦게 보낸 시간도 포함)
+ * 클라이언트 키는 여러개로 돌려서 (api-keys 로 등록) rate limit 이 아니라 동시 처리 수 제한이 보이게 한다.
+ */
+public class AdmissionLoadTest {
+	private static final String PATH = "/book?limit=100";
+	private static final int CLIENTS = 32;
+	private static final int MAX_OUTSTANDING = 4000; //넘으면 보내지 않고 실패로 센다. (부하기 쪽 메모리 보호)
+	
+	public static void main(String[] args) throws Exception {
+		System.setProperty("spring.devtools.restart.enabled", "false"); //devtools가 main 을 다시 띄우지 않게
+		double multiplier = args.length > 0 ? Double.parseDouble(args[0]) : 3;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+		double capacity;
+		try (Server server = new Server(false)) {
+			closedLoop(client, server.baseUrl, 16, 5); //워밍업
+			capacity = closedLoop(client, server.baseUrl, 16, 5);
+		}
+		System.out.printf("[admission] capacity=%.0f req/s, offered=%.0f req/s (x%.1f), %ds%n", capacity, capacity * multiplier, multiplier, seconds);
+		for(boolean admission : new boolean[] {false, true}) {
+			try (Server server = new Server(admission)) {
+				closedLoop(client, server.baseUrl, 16, 5); //워밍업
+				openLoop(client, server.baseUrl, capacity * multiplier, seconds).print(admission);
+			}
+		}
+	}
+	
+	static class Server implements AutoCloseable {
+		final ConfigurableApplicationContext context;
+		final String baseUrl;
+		
+		Server(boolean admission) {
+			context = BenchContexts.start(WebApplicationType.SERVLET, "--book.admission.enabled=" + admission, "--spring.cache.type=none",
+					"--book.admission.api-keys=" + IntStream.range(0, CLIENTS).mapToObj(i -> "load-" + i).collect(Collectors.joining(",")));
+			BenchContexts.seed(context, 1000);
+			baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+		}
+		
+		@Override
+		public void close() {
+			context.close();
+		}
+	}
+	
+	static class Result {
+		final long[] okLatencies;
+		final int ok, rejected429, rejected503, failed;
+		final long rejectNanosMax;
+		
+		Result(long[] okLatencies, int ok, int rejected429, int rejected503, int failed, long rejectNanosMax) {
+			this.okLatencies = okLatencies;
+			this.ok = ok;
+			this.rejected429 = rejected429;
+			this.rejected503 = rejected503;
+			this.failed = failed;
+			this.rejectNanosMax = rejectNanosMax;
+		}
+		
+		void print(boolean admission) {
+			Arrays.sort(okLatencies);
+			System.out.printf("[admission] enabled=%-5s ok=%d p50=%.1fms p99=%.1fms max=%.1fms 429=%d 503=%d failed=%d rejectMax=%.1fms%n",
+					admission, ok, percentile(0.50), percentile(0.99), percentile(1.0), rejected429, rejected503, failed, rejectNanosMax / 1e6);
+		}
+		
+		double percentile(double p) {
+			if(okLatencies.length == 0) {
+				return 0;
+			}
+			return okLatencies[(int) Math.min(okLatencies.length - 1, Math.ceil(p * okLatencies.length) - 1)] / 1e6;
+		}
+	}
+	
+	private static HttpRequest request(String baseUrl, int i) {
+		return HttpRequest.newBuilder(URI.create(baseUrl + PATH))
+				.header("X-Api-Key", "load-" + (i % CLIENTS))
+				.timeout(Duration.ofSeconds(30))
+				.build();
+	}
+	
+	//초당 처리 수
+	private static double closedLoop(HttpClient client, String baseUrl, int concurrency, int seconds) throws Exception {
+		AtomicLong done = new AtomicLong();
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for(int t = 0; t < concurrency; t++) {
+				int worker = t;
+				executor.submit(() -> {
+					while(System.nanoTime() < end) {
+						if(client.send(request(baseUrl, worker), HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+							done.incrementAndGet();
+						}
+					}
+					return null;
+				});
+			}
+		}
+		return done.get() / (double) seconds;
+	}
+	
+	private static Result openLoop(HttpClient client, String baseUrl, double rate, int seconds) throws Exception {
+		int total = (int) (rate * seconds);
+		long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+		AtomicLongArray latencies = new AtomicLongArray(total);
+		AtomicInteger ok = new AtomicInteger(), r429 = new AtomicInteger(), r503 = new AtomicInteger(), failed = new AtomicInteger();
+		AtomicInteger outstanding = new AtomicInteger();
+		AtomicLong rejectMax = new AtomicLong();
+		long start = System.nanoTime();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for(int i = 0; i < total; i++) {
+				long intended = start + i * interval;
+				long wait = intended - System.nanoTime();
+				if(wait > 0) {
+					LockSupport.parkNanos(wait);
+				}
+				if(outstanding.incrementAndGet() > MAX_OUTSTANDING) {
+					outstanding.decrementAndGet();
+					failed.incrementAndGet();
+					continue;
+				}
+				int index = i;
+				executor.submit(() -> {
+					try {
+						int status = client.send(request(baseUrl, index), HttpResponse.BodyHandlers.discarding()).statusCode();
+						long latency = System.nanoTime() - intended;
+						if(status == 200) {
+							latencies.set(ok.getAndIncrement(), latency);
+						} else if(status == 429 || status == 503) {
+							(status == 429 ? r429 : r503).incrementAndGet();
+							rejectMax.accumulateAndGet(latency, Math::max);
+						} else {
+							failed.incrementAndGet();
+						}
+					} catch (Exception e) {
+						failed.incrementAndGet();
+					} finally {
+						outstanding.decrementAndGet();
+					}
+					return null;
+				});
+			}
+		}
+		long[] okLatencies = new long[ok.get()];
+		for(int i = 0; i < okLatencies.length; i++) {
+			okLatencies[i] = latencies.get(i);
+		}
+		return new Result(okLatencies, ok.get(), r429.get(), r503.get(), failed.get(), rejectMax.get());
+	}
+}
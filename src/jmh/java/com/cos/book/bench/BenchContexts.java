@@ -0,0 +1,39 @@
+package com.cos.book.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.cos.book.BookApplication;
+import com.cos.book.domain.Book;
+import com.cos.book.service.BookService;
+
+//벤치마크용 스프링 컨텍스트 (임베디드 H2)
+public class BenchContexts {
+	
+	public static ConfigurableApplicationContext start(WebApplicationType type, String... args) {
+		return new SpringApplicationBuilder(BookApplication.class)
+				.web(type)
+				.properties("spring.devtools.restart.enabled=false",
+						"logging.level.root=warn",
+						"server.port=0",
+						"spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_ON_EXIT=FALSE")
+				.run(args);
+	}
+	
+	//count 권을 넣고 id 목록을 돌려준다.
+	public static List<Long> seed(ConfigurableApplicationContext context, int count) {
+		List<Book> books = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			books.add(new Book(null, "책제목" + i, "책저자" + (i % 100)));
+		}
+		List<Long> ids = new ArrayList<>();
+		for(Book book : context.getBean(BookService.class).saveAll(books)) {
+			ids.add(book.getId());
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,93 @@
+package com.cos.book.bench;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+//BookController 요청 처리 전체 (필터/디스패처/직렬화 포함)
+//transport=mockmvc 는 서블릿 컨테이너 없이, tomcat 은 실제 임베디드 톰켓에 HTTP로 요청한다.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookControllerBenchmark {
+	private static final String BOOK_JSON = "{\"title\":\"bench\",\"author\":\"cos\"}";
+	
+	@Param({"mockmvc", "tomcat"})
+	public String transport;
+	
+	private ConfigurableApplicationContext context;
+	private MockMvc mockMvc;
+	private RestTemplate restTemplate;
+	private String baseUrl;
+	private List<Long> ids;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		context = BenchContexts.start(WebApplicationType.SERVLET);
+		ids = BenchContexts.seed(context, 1000);
+		mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+		restTemplate = new RestTemplate();
+		baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+	
+	@Benchmark
+	public Object findById() throws Exception {
+		Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+		if("tomcat".equals(transport)) {
+			return restTemplate.getForObject(baseUrl + "/book/" + id, String.class);
+		}
+		return mockMvc.perform(get("/book/{id}", id)).andReturn();
+	}
+	
+	@Benchmark
+	public Object findPage() throws Exception {
+		if("tomcat".equals(transport)) {
+			return restTemplate.getForObject(baseUrl + "/book?limit=20", String.class);
+		}
+		return mockMvc.perform(get("/book").param("limit", "20")).andReturn();
+	}
+	
+	@Benchmark
+	public Object save() throws Exception {
+		if("tomcat".equals(transport)) {
+			HttpHeaders headers = new HttpHeaders();
+			headers.setContentType(MediaType.APPLICATION_JSON);
+			return restTemplate.postForObject(baseUrl + "/book", new HttpEntity<>(BOOK_JSON, headers), String.class);
+		}
+		return mockMvc.perform(post("/book").contentType(MediaType.APPLICATION_JSON).content(BOOK_JSON)).andReturn();
+	}
+}
@@ -0,0 +1,61 @@
+package com.cos.book.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.cos.book.domain.Book;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//Book (역)직렬화 비용 - 스프링이 쓰는 것과 같은 설정의 ObjectMapper
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookJsonBenchmark {
+	private ObjectMapper objectMapper;
+	private Book book;
+	private byte[] bookJson;
+	private List<Book> books;
+	
+	@Setup
+	public void setup() throws IOException {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		book = new Book(1L, "스프링부트 따라하기", "코스");
+		bookJson = objectMapper.writeValueAsBytes(book);
+		books = new ArrayList<>();
+		for(int i = 0; i < 100; i++) {
+			books.add(new Book((long) i, "책제목" + i, "책저자" + i));
+		}
+	}
+	
+	@Benchmark
+	public byte[] serialize() throws IOException {
+		return objectMapper.writeValueAsBytes(book);
+	}
+	
+	@Benchmark
+	public Book deserialize() throws IOException {
+		return objectMapper.readValue(bookJson, Book.class);
+	}
+	
+	@Benchmark
+	public byte[] serializeList100() throws IOException {
+		return objectMapper.writeValueAsBytes(books);
+	}
+}
@@ -0,0 +1,195 @@
+package com.cos.book.bench;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BookLoadTest 의 요청 구성 (BookController, BookBulkController 엔드포인트를 가중치대로 섞는다)
+ *   read  : 화면 조회 위주 (GET /book/{id}, ?ids=, ?author=, ?titlePrefix=, 키셋 페이지)
+ *   write : 한 권씩 저장/수정/삭제 위주 (삭제는 이번 부하에서 만든 책만)
+ *   bulk  : POST/DELETE /book/_bulk 100권씩 + 100권 페이지 조회
+ * 기본 rate 와 p99 목표는 1 CPU 개발 머신에서 여유가 있는 값. (다른 환경은 rate=, p99Ms= 로 맞춘다)
+ */
+public enum BookLoadMix {
+	READ(100, 100,
+			new Op("get", 70, Op.OK, context -> get(context, "/book/" + context.randomId()), null),
+			new Op("ids", 10, Op.OK, context -> get(context, "/book?ids=" + context.randomIds(20)), null),
+			new Op("author", 10, Op.OK, context -> get(context, "/book?author=" + encode(context.randomAuthor()) + "&limit=20"), null),
+			new Op("titlePrefix", 5, Op.OK, context -> get(context, "/book?titlePrefix=" + encode(BookLoadMix.TITLE + context.random().nextInt(10)) + "&limit=20"), null),
+			new Op("page", 5, Op.OK, context -> get(context, "/book?after=" + context.randomId() + "&limit=20"), null)),
+	WRITE(50, 200,
+			new Op("post", 40, Op.CREATED, context -> send(context, "POST", "/book", "application/json", context.newBook()), BookLoadMix::created),
+			new Op("put", 30, Op.OK, context -> send(context, "PUT", "/book/" + context.randomId(), "application/json", context.newBook()), null),
+			new Op("delete", 10, Op.OK, context -> {
+				Long id = context.created.poll();
+				return id == null ? null : send(context, "DELETE", "/book/" + id, null, null);
+			}, null),
+			new Op("get", 20, Op.OK, context -> get(context, "/book/" + context.randomId()), null)),
+	BULK(5, 500,
+			new Op("bulkPost", 40, Op.OK, context -> send(context, "POST", "/book/_bulk", BookLoadMix.NDJSON, context.newBooks(BookLoadMix.BULK_SIZE)), BookLoadMix::created),
+			new Op("bulkDelete", 20, Op.OK, context -> {
+				String ids = context.pollCreated(BookLoadMix.BULK_SIZE);
+				return ids == null ? null : send(context, "DELETE", "/book/_bulk", "application/json", ids);
+			}, null),
+			new Op("page100", 40, Op.OK, context -> get(context, "/book?after=" + context.randomId() + "&limit=" + BookLoadMix.BULK_SIZE), null));
+	
+	static final String NDJSON = "application/x-ndjson";
+	static final String TITLE = "부하테스트";
+	static final String AUTHOR = "부하저자";
+	static final int AUTHORS = 100;
+	static final int BULK_SIZE = 100;
+	private static final int CLIENTS = 32; //X-Api-Key 를 돌려서 클라이언트별 rate limit 에 걸리지 않게 (admission 을 켜면 book.admission.api-keys 에 load-0 ~ load-31 등록)
+	private static final Pattern ID = Pattern.compile("\"id\":(\\d+)");
+	
+	final int defaultRate;
+	final long defaultP99Ms;
+	final List<Op> ops;
+	private final int totalWeight;
+	
+	BookLoadMix(int defaultRate, long defaultP99Ms, Op... ops) {
+		this.defaultRate = defaultRate;
+		this.defaultP99Ms = defaultP99Ms;
+		this.ops = List.of(ops);
+		this.totalWeight = this.ops.stream().mapToInt(Op::weight).sum();
+	}
+	
+	/**
+	 * request 가 null 이면 (지울 책이 아직 없음 등) 다른 요청을 고른다.
+	 * onBody 가 있는 요청만 응답 본문을 읽는다.
+	 */
+	record Op(String name, int weight, int expectedStatus, Function<Context, HttpRequest> request, BiConsumer<Context, String> onBody) {
+		static final int OK = 200;
+		static final int CREATED = 201;
+	}
+	
+	record Call(Op op, HttpRequest request) {
+	}
+	
+	Call next(Context context) {
+		while(true) {
+			int pick = context.random().nextInt(totalWeight);
+			for(Op op : ops) {
+				pick -= op.weight();
+				if(pick < 0) {
+					HttpRequest request = op.request().apply(context);
+					if(request != null) {
+						return new Call(op, request);
+					}
+					break;
+				}
+			}
+		}
+	}
+	
+	//부하 대상 서버와 미리 넣어둔 책
+	static class Context {
+		final String baseUrl;
+		final long[] ids;
+		final ConcurrentLinkedQueue<Long> created = new ConcurrentLinkedQueue<>();
+		private final AtomicLong sequence = new AtomicLong();
+		
+		Context(String baseUrl, long[] ids) {
+			this.baseUrl = baseUrl;
+			this.ids = ids;
+		}
+		
+		ThreadLocalRandom random() {
+			return ThreadLocalRandom.current();
+		}
+		
+		long randomId() {
+			return ids[random().nextInt(ids.length)];
+		}
+		
+		String randomIds(int count) {
+			StringJoiner joiner = new StringJoiner(",");
+			for(int i = 0; i < count; i++) {
+				joiner.add(String.valueOf(randomId()));
+			}
+			return joiner.toString();
+		}
+		
+		String randomAuthor() {
+			return AUTHOR + random().nextInt(AUTHORS);
+		}
+		
+		String newBook() {
+			long n = sequence.incrementAndGet();
+			return "{\"title\":\"" + TITLE + n + "\",\"author\":\"" + AUTHOR + (n % AUTHORS) + "\"}";
+		}
+		
+		String newBooks(int count) {
+			StringBuilder body = new StringBuilder(count * 64);
+			for(int i = 0; i < count; i++) {
+				body.append(newBook()).append('\n');
+			}
+			return body.toString();
+		}
+		
+		//지울 id 배열 (JSON), 없으면 null
+		String pollCreated(int count) {
+			StringJoiner joiner = new StringJoiner(",", "[", "]");
+			int polled = 0;
+			Long id;
+			while(polled < count && (id = created.poll()) != null) {
+				joiner.add(String.valueOf(id));
+				polled++;
+			}
+			return polled == 0 ? null : joiner.toString();
+		}
+	}
+	
+	private static void created(Context context, String body) {
+		Matcher matcher = ID.matcher(body);
+		while(matcher.find()) {
+			context.created.add(Long.parseLong(matcher.group(1)));
+		}
+	}
+	
+	static HttpRequest get(Context context, String path) {
+		return send(context, "GET", path, null, null);
+	}
+	
+	static HttpRequest send(Context context, String method, String path, String contentType, String body) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(context.baseUrl + path))
+				.header("X-Api-Key", "load-" + context.random().nextInt(CLIENTS))
+				.timeout(Duration.ofSeconds(30))
+				.method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
+		if(contentType != null) {
+			builder.header("Content-Type", contentType);
+		}
+		return builder.build();
+	}
+	
+	static String encode(String value) {
+		return URLEncoder.encode(value, StandardCharsets.UTF_8);
+	}
+	
+	//미리 넣을 책 (bulk 로 1000권씩). 넣은 id 를 돌려준다.
+	static long[] seed(HttpClient client, String baseUrl, int count) throws Exception {
+		Context context = new Context(baseUrl, new long[0]);
+		int remaining = count;
+		while(remaining > 0) {
+			int chunk = Math.min(remaining, 1000);
+			String body = client.send(send(context, "POST", "/book/_bulk", NDJSON, context.newBooks(chunk)),
+					HttpResponse.BodyHandlers.ofString()).body();
+			created(context, body);
+			remaining -= chunk;
+		}
+		return context.created.stream().mapToLong(Long::longValue).toArray();
+	}
+}
@@ -0,0 +1,402 @@
+package com.cos.book.bench;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 종단간 부하/소크 테스트 + SLO 판정 (JMH가 아니라 main 으로 돈다. -P jmh 로 컴파일 후)
+ *   mvn -P jmh test-compile exec:exec@load -Dload.args="mix=read seconds=60"
+ *   java -cp target/test-classes:target/classes:<jmh 클래스패스> com.cos.book.bench.BookLoadTest mix=write rate=200
+ * 열린 부하 : 정해진 간격으로 보내고 응답을 기다리지 않는다. (서버가 느려져도 보내는 속도가 줄지 않음)
+ * latency 는 보내기로 한 시각부터 잰다. (coordinated omission 보정, 실제로 보낸 시각부터 잰 service time 도 같이 출력)
+ * 끝나면 HdrHistogram 백분위 분포를 target/load/{mix}.hgrm 로 남기고, SLO 를 넘으면 exit 1 (exec:exec 가 빌드를 실패시킨다)
+ *
+ * 인자 (key=value)
+ *   mix=read|write|bulk     요청 구성 (BookLoadMix)
+ *   rate=                   초당 요청 수 (기본은 mix 마다)
+ *   seconds=30 warmup=30    측정 시간, 워밍업 (워밍업 결과는 버림)
+ *   db=h2|mariadb|jdbc:..   이 프로세스에 앱을 띄울때 db. mariadb 는 H2 MariaDB 호환 모드 (로컬 MariaDB 대신), jdbc: 는 그대로 (prod 프로필)
+ *   url=http://..           이미 떠 있는 서버에 건다. (앱을 띄우지 않음)
+ *   seed=2000               미리 넣을 책 수
+ *   p99Ms= minThroughput=0.98 maxErrorRate=0.001   SLO (p99 기본은 mix 마다, 처리량은 보낸 것 대비 성공 비율)
+ *   soak=false sample=10    soak=true 면 힙 증가/GC pause 도 판정. sample 초마다 구간 p99 와 서버 힙/GC 를 출력
+ *   maxHeapGrowthMbPerHour=50 maxGcPauseMs=200
+ * 힙/GC 는 서버의 /actuator/metrics (jvm.gc.live.data.size, jvm.memory.used, jvm.gc.pause) 로 본다.
+ * 앱을 이 프로세스에 띄우면 부하기 몫도 섞이므로 긴 soak 는 url= 로 따로 띄운 서버에 거는 것이 정확하다.
+ */
+public class BookLoadTest {
+	private static final int MAX_OUTSTANDING = 4000; //넘으면 보내지 않고 실패로 센다. (부하기 쪽 메모리 보호)
+	private static final double MB = 1024 * 1024;
+	
+	public static void main(String[] args) throws Exception {
+		System.setProperty("spring.devtools.restart.enabled", "false"); //devtools가 main 을 다시 띄우지 않게
+		Map<String, String> options = parse(args);
+		BookLoadMix mix = BookLoadMix.valueOf(options.getOrDefault("mix", "read").toUpperCase());
+		Settings settings = new Settings(mix, options);
+		HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+		ConfigurableApplicationContext context = null;
+		String baseUrl = options.get("url");
+		if(baseUrl == null) {
+			context = BenchContexts.start(WebApplicationType.SERVLET, appArgs(options.getOrDefault("db", "h2")));
+			baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+		}
+		boolean passed;
+		try {
+			BookLoadMix.Context target = new BookLoadMix.Context(baseUrl, BookLoadMix.seed(client, baseUrl, settings.seed));
+			ServerMetrics metrics = new ServerMetrics(client, baseUrl);
+			System.out.printf("[load] mix=%s target=%s rate=%d/s seconds=%d warmup=%d seed=%d%n",
+					mix.name().toLowerCase(), context == null ? baseUrl : options.getOrDefault("db", "h2"), settings.rate, settings.seconds, settings.warmup, settings.seed);
+			new Run(client, mix, target, settings.rate, null).run(settings.warmup, settings.sample);
+			Run run = new Run(client, mix, target, settings.rate, metrics);
+			Result result = run.run(settings.seconds, settings.sample);
+			result.print(System.out);
+			Path report = Path.of(options.getOrDefault("out", "target/load"), mix.name().toLowerCase() + ".hgrm");
+			Files.createDirectories(report.getParent());
+			try (PrintStream out = new PrintStream(Files.newOutputStream(report))) {
+				result.response.outputPercentileDistribution(out, 1000.0); //ms
+			}
+			System.out.println("[load] hgrm=" + report);
+			passed = result.check(settings, System.out);
+		} finally {
+			if(context != null) {
+				context.close();
+			}
+		}
+		System.exit(passed ? 0 : 1);
+	}
+	
+	private static Map<String, String> parse(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for(String arg : args) {
+			int eq = arg.indexOf('=');
+			if(eq < 0) {
+				throw new IllegalArgumentException("key=value 로 넘겨주세요. : " + arg);
+			}
+			options.put(arg.substring(0, eq), arg.substring(eq + 1));
+		}
+		return options;
+	}
+	
+	private static String[] appArgs(String db) {
+		List<String> args = new ArrayList<>(List.of("--book.admission.enabled=false", "--book.stats.reconcile-on-startup=false"));
+		if(db.equals("mariadb")) {
+			args.add("--spring.datasource.url=jdbc:h2:mem:load;MODE=MariaDB;DATABASE_TO_LOWER=TRUE;DB_CLOSE_ON_EXIT=FALSE");
+		} else if(db.startsWith("jdbc:")) { //실제 db : 스키마는 flyway, 계정은 BOOK_DB_USERNAME/PASSWORD
+			args.add("--spring.profiles.active=prod");
+			args.add("--spring.datasource.url=" + db);
+		} else if(!db.equals("h2")) {
+			throw new IllegalArgumentException("db 는 h2, mariadb, jdbc:.. 중 하나입니다. : " + db);
+		}
+		return args.toArray(String[]::new);
+	}
+	
+	static class Settings {
+		final int rate, seconds, warmup, seed, sample;
+		final long p99Ms;
+		final double minThroughput, maxErrorRate;
+		final boolean soak;
+		final double maxHeapGrowthMbPerHour;
+		final long maxGcPauseMs;
+		
+		Settings(BookLoadMix mix, Map<String, String> options) {
+			rate = Integer.parseInt(options.getOrDefault("rate", String.valueOf(mix.defaultRate)));
+			seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+			warmup = Integer.parseInt(options.getOrDefault("warmup", "30"));
+			seed = Integer.parseInt(options.getOrDefault("seed", "2000"));
+			sample = Integer.parseInt(options.getOrDefault("sample", "10"));
+			p99Ms = Long.parseLong(options.getOrDefault("p99Ms", String.valueOf(mix.defaultP99Ms)));
+			minThroughput = Double.parseDouble(options.getOrDefault("minThroughput", "0.98"));
+			maxErrorRate = Double.parseDouble(options.getOrDefault("maxErrorRate", "0.001"));
+			soak = Boolean.parseBoolean(options.getOrDefault("soak", "false"));
+			maxHeapGrowthMbPerHour = Double.parseDouble(options.getOrDefault("maxHeapGrowthMbPerHour", "50"));
+			maxGcPauseMs = Long.parseLong(options.getOrDefault("maxGcPauseMs", "200"));
+		}
+	}
+	
+	//요청 종류별 기록 (마이크로초). Recorder 는 여러 스레드가 기록하고 한 스레드가 구간별로 꺼내 간다.
+	static class OpStats {
+		final Recorder response = new Recorder(3);
+		final Recorder service = new Recorder(3);
+		final LongAdder errors = new LongAdder();
+	}
+	
+	static class Run {
+		final HttpClient client;
+		final BookLoadMix mix;
+		final BookLoadMix.Context target;
+		final int rate;
+		final ServerMetrics metrics; //null 이면 (워밍업) 출력하지 않음
+		final Map<String, OpStats> stats = new LinkedHashMap<>();
+		final LongAdder dropped = new LongAdder();
+		final AtomicInteger outstanding = new AtomicInteger();
+		
+		Run(HttpClient client, BookLoadMix mix, BookLoadMix.Context target, int rate, ServerMetrics metrics) {
+			this.client = client;
+			this.mix = mix;
+			this.target = target;
+			this.rate = rate;
+			this.metrics = metrics;
+			for(BookLoadMix.Op op : mix.ops) {
+				stats.put(op.name(), new OpStats());
+			}
+		}
+		
+		Result run(int seconds, int sampleSeconds) throws Exception {
+			Result result = new Result(rate, seconds);
+			Thread reporter = null;
+			if(metrics != null) {
+				result.samples.add(metrics.sample(0));
+				reporter = new Thread(() -> report(result, sampleSeconds), "load-report");
+				reporter.setDaemon(true);
+				reporter.start();
+			}
+			long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+			long start = System.nanoTime();
+			long end = start + TimeUnit.SECONDS.toNanos(seconds);
+			try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				for(long i = 0; ; i++) {
+					long intended = start + i * interval;
+					if(intended - end >= 0) {
+						break;
+					}
+					long wait = intended - System.nanoTime();
+					if(wait > 0) {
+						LockSupport.parkNanos(wait);
+					}
+					if(outstanding.incrementAndGet() > MAX_OUTSTANDING) {
+						outstanding.decrementAndGet();
+						dropped.increment();
+						continue;
+					}
+					BookLoadMix.Call call = mix.next(target);
+					executor.submit(() -> send(call, intended));
+				}
+			}
+			result.elapsedNanos = System.nanoTime() - start;
+			if(reporter != null) {
+				reporter.interrupt();
+				reporter.join();
+			}
+			collect(result);
+			result.dropped = dropped.sum();
+			return result;
+		}
+		
+		private Void send(BookLoadMix.Call call, long intended) {
+			OpStats op = stats.get(call.op().name());
+			try {
+				long sent = System.nanoTime();
+				HttpResponse<String> response = client.send(call.request(), call.op().onBody() == null
+						? HttpResponse.BodyHandlers.<String>replacing(null) : HttpResponse.BodyHandlers.ofString());
+				long now = System.nanoTime();
+				if(response.statusCode() != call.op().expectedStatus()) {
+					op.errors.increment();
+					return null;
+				}
+				op.response.recordValue(TimeUnit.NANOSECONDS.toMicros(now - intended));
+				op.service.recordValue(TimeUnit.NANOSECONDS.toMicros(now - sent));
+				if(call.op().onBody() != null) {
+					call.op().onBody().accept(target, response.body());
+				}
+			} catch (Exception e) {
+				op.errors.increment();
+			} finally {
+				outstanding.decrementAndGet();
+			}
+			return null;
+		}
+		
+		//sample 초마다 구간 결과와 서버 힙/GC
+		private void report(Result result, int sampleSeconds) {
+			long start = System.nanoTime();
+			while(!Thread.currentThread().isInterrupted()) {
+				try {
+					Thread.sleep(TimeUnit.SECONDS.toMillis(sampleSeconds));
+				} catch (InterruptedException e) {
+					return;
+				}
+				Histogram interval = collect(result);
+				ServerMetrics.Sample sample = metrics.sample((System.nanoTime() - start) / 1e9);
+				result.samples.add(sample);
+				System.out.printf("[load] t=%4.0fs ok=%6d p99=%7.2fms max=%7.2fms outstanding=%4d | heapUsed=%6.1fMB liveData=%6.1fMB gcPauseMax=%4.0fms%n",
+						sample.seconds, interval.getTotalCount(), interval.getValueAtPercentile(99) / 1000.0, interval.getMaxValue() / 1000.0,
+						outstanding.get(), sample.heapUsed / MB, sample.liveData / MB, sample.gcPauseMaxMs);
+			}
+		}
+		
+		//지금까지 쌓인 구간을 누적에 더하고 구간 전체 response 를 돌려준다.
+		private synchronized Histogram collect(Result result) {
+			Histogram interval = new Histogram(3);
+			for(Map.Entry<String, OpStats> entry : stats.entrySet()) {
+				Histogram response = entry.getValue().response.getIntervalHistogram();
+				interval.add(response);
+				result.op(entry.getKey()).response.add(response);
+				result.op(entry.getKey()).service.add(entry.getValue().service.getIntervalHistogram());
+				result.op(entry.getKey()).errors = entry.getValue().errors.sum();
+			}
+			result.response.add(interval);
+			return interval;
+		}
+	}
+	
+	static class Result {
+		final int rate, seconds;
+		final Histogram response = new Histogram(3);
+		final Map<String, OpResult> ops = new LinkedHashMap<>();
+		final List<ServerMetrics.Sample> samples = new ArrayList<>();
+		long elapsedNanos, dropped;
+		
+		Result(int rate, int seconds) {
+			this.rate = rate;
+			this.seconds = seconds;
+		}
+		
+		static class OpResult {
+			final Histogram response = new Histogram(3);
+			final Histogram service = new Histogram(3);
+			long errors;
+		}
+		
+		OpResult op(String name) {
+			return ops.computeIfAbsent(name, key -> new OpResult());
+		}
+		
+		long errors() {
+			return dropped + ops.values().stream().mapToLong(op -> op.errors).sum();
+		}
+		
+		double throughput() {
+			return response.getTotalCount() / (elapsedNanos / 1e9);
+		}
+		
+		double errorRate() {
+			long total = response.getTotalCount() + errors();
+			return total == 0 ? 0 : errors() / (double) total;
+		}
+		
+		void print(PrintStream out) {
+			out.printf("[load] total   ok=%7d/s err=%d dropped=%d | response p50=%7.2f p90=%7.2f p99=%7.2f p99.9=%7.2f max=%7.2f ms%n",
+					Math.round(throughput()), errors(), dropped, ms(response, 50), ms(response, 90), ms(response, 99), ms(response, 99.9), response.getMaxValue() / 1000.0);
+			for(Map.Entry<String, OpResult> entry : ops.entrySet()) {
+				OpResult op = entry.getValue();
+				out.printf("[load] %-11s n=%7d err=%d | response p50=%7.2f p99=%7.2f max=%7.2f ms | service p50=%7.2f p99=%7.2f ms%n",
+						entry.getKey(), op.response.getTotalCount(), op.errors, ms(op.response, 50), ms(op.response, 99), op.response.getMaxValue() / 1000.0,
+						ms(op.service, 50), ms(op.service, 99));
+			}
+		}
+		
+		//SLO 를 하나라도 넘으면 false
+		boolean check(Settings settings, PrintStream out) {
+			boolean passed = true;
+			passed &= gate(out, "p99", ms(response, 99), "<=", settings.p99Ms, "ms");
+			passed &= gate(out, "throughput", throughput() / rate, ">=", settings.minThroughput, "x offered");
+			passed &= gate(out, "errorRate", errorRate(), "<=", settings.maxErrorRate, "");
+			if(settings.soak) {
+				passed &= gate(out, "heapGrowth", heapGrowthMbPerHour(), "<=", settings.maxHeapGrowthMbPerHour, "MB/h");
+				passed &= gate(out, "gcPauseMax", steady().stream().mapToDouble(s -> s.gcPauseMaxMs).max().orElse(0), "<=", settings.maxGcPauseMs, "ms");
+			}
+			out.println("[load] SLO " + (passed ? "PASS" : "FAIL"));
+			return passed;
+		}
+		
+		private static boolean gate(PrintStream out, String name, double actual, String op, double limit, String unit) {
+			boolean ok = op.equals("<=") ? actual <= limit : actual >= limit;
+			out.printf("[load] SLO %-10s %10.3f %s %-8s %s %s%n", name, actual, op, limit, unit, ok ? "OK" : "FAIL");
+			return ok;
+		}
+		
+		//앞 1/4 은 뺀다. (워밍업이 덜 끝났고, jvm.gc.pause 의 MAX 는 2분쯤 지나야 뜰때의 pause 를 잊는다)
+		List<ServerMetrics.Sample> steady() {
+			return samples.subList(samples.size() / 4, samples.size());
+		}
+		
+		/**
+		 * GC 후 남은 크기(live data)의 기울기 (최소제곱).
+		 * live data 는 old 영역 GC 가 돌아야 채워지므로 아직 0 이면 힙 사용량으로 본다. (톱니 모양이라 오래 돌려야 의미가 있다)
+		 */
+		double heapGrowthMbPerHour() {
+			List<ServerMetrics.Sample> steady = steady();
+			if(steady.size() < 3) {
+				return 0;
+			}
+			boolean live = steady.stream().allMatch(s -> s.liveData > 0);
+			double n = steady.size(), sx = 0, sy = 0, sxx = 0, sxy = 0;
+			for(ServerMetrics.Sample s : steady) {
+				double y = (live ? s.liveData : s.heapUsed) / MB;
+				sx += s.seconds;
+				sy += y;
+				sxx += s.seconds * s.seconds;
+				sxy += s.seconds * y;
+			}
+			double denominator = n * sxx - sx * sx;
+			return denominator == 0 ? 0 : (n * sxy - sx * sy) / denominator * 3600;
+		}
+		
+		private static double ms(Histogram histogram, double percentile) {
+			return histogram.getValueAtPercentile(percentile) / 1000.0;
+		}
+	}
+	
+	//서버 쪽 힙/GC (/actuator/metrics)
+	static class ServerMetrics {
+		private final HttpClient client;
+		private final String baseUrl;
+		private final ObjectMapper mapper = new ObjectMapper();
+		
+		ServerMetrics(HttpClient client, String baseUrl) {
+			this.client = client;
+			this.baseUrl = baseUrl;
+		}
+		
+		record Sample(double seconds, double heapUsed, double liveData, double gcPauseMaxMs) {
+		}
+		
+		Sample sample(double seconds) {
+			return new Sample(seconds, value("jvm.memory.used?tag=area:heap", "VALUE"), value("jvm.gc.live.data.size", "VALUE"),
+					value("jvm.gc.pause", "MAX") * 1000);
+		}
+		
+		//없거나 못 읽으면 0
+		private double value(String metric, String statistic) {
+			try {
+				HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/metrics/" + metric)).build();
+				HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+				if(response.statusCode() != 200) {
+					return 0;
+				}
+				for(JsonNode measurement : mapper.readTree(response.body()).path("measurements")) {
+					if(statistic.equals(measurement.path("statistic").asText())) {
+						return measurement.path("value").asDouble();
+					}
+				}
+			} catch (Exception e) {
+				//다음 sample 에서 다시
+			}
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package com.cos.book.bench;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.cos.book.domain.Book;
+import com.cos.book.service.BookLoader;
+import com.cos.book.service.BookService;
+
+//캐시 없이 (cache none) 여러 스레드가 적은 수의 인기 id를 동시에 getOne.
+//loader=false 는 요청마다 select 한번, true 는 같은 id는 합치고 다른 id는 in (...) 으로 모은다.
+//끝날때 [loader] 줄에 요청당 실제 db 조회 수가 찍힌다.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookLoaderBenchmark {
+	
+	@Param({"true", "false"})
+	public boolean loader;
+	
+	@Param({"10"})
+	public int hotIds;
+	
+	private ConfigurableApplicationContext context;
+	private BookService bookService;
+	private BookLoader bookLoader;
+	private List<Long> ids;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		context = BenchContexts.start(WebApplicationType.NONE, "--spring.cache.type=none", "--book.loader.enabled=" + loader);
+		bookService = context.getBean(BookService.class);
+		bookLoader = context.getBean(BookLoader.class);
+		ids = BenchContexts.seed(context, 1000);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Map<String, Long> stats = bookLoader.stats();
+		System.out.printf("%n[loader] loader=%s requests=%d coalesced=%d queries=%d queries/request=%.3f%n",
+				loader, stats.get("requests"), stats.get("coalesced"), stats.get("batches"),
+				(double) stats.get("batches") / Math.max(1, stats.get("requests")));
+		context.close();
+	}
+	
+	@Benchmark
+	public Book getOne() {
+		return bookService.getOne(ids.get(ThreadLocalRandom.current().nextInt(hotIds)));
+	}
+}
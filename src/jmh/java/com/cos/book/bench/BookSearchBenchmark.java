@@ -0,0 +1,63 @@
+package com.cos.book.bench;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cos.book.domain.Book;
+import com.cos.book.service.BookSearchIndex;
+
+/**
+ * GET /book/search 의 색인 부분 (목표 : 1000만권에서 p99 10ms 이하). db 없이 색인만 만든다.
+ *   common : 거의 모든 책에 있는 글자 => 맨앞 일치 짧은 제목 몇 묶음만 보고 멈춤
+ *   word   : 단어 하나 (책 1/10 정도)
+ *   rare   : 몇 권 안 되는 2-gram 여러개 교집합
+ *   middle : 단어 가운데에만 있는 글자 => 중간 일치라서 교집합 전체를 본다 (최악)
+ * 1000만권은 색인만 힙 수 GB 라서 -jvmArgsAppend -Xmx16g 같이 힙을 키워서 돌린다. (작은 머신은 -p books=1000000)
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookSearchBenchmark {
+	private static final String[] WORDS = {"스프링", "리액트", "자바", "코틀린", "데이터", "알고리즘", "네트워크", "운영체제", "클라우드", "보안",
+			"spring", "react", "java", "kotlin", "data", "algorithm", "network", "cloud", "security", "design"};
+	
+	@Param({"10000000"})
+	public int books;
+	
+	@Param({"a", "알고리즘", "운영체제 입문 7", "고리"})
+	public String query;
+	
+	private BookSearchIndex index;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		index = new BookSearchIndex(null, false);
+		Random random = new Random(1);
+		for(long id = 1; id <= books; id++) {
+			String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " 입문 " + (id % 1000);
+			index.put(new Book(id, title, "저자" + random.nextInt(1000)));
+		}
+	}
+	
+	@Benchmark
+	public List<Book> search() {
+		return index.search(query, false, 20);
+	}
+}
@@ -0,0 +1,71 @@
+package com.cos.book.bench;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.cos.book.domain.Book;
+import com.cos.book.service.BookService;
+
+//BookService 경로 (임베디드 H2). SampleTime 이라서 결과에 p50/p90/p99 가 같이 나온다.
+//cacheType=caffeine 이면 getOne은 캐시 hit, none 이면 매번 db 조회.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookServiceBenchmark {
+	
+	@Param({"caffeine", "none"})
+	public String cacheType;
+	
+	private ConfigurableApplicationContext context;
+	private BookService bookService;
+	private List<Long> ids;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		context = BenchContexts.start(WebApplicationType.NONE, "--spring.cache.type=" + cacheType);
+		bookService = context.getBean(BookService.class);
+		ids = BenchContexts.seed(context, 1000);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+	
+	//자주 읽히는 100권만 조회 (캐시에 다 들어가는 크기)
+	@Benchmark
+	public Book getOne() {
+		return bookService.getOne(ids.get(ThreadLocalRandom.current().nextInt(100)));
+	}
+	
+	@Benchmark
+	public Book save() {
+		return bookService.save(new Book(null, "벤치마크", "코스"));
+	}
+	
+	@Benchmark
+	public Book update() {
+		Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+		return bookService.update(id, new Book(null, "벤치마크" + id, "코스"));
+	}
+}
@@ -0,0 +1,74 @@
+package com.cos.book.bench;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.client.RestTemplate;
+
+//동시 요청이 많을때 servlet(톰켓 + JPA), virtual(톰켓 + JPA, 가상 스레드), reactive(WebFlux + R2DBC) 비교
+//JMH 스레드 하나 = 동시 클라이언트 하나 (톰켓 기본 스레드 200개보다 많게 잡는다)
+//처리량은 결과의 ops/시간, 꼬리 지연시간은 p99/p99.9 를 본다.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(512)
+@Fork(value = 1, jvmArgsAppend = "-Dhttp.maxConnections=1024")
+@State(Scope.Benchmark)
+public class BookStackBenchmark {
+	
+	@Param({"servlet", "virtual", "reactive"})
+	public String stack;
+	
+	private ConfigurableApplicationContext context;
+	private RestTemplate restTemplate;
+	private String baseUrl;
+	private List<Long> ids;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		if("reactive".equals(stack)) {
+			context = BenchContexts.start(WebApplicationType.REACTIVE, "--spring.profiles.active=reactive");
+		} else if("virtual".equals(stack)) {
+			context = BenchContexts.start(WebApplicationType.SERVLET, "--spring.profiles.active=virtual", "--spring.cache.type=none");
+		} else {
+			context = BenchContexts.start(WebApplicationType.SERVLET, "--spring.cache.type=none"); //같은 조건으로 db까지 가게
+		}
+		ids = BenchContexts.seed(context, 1000);
+		restTemplate = new RestTemplate();
+		baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+	
+	@Benchmark
+	public String findById() {
+		Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+		return restTemplate.getForObject(baseUrl + "/book/" + id, String.class);
+	}
+	
+	@Benchmark
+	public String findPage() {
+		return restTemplate.getForObject(baseUrl + "/book?limit=20", String.class);
+	}
+}
@@ -0,0 +1,91 @@
+package com.cos.book.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.cos.book.domain.Book;
+import com.cos.book.web.BookProtobuf;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+/**
+ * 응답 형식별 CPU (목록 직렬화 한번 ns/op) 와 크기 (Setup에서 원본/gzip 바이트 수 출력)
+ * mvn -P jmh test-compile exec:exec -Djmh.includes=BookWireFormatBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookWireFormatBenchmark {
+	
+	@Param({ "json", "json-blackbird", "cbor", "smile", "protobuf" })
+	public String format;
+	
+	@Param({ "1", "1000" })
+	public int size;
+	
+	private ObjectMapper objectMapper;
+	private List<Book> books;
+	private ByteArrayOutputStream out;
+	
+	@Setup
+	public void setup() throws IOException {
+		objectMapper = switch(format) {
+		case "json" -> Jackson2ObjectMapperBuilder.json().build();
+		case "json-blackbird" -> Jackson2ObjectMapperBuilder.json().modulesToInstall(new BlackbirdModule()).build();
+		case "cbor" -> Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).modulesToInstall(new BlackbirdModule()).build();
+		case "smile" -> Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).modulesToInstall(new BlackbirdModule()).build();
+		default -> null;
+		};
+		books = new ArrayList<>();
+		for(int i = 0; i < size; i++) {
+			books.add(new Book((long) i + 1, "스프링부트 따라하기 " + i, "코스" + (i % 100), 0L));
+		}
+		out = new ByteArrayOutputStream(1 << 20);
+		
+		//선 위의 크기
+		write(out);
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		try(GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+			write(gzip);
+		}
+		System.out.printf("%n[wire] format=%s size=%d bytes=%d gzip=%d%n", format, size, out.size(), gzipped.size());
+	}
+	
+	@Benchmark
+	public int serializeList() throws IOException {
+		out.reset(); //응답 버퍼처럼 재사용
+		write(out);
+		return out.size();
+	}
+	
+	private void write(OutputStream outputStream) throws IOException {
+		if(objectMapper == null) {
+			BookProtobuf.writeList(books, outputStream);
+		} else {
+			objectMapper.writeValue(outputStream, books);
+		}
+	}
+}
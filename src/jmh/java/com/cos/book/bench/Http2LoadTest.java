@@ -0,0 +1,146 @@
+package com.cos.book.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * HTTP/1.1 vs HTTP/2(h2c) 클라이언트 부하 테스트 (JMH가 아니라 main 으로 돈다. -P jmh 로 컴파일 후)
+ *   java -cp target/test-classes:target/classes:<jmh 클래스패스> com.cos.book.bench.Http2LoadTest [동시사용자=16] [초=10]
+ * 화면 하나(page view)에 책 20권이 필요하다고 보고 두가지로 가져온다.
+ *   each : GET /book/{id} 20개를 한꺼번에 보냄 (HTTP/1.1 은 커넥션을 여러개 열고, HTTP/2 는 한 커넥션에 스트림으로 섞어 보냄)
+ *   ids  : GET /book?ids=.. 한번 (findAllById 한번)
+ * 커넥션은 keep-alive 로 재사용한다. latency 는 page view 한개 기준.
+ */
+public class Http2LoadTest {
+	private static final int BOOKS_PER_PAGE = 20;
+	
+	public static void main(String[] args) throws Exception {
+		System.setProperty("spring.devtools.restart.enabled", "false"); //devtools가 main 을 다시 띄우지 않게
+		int users = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		ConfigurableApplicationContext context = BenchContexts.start(WebApplicationType.SERVLET,
+				"--spring.profiles.active=http2", "--book.admission.enabled=false");
+		try {
+			List<Long> ids = BenchContexts.seed(context, 1000);
+			String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+			for(HttpClient.Version version : new HttpClient.Version[] {HttpClient.Version.HTTP_1_1, HttpClient.Version.HTTP_2}) {
+				HttpClient client = HttpClient.newBuilder()
+						.version(version)
+						.executor(Executors.newVirtualThreadPerTaskExecutor())
+						.build();
+				for(boolean multiGet : new boolean[] {false, true}) {
+					run(client, baseUrl, ids, users, 3, multiGet); //워밍업
+					run(client, baseUrl, ids, users, seconds, multiGet).print(version, multiGet, seconds);
+				}
+			}
+		} finally {
+			context.close();
+		}
+	}
+	
+	static class Result {
+		final long[] latencies;
+		final long requests, failed;
+		final String protocol;
+		
+		Result(long[] latencies, long requests, long failed, String protocol) {
+			this.latencies = latencies;
+			this.requests = requests;
+			this.failed = failed;
+			this.protocol = protocol;
+		}
+		
+		void print(HttpClient.Version version, boolean multiGet, int seconds) {
+			Arrays.sort(latencies);
+			System.out.printf("[http2] client=%-8s negotiated=%-8s mode=%-4s pageViews/s=%.0f req/s=%.0f p50=%.2fms p99=%.2fms failed=%d%n",
+					version, protocol, multiGet ? "ids" : "each", latencies.length / (double) seconds, requests / (double) seconds,
+					percentile(0.50), percentile(0.99), failed);
+		}
+		
+		double percentile(double p) {
+			if(latencies.length == 0) {
+				return 0;
+			}
+			return latencies[(int) Math.min(latencies.length - 1, Math.ceil(p * latencies.length) - 1)] / 1e6;
+		}
+	}
+	
+	private static Result run(HttpClient client, String baseUrl, List<Long> ids, int users, int seconds, boolean multiGet) throws Exception {
+		ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+		AtomicLong requests = new AtomicLong(), failed = new AtomicLong();
+		ConcurrentLinkedQueue<String> protocols = new ConcurrentLinkedQueue<>();
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for(int u = 0; u < users; u++) {
+				executor.submit(() -> {
+					while(System.nanoTime() < end) {
+						List<Long> page = randomPage(ids);
+						long start = System.nanoTime();
+						List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+						if(multiGet) {
+							String query = page.stream().map(String::valueOf).collect(Collectors.joining(","));
+							responses.add(client.sendAsync(request(baseUrl + "/book?ids=" + query), HttpResponse.BodyHandlers.discarding()));
+						} else {
+							for(Long id : page) {
+								responses.add(client.sendAsync(request(baseUrl + "/book/" + id), HttpResponse.BodyHandlers.discarding()));
+							}
+						}
+						boolean ok = true;
+						for(CompletableFuture<HttpResponse<Void>> response : responses) {
+							try {
+								HttpResponse<Void> r = response.join();
+								ok &= r.statusCode() == 200;
+								if(protocols.isEmpty()) {
+									protocols.add(r.version().name());
+								}
+							} catch (Exception e) {
+								ok = false;
+							}
+						}
+						requests.addAndGet(responses.size());
+						if(ok) {
+							latencies.add(System.nanoTime() - start);
+						} else {
+							failed.incrementAndGet();
+						}
+					}
+					return null;
+				});
+			}
+		}
+		return new Result(latencies.stream().mapToLong(Long::longValue).toArray(), requests.get(), failed.get(),
+				protocols.isEmpty() ? "-" : protocols.peek());
+	}
+	
+	private static List<Long> randomPage(List<Long> ids) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		List<Long> page = new ArrayList<>(BOOKS_PER_PAGE);
+		for(int i = 0; i < BOOKS_PER_PAGE; i++) {
+			page.add(ids.get(random.nextInt(ids.size())));
+		}
+		return page;
+	}
+	
+	private static HttpRequest request(String url) {
+		return HttpRequest.newBuilder(URI.create(url))
+				.timeout(Duration.ofSeconds(30))
+				.build();
+	}
+}
@@ -0,0 +1,96 @@
+package com.cos.book.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import com.cos.book.domain.Book;
+import com.cos.book.offheap.OffHeapBookStore;
+
+/**
+ * 힙의 List<Book> 과 OffHeapBookStore 의 메모리 비교 (JMH가 아니라 main 으로 돈다)
+ *   mvn -P jmh test-compile
+ *   java -Xmx3g -cp target/test-classes:target/classes:(의존성) com.cos.book.bench.OffHeapFootprint [건수=10000000]
+ * 같은 book 들을 (db 에서 읽은 것처럼 한 권마다 새 String) 각각 올리고 GC 뒤의 힙 사용량 차이를 본다.
+ * offheap 은 힙 대신 map 된 파일 크기, 그리고 스냅샷에서 다시 여는 시간과 임의 id 조회 속도
+ */
+public class OffHeapFootprint {
+	private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+	
+	public static void main(String[] args) throws Exception {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+		
+		long before = usedHeap();
+		List<Book> heap = new ArrayList<>(rows);
+		for(int i = 1; i <= rows; i++) {
+			heap.add(book(i));
+		}
+		long heapBytes = usedHeap() - before;
+		long heapGet = lookups(id -> heap.get((int) id - 1), rows);
+		System.out.printf("List<Book>      : heap %,d MB (%d B/권), 조회 %,d ns/op%n", heapBytes >> 20, heapBytes / rows, heapGet);
+		heap.clear();
+		
+		Path dir = Files.createTempDirectory("book-offheap");
+		try {
+			before = usedHeap();
+			OffHeapBookStore store = new OffHeapBookStore(dir, 256L * 1024 * 1024, 1 << 16, 0.5);
+			long start = System.nanoTime();
+			for(int i = 1; i <= rows; i++) {
+				store.put(book(i));
+			}
+			long loadMs = (System.nanoTime() - start) / 1_000_000;
+			long storeHeap = usedHeap() - before;
+			long mapped = store.mappedBytes();
+			store.close();
+			
+			start = System.nanoTime();
+			OffHeapBookStore reopened = new OffHeapBookStore(dir, 256L * 1024 * 1024, 1 << 16, 0.5);
+			long reopenMs = (System.nanoTime() - start) / 1_000_000;
+			long offHeapGet = lookups(reopened::get, rows);
+			System.out.printf("OffHeapBookStore: heap %,d MB, 파일(map) %,d MB (%d B/권), 적재 %,d ms, 다시 열기 %,d ms (warm=%s), 조회 %,d ns/op%n",
+					storeHeap >> 20, mapped >> 20, mapped / rows, loadMs, reopenMs, reopened.isWarm(), offHeapGet);
+			reopened.close();
+		} finally {
+			try (Stream<Path> files = Files.walk(dir)) {
+				files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+			}
+		}
+	}
+	
+	//db 에서 읽은 것처럼 권마다 새 String
+	private static Book book(long i) {
+		return new Book(i, "책제목 " + i, "저자" + (i % 10_000), 0L);
+	}
+	
+	interface Lookup {
+		Book get(long id);
+	}
+	
+	private static long lookups(Lookup lookup, int rows) {
+		int count = 2_000_000;
+		long sum = 0;
+		long start = System.nanoTime();
+		for(int i = 0; i < count; i++) {
+			sum += lookup.get(ThreadLocalRandom.current().nextLong(1, rows + 1)).getTitle().length();
+		}
+		long nanos = System.nanoTime() - start;
+		if(sum == 0) {
+			throw new IllegalStateException();
+		}
+		return nanos / count;
+	}
+	
+	private static long usedHeap() throws InterruptedException {
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return MEMORY.getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,161 @@
+package com.cos.book.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+
+/**
+ * 기동 시간 비교 (JMH가 아니라 main 으로 돈다. 빌드된 산출물이 있는 모드만 잰다)
+ *   mvn -DskipTests package                       => jvm
+ *   mvn -P native -DskipTests package             => jvm, jvm-aot (AOT 가 들어간 jar)
+ *   mvn -P cds -DskipTests package                => cds (+ -P native 같이 주면 cds-aot)
+ *   mvn -P native -DskipTests native:compile      => native (GraalVM)
+ *   java -cp target/test-classes com.cos.book.bench.StartupBenchmark [반복=5]
+ * 프로세스 시작부터 첫 HTTP 응답까지 (time-to-first-request) 와 그 시점의 RSS. 반복한 것의 중앙값
+ * 앱은 prod 설정 (ddl 없음, flyway) + 메모리 H2 로 띄운다.
+ */
+public class StartupBenchmark {
+	private static final Path TARGET = Paths.get("target");
+	private static final String AOT_INITIALIZER = "BOOT-INF/classes/com/cos/book/BookApplication__ApplicationContextInitializer.class";
+	private static final List<String> APP_ARGS = List.of(
+			"--spring.profiles.active=prod",
+			"--spring.datasource.url=jdbc:h2:mem:startup",
+			"--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+			"--logging.level.root=warn");
+	
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		Map<String, List<String>> modes = new LinkedHashMap<>();
+		Path jar = findJar(TARGET);
+		if(jar != null) {
+			modes.put("jvm", List.of(java, "-jar", jar.toString()));
+			if(hasAot(jar)) {
+				modes.put("jvm-aot", List.of(java, "-Dspring.aot.enabled=true", "-jar", jar.toString()));
+			}
+		}
+		Path cdsJar = findJar(TARGET.resolve("cds"));
+		Path archive = TARGET.resolve("cds").resolve("book.jsa");
+		if(cdsJar != null && Files.exists(archive)) {
+			String shared = "-XX:SharedArchiveFile=" + archive;
+			modes.put("cds", List.of(java, shared, "-jar", cdsJar.toString()));
+			if(hasAot(jar)) {
+				modes.put("cds-aot", List.of(java, shared, "-Dspring.aot.enabled=true", "-jar", cdsJar.toString()));
+			}
+		}
+		Path nativeImage = TARGET.resolve("book");
+		if(Files.isExecutable(nativeImage) && !Files.isDirectory(nativeImage)) {
+			modes.put("native", List.of(nativeImage.toString()));
+		}
+		if(modes.isEmpty()) {
+			System.out.println("target/ 에 jar 가 없습니다. mvn -DskipTests package 먼저");
+			return;
+		}
+		HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+		System.out.printf("%-8s %8s %12s %10s%n", "mode", "runs", "ttfr(ms)", "rss(MB)");
+		for(Map.Entry<String, List<String>> mode : modes.entrySet()) {
+			long[] ttfr = new long[iterations];
+			long[] rss = new long[iterations];
+			for(int i = 0; i < iterations; i++) {
+				long[] result = run(client, mode.getValue());
+				ttfr[i] = result[0];
+				rss[i] = result[1];
+			}
+			System.out.printf("%-8s %8d %12.0f %10.1f%n", mode.getKey(), iterations, median(ttfr) / 1e6, median(rss) / 1024.0 / 1024.0);
+		}
+	}
+	
+	//{시작 => 첫 응답 nanos, 그때 RSS bytes}
+	private static long[] run(HttpClient client, List<String> command) throws Exception {
+		int port = freePort();
+		List<String> full = new ArrayList<>(command);
+		full.addAll(APP_ARGS);
+		full.add("--server.port=" + port);
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/book?limit=1")).timeout(Duration.ofSeconds(5)).build();
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder(full).redirectErrorStream(true).redirectOutput(new File(System.getProperty("java.io.tmpdir"), "book-startup.log")).start();
+		try {
+			while(true) {
+				if(!process.isAlive()) {
+					throw new IllegalStateException("서버가 뜨지 못했습니다 : " + String.join(" ", full) + " (로그 : " + System.getProperty("java.io.tmpdir") + "/book-startup.log)");
+				}
+				try {
+					client.send(request, HttpResponse.BodyHandlers.discarding());
+					break; //상태코드와 상관없이 응답이 오면 요청을 받을 수 있는 것
+				} catch (IOException e) {
+					Thread.sleep(5);
+				}
+			}
+			long ttfr = System.nanoTime() - start;
+			return new long[] {ttfr, rss(process.pid())};
+		} finally {
+			process.destroy();
+			if(!process.waitFor(10, TimeUnit.SECONDS)) {
+				process.destroyForcibly();
+			}
+		}
+	}
+	
+	//리눅스 /proc, 없으면 ps
+	private static long rss(long pid) throws Exception {
+		Path status = Paths.get("/proc", String.valueOf(pid), "status");
+		if(Files.exists(status)) {
+			for(String line : Files.readAllLines(status)) {
+				if(line.startsWith("VmRSS:")) {
+					return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+				}
+			}
+		}
+		Process ps = new ProcessBuilder("ps", "-o", "rss=", "-p", String.valueOf(pid)).start();
+		String out = new String(ps.getInputStream().readAllBytes()).trim();
+		ps.waitFor();
+		return out.isEmpty() ? 0 : Long.parseLong(out) * 1024;
+	}
+	
+	private static Path findJar(Path directory) throws IOException {
+		if(!Files.isDirectory(directory)) {
+			return null;
+		}
+		try (var files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().matches("book-.*\\.jar"))
+					.filter(file -> !file.getFileName().toString().endsWith("-plain.jar"))
+					.findFirst().orElse(null);
+		}
+	}
+	
+	private static boolean hasAot(Path jar) throws IOException {
+		if(jar == null) {
+			return false;
+		}
+		try (JarFile jarFile = new JarFile(jar.toFile())) {
+			return jarFile.getEntry(AOT_INITIALIZER) != null;
+		}
+	}
+	
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+	
+	private static double median(long[] values) {
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+}
@@ -0,0 +1,124 @@
+package com.cos.book.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 동시 처리 수 제한 (Gradient 방식)
+ * 부하가 없을때의 latency(window 최소값들 중 최소)와 window 평균 latency를 비교해서
+ *   gradient = clamp(tolerance * noLoad / short, 0.5, 1)
+ *   newLimit = limit * gradient + sqrt(limit)   (sqrt(limit) : 줄 서는 것을 조금 허용해서 여유가 있으면 늘어남)
+ * 줄이 생겨서 latency가 오르면 (커넥션 풀/CPU가 차기 전) limit 이 줄어서 초과분은 큐에 쌓이지 않고 바로 503.
+ * 평균끼리 비교하면 과부하 상태의 latency를 평소값으로 배워버려서 최소값을 기준으로 한다.
+ * 최소값은 limit 까지 차지 않은 window 에서만 조금씩 (NO_LOAD_DRIFT) 올라간다. (db가 느려진 경우 등은 따라가고, 과부하 중의 latency는 배우지 않음)
+ * acquire/release 는 CAS, LongAdder 만 쓴다. 계산은 window 를 CAS로 잡은 스레드 하나가 한다.
+ */
+public class AdaptiveConcurrencyLimiter {
+	private static final double NO_LOAD_DRIFT = 0.01; //window 하나에 window 최소값 쪽으로 1% (100ms window 면 7초쯤에 절반)
+	
+	private final int minLimit;
+	private final int maxLimit;
+	private final long windowNanos;
+	private final int minSamples;
+	private final double tolerance;
+	private final double smoothing;
+	
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger(); //이번 window 에서 최대 동시 처리 수
+	private final AtomicLong windowStart;
+	private final LongAdder rttSum = new LongAdder();
+	private final LongAdder rttCount = new LongAdder();
+	private final LongAccumulator rttMin = new LongAccumulator(Math::min, Long.MAX_VALUE);
+	private volatile int limit;
+	private double estimate; //소수점까지 (window 잡은 스레드만 씀)
+	private volatile long noLoadRtt; //nanos (window 잡은 스레드만 씀)
+	private volatile double lastRtt;
+	
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long windowMs, int minSamples,
+			double tolerance, double smoothing) {
+		this.limit = initialLimit;
+		this.estimate = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+		this.minSamples = minSamples;
+		this.tolerance = tolerance;
+		this.smoothing = smoothing;
+		this.windowStart = new AtomicLong(System.nanoTime());
+	}
+	
+	public boolean tryAcquire() {
+		while(true) {
+			int current = inFlight.get();
+			if(current >= limit) {
+				return false;
+			}
+			if(inFlight.compareAndSet(current, current + 1)) {
+				if(current + 1 > maxInFlight.get()) {
+					maxInFlight.accumulateAndGet(current + 1, Math::max);
+				}
+				return true;
+			}
+		}
+	}
+	
+	//sample=false : 실패했거나 비동기로 넘어간 요청 (latency 로 안 봄)
+	public void release(long startNanos, long endNanos, boolean sample) {
+		inFlight.decrementAndGet();
+		if(sample) {
+			rttSum.add(endNanos - startNanos);
+			rttCount.increment();
+			rttMin.accumulate(endNanos - startNanos);
+		}
+		long start = windowStart.get();
+		if(endNanos - start >= windowNanos && rttCount.sum() >= minSamples && windowStart.compareAndSet(start, endNanos)) {
+			update();
+		}
+	}
+	
+	public int getLimit() {
+		return limit;
+	}
+	
+	public int getInFlight() {
+		return inFlight.get();
+	}
+	
+	public double getNoLoadRttMs() {
+		return noLoadRtt / 1_000_000.0;
+	}
+	
+	public double getLastRttMs() {
+		return lastRtt / 1_000_000;
+	}
+	
+	private void update() {
+		long count = rttCount.sumThenReset();
+		long sum = rttSum.sumThenReset();
+		long min = rttMin.getThenReset();
+		int peak = maxInFlight.getAndSet(inFlight.get());
+		if(count == 0) {
+			return;
+		}
+		double shortRtt = (double) sum / count;
+		if(noLoadRtt == 0 || min < noLoadRtt) {
+			noLoadRtt = Math.max(min, 1);
+		} else if(peak < limit) {
+			noLoadRtt += (long) Math.ceil((min - noLoadRtt) * NO_LOAD_DRIFT);
+		}
+		this.lastRtt = shortRtt;
+		double current = estimate;
+		double gradient = Math.max(0.5, Math.min(1.0, tolerance * noLoadRtt / shortRtt));
+		double target = current * gradient + Math.sqrt(current);
+		if(target > current && peak < current / 2) {
+			return; //limit 까지 쓰지도 않았으면 늘리지 않는다.
+		}
+		//줄일때는 바로 (smoothing 을 걸면 과부하가 시작될때 limit 이 내려오는 동안 줄이 쌓인다), 늘릴때만 천천히
+		double next = target < current ? target : current * (1 - smoothing) + target * smoothing;
+		estimate = Math.max(minLimit, Math.min(maxLimit, next));
+		limit = (int) estimate;
+	}
+}
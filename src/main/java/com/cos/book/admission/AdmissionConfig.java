@@ -0,0 +1,55 @@
+package com.cos.book.admission;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 과부하 때 /book 요청을 빨리 거절한다. (book.admission.*)
+ * 메트릭 : book.admission.rejected{reason=rate|concurrency}, book.admission.limit, book.admission.inflight
+ */
+@ConditionalOnWebApplication(type = Type.SERVLET)
+@ConditionalOnProperty(name = "book.admission.enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(AdmissionProperties.class)
+@Configuration
+public class AdmissionConfig {
+	
+	@Bean
+	public ClientRateLimiter clientRateLimiter(AdmissionProperties properties) {
+		return new ClientRateLimiter(properties.getRatePerSecond(), properties.getBurst(), properties.getMaxClients());
+	}
+	
+	@Bean
+	public AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter(AdmissionProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties.getInitialLimit(), properties.getMinLimit(),
+				properties.getMaxLimit(), properties.getWindowMs(), properties.getMinSamples(), properties.getTolerance(), properties.getSmoothing());
+		meterRegistry.ifAvailable(registry -> {
+			Gauge.builder("book.admission.limit", limiter, AdaptiveConcurrencyLimiter::getLimit).register(registry);
+			Gauge.builder("book.admission.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight).register(registry);
+		});
+		return limiter;
+	}
+	
+	//요청 시간 측정(HIGHEST), read-your-writes(HIGHEST+1) 다음. 거절된 요청도 http.server.requests 에 429/503 으로 남는다.
+	@Bean
+	public FilterRegistrationBean<AdmissionFilter> admissionFilter(AdmissionProperties properties, ClientRateLimiter rateLimiter,
+			AdaptiveConcurrencyLimiter concurrencyLimiter, ObjectProvider<MeterRegistry> meterRegistry) {
+		MeterRegistry registry = meterRegistry.getIfAvailable();
+		Counter rateRejected = registry == null ? null : Counter.builder("book.admission.rejected").tag("reason", "rate").register(registry);
+		Counter concurrencyRejected = registry == null ? null : Counter.builder("book.admission.rejected").tag("reason", "concurrency").register(registry);
+		FilterRegistrationBean<AdmissionFilter> registration = new FilterRegistrationBean<>(
+				new AdmissionFilter(rateLimiter, concurrencyLimiter, properties.getClientHeader(), properties.getApiKeys(), rateRejected, concurrencyRejected));
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+		return registration;
+	}
+}
@@ -0,0 +1,99 @@
+package com.cos.book.admission;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.Counter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * /book 요청 입장 제어 (톰켓 스레드, 커넥션 풀에 줄을 세우기 전에 거른다)
+ * 1. 클라이언트(등록된 API 키, 아니면 IP) 별 token bucket => 429 + Retry-After (다음 토큰까지 초)
+ *    헤더는 누구나 보낼 수 있어서 api-keys 에 없는 키는 IP 로 센다. (프록시 뒤면 server.forward-headers-strategy 로 원래 IP)
+ * 2. 동시 처리 수 (AdaptiveConcurrencyLimiter) => 503 + Retry-After: 1
+ * /book/changes 는 long-poll, SSE 로 오래 붙어있으니 동시 처리 수에서 뺀다. (rate limit 만)
+ * 통과하는 경로는 객체를 만들지 않는다.
+ */
+public class AdmissionFilter extends OncePerRequestFilter {
+	private static final String CHANGES_PATH = "/book/changes";
+	private static final byte[] RATE_LIMITED = "요청이 너무 많습니다. Retry-After 이후에 다시 시도해주세요.".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] OVERLOADED = "서버가 바쁩니다. Retry-After 이후에 다시 시도해주세요.".getBytes(StandardCharsets.UTF_8);
+	
+	private final ClientRateLimiter rateLimiter;
+	private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+	private final String clientHeader;
+	private final Set<String> apiKeys;
+	private final Counter rateRejected; //null 이면 메트릭 없음
+	private final Counter concurrencyRejected;
+	
+	public AdmissionFilter(ClientRateLimiter rateLimiter, AdaptiveConcurrencyLimiter concurrencyLimiter, String clientHeader, Set<String> apiKeys,
+			Counter rateRejected, Counter concurrencyRejected) {
+		this.rateLimiter = rateLimiter;
+		this.concurrencyLimiter = concurrencyLimiter;
+		this.clientHeader = clientHeader;
+		this.apiKeys = apiKeys;
+		this.rateRejected = rateRejected;
+		this.concurrencyRejected = concurrencyRejected;
+	}
+	
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !request.getRequestURI().startsWith("/book") || CorsUtils.isPreFlightRequest(request); //preflight 는 컨트롤러까지 안감
+	}
+	
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		String client = request.getHeader(clientHeader);
+		if(client == null || !apiKeys.contains(client)) {
+			client = request.getRemoteAddr();
+		}
+		long waitNanos = rateLimiter.tryAcquire(client);
+		if(waitNanos > 0) {
+			if(rateRejected != null) {
+				rateRejected.increment();
+			}
+			reject(response, HttpStatus.TOO_MANY_REQUESTS, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1), RATE_LIMITED);
+			return;
+		}
+		if(request.getRequestURI().startsWith(CHANGES_PATH)) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		if(!concurrencyLimiter.tryAcquire()) {
+			if(concurrencyRejected != null) {
+				concurrencyRejected.increment();
+			}
+			reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1, OVERLOADED);
+			return;
+		}
+		long start = System.nanoTime();
+		boolean completed = false;
+		try {
+			filterChain.doFilter(request, response);
+			completed = true;
+		} finally {
+			//스트리밍(비동기) 응답은 여기서 끝난 게 아니라서 latency 로 안 본다.
+			concurrencyLimiter.release(start, System.nanoTime(), completed && !request.isAsyncStarted() && response.getStatus() < 500);
+		}
+	}
+	
+	private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds, byte[] message) throws IOException {
+		response.setStatus(status.value());
+		response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfterSeconds)));
+		response.setContentType(MediaType.TEXT_PLAIN_VALUE + ";charset=UTF-8");
+		response.setContentLength(message.length);
+		response.getOutputStream().write(message);
+	}
+}
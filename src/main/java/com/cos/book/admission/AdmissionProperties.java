@@ -0,0 +1,28 @@
+package com.cos.book.admission;
+
+import java.util.Set;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+//book.admission.*
+@Data
+@ConfigurationProperties("book.admission")
+public class AdmissionProperties {
+	private boolean enabled = true;
+	private String clientHeader = "X-Api-Key";
+	private Set<String> apiKeys = Set.of(); //여기 있는 키만 키별로 센다. 없거나 모르는 키는 IP (키를 바꿔가며 rate limit 을 피하지 못하게)
+	//클라이언트별 token bucket
+	private double ratePerSecond = 1000;
+	private int burst = 2000;
+	private long maxClients = 100_000;
+	//동시 처리 수 (latency를 보고 스스로 조절)
+	private int initialLimit = 50;
+	private int minLimit = 8;
+	private int maxLimit = 500;
+	private long windowMs = 100; //이 시간마다 (샘플이 min-samples 이상이면) limit 을 다시 계산
+	private int minSamples = 20;
+	private double tolerance = 2.0; //부하가 없을때 latency 의 이 배수까지는 줄이지 않는다.
+	private double smoothing = 0.2; //늘릴때만 (줄일때는 바로)
+}
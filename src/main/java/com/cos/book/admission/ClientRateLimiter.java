@@ -0,0 +1,59 @@
+package com.cos.book.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * 클라이언트별 token bucket (GCRA : 다음 요청이 허용될 시각 하나만 CAS로 갱신 => 락, 할당 없음)
+ * ratePerSecond 로 채워지고 burst 개까지 한번에 쓸 수 있다.
+ * 안 쓰는 클라이언트는 버킷이 다 찼을 시간이 지나면 (expireAfterAccess) 빠진다.
+ */
+public class ClientRateLimiter {
+	//처음 보는 클라이언트는 가득 찬 버킷 (허용 시각을 한참 전으로)
+	private static final Function<String, Bucket> NEW_BUCKET = client -> new Bucket(System.nanoTime() - TimeUnit.DAYS.toNanos(1));
+	
+	static final class Bucket {
+		private final AtomicLong tat; //theoretical arrival time (nanoTime)
+		
+		Bucket(long now) {
+			this.tat = new AtomicLong(now);
+		}
+	}
+	
+	private final long intervalNanos;
+	private final long burstNanos;
+	private final Cache<String, Bucket> buckets;
+	
+	public ClientRateLimiter(double ratePerSecond, int burst, long maxClients) {
+		this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+		this.burstNanos = intervalNanos * burst;
+		this.buckets = Caffeine.newBuilder()
+				.maximumSize(maxClients)
+				.expireAfterAccess(Math.max(burstNanos, TimeUnit.SECONDS.toNanos(1)), TimeUnit.NANOSECONDS)
+				.build();
+	}
+	
+	//0 이면 허용, 아니면 다음 토큰까지 기다려야 하는 nanos
+	public long tryAcquire(String client) {
+		return tryAcquire(client, System.nanoTime());
+	}
+	
+	long tryAcquire(String client, long now) {
+		AtomicLong tat = buckets.get(client, NEW_BUCKET).tat;
+		while(true) {
+			long current = tat.get();
+			long next = (current - now > 0 ? current : now) + intervalNanos;
+			long over = next - now - burstNanos;
+			if(over > 0) {
+				return over;
+			}
+			if(tat.compareAndSet(current, next)) {
+				return 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.cos.book.changes;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.cos.book.domain.BookChange;
+
+/**
+ * 변경 구독 (GET /book 을 통째로 다시 읽지 않고 since 이후만)
+ * - JSON : since 이후 limit 개. waitMs 를 주면 없을때 그만큼 기다린다 (long-poll, DeferredResult). 다음 since 는 X-Next-Since 헤더
+ * - text/event-stream : since (또는 재연결시 Last-Event-ID) 이후를 계속 흘려보낸다. 이벤트 id = seq
+ * since 가 보관 기간보다 오래되었으면 410 => GET /book 으로 전체를 다시 받고 최신 seq 부터
+ */
+@ConditionalOnWebApplication(type = Type.SERVLET)
+@ConditionalOnProperty(name = "book.changes.enabled", havingValue = "true", matchIfMissing = true)
+@RestController
+public class BookChangeController {
+	public static final String NEXT_SINCE_HEADER = "X-Next-Since";
+	
+	private final BookChangeFeed feed;
+	private final long maxWaitMs;
+	private final long sseTimeoutMs;
+	private final long heartbeatMs;
+	
+	public BookChangeController(BookChangeFeed feed,
+			@Value("${book.changes.max-wait-ms:30000}") long maxWaitMs,
+			@Value("${book.changes.sse-timeout-ms:600000}") long sseTimeoutMs,
+			@Value("${book.changes.heartbeat-ms:15000}") long heartbeatMs) {
+		this.feed = feed;
+		this.maxWaitMs = maxWaitMs;
+		this.sseTimeoutMs = sseTimeoutMs;
+		this.heartbeatMs = heartbeatMs;
+	}
+	
+	//기다리는 동안 요청 스레드를 잡지 않는다. (feed 가 since 이후를 읽으면 그때 응답)
+	@GetMapping("/book/changes")
+	public DeferredResult<ResponseEntity<?>> changes(@RequestParam(defaultValue = "0") long since,
+			@RequestParam(defaultValue = "1000") int limit,
+			@RequestParam(defaultValue = "0") long waitMs) {
+		int max = Math.min(Math.max(limit, 1), 1000);
+		long wait = Math.min(Math.max(waitMs, 0), maxWaitMs);
+		DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(wait > 0 ? wait : null, () -> ok(List.of(), since));
+		if(isPruned(since)) {
+			result.setResult(gone(since));
+			return result;
+		}
+		if(wait == 0) {
+			result.setResult(ok(feed.read(since, max), since));
+			return result;
+		}
+		CompletableFuture<List<BookChange>> next = feed.next(since, max);
+		result.onCompletion(() -> next.cancel(false)); //타임아웃, 끊김
+		next.whenComplete((changes, e) -> {
+			if(e == null) {
+				result.setResult(ok(changes, since));
+			} else if(!(e instanceof CancellationException)) {
+				result.setErrorResult(e);
+			}
+		});
+		return result;
+	}
+	
+	@GetMapping(value = "/book/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> stream(@RequestParam(required = false) Long since,
+			@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+		long from = lastEventId != null ? lastEventId : since != null ? since : 0;
+		if(isPruned(from)) {
+			return new ResponseEntity<>(HttpStatus.GONE);
+		}
+		SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+		AtomicBoolean open = new AtomicBoolean(true);
+		emitter.onCompletion(() -> open.set(false));
+		emitter.onTimeout(() -> open.set(false));
+		emitter.onError(e -> open.set(false));
+		//구독자마다 가상 스레드 하나 (느린 구독자가 relay나 다른 구독자를 막지 않게)
+		Thread.ofVirtual().name("book-changes-sse").start(() -> {
+			long cursor = from;
+			try {
+				while(open.get()) {
+					List<BookChange> changes = feed.await(cursor, 1000, heartbeatMs);
+					if(changes.isEmpty()) {
+						emitter.send(SseEmitter.event().comment("keep-alive")); //끊긴 연결을 알아채려고
+						continue;
+					}
+					for(BookChange change : changes) {
+						emitter.send(SseEmitter.event()
+								.id(String.valueOf(change.getSeq()))
+								.name(change.isDeleted() ? "deleted" : "saved")
+								.data(change, MediaType.APPLICATION_JSON));
+						cursor = change.getSeq();
+					}
+				}
+			} catch (IOException | IllegalStateException e) { //클라이언트가 끊음, 이미 끝난 emitter
+				open.set(false);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				emitter.complete();
+			} catch (RuntimeException e) {
+				emitter.completeWithError(e);
+			}
+		});
+		return new ResponseEntity<>(emitter,HttpStatus.OK);
+	}
+	
+	private boolean isPruned(long since) {
+		return since < feed.firstSeq() - 1;
+	}
+	
+	private static ResponseEntity<?> ok(List<BookChange> changes, long since) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.add(NEXT_SINCE_HEADER, String.valueOf(changes.isEmpty() ? since : changes.get(changes.size() - 1).getSeq()));
+		return new ResponseEntity<>(changes,headers,HttpStatus.OK);
+	}
+	
+	private static ResponseEntity<?> gone(long since) {
+		return new ResponseEntity<>("since=" + since + " 이후 변경 일부가 보관 기간이 지나 지워졌습니다. GET /book 으로 다시 받아주세요.",HttpStatus.GONE);
+	}
+}
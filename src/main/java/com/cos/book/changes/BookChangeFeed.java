@@ -0,0 +1,217 @@
+package com.cos.book.changes;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.DataClassRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import com.cos.book.domain.BookChange;
+import com.cos.book.domain.BookChangeCursor;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * book_change 읽기 (GET /book/changes).
+ * 마지막 seq 는 인스턴스에 하나만 둔다. 이 인스턴스의 relay가 옮기면 바로 올라가고,
+ * 다른 인스턴스에서 옮긴 것은 reader 스레드 하나가 relay-interval-ms 마다 cursor 를 읽어서 안다. (구독자가 있을때만, 구독자 수와 상관없이 한번)
+ * 구독자는 마지막 seq 가 자기 since 보다 커졌을때만 book_change 를 읽는다.
+ * - await : 부른 스레드가 기다린다. (SSE 가상 스레드)
+ * - next : 스레드를 잡지 않고 future 로 받는다. (long-poll) 같은 since 로 기다리던 구독자들은 한번 읽은 결과를 나눠 받는다.
+ */
+@Slf4j
+@ConditionalOnProperty(name = "book.changes.enabled", havingValue = "true", matchIfMissing = true)
+@Component
+public class BookChangeFeed {
+	private static final RowMapper<BookChange> ROW_MAPPER = new DataClassRowMapper<>(BookChange.class);
+	
+	private record Waiter(long since, int limit, CompletableFuture<List<BookChange>> future) {
+	}
+	
+	private record Read(long since, int limit) {
+	}
+	
+	private final JdbcTemplate jdbcTemplate;
+	private final long pollIntervalNanos;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition();
+	private final List<Waiter> waiters = new ArrayList<>();
+	private long lastSeq; //이 seq 까지는 book_change 에 커밋됨
+	private int awaiting; //await 중인 스레드 수
+	
+	private volatile boolean running;
+	private Thread reader;
+	
+	public BookChangeFeed(JdbcTemplate jdbcTemplate, @Value("${book.changes.relay-interval-ms:100}") long pollIntervalMs) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(pollIntervalMs, 1));
+	}
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		advance(readLastSeq());
+		running = true;
+		reader = new Thread(this::run, "book-change-feed");
+		reader.setDaemon(true);
+		reader.start();
+	}
+	
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		running = false;
+		if(reader != null) {
+			LockSupport.unpark(reader);
+			reader.join(TimeUnit.SECONDS.toMillis(10));
+		}
+	}
+	
+	public List<BookChange> read(long since, int limit) {
+		return jdbcTemplate.query("select seq, book_id, deleted, title, author, version, committed_at from book_change where seq > ? order by seq limit ?",
+				ROW_MAPPER, since, limit);
+	}
+	
+	//가장 오래 남아있는 seq. since 가 이것보다 1 이상 작으면 사이의 변경이 지워진 것 (보관 기간 초과)
+	public long firstSeq() {
+		Long first = jdbcTemplate.queryForObject("select min(seq) from book_change", Long.class);
+		if(first != null) {
+			return first;
+		}
+		return readLastSeq() + 1;
+	}
+	
+	public List<BookChange> await(long since, int limit, long waitMs) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+		while(true) {
+			long seen = lastSeq();
+			List<BookChange> changes = seen > since ? read(since, limit) : List.of();
+			long remaining = deadline - System.nanoTime();
+			if(!changes.isEmpty() || remaining <= 0) {
+				return changes;
+			}
+			lock.lock();
+			awaiting++;
+			try {
+				while(lastSeq == seen && remaining > 0) {
+					remaining = changed.awaitNanos(remaining);
+				}
+			} finally {
+				awaiting--;
+				lock.unlock();
+			}
+		}
+	}
+	
+	//since 이후가 생기면 완료된다. 기다리지 않게 되면 (타임아웃) 호출한 쪽이 cancel 한다.
+	public CompletableFuture<List<BookChange>> next(long since, int limit) {
+		Waiter waiter = new Waiter(since, limit, new CompletableFuture<>());
+		lock.lock();
+		try {
+			if(lastSeq <= since) {
+				waiters.add(waiter);
+				return waiter.future();
+			}
+		} finally {
+			lock.unlock();
+		}
+		deliver(List.of(waiter));
+		return waiter.future();
+	}
+	
+	//relay가 커밋한 뒤에 부른다.
+	void advance(long seq) {
+		List<Waiter> ready = new ArrayList<>();
+		lock.lock();
+		try {
+			if(seq <= lastSeq) {
+				return;
+			}
+			lastSeq = seq;
+			changed.signalAll();
+			waiters.removeIf(waiter -> {
+				if(waiter.future().isDone()) {
+					return true;
+				}
+				if(waiter.since() < seq) {
+					ready.add(waiter);
+					return true;
+				}
+				return false;
+			});
+		} finally {
+			lock.unlock();
+		}
+		deliver(ready);
+	}
+	
+	//같은 (since, limit) 은 한번만 읽는다. relay 스레드를 막지 않게 가상 스레드에서
+	private void deliver(List<Waiter> ready) {
+		if(ready.isEmpty()) {
+			return;
+		}
+		Thread.ofVirtual().name("book-changes-poll").start(() -> {
+			Map<Read, List<CompletableFuture<List<BookChange>>>> reads = new LinkedHashMap<>();
+			for(Waiter waiter : ready) {
+				reads.computeIfAbsent(new Read(waiter.since(), waiter.limit()), read -> new ArrayList<>()).add(waiter.future());
+			}
+			reads.forEach((read, futures) -> {
+				try {
+					List<BookChange> changes = read(read.since(), read.limit());
+					futures.forEach(future -> future.complete(changes));
+				} catch (RuntimeException e) {
+					futures.forEach(future -> future.completeExceptionally(e));
+				}
+			});
+		});
+	}
+	
+	private void run() {
+		while(running) {
+			LockSupport.parkNanos(this, pollIntervalNanos);
+			try {
+				if(hasSubscribers()) {
+					advance(readLastSeq()); //다른 인스턴스의 relay가 옮긴 것
+				}
+			} catch (RuntimeException e) {
+				log.warn("book_change_cursor 읽기 실패 (다음 주기에 다시 시도)", e);
+			}
+		}
+	}
+	
+	private boolean hasSubscribers() {
+		lock.lock();
+		try {
+			waiters.removeIf(waiter -> waiter.future().isDone()); //타임아웃으로 취소된 것
+			return awaiting > 0 || !waiters.isEmpty();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	private long readLastSeq() {
+		Long last = jdbcTemplate.queryForObject("select max(last_seq) from book_change_cursor where id = ?", Long.class, BookChangeCursor.ID);
+		return last == null ? 0 : last;
+	}
+	
+	private long lastSeq() {
+		lock.lock();
+		try {
+			return lastSeq;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package com.cos.book.changes;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.DataClassRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cos.book.domain.BookChangeCursor;
+import com.cos.book.domain.BookOutbox;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * book_outbox => book_change 로 옮기는 스레드.
+ * 한 트랜잭션에서 : cursor 행 락 => outbox 를 id 순으로 batch-size 만큼 => seq를 이어서 붙여 insert => outbox 에서 삭제 => cursor 갱신.
+ * cursor 락 때문에 seq는 빈틈이 없고, 커밋된 순서로만 붙는다. (since 로 읽는 쪽이 나중에 커밋된 변경을 건너뛰지 않는다.)
+ * book_change 는 retention-ms 가 지나면 지운다.
+ */
+@Slf4j
+@ConditionalOnProperty(name = "book.changes.enabled", havingValue = "true", matchIfMissing = true)
+@Component
+public class BookChangeRelay {
+	private static final RowMapper<BookOutbox> ROW_MAPPER = new DataClassRowMapper<>(BookOutbox.class);
+	
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final BookChangeFeed feed;
+	private final long intervalNanos;
+	private final int batchSize;
+	private final long retentionMs;
+	private final long pruneIntervalNanos;
+	
+	private volatile boolean running;
+	private Thread relay;
+	
+	public BookChangeRelay(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, BookChangeFeed feed,
+			@Value("${book.changes.relay-interval-ms:100}") long intervalMs,
+			@Value("${book.changes.batch-size:500}") int batchSize,
+			@Value("${book.changes.retention-ms:86400000}") long retentionMs,
+			@Value("${book.changes.prune-interval-ms:60000}") long pruneIntervalMs) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+		this.feed = feed;
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+		this.batchSize = batchSize;
+		this.retentionMs = retentionMs;
+		this.pruneIntervalNanos = TimeUnit.MILLISECONDS.toNanos(pruneIntervalMs);
+	}
+	
+	//테이블은 flyway 가 만들어서 다 뜬 뒤에 시작
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		try { //처음 뜰때 한번 (다른 인스턴스가 먼저 넣었으면 무시)
+			jdbcTemplate.update("insert into book_change_cursor (id, last_seq) select ?, coalesce(max(seq), 0) from book_change"
+					+ " where not exists (select 1 from book_change_cursor where id = ?)", BookChangeCursor.ID, BookChangeCursor.ID);
+		} catch (DuplicateKeyException e) {
+		}
+		running = true;
+		relay = new Thread(this::run, "book-change-relay");
+		relay.setDaemon(true);
+		relay.start();
+	}
+	
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		running = false;
+		if(relay != null) {
+			LockSupport.unpark(relay);
+			relay.join(TimeUnit.SECONDS.toMillis(10));
+		}
+	}
+	
+	//outbox 가 커밋되면 interval 을 기다리지 않고 바로 옮긴다.
+	void wakeUp() {
+		if(relay != null) {
+			LockSupport.unpark(relay);
+		}
+	}
+	
+	//옮긴 건수
+	int relayOnce() {
+		long[] seq = {0};
+		Integer moved = transactionTemplate.execute(status -> {
+			long lastSeq = jdbcTemplate.queryForObject("select last_seq from book_change_cursor where id = ? for update", Long.class, BookChangeCursor.ID);
+			List<BookOutbox> rows = jdbcTemplate.query("select id, book_id, deleted, title, author, version, created_at from book_outbox order by id limit ?",
+					ROW_MAPPER, batchSize);
+			if(rows.isEmpty()) {
+				return 0;
+			}
+			long now = System.currentTimeMillis();
+			seq[0] = lastSeq;
+			jdbcTemplate.batchUpdate("insert into book_change (seq, book_id, deleted, title, author, version, committed_at) values (?, ?, ?, ?, ?, ?, ?)",
+					rows, rows.size(), (ps, row) -> {
+						ps.setLong(1, ++seq[0]);
+						ps.setLong(2, row.getBookId());
+						ps.setBoolean(3, row.isDeleted());
+						ps.setString(4, row.getTitle());
+						ps.setString(5, row.getAuthor());
+						ps.setObject(6, row.getVersion());
+						ps.setLong(7, now);
+					});
+			//id <= max 로 지우면 읽은 뒤에 커밋된 (더 작은 id의) 행까지 지워질 수 있어서 읽은 id만
+			jdbcTemplate.batchUpdate("delete from book_outbox where id = ?", rows, rows.size(), (ps, row) -> ps.setLong(1, row.getId()));
+			jdbcTemplate.update("update book_change_cursor set last_seq = ? where id = ?", seq[0], BookChangeCursor.ID);
+			return rows.size();
+		});
+		if(moved != null && moved > 0) {
+			feed.advance(seq[0]);
+		}
+		return moved == null ? 0 : moved;
+	}
+	
+	int prune() {
+		return jdbcTemplate.update("delete from book_change where committed_at < ?", System.currentTimeMillis() - retentionMs);
+	}
+	
+	private void run() {
+		long nextPrune = System.nanoTime() + pruneIntervalNanos;
+		while(running) {
+			try {
+				if(relayOnce() == batchSize) {
+					continue; //더 남아있음
+				}
+				if(System.nanoTime() - nextPrune > 0) {
+					int pruned = prune();
+					if(pruned > 0) {
+						log.info("보관 기간이 지난 변경 {}건 삭제", pruned);
+					}
+					nextPrune = System.nanoTime() + pruneIntervalNanos;
+				}
+			} catch (RuntimeException e) {
+				log.warn("outbox relay 실패 (다음 주기에 다시 시도)", e);
+			}
+			LockSupport.parkNanos(this, intervalNanos);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.cos.book.changes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.cos.book.domain.BookOutbox;
+import com.cos.book.service.BookChangedEvent;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * BookChangedEvent (save/update/delete, 벌크, write-behind flush) 를 같은 트랜잭션으로 book_outbox 에 쓴다.
+ * 트랜잭션 안에서는 모아뒀다가 커밋 직전에 JPA flush (Book 행 락을 먼저 잡음) => JDBC 배치 insert 한번.
+ * 롤백되면 outbox 도 같이 없어진다.
+ */
+@ConditionalOnProperty(name = "book.changes.enabled", havingValue = "true", matchIfMissing = true)
+@Component
+public class BookOutboxWriter {
+	private static final String INSERT = "insert into book_outbox (book_id, deleted, title, author, version, created_at) values (?, ?, ?, ?, ?, ?)";
+	
+	private final JdbcTemplate jdbcTemplate;
+	private final BookChangeRelay relay;
+	
+	@PersistenceContext
+	private EntityManager entityManager;
+	
+	public BookOutboxWriter(JdbcTemplate jdbcTemplate, BookChangeRelay relay) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.relay = relay;
+	}
+	
+	@EventListener
+	@SuppressWarnings("unchecked")
+	public void on(BookChangedEvent event) {
+		if(!TransactionSynchronizationManager.isSynchronizationActive()) { //트랜잭션 밖 : 바로 (auto commit)
+			write(List.of(event));
+			relay.wakeUp();
+			return;
+		}
+		List<BookChangedEvent> pending = (List<BookChangedEvent>) TransactionSynchronizationManager.getResource(this);
+		if(pending == null) {
+			List<BookChangedEvent> rows = new ArrayList<>();
+			TransactionSynchronizationManager.bindResource(this, rows);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void beforeCommit(boolean readOnly) {
+					if(TransactionSynchronizationManager.isActualTransactionActive()) {
+						entityManager.flush();
+					}
+					write(rows);
+				}
+				
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(BookOutboxWriter.this);
+					if(status == STATUS_COMMITTED) {
+						relay.wakeUp();
+					}
+				}
+			});
+			pending = rows;
+		}
+		pending.add(event);
+	}
+	
+	//flush 후에 바꿔야 더티체킹으로 올라간 version 이 들어간다.
+	private void write(List<BookChangedEvent> events) {
+		long now = System.currentTimeMillis();
+		List<BookOutbox> rows = events.stream().map(event -> toOutbox(event, now)).toList();
+		jdbcTemplate.batchUpdate(INSERT, rows, rows.size(), (ps, row) -> {
+			ps.setLong(1, row.getBookId());
+			ps.setBoolean(2, row.isDeleted());
+			ps.setString(3, row.getTitle());
+			ps.setString(4, row.getAuthor());
+			ps.setObject(5, row.getVersion());
+			ps.setLong(6, row.getCreatedAt());
+		});
+	}
+	
+	private static BookOutbox toOutbox(BookChangedEvent event, long now) {
+		if(event.isDeleted()) {
+			return new BookOutbox(null, event.getId(), true, null, null, null, now);
+		}
+		return new BookOutbox(null, event.getId(), false, event.getBook().getTitle(), event.getBook().getAuthor(), event.getBook().getVersion(), now);
+	}
+}
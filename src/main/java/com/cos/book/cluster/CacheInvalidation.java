@@ -0,0 +1,8 @@
+package com.cos.book.cluster;
+
+import java.io.Serializable;
+import java.util.Map;
+
+//커밋된 트랜잭션 하나의 변경 : id -> 커밋된 버전 (삭제거나 버전을 모르면 Long.MAX_VALUE), 그 뒤의 페이지 세대
+record CacheInvalidation(Map<Long, Long> versions, long pageGeneration) implements Serializable {
+}
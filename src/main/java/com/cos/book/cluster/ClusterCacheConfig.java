@@ -0,0 +1,56 @@
+package com.cos.book.cluster;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import com.cos.book.config.CacheConfig;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MaxSizePolicy;
+import com.hazelcast.config.NetworkConfig;
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * 여러 인스턴스가 같이 쓰는 2단 캐시 (--spring.profiles.active=cluster)
+ * 인스턴스마다 임베디드 Hazelcast 멤버를 띄우고 book.cluster.members 로 tcp-ip 로 묶는다. (멀티캐스트 안씀)
+ * HazelcastInstance 는 이 Config 로 스프링 부트가 만든다. 모든 인스턴스는 같은 db 를 봐야 한다.
+ */
+@Profile("cluster")
+@EnableConfigurationProperties(ClusterProperties.class)
+@Configuration
+public class ClusterCacheConfig {
+	
+	@Bean
+	public Config hazelcastConfig(ClusterProperties properties) {
+		Config config = new Config();
+		config.setClusterName(properties.getName());
+		config.setProperty("hazelcast.logging.type", "slf4j");
+		config.setProperty("hazelcast.phone.home.enabled", "false");
+		config.setProperty("hazelcast.shutdownhook.enabled", "false"); //스프링 컨텍스트가 닫을때 같이
+		NetworkConfig network = config.getNetworkConfig();
+		network.setPort(properties.getPort()).setPortAutoIncrement(true);
+		JoinConfig join = network.getJoin();
+		join.getMulticastConfig().setEnabled(false);
+		join.getAutoDetectionConfig().setEnabled(false);
+		join.getTcpIpConfig().setEnabled(true).setMembers(properties.getMembers());
+		config.addMapConfig(cacheMap(CacheConfig.BOOK, properties.getSharedTtlSeconds(), properties.getSharedMaxSize()));
+		config.addMapConfig(cacheMap(CacheConfig.BOOK_PAGE, properties.getPageTtlSeconds(), properties.getSharedMaxSize()));
+		return config;
+	}
+	
+	@Bean
+	public TwoLevelCacheManager cacheManager(HazelcastInstance hazelcastInstance, ClusterProperties properties) {
+		return new TwoLevelCacheManager(hazelcastInstance, properties);
+	}
+	
+	//캐시라서 백업을 두지 않는다. (멤버가 빠지면 그 파티션은 miss 가 되고 db 에서 다시 읽음)
+	private static MapConfig cacheMap(String name, int ttlSeconds, int maxSize) {
+		MapConfig map = new MapConfig(name).setTimeToLiveSeconds(ttlSeconds).setBackupCount(0);
+		map.getEvictionConfig().setEvictionPolicy(EvictionPolicy.LRU).setMaxSizePolicy(MaxSizePolicy.PER_NODE).setSize(maxSize);
+		return map;
+	}
+}
@@ -0,0 +1,62 @@
+package com.cos.book.cluster;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.cos.book.service.BookChangedEvent;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * BookChangedEvent (save/update/delete, 벌크, write-behind flush) 를 트랜잭션마다 모았다가 커밋 후에 한번 무효화를 보낸다.
+ * 버전은 커밋 후에 읽는다. (더티체킹이면 flush 때 올라감) 롤백되면 보내지 않는다.
+ */
+@RequiredArgsConstructor
+@Profile("cluster")
+@Component
+public class ClusterCacheInvalidator {
+	
+	private final TwoLevelCacheManager cacheManager;
+	
+	@EventListener
+	@SuppressWarnings("unchecked")
+	public void on(BookChangedEvent event) {
+		if(!TransactionSynchronizationManager.isSynchronizationActive()) { //트랜잭션 밖 : 바로
+			publish(List.of(event));
+			return;
+		}
+		List<BookChangedEvent> pending = (List<BookChangedEvent>) TransactionSynchronizationManager.getResource(this);
+		if(pending == null) {
+			List<BookChangedEvent> events = new ArrayList<>();
+			TransactionSynchronizationManager.bindResource(this, events);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(ClusterCacheInvalidator.this);
+					if(status == STATUS_COMMITTED) {
+						publish(events);
+					}
+				}
+			});
+			pending = events;
+		}
+		pending.add(event);
+	}
+	
+	private void publish(List<BookChangedEvent> events) {
+		Map<Long, Long> versions = new LinkedHashMap<>();
+		for(BookChangedEvent event : events) {
+			Long version = event.isDeleted() ? null : event.getBook().getVersion();
+			versions.put(event.getId(), version == null ? Long.MAX_VALUE : version);
+		}
+		cacheManager.invalidate(versions);
+	}
+}
@@ -0,0 +1,22 @@
+package com.cos.book.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+//book.cluster.* (cluster 프로필)
+@Data
+@ConfigurationProperties("book.cluster")
+public class ClusterProperties {
+	private String name = "book"; //이름이 같은 멤버끼리만 묶인다.
+	private int port = 5701; //쓰고 있으면 +1 씩
+	private List<String> members = new ArrayList<>(List.of("127.0.0.1")); //tcp-ip 로 찾아갈 멤버 (host 또는 host:port)
+	private String nearSpec = "maximumSize=10000,expireAfterWrite=10m,recordStats"; //인스턴스 안 캐시 (Caffeine spec)
+	private int sharedTtlSeconds = 600;
+	private int sharedMaxSize = 100000; //멤버 하나당 엔트리 수
+	private int pageTtlSeconds = 60; //지난 세대의 페이지는 다시 읽히지 않고 이 시간 뒤에 사라진다.
+	private long floorTtlMs = 30000; //무효화로 받은 버전을 기억하는 시간 (이보다 오래 걸린 조회의 옛날 값은 막지 못함)
+}
@@ -0,0 +1,178 @@
+package com.cos.book.cluster;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import com.cos.book.domain.Book;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hazelcast.map.IMap;
+
+/**
+ * near (인스턴스 안 Caffeine) + shared (Hazelcast IMap, 모든 인스턴스가 같이 봄) 2단 캐시
+ * get : near -> shared (가져오면 near 에도) -> 없으면 null (@Cacheable 이 db 에서 읽고 put)
+ * put : Book 은 무효화로 받은 버전(floor)보다 낮으면 버린다.
+ *       => 다른 인스턴스가 커밋하기 전에 시작한 느린 조회가 옛날 값을 다시 넣지 못한다. shared 는 버전이 올라갈때만 바꾼다.
+ *       버전이 없는 값 (write-behind 가 커밋 전에 넣는 것) 은 이 인스턴스 near 에만 둔다.
+ * generation 이 있으면 (bookPage) 키 앞에 세대를 붙인다. 세대가 바뀌면 이전 키는 다시 읽히지 않는다.
+ */
+class TwoLevelCache implements Cache {
+	private final String name;
+	private final com.github.benmanes.caffeine.cache.Cache<Object, Object> near;
+	private final IMap<Object, Object> shared;
+	private final com.github.benmanes.caffeine.cache.Cache<Object, Long> floors; //id -> 이보다 낮은 버전은 stale
+	private final LongSupplier generation; //null 이면 키를 그대로
+	
+	TwoLevelCache(String name, Caffeine<Object, Object> nearBuilder, IMap<Object, Object> shared, long floorTtlMs, LongSupplier generation) {
+		this.name = name;
+		this.near = nearBuilder.build();
+		this.shared = shared;
+		this.floors = Caffeine.newBuilder().expireAfterWrite(floorTtlMs, TimeUnit.MILLISECONDS).build();
+		this.generation = generation;
+	}
+	
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	//통계(/book/_cache)는 near 기준
+	@Override
+	public Object getNativeCache() {
+		return near;
+	}
+	
+	@Override
+	public ValueWrapper get(Object key) {
+		Object value = lookup(keyOf(key));
+		return value == null ? null : new SimpleValueWrapper(value);
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object key, Class<T> type) {
+		Object value = lookup(keyOf(key));
+		if(value != null && type != null && !type.isInstance(value)) {
+			throw new IllegalStateException("캐시 값의 타입이 다릅니다. " + type.getName() + " : " + value);
+		}
+		return (T) value;
+	}
+	
+	//@Cacheable(sync = true) : 세대는 읽기 시작할때 정한다. 읽는 중에 커밋이 있었으면 이전 세대 키로 들어가서 다시 읽히지 않는다.
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object key, Callable<T> valueLoader) {
+		Object cacheKey = keyOf(key);
+		Object value = lookup(cacheKey);
+		if(value != null) {
+			return (T) value;
+		}
+		try {
+			value = valueLoader.call();
+		} catch (Exception e) {
+			throw new ValueRetrievalException(key, valueLoader, e);
+		}
+		store(cacheKey, value);
+		return (T) value;
+	}
+	
+	@Override
+	public void put(Object key, Object value) {
+		store(keyOf(key), value);
+	}
+	
+	@Override
+	public void evict(Object key) {
+		remove(keyOf(key));
+	}
+	
+	//updateAll/deleteAll (allEntries) : 다른 인스턴스의 near 는 id 마다 오는 무효화로 지워진다.
+	@Override
+	public void clear() {
+		near.invalidateAll();
+		shared.clear();
+	}
+	
+	//커밋 후 무효화 (이 인스턴스 또는 다른 인스턴스) : version 보다 낮은 값은 이제 stale
+	void invalidate(Long id, Long version) {
+		floors.asMap().merge(id, version, Math::max);
+		near.asMap().computeIfPresent(id, (k, cached) -> isStale(k, cached) ? null : cached);
+	}
+	
+	//세대가 바뀌면 이전 세대 near 엔트리는 다시 읽히지 않으므로 비운다.
+	void invalidateNear() {
+		near.invalidateAll();
+	}
+	
+	private Object keyOf(Object key) {
+		return generation == null ? key : new SimpleKey(generation.getAsLong(), key);
+	}
+	
+	private Object lookup(Object cacheKey) {
+		Object value = near.getIfPresent(cacheKey);
+		if(value != null) {
+			return value;
+		}
+		value = shared.get(cacheKey);
+		if(value == null || isStale(cacheKey, value)) {
+			return null;
+		}
+		near.put(cacheKey, value);
+		return value;
+	}
+	
+	private void store(Object cacheKey, Object value) {
+		if(value == null) {
+			remove(cacheKey);
+			return;
+		}
+		if(isStale(cacheKey, value)) {
+			return;
+		}
+		near.put(cacheKey, value);
+		if(value instanceof Book book) {
+			if(book.getVersion() != null) {
+				putShared(cacheKey, book);
+			}
+		} else {
+			shared.set(cacheKey, value);
+		}
+	}
+	
+	private void remove(Object cacheKey) {
+		near.invalidate(cacheKey);
+		shared.delete(cacheKey);
+	}
+	
+	//compare-and-set : 더 높은 버전이 이미 있으면 그대로 둔다.
+	private void putShared(Object cacheKey, Book book) {
+		while(true) {
+			Object current = shared.get(cacheKey);
+			if(current == null) {
+				if(shared.putIfAbsent(cacheKey, book) == null) {
+					return;
+				}
+			} else {
+				Long currentVersion = current instanceof Book cached ? cached.getVersion() : null;
+				if(currentVersion != null && currentVersion >= book.getVersion()) {
+					return;
+				}
+				if(shared.replace(cacheKey, current, book)) {
+					return;
+				}
+			}
+		}
+	}
+	
+	private boolean isStale(Object cacheKey, Object value) {
+		Long floor = floors.getIfPresent(cacheKey);
+		if(floor == null || !(value instanceof Book book)) {
+			return false;
+		}
+		return book.getVersion() == null || book.getVersion() < floor;
+	}
+}
@@ -0,0 +1,96 @@
+package com.cos.book.cluster;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import com.cos.book.config.CacheConfig;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.topic.ITopic;
+import com.hazelcast.topic.Message;
+import com.hazelcast.topic.MessageListener;
+
+/**
+ * cluster 프로필의 CacheManager : book (id -> Book), bookPage (getPage 결과) 두개, 둘다 near + shared (TwoLevelCache)
+ * 무효화는 ITopic 으로 모든 인스턴스(자기 포함)에 보낸다. (ClusterCacheInvalidator 가 커밋 후 트랜잭션마다 한번)
+ * 페이지는 어떤 쓰기에도 바뀔 수 있어서 하나씩 지우지 않고 세대를 올린다.
+ * 세대는 shared 의 book-cache-meta 에서 compare-and-set 으로 올려서 모든 인스턴스가 같은 순서로 본다. (받은 것 중 큰 값)
+ */
+public class TwoLevelCacheManager implements CacheManager, MessageListener<CacheInvalidation> {
+	static final String TOPIC = "book-cache-invalidation";
+	private static final String META = "book-cache-meta";
+	private static final String PAGE_GENERATION = "pageGeneration";
+	
+	private final ITopic<CacheInvalidation> topic;
+	private final IMap<String, Long> meta;
+	private final AtomicLong pageGeneration = new AtomicLong();
+	private final TwoLevelCache book;
+	private final TwoLevelCache page;
+	
+	public TwoLevelCacheManager(HazelcastInstance hazelcast, ClusterProperties properties) {
+		CaffeineSpec nearSpec = CaffeineSpec.parse(properties.getNearSpec());
+		this.topic = hazelcast.getTopic(TOPIC);
+		this.meta = hazelcast.getMap(META);
+		this.book = new TwoLevelCache(CacheConfig.BOOK, Caffeine.from(nearSpec),
+				hazelcast.getMap(CacheConfig.BOOK), properties.getFloorTtlMs(), null);
+		this.page = new TwoLevelCache(CacheConfig.BOOK_PAGE, Caffeine.from(nearSpec),
+				hazelcast.getMap(CacheConfig.BOOK_PAGE), properties.getFloorTtlMs(), pageGeneration::get);
+		Long generation = meta.get(PAGE_GENERATION);
+		pageGeneration.set(generation == null ? 0 : generation);
+		topic.addMessageListener(this);
+	}
+	
+	@Override
+	public Cache getCache(String name) {
+		switch (name) {
+		case CacheConfig.BOOK:
+			return book;
+		case CacheConfig.BOOK_PAGE:
+			return page;
+		default:
+			return null;
+		}
+	}
+	
+	@Override
+	public Collection<String> getCacheNames() {
+		return List.of(CacheConfig.BOOK, CacheConfig.BOOK_PAGE);
+	}
+	
+	//커밋 후 : 세대를 올리고 모두에게 알린다. 자기 자신은 메시지를 기다리지 않고 바로 반영
+	public void invalidate(Map<Long, Long> versions) {
+		CacheInvalidation invalidation = new CacheInvalidation(versions, nextPageGeneration());
+		apply(invalidation);
+		topic.publish(invalidation);
+	}
+	
+	@Override
+	public void onMessage(Message<CacheInvalidation> message) {
+		apply(message.getMessageObject());
+	}
+	
+	private void apply(CacheInvalidation invalidation) {
+		invalidation.versions().forEach(book::invalidate);
+		long previous = pageGeneration.getAndAccumulate(invalidation.pageGeneration(), Math::max);
+		if(invalidation.pageGeneration() > previous) {
+			page.invalidateNear();
+		}
+	}
+	
+	private long nextPageGeneration() {
+		while(true) {
+			Long current = meta.get(PAGE_GENERATION);
+			long next = (current == null ? 0 : current) + 1;
+			if(current == null ? meta.putIfAbsent(PAGE_GENERATION, next) == null : meta.replace(PAGE_GENERATION, current, next)) {
+				return next;
+			}
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package com.cos.book.config;
+
+import java.util.List;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.CacheResolver;
+import org.springframework.cache.support.NoOpCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+//캐시 설정은 application.yml 의 spring.cache.caffeine.spec (크기/TTL 제한, W-TinyLFU 방식 admission)
+//order를 트랜잭션보다 앞(바깥)으로 둬서 커밋이 끝난 뒤에 캐시에 반영되게 한다.
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+@Configuration
+public class CacheConfig {
+	public static final String BOOK = "book";
+	public static final String BOOK_PAGE = "bookPage";
+	
+	//bookPage 는 쓰기마다 세대를 올리는 cluster 프로필(TwoLevelCacheManager)에만 있다. 없으면 캐시하지 않고 매번 db
+	@Bean
+	public CacheResolver bookPageCacheResolver(CacheManager cacheManager) {
+		return context -> {
+			Cache cache = cacheManager.getCache(BOOK_PAGE);
+			return List.of(cache != null ? cache : new NoOpCache(BOOK_PAGE));
+		};
+	}
+}
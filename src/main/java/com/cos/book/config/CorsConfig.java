@@ -0,0 +1,42 @@
+package com.cos.book.config;
+
+import java.util.List;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.cos.book.changes.BookChangeController;
+import com.cos.book.web.BookController;
+
+import lombok.RequiredArgsConstructor;
+
+//CORS 를 /book 아래 전체에 한번에 (메소드마다 @CrossOrigin 을 달지 않는다). reactive 프로필도 같은 설정 (BookReactiveRouter)
+@RequiredArgsConstructor
+@EnableConfigurationProperties(CorsProperties.class)
+@Configuration
+public class CorsConfig implements WebMvcConfigurer {
+	//브라우저 js 가 읽어야 하는 응답 헤더
+	private static final List<String> EXPOSED_HEADERS = List.of(HttpHeaders.ETAG, HttpHeaders.RETRY_AFTER,
+			BookController.NEXT_AFTER_HEADER, BookController.NEXT_CURSOR_HEADER, BookChangeController.NEXT_SINCE_HEADER);
+	
+	private final CorsProperties properties;
+	
+	public static CorsConfiguration corsConfiguration(CorsProperties properties) {
+		CorsConfiguration config = new CorsConfiguration();
+		config.setAllowedOriginPatterns(properties.getAllowedOrigins());
+		config.setAllowedMethods(List.of("GET", "HEAD", "POST", "PUT", "DELETE"));
+		config.addAllowedHeader(CorsConfiguration.ALL);
+		config.setExposedHeaders(EXPOSED_HEADERS);
+		config.setMaxAge(properties.getMaxAge());
+		return config;
+	}
+	
+	@Override
+	public void addCorsMappings(CorsRegistry registry) {
+		registry.addMapping("/book/**").combine(corsConfiguration(properties));
+	}
+}
@@ -0,0 +1,16 @@
+package com.cos.book.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+//book.cors.*
+@Data
+@ConfigurationProperties("book.cors")
+public class CorsProperties {
+	private List<String> allowedOrigins = new ArrayList<>(List.of("*")); //origin 패턴 (https://*.example.com 처럼)
+	private long maxAge = 3600; //preflight 결과를 브라우저가 이 초만큼 캐시 => 같은 요청에 OPTIONS 를 다시 안보낸다.
+}
@@ -0,0 +1,31 @@
+package com.cos.book.config;
+
+import org.apache.coyote.UpgradeProtocol;
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+//http2 프로필 : 스프링 부트가 server.http2.enabled 로 붙인 Http2Protocol 의 연결/스트림 설정 (부트 속성으로는 없는 것들)
+@Profile("http2")
+@Configuration
+public class Http2Config {
+	
+	@Bean
+	public TomcatConnectorCustomizer http2ConnectorCustomizer(
+			@Value("${book.http2.max-concurrent-streams:200}") long maxConcurrentStreams,
+			@Value("${book.http2.keep-alive-timeout-ms:60000}") long keepAliveTimeoutMs,
+			@Value("${book.http2.initial-window-size:1048576}") int initialWindowSize) {
+		return connector -> {
+			for(UpgradeProtocol protocol : connector.findUpgradeProtocols()) {
+				if(protocol instanceof Http2Protocol http2) {
+					http2.setMaxConcurrentStreams(maxConcurrentStreams);
+					http2.setKeepAliveTimeout(keepAliveTimeoutMs);
+					http2.setInitialWindowSize(initialWindowSize);
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,35 @@
+package com.cos.book.config;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import com.cos.book.domain.Book;
+import com.cos.book.domain.BookChange;
+import com.cos.book.domain.BookIdGenerator;
+import com.cos.book.domain.BookOutbox;
+import com.cos.book.service.BulkResult;
+
+//네이티브 이미지(-P native)에서 리플렉션/리소스로 읽는 것들. AOT 빌드때만 쓰이고 JVM 실행에는 영향 없음
+//ResponseEntity<?> 로 나가는 본문 타입은 스프링이 알 수 없어서 직접 등록한다.
+@ImportRuntimeHints(NativeHintsConfig.BookRuntimeHints.class)
+@Configuration
+public class NativeHintsConfig {
+	
+	static class BookRuntimeHints implements RuntimeHintsRegistrar {
+		@Override
+		public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+			new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), Book.class, BookChange.class, BulkResult.class);
+			//DataClassRowMapper (outbox relay, 변경 조회)
+			hints.reflection().registerType(BookOutbox.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+			hints.reflection().registerType(BookChange.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+			//@BookId => hibernate가 생성자를 찾아서 만든다.
+			hints.reflection().registerType(BookIdGenerator.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+			hints.resources().registerPattern("db/migration/*/*.sql");
+			hints.resources().registerPattern("db/shard-schema.sql");
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package com.cos.book.config;
+
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.cos.book.web.BookProtobufHttpMessageConverter;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+/**
+ * 응답 형식 : Accept 에 따라 JSON(기본) / CBOR / Smile / Protobuf
+ * - Blackbird : getter 리플렉션 호출 대신 LambdaMetafactory로 만든 접근자 (afterburner의 JDK 11+ 버전)
+ * - Jackson 버퍼(BufferRecycler)는 ThreadLocal 대신 공유 lock-free 풀 => 가상 스레드에서도 재사용된다.
+ * - CBOR/Smile 은 스프링 기본 컨버터 자리를 같은 ObjectMapper 설정(Blackbird 포함)으로 대체
+ * - 압축은 application.yml 의 server.compression
+ */
+@Configuration
+public class WireFormatConfig {
+	
+	//스프링부트가 Module 빈을 ObjectMapper에 등록한다.
+	@Bean
+	public Module blackbirdModule() {
+		return new BlackbirdModule();
+	}
+	
+	@Bean
+	public Jackson2ObjectMapperBuilderCustomizer sharedRecyclerPool() {
+		return builder -> builder.postConfigurer(objectMapper -> objectMapper.getFactory().setRecyclerPool(JsonRecyclerPools.sharedLockFreePool()));
+	}
+	
+	@Bean
+	public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+	}
+	
+	@Bean
+	public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+	}
+	
+	@Bean
+	public WebMvcConfigurer protobufConverterConfigurer() {
+		return new WebMvcConfigurer() {
+			@Override
+			public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+				converters.add(new BookProtobufHttpMessageConverter());
+			}
+		};
+	}
+}
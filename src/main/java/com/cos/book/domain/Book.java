@@ -1,9 +1,12 @@
 package com.cos.book.domain;
 
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
-import javax.persistence.Id;
+import java.io.Serializable;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -12,12 +15,29 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
-@Entity //서버 실행시에 테이블이 h2에 생성됨.
-public class Book {
+@Entity //테이블과 인덱스는 flyway (db/migration/{vendor}) 가 만든다. 여기 indexes 는 그 스크립트와 맞춰둔 표시
+@Table(indexes = {
+		@Index(name = "idx_book_title", columnList = "title"),
+		@Index(name = "idx_book_author_title", columnList = "author, title") })
+public class Book implements Serializable { //cluster 프로필의 공유 캐시(Hazelcast)에 자바 직렬화로 들어간다.
+	private static final long serialVersionUID = 1L;
+	public static final int ID_ALLOCATION_SIZE = 50;
+	
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	//IDENTITY는 insert를 해야 id를 알 수 있어서 hibernate가 배치 insert를 못한다.
+	//pooled 시퀀스 : 시퀀스를 한번 읽을때 50개씩 id를 받아와서 insert를 JDBC 배치로 묶는다.
+	//shard 프로필에서는 Snowflake id를 미리 넣어서 저장한다. (BookIdGenerator)
+	@BookId
 	private Long id;
 	
 	private String title;
 	private String author;
+	
+	//낙관적 락 : update ... where id=? and version=? (ETag 값으로도 쓴다)
+	@Version
+	private Long version;
+	
+	public Book(Long id, String title, String author) {
+		this(id, title, author, null);
+	}
 }
@@ -0,0 +1,25 @@
+package com.cos.book.domain;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//GET /book/changes?since= 로 나가는 변경 기록. seq는 relay가 빈틈없이 1씩 붙인다.
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Entity
+public class BookChange {
+	@Id
+	private Long seq;
+	
+	private Long bookId;
+	private boolean deleted; //삭제면 title/author/version 은 null
+	private String title;
+	private String author;
+	private Long version; //소비하는 쪽은 이것보다 오래된 상태를 무시하면 된다.
+	private long committedAt; //relay가 옮긴 시각 (epoch ms), 보관 기간 기준
+}
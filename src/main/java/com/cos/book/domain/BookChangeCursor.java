@@ -0,0 +1,22 @@
+package com.cos.book.domain;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//relay가 마지막으로 붙인 seq (한 행). select ... for update 로 잡아서 인스턴스가 여러개여도 relay는 한번에 하나만 돈다.
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Entity
+public class BookChangeCursor {
+	public static final long ID = 1L;
+	
+	@Id
+	private Long id;
+	
+	private long lastSeq;
+}
@@ -0,0 +1,15 @@
+package com.cos.book.domain;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+//Book.id 생성 : book_seq (pooled), shard 프로필에서 미리 받은 Snowflake id가 있으면 그대로 (BookIdGenerator)
+@IdGeneratorType(BookIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD, ElementType.METHOD })
+public @interface BookId {
+}
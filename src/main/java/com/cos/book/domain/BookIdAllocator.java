@@ -0,0 +1,36 @@
+package com.cos.book.domain;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * JPA를 거치지 않고 book id를 미리 받아야 할때 (write-behind)
+ * hibernate pooled 방식과 같게 시퀀스 값 v 하나로 (v-49 ~ v) 를 쓴다. 그래서 hibernate가 받은 블록과 겹치지 않는다.
+ * 시퀀스 조회(JDBC) 중에 가상 스레드가 pinning 되지 않게 synchronized 대신 ReentrantLock
+ */
+@RequiredArgsConstructor
+@Component
+public class BookIdAllocator {
+	private final JdbcTemplate jdbcTemplate;
+	private final ReentrantLock lock = new ReentrantLock();
+	private long next = 1;
+	private long hi = 0;
+	
+	public long next() {
+		lock.lock();
+		try {
+			if(next > hi) {
+				Long value = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR book_seq", Long.class);
+				hi = value;
+				next = Math.max(value - Book.ID_ALLOCATION_SIZE + 1, 1);
+			}
+			return next++;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package com.cos.book.domain;
+
+import java.util.Properties;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.OptimizableGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * 기본은 @SequenceGenerator(book_seq, allocationSize 50) 와 같다.
+ * shard 안에서(BookShardContext가 있을때) 이미 id가 들어있으면 그 id로 insert 한다. (shard 번호가 id에서 나와야 해서 미리 받음)
+ * 그 외에는 클라이언트가 보낸 id를 무시하고 시퀀스에서 받는다.
+ */
+public class BookIdGenerator extends SequenceStyleGenerator {
+	public static final String SEQUENCE_NAME = "book_seq";
+	
+	@Override
+	public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) {
+		parameters.put(SEQUENCE_PARAM, SEQUENCE_NAME);
+		parameters.put(OptimizableGenerator.INCREMENT_PARAM, String.valueOf(Book.ID_ALLOCATION_SIZE));
+		super.configure(type, parameters, serviceRegistry);
+	}
+	
+	@Override
+	public Object generate(SharedSessionContractImplementor session, Object object) {
+		if(BookShardContext.current() != null && object instanceof Book book && book.getId() != null) {
+			return book.getId();
+		}
+		return super.generate(session, object);
+	}
+	
+	@Override
+	public boolean allowAssignedIdentifiers() {
+		return true;
+	}
+}
@@ -0,0 +1,46 @@
+package com.cos.book.domain;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//POST /book/_jobs 로 등록한 오래 걸리는 작업. 상태/결과를 db에 남겨서 재시작해도 이어서 돌고 조회할 수 있다. (BookJobStore)
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Entity
+public class BookJob {
+	public enum Type { DELETE_BY_AUTHOR, DELETE_BY_TITLE_PREFIX, REINDEX }
+	public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED }
+	
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+	
+	@Enumerated(EnumType.STRING)
+	private Type type;
+	private String target; //DELETE_BY_AUTHOR 는 저자, DELETE_BY_TITLE_PREFIX 는 제목 앞부분
+	private int priority; //클수록 먼저
+	@Enumerated(EnumType.STRING)
+	private Status status;
+	private boolean cancelRequested;
+	private long processed; //지운 건수, 색인한 건수
+	private String message; //결과 또는 실패 이유
+	private int attempts; //재시작으로 다시 돈 횟수 포함
+	private long createdAt; //epoch ms
+	private Long startedAt;
+	private Long finishedAt;
+	private String owner; //RUNNING 이면 돌리고 있는 인스턴스
+	private Long leaseUntil; //epoch ms. 이때까지 owner 가 늘리지 않으면 죽은 것으로 보고 다시 대기열에
+	
+	public boolean isFinished() {
+		return status == Status.SUCCEEDED || status == Status.FAILED || status == Status.CANCELLED;
+	}
+}
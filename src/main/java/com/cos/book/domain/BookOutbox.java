@@ -0,0 +1,29 @@
+package com.cos.book.domain;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Book 변경과 같은 트랜잭션에 쓰이는 outbox. relay가 읽어서 book_change 로 옮기고 지운다. (BookOutboxWriter)
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Entity
+public class BookOutbox {
+	//IDENTITY : Book 행의 락을 잡은 뒤(flush 후)에 insert 하므로 같은 책에 대한 변경은 커밋 순서대로 id가 커진다.
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+	
+	private Long bookId;
+	private boolean deleted;
+	private String title;
+	private String author;
+	private Long version;
+	private long createdAt; //epoch ms
+}
@@ -1,7 +1,61 @@
 package com.cos.book.domain;
 
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface BookRepository extends JpaRepository<Book, Long>{
+import jakarta.persistence.LockModeType;
 
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom{
+	
+	//키셋 페이징 : offset 대신 마지막 id 이후부터 읽는다. Slice라서 count 쿼리가 안나감.
+	Slice<Book> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+	
+	//저자별 목록 (키셋) : idx_book_author_title (author, title) 을 타서 인덱스 순서로 읽는다. 같은 제목은 id 순 (보조 인덱스 끝에 pk가 붙어있음)
+	//이전 페이지 마지막 책의 (title, id) 다음부터. 처음이면 afterId = null. 제목이 null 인 책이 먼저 나온다.
+	@Query("select b from Book b where b.author = :author"
+			+ " and (:afterId is null or (:afterTitle is null and (b.title is not null or b.id > :afterId))"
+			+ " or b.title > :afterTitle or (b.title = :afterTitle and b.id > :afterId))"
+			+ " order by b.title, b.id")
+	Slice<Book> findByAuthorAfter(@Param("author") String author, @Param("afterTitle") String afterTitle, @Param("afterId") Long afterId, Pageable pageable);
+	
+	//제목 앞부분 검색 (키셋) : title like '접두어%' 라서 idx_book_title 범위 조회가 된다. ('%단어%' 는 인덱스를 못탐 -> BookSearchIndex)
+	//접두어의 % _ 는 글자 그대로 찾는다.
+	@Query("select b from Book b where b.title like :#{escape(#prefix)}% escape :#{escapeCharacter()}"
+			+ " and (:afterId is null or b.title > :afterTitle or (b.title = :afterTitle and b.id > :afterId))"
+			+ " order by b.title, b.id")
+	Slice<Book> findByTitlePrefixAfter(@Param("prefix") String prefix, @Param("afterTitle") String afterTitle, @Param("afterId") Long afterId, Pageable pageable);
+	
+	//엔티티를 올리지 않고 존재하는 id만 조회
+	@Query("select b.id from Book b where b.id in :ids")
+	List<Long> findIdsByIdIn(@Param("ids") List<Long> ids);
+	
+	//select ... for update : 바꾸기 전 값을 행 락을 잡고 읽는다. (BookChangedEvent.previous, 커밋까지 다른 쓰기가 끼어들지 못함)
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select b from Book b where b.id in :ids")
+	List<Book> findForUpdateByIdIn(@Param("ids") List<Long> ids);
+	
+	//select 없이 버전을 확인하면서 바로 update. 0이면 버전이 안맞거나 없는 id
+	@Modifying(clearAutomatically = true)
+	@Query("update Book b set b.title = :title, b.author = :author, b.version = b.version + 1 where b.id = :id and b.version = :version")
+	int updateIfVersion(@Param("id") Long id, @Param("version") Long version, @Param("title") String title, @Param("author") String author);
+	
+	//조건 없는 수정 : 엔티티를 올리지 않고 update 한번. 0이면 없는 id
+	@Modifying(clearAutomatically = true)
+	@Query("update Book b set b.title = :title, b.author = :author, b.version = b.version + 1 where b.id = :id")
+	int updateById(@Param("id") Long id, @Param("title") String title, @Param("author") String author);
+	
+	@Query("select b.version from Book b where b.id = :id")
+	Long findVersionById(@Param("id") Long id);
+	
+	//한 건씩 delete 하지 않고 delete ... where id in (...) 한번으로 지운다.
+	@Modifying
+	@Query("delete from Book b where b.id in :ids")
+	int deleteByIdIn(@Param("ids") List<Long> ids);
 }
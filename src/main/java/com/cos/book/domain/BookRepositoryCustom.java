@@ -0,0 +1,15 @@
+package com.cos.book.domain;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+//JPA로 표현하기 힘든 기능들 (구현체는 BookRepositoryImpl)
+public interface BookRepositoryCustom {
+	
+	//전체 row를 List로 모으지 않고 JDBC 커서에서 한 줄씩 넘겨준다.
+	void streamAll(int fetchSize, Consumer<Book> consumer);
+	
+	//id가 이미 정해진 insert/update/delete를 JDBC 배치로 (write-behind flush용, 트랜잭션 안에서 호출)
+	//book 에 version 이 있으면 그 version 으로 쓴다. (update 는 version + 1 보다 작아지지 않음)
+	void batchWrite(List<Book> inserts, List<Book> updates, List<Long> deletes);
+}
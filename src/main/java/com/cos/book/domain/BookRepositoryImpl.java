@@ -0,0 +1,52 @@
+package com.cos.book.domain;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import lombok.RequiredArgsConstructor;
+
+//스프링 데이터가 BookRepository + Impl 이름 규칙으로 찾아서 합쳐준다.
+@RequiredArgsConstructor
+public class BookRepositoryImpl implements BookRepositoryCustom {
+	private final JdbcTemplate jdbcTemplate;
+	
+	@Override
+	public void streamAll(int fetchSize, Consumer<Book> consumer) {
+		//forward-only 커서 + fetchSize => 드라이버가 fetchSize 만큼씩만 메모리에 올린다.
+		jdbcTemplate.query(con -> {
+			PreparedStatement ps = con.prepareStatement("SELECT id, title, author, version FROM book ORDER BY id",
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(fetchSize);
+			return ps;
+		}, (RowCallbackHandler) rs -> consumer.accept(new Book(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getObject(4, Long.class))));
+	}
+	
+	@Override
+	public void batchWrite(List<Book> inserts, List<Book> updates, List<Long> deletes) {
+		if(!inserts.isEmpty()) {
+			jdbcTemplate.batchUpdate("INSERT INTO book (id, title, author, version) VALUES (?, ?, ?, ?)", inserts, inserts.size(), (ps, book) -> {
+				ps.setLong(1, book.getId());
+				ps.setString(2, book.getTitle());
+				ps.setString(3, book.getAuthor());
+				ps.setLong(4, book.getVersion() == null ? 0 : book.getVersion());
+			});
+		}
+		if(!updates.isEmpty()) {
+			//write-behind 가 미리 정한 version 으로 (큐에서 합쳐진 update 도 응답한 ETag 와 같게). 줄어들지는 않는다.
+			jdbcTemplate.batchUpdate("UPDATE book SET title = ?, author = ?, version = GREATEST(version + 1, ?) WHERE id = ?", updates, updates.size(), (ps, book) -> {
+				ps.setString(1, book.getTitle());
+				ps.setString(2, book.getAuthor());
+				ps.setLong(3, book.getVersion() == null ? 0 : book.getVersion());
+				ps.setLong(4, book.getId());
+			});
+		}
+		if(!deletes.isEmpty()) {
+			jdbcTemplate.batchUpdate("DELETE FROM book WHERE id = ?", deletes, deletes.size(), (ps, id) -> ps.setLong(1, id));
+		}
+	}
+}
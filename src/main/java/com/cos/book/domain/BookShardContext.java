@@ -0,0 +1,31 @@
+package com.cos.book.domain;
+
+/**
+ * 지금 스레드가 쓰는 shard 번호 (shard 프로필에서 ShardRoutingDataSource가 이걸 보고 DataSource를 고른다)
+ * null 이면 shard를 안쓰거나 기본 shard(0)
+ */
+public final class BookShardContext {
+	private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+	
+	private BookShardContext() {
+	}
+	
+	public static Integer current() {
+		return CURRENT.get();
+	}
+	
+	//이전 값을 돌려준다. (끝나면 restore 로 되돌림)
+	public static Integer set(Integer shard) {
+		Integer previous = CURRENT.get();
+		CURRENT.set(shard);
+		return previous;
+	}
+	
+	public static void restore(Integer previous) {
+		if(previous == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(previous);
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package com.cos.book.jobs;
+
+import java.util.concurrent.CancellationException;
+
+//돌고 있는 작업 하나. 작업은 chunk 사이마다 checkCancelled 를 부른다.
+class BookJobContext {
+	private final long id;
+	private final BookJobStore store;
+	private volatile boolean cancelled;
+	private volatile boolean stopping; //서버가 내려가는 중 => 취소가 아니라 다음에 다시
+	private long processed;
+	
+	BookJobContext(long id, BookJobStore store) {
+		this.id = id;
+		this.store = store;
+	}
+	
+	void progress(long processed) {
+		this.processed = processed;
+		if(store.progress(id, processed)) {
+			cancelled = true;
+		}
+	}
+	
+	void checkCancelled() {
+		if(stopping) {
+			throw new StoppingException();
+		}
+		if(cancelled) {
+			throw new CancellationException();
+		}
+	}
+	
+	long getProcessed() {
+		return processed;
+	}
+	
+	void cancel() {
+		cancelled = true;
+	}
+	
+	void stop() {
+		stopping = true;
+	}
+	
+	static class StoppingException extends RuntimeException {
+		StoppingException() {
+			super(null, null, false, false);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package com.cos.book.jobs;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.cos.book.domain.BookJob;
+
+/**
+ * 오래 걸리는 작업 (대량 삭제, 검색 색인 다시 만들기)
+ * - POST /book/_jobs : 등록만 하고 바로 202 + Location. 대기열이 가득 찼으면 503 + Retry-After
+ * - GET /book/_jobs/{id} : 상태. waitMs 를 주면 끝날때까지 그만큼 기다린다 (long-poll)
+ * - GET /book/_jobs/{id} (text/event-stream) : 바뀔때마다 progress, 끝나면 done 이벤트를 보내고 닫는다.
+ * - DELETE /book/_jobs/{id} : 취소 (돌고 있으면 chunk 사이에서 멈춤)
+ */
+@ConditionalOnWebApplication(type = Type.SERVLET)
+@RestController
+public class BookJobController {
+	private final BookJobExecutor executor;
+	private final BookJobStore store;
+	private final BookJobProperties properties;
+	
+	public BookJobController(BookJobExecutor executor, BookJobStore store, BookJobProperties properties) {
+		this.executor = executor;
+		this.store = store;
+		this.properties = properties;
+	}
+	
+	@PostMapping("/book/_jobs")
+	public ResponseEntity<?> submit(@RequestBody BookJobRequest request) {
+		BookJob job = executor.submit(request.getType(), request.getTarget(), request.getPriority());
+		HttpHeaders headers = new HttpHeaders();
+		headers.add(HttpHeaders.LOCATION, "/book/_jobs/" + job.getId());
+		return new ResponseEntity<>(job,headers,HttpStatus.ACCEPTED);
+	}
+	
+	@GetMapping("/book/_jobs")
+	public ResponseEntity<?> findAll(@RequestParam(defaultValue = "100") int limit) {
+		return new ResponseEntity<>(store.list(Math.min(Math.max(limit, 1), 1000)),HttpStatus.OK);
+	}
+	
+	@GetMapping("/book/_jobs/{id}")
+	public ResponseEntity<?> findById(@PathVariable Long id, @RequestParam(defaultValue = "0") long waitMs) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + Math.min(Math.max(waitMs, 0), properties.getMaxWaitMs());
+		Optional<BookJob> job = store.find(id);
+		while(job.isPresent() && !job.get().isFinished() && System.currentTimeMillis() < deadline) {
+			job = store.await(id, job.get(), deadline - System.currentTimeMillis());
+		}
+		return job.<ResponseEntity<?>>map(found -> new ResponseEntity<>(found,HttpStatus.OK))
+				.orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+	}
+	
+	@GetMapping(value = "/book/_jobs/{id}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> stream(@PathVariable Long id) {
+		Optional<BookJob> first = store.find(id);
+		if(first.isEmpty()) {
+			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+		}
+		SseEmitter emitter = new SseEmitter(properties.getSseTimeoutMs());
+		AtomicBoolean open = new AtomicBoolean(true);
+		emitter.onCompletion(() -> open.set(false));
+		emitter.onTimeout(() -> open.set(false));
+		emitter.onError(e -> open.set(false));
+		//구독자마다 가상 스레드 하나 (작업 스레드를 막지 않게)
+		Thread.ofVirtual().name("book-jobs-sse").start(() -> {
+			BookJob job = first.get();
+			try {
+				while(open.get()) {
+					emitter.send(SseEmitter.event()
+							.id(job.getId() + "-" + job.getStatus() + "-" + job.getProcessed())
+							.name(job.isFinished() ? "done" : "progress")
+							.data(job, MediaType.APPLICATION_JSON));
+					if(job.isFinished()) {
+						emitter.complete();
+						return;
+					}
+					BookJob seen = job;
+					while(open.get() && job.equals(seen)) {
+						Optional<BookJob> next = store.await(id, seen, properties.getHeartbeatMs());
+						if(next.isEmpty()) { //보관 기간이 지나 지워짐
+							emitter.complete();
+							return;
+						}
+						job = next.get();
+						if(job.equals(seen)) {
+							emitter.send(SseEmitter.event().comment("keep-alive")); //끊긴 연결을 알아채려고
+						}
+					}
+				}
+			} catch (IOException | IllegalStateException e) { //클라이언트가 끊음, 이미 끝난 emitter
+				open.set(false);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				emitter.complete();
+			} catch (RuntimeException e) {
+				emitter.completeWithError(e);
+			}
+		});
+		return new ResponseEntity<>(emitter,HttpStatus.OK);
+	}
+	
+	//취소 후 상태 (이미 끝난 작업이면 그대로)
+	@DeleteMapping("/book/_jobs/{id}")
+	public ResponseEntity<?> cancel(@PathVariable Long id) {
+		if(!executor.cancel(id)) {
+			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+		}
+		return store.find(id).<ResponseEntity<?>>map(job -> new ResponseEntity<>(job,HttpStatus.OK))
+				.orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+	}
+	
+	@ExceptionHandler(IllegalArgumentException.class)
+	public ResponseEntity<?> badRequest(IllegalArgumentException e) {
+		return new ResponseEntity<>(e.getMessage(),HttpStatus.BAD_REQUEST);
+	}
+}
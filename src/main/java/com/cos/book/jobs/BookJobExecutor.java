@@ -0,0 +1,252 @@
+package com.cos.book.jobs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.cos.book.domain.BookJob;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * POST /book/_jobs 작업을 톰켓 스레드가 아닌 전용 스레드(workers 개)에서 돌린다.
+ * - 대기열 : 우선순위(클수록 먼저) => 등록 순. queue-capacity 를 넘으면 등록을 거절 (503)
+ * - 작업 상태는 book_job 에 있어서 재시작하면 QUEUED 와 임대가 지난 RUNNING (죽은 인스턴스의 것) 을 다시 대기열에 넣는다.
+ * - 임대 : book-job-lease 스레드가 lease-ms/3 마다 돌고 있는 작업의 임대를 늘리고, 다른 인스턴스가 죽어서 지난 작업을 가져온다.
+ * - 취소 : 대기 중이면 바로, 돌고 있으면 chunk 사이에서 멈춘다. (스레드 interrupt 는 JDBC 연결을 깰 수 있어서 쓰지 않음)
+ * - 메트릭 : book.jobs.queue.depth / queue.utilization / active / utilization (포화도), book.jobs.wait / run 시간
+ */
+@Slf4j
+@EnableConfigurationProperties(BookJobProperties.class)
+@Component
+public class BookJobExecutor {
+	private final BookJobStore store;
+	private final BookJobTasks tasks;
+	private final BookJobProperties properties;
+	private final MeterRegistry meterRegistry; //없으면 null
+	
+	private final PriorityBlockingQueue<Queued> queue = new PriorityBlockingQueue<>();
+	private final ReentrantLock submitLock = new ReentrantLock(); //대기열 크기 확인과 넣기를 한번에
+	private final AtomicLong sequence = new AtomicLong();
+	private final Map<Long, BookJobContext> running = new ConcurrentHashMap<>();
+	private final AtomicInteger active = new AtomicInteger();
+	private final LongAdder rejected = new LongAdder();
+	private final List<Thread> workers = new ArrayList<>();
+	private Thread leaser;
+	private volatile boolean stopped;
+	
+	//우선순위가 같으면 먼저 넣은 것부터
+	private record Queued(long id, int priority, long seq, long queuedAtNanos) implements Comparable<Queued> {
+		@Override
+		public int compareTo(Queued other) {
+			return priority != other.priority ? Integer.compare(other.priority, priority) : Long.compare(seq, other.seq);
+		}
+	}
+	
+	public BookJobExecutor(BookJobStore store, BookJobTasks tasks, BookJobProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+		this.store = store;
+		this.tasks = tasks;
+		this.properties = properties;
+		this.meterRegistry = meterRegistry.getIfAvailable();
+		if(this.meterRegistry != null) {
+			Gauge.builder("book.jobs.queue.depth", queue, PriorityBlockingQueue::size).description("대기 중인 작업").register(this.meterRegistry);
+			Gauge.builder("book.jobs.queue.utilization", this, executor -> (double) executor.getQueueDepth() / properties.getQueueCapacity())
+					.description("대기열이 찬 비율 (1 이면 등록 거절)").register(this.meterRegistry);
+			Gauge.builder("book.jobs.active", active, AtomicInteger::get).description("돌고 있는 작업").register(this.meterRegistry);
+			Gauge.builder("book.jobs.utilization", this, executor -> (double) executor.getActive() / properties.getWorkers())
+					.description("작업 스레드 사용률 (1 이면 포화, 대기열이 쌓임)").register(this.meterRegistry);
+			FunctionCounter.builder("book.jobs.rejected", rejected, LongAdder::sum).description("대기열이 가득 차서 거절된 등록").register(this.meterRegistry);
+		}
+	}
+	
+	//테이블은 flyway 가 만들어서 다 뜬 뒤에 남은 작업을 다시 넣고 시작
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		int pruned = store.prune(properties.getRetentionMs());
+		int interrupted = store.requeueExpired().size();
+		List<BookJob> queued = store.queued();
+		for(BookJob job : queued) {
+			enqueue(job);
+		}
+		if(!queued.isEmpty() || interrupted > 0 || pruned > 0) {
+			log.info("작업 {}건 다시 대기열에 넣음 (끝내지 못한 작업 {}건), 보관 기간이 지난 작업 {}건 삭제", queued.size(), interrupted, pruned);
+		}
+		for(int i = 0; i < properties.getWorkers(); i++) {
+			Thread worker = new Thread(this::work, "book-job-" + i);
+			worker.setDaemon(true);
+			worker.start();
+			workers.add(worker);
+		}
+		leaser = new Thread(this::lease, "book-job-lease");
+		leaser.setDaemon(true);
+		leaser.start();
+	}
+	
+	//돌고 있는 작업은 chunk 사이에서 멈추고 QUEUED 로 돌려놓는다. (다음에 뜰때 다시)
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		stopped = true;
+		running.values().forEach(BookJobContext::stop);
+		workers.forEach(Thread::interrupt); //take() 에서 기다리는 스레드
+		for(Thread worker : workers) {
+			worker.join(TimeUnit.SECONDS.toMillis(10));
+		}
+		if(leaser != null) { //requeue 하기 전에 임대가 끝나지 않게 워커가 멈춘 뒤에
+			LockSupport.unpark(leaser);
+			leaser.join(TimeUnit.SECONDS.toMillis(10));
+		}
+	}
+	
+	public BookJob submit(BookJob.Type type, String target, int priority) {
+		if(type == null) {
+			throw new IllegalArgumentException("type 을 확인해주세요");
+		}
+		if(type != BookJob.Type.REINDEX && (target == null || target.isEmpty())) {
+			throw new IllegalArgumentException(type + " 는 target 이 필요합니다.");
+		}
+		submitLock.lock();
+		try {
+			if(queue.size() >= properties.getQueueCapacity()) {
+				rejected.increment();
+				throw new BookJobQueueFullException(properties.getQueueCapacity());
+			}
+			BookJob job = store.insert(type, type == BookJob.Type.REINDEX ? null : target, priority);
+			enqueue(job);
+			return job;
+		} finally {
+			submitLock.unlock();
+		}
+	}
+	
+	//끝난 작업이면 그대로, 없으면 false
+	public boolean cancel(long id) {
+		if(store.cancel(id)) {
+			queue.removeIf(queued -> queued.id() == id);
+			return true;
+		}
+		BookJobContext context = running.get(id);
+		if(context != null) {
+			context.cancel();
+		}
+		return store.find(id).isPresent();
+	}
+	
+	public int getQueueDepth() {
+		return queue.size();
+	}
+	
+	public int getActive() {
+		return active.get();
+	}
+	
+	private void enqueue(BookJob job) {
+		queue.add(new Queued(job.getId(), job.getPriority(), sequence.incrementAndGet(), System.nanoTime()));
+	}
+	
+	private void work() {
+		while(!stopped) {
+			Queued queued;
+			try {
+				queued = queue.take();
+			} catch (InterruptedException e) {
+				return; //stop
+			}
+			try {
+				if(store.claim(queued.id())) {
+					if(meterRegistry != null) {
+						Timer.builder("book.jobs.wait").description("등록부터 시작까지").register(meterRegistry)
+								.record(System.nanoTime() - queued.queuedAtNanos(), TimeUnit.NANOSECONDS);
+					}
+					run(queued.id());
+				}
+			} catch (RuntimeException e) { //db 가 잠깐 안될때 : 작업은 QUEUED/RUNNING 으로 남아서 다음에 뜰때 다시
+				log.error("작업 {} 시작/종료 기록 실패", queued.id(), e);
+			}
+		}
+	}
+	
+	//임대가 lease-ms 안에 세번 늘어난다. (한두번 db 가 늦어도 다른 인스턴스가 가져가지 않게)
+	private void lease() {
+		long intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(properties.getLeaseMs() / 3, 1));
+		while(!stopped) {
+			LockSupport.parkNanos(this, intervalNanos);
+			if(stopped) {
+				return;
+			}
+			try {
+				store.renew();
+				List<BookJob> expired = store.requeueExpired();
+				expired.forEach(this::enqueue);
+				if(!expired.isEmpty()) {
+					log.info("임대가 지난 작업 {}건 다시 대기열에 넣음 : {}", expired.size(), expired.stream().map(BookJob::getId).toList());
+				}
+			} catch (RuntimeException e) {
+				log.warn("작업 임대 갱신 실패 (다음 주기에 다시 시도)", e);
+			}
+		}
+	}
+	
+	private void run(long id) {
+		BookJob job = store.find(id).orElseThrow();
+		BookJobContext context = new BookJobContext(id, store);
+		running.put(id, context);
+		if(stopped) { //stop() 이 running 을 훑은 뒤에 꺼낸 작업
+			context.stop();
+		}
+		active.incrementAndGet();
+		long start = System.nanoTime();
+		BookJob.Status status = BookJob.Status.FAILED;
+		try {
+			if(job.isCancelRequested()) {
+				throw new CancellationException();
+			}
+			String message = tasks.run(job, context);
+			status = BookJob.Status.SUCCEEDED;
+			store.finish(id, status, context.getProcessed(), message);
+		} catch (CancellationException e) {
+			status = BookJob.Status.CANCELLED;
+			store.finish(id, status, context.getProcessed(), "취소되었습니다.");
+		} catch (BookJobContext.StoppingException e) {
+			status = BookJob.Status.QUEUED;
+			store.requeue(id, context.getProcessed());
+		} catch (BookJobStore.LostLeaseException e) { //다른 인스턴스가 처음부터 다시 돌린다.
+			status = BookJob.Status.RUNNING;
+			log.warn(e.getMessage());
+		} catch (RuntimeException e) {
+			log.warn("작업 {} ({}) 실패", id, job.getType(), e);
+			store.finish(id, status, context.getProcessed(), e.getMessage() == null ? e.toString() : e.getMessage());
+		} finally {
+			active.decrementAndGet();
+			running.remove(id);
+			if(meterRegistry != null) {
+				Timer.builder("book.jobs.run")
+						.tag("type", job.getType().name().toLowerCase(Locale.ROOT))
+						.tag("status", status.name().toLowerCase(Locale.ROOT))
+						.register(meterRegistry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			}
+		}
+		log.info("작업 {} ({} {}) : {} {}건, {}ms", id, job.getType(), job.getTarget() == null ? "" : job.getTarget(), status,
+				context.getProcessed(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+}
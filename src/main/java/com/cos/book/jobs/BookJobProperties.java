@@ -0,0 +1,20 @@
+package com.cos.book.jobs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+//book.jobs.* (POST /book/_jobs)
+@Data
+@ConfigurationProperties("book.jobs")
+public class BookJobProperties {
+	private int workers = 2; //작업 스레드 수 (톰켓 스레드와 별개). 동시에 db 커넥션을 이만큼 더 쓴다.
+	private int queueCapacity = 1000; //대기 중인 작업이 이만큼이면 503 + Retry-After
+	private int chunkSize = 500; //삭제 작업의 트랜잭션 하나 크기. chunk 사이에서 취소를 확인한다.
+	private long retentionMs = 7L * 24 * 60 * 60 * 1000; //끝난 작업을 지우기 전까지 보관
+	private long leaseMs = 30000; //작업을 가진 인스턴스가 이 안에 임대를 늘리지 않으면 (죽었으면) 다른 인스턴스가 다시 돌린다.
+	private long pollIntervalMs = 500; //다른 인스턴스에서 도는 작업의 변경을 확인하는 주기 (SSE, waitMs)
+	private long maxWaitMs = 30000; //GET /book/_jobs/{id}?waitMs= 최대
+	private long sseTimeoutMs = 600000;
+	private long heartbeatMs = 15000;
+}
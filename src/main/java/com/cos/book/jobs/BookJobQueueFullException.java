@@ -0,0 +1,8 @@
+package com.cos.book.jobs;
+
+//작업 대기열이 가득 참 (잠시 후 다시 요청)
+public class BookJobQueueFullException extends RuntimeException {
+	public BookJobQueueFullException(int capacity) {
+		super("작업 대기열이 가득 찼습니다. capacity=" + capacity);
+	}
+}
@@ -0,0 +1,17 @@
+package com.cos.book.jobs;
+
+import com.cos.book.domain.BookJob;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//POST /book/_jobs 본문. 예) {"type":"DELETE_BY_AUTHOR","target":"코스","priority":5}
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BookJobRequest {
+	private BookJob.Type type;
+	private String target;
+	private int priority;
+}
@@ -0,0 +1,214 @@
+package com.cos.book.jobs;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.jdbc.core.DataClassRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+
+import com.cos.book.domain.BookJob;
+
+/**
+ * book_job 테이블. 상태 변경은 조건부 update (where status = ..) 라서 인스턴스가 여러개여도 작업 하나는 한 곳에서만 돈다.
+ * 가져간 인스턴스(owner)는 lease-ms 동안 작업을 갖고, 도는 동안 renew 로 계속 늘린다.
+ * 임대가 지난 RUNNING 작업만 죽은 인스턴스의 것으로 보고 다시 대기열에 넣는다. 진행/종료 기록은 owner 가 자기일때만 쓴다.
+ * 이 인스턴스에서 바꾸면 기다리는 조회(await)를 바로 깨우고, 다른 인스턴스에서 바뀐 것은 poll-interval-ms 주기로 다시 읽는다.
+ */
+@Component
+public class BookJobStore {
+	private static final RowMapper<BookJob> ROW_MAPPER = new DataClassRowMapper<>(BookJob.class);
+	private static final String COLUMNS = "id, type, target, priority, status, cancel_requested, processed, message, attempts, created_at, started_at, finished_at, owner, lease_until";
+	private static final int MAX_MESSAGE = 1000; //book_job.message 컬럼 크기
+	
+	private final JdbcTemplate jdbcTemplate;
+	private final String owner = UUID.randomUUID().toString(); //이 인스턴스 (뜰때마다 새로)
+	private final long leaseMs;
+	private final long pollIntervalNanos;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition();
+	private long generation; //이 인스턴스에서 작업이 바뀔때마다 +1
+	
+	public BookJobStore(JdbcTemplate jdbcTemplate, BookJobProperties properties) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.leaseMs = properties.getLeaseMs();
+		this.pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(properties.getPollIntervalMs(), 1));
+	}
+	
+	public BookJob insert(BookJob.Type type, String target, int priority) {
+		long now = System.currentTimeMillis();
+		KeyHolder keyHolder = new GeneratedKeyHolder();
+		jdbcTemplate.update(connection -> {
+			PreparedStatement ps = connection.prepareStatement("insert into book_job (type, target, priority, status, cancel_requested, processed, attempts, created_at)"
+					+ " values (?, ?, ?, ?, false, 0, 0, ?)", Statement.RETURN_GENERATED_KEYS);
+			ps.setString(1, type.name());
+			ps.setString(2, target);
+			ps.setInt(3, priority);
+			ps.setString(4, BookJob.Status.QUEUED.name());
+			ps.setLong(5, now);
+			return ps;
+		}, keyHolder);
+		Long id = keyHolder.getKeyAs(Long.class);
+		changed();
+		return new BookJob(id, type, target, priority, BookJob.Status.QUEUED, false, 0, null, 0, now, null, null, null, null);
+	}
+	
+	public Optional<BookJob> find(long id) {
+		return jdbcTemplate.query("select " + COLUMNS + " from book_job where id = ?", ROW_MAPPER, id).stream().findFirst();
+	}
+	
+	//최근 것부터
+	public List<BookJob> list(int limit) {
+		return jdbcTemplate.query("select " + COLUMNS + " from book_job order by id desc limit ?", ROW_MAPPER, limit);
+	}
+	
+	//다시 큐에 넣을 작업 (우선순위, 등록 순)
+	public List<BookJob> queued() {
+		return jdbcTemplate.query("select " + COLUMNS + " from book_job where status = ? order by priority desc, id",
+				ROW_MAPPER, BookJob.Status.QUEUED.name());
+	}
+	
+	//QUEUED => RUNNING (owner 는 이 인스턴스). 이미 취소됐거나 다른 인스턴스가 가져갔으면 false
+	public boolean claim(long id) {
+		long now = System.currentTimeMillis();
+		return changed(jdbcTemplate.update("update book_job set status = ?, started_at = ?, attempts = attempts + 1, owner = ?, lease_until = ? where id = ? and status = ?",
+				BookJob.Status.RUNNING.name(), now, owner, now + leaseMs, id, BookJob.Status.QUEUED.name()));
+	}
+	
+	//이 인스턴스가 돌리고 있는 작업 전부의 임대를 늘린다. (update 한번)
+	public int renew() {
+		return jdbcTemplate.update("update book_job set lease_until = ? where owner = ? and status = ?",
+				System.currentTimeMillis() + leaseMs, owner, BookJob.Status.RUNNING.name());
+	}
+	
+	//진행 건수를 남기고 취소 요청이 있었는지 돌려준다. (다른 인스턴스에서 DELETE 한 것도 여기서 알게 된다)
+	//임대가 지나서 다른 인스턴스가 가져갔으면 LostLeaseException
+	public boolean progress(long id, long processed) {
+		if(jdbcTemplate.update("update book_job set processed = ? where id = ? and owner = ? and status = ?",
+				processed, id, owner, BookJob.Status.RUNNING.name()) == 0) {
+			throw new LostLeaseException(id);
+		}
+		changed();
+		return Boolean.TRUE.equals(jdbcTemplate.queryForObject("select cancel_requested from book_job where id = ?", Boolean.class, id));
+	}
+	
+	public void finish(long id, BookJob.Status status, long processed, String message) {
+		jdbcTemplate.update("update book_job set status = ?, processed = ?, message = ?, finished_at = ?, owner = null, lease_until = null where id = ? and owner = ? and status = ?",
+				status.name(), processed, truncate(message), System.currentTimeMillis(), id, owner, BookJob.Status.RUNNING.name());
+		changed();
+	}
+	
+	//서버가 내려가서 끝내지 못한 작업 => 다음에 뜰때(이 인스턴스든 다른 인스턴스든) 처음부터 다시
+	public void requeue(long id, long processed) {
+		jdbcTemplate.update("update book_job set status = ?, processed = ?, owner = null, lease_until = null where id = ? and owner = ? and status = ?",
+				BookJob.Status.QUEUED.name(), processed, id, owner, BookJob.Status.RUNNING.name());
+		changed();
+	}
+	
+	//requeue 도 못하고 죽은 인스턴스의 작업 (임대가 지난 RUNNING). 작업 종류가 모두 다시 해도 되는 것이라 처음부터 다시 돌린다.
+	//다른 인스턴스에서 돌고 있는 작업은 임대를 계속 늘리므로 건드리지 않는다. 다시 넣은 작업을 돌려준다.
+	public List<BookJob> requeueExpired() {
+		long now = System.currentTimeMillis();
+		List<BookJob> requeued = new ArrayList<>();
+		for(BookJob job : jdbcTemplate.query("select " + COLUMNS + " from book_job where status = ? and (lease_until is null or lease_until < ?)",
+				ROW_MAPPER, BookJob.Status.RUNNING.name(), now)) {
+			if(changed(jdbcTemplate.update("update book_job set status = ?, owner = null, lease_until = null where id = ? and status = ? and (lease_until is null or lease_until < ?)",
+					BookJob.Status.QUEUED.name(), job.getId(), BookJob.Status.RUNNING.name(), now))) {
+				job.setStatus(BookJob.Status.QUEUED);
+				requeued.add(job);
+			}
+		}
+		return requeued;
+	}
+	
+	//대기 중이면 바로 CANCELLED (true), 돌고 있으면 표시만 하고 작업이 chunk 사이에서 멈춘다.
+	public boolean cancel(long id) {
+		if(changed(jdbcTemplate.update("update book_job set status = ?, cancel_requested = true, finished_at = ? where id = ? and status = ?",
+				BookJob.Status.CANCELLED.name(), System.currentTimeMillis(), id, BookJob.Status.QUEUED.name()))) {
+			return true;
+		}
+		changed(jdbcTemplate.update("update book_job set cancel_requested = true where id = ? and status = ?", id, BookJob.Status.RUNNING.name()));
+		return false;
+	}
+	
+	public int prune(long retentionMs) {
+		return jdbcTemplate.update("delete from book_job where finished_at < ?", System.currentTimeMillis() - retentionMs);
+	}
+	
+	/**
+	 * seen 과 상태나 진행 건수가 달라지거나 waitMs 가 지나면 그때의 작업 (없어졌으면 empty)
+	 * seen 이 null 이면 바로 돌려준다.
+	 */
+	public Optional<BookJob> await(long id, BookJob seen, long waitMs) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+		while(true) {
+			long before = generation();
+			Optional<BookJob> job = find(id);
+			long remaining = deadline - System.nanoTime();
+			if(job.isEmpty() || seen == null || isChanged(seen, job.get()) || remaining <= 0) {
+				return job;
+			}
+			lock.lock();
+			try {
+				if(generation == before) {
+					changed.awaitNanos(Math.min(remaining, pollIntervalNanos));
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+	
+	private static boolean isChanged(BookJob seen, BookJob job) {
+		return seen.getStatus() != job.getStatus() || seen.getProcessed() != job.getProcessed()
+				|| seen.isCancelRequested() != job.isCancelRequested() || !Objects.equals(seen.getMessage(), job.getMessage());
+	}
+	
+	private static String truncate(String message) {
+		return message == null || message.length() <= MAX_MESSAGE ? message : message.substring(0, MAX_MESSAGE);
+	}
+	
+	//임대가 지나서 다른 인스턴스가 가져간 작업 (이 인스턴스는 손을 뗀다)
+	static class LostLeaseException extends RuntimeException {
+		LostLeaseException(long id) {
+			super("작업 " + id + " 의 임대가 끝나서 다른 인스턴스가 가져갔습니다.");
+		}
+	}
+	
+	private boolean changed(int updated) {
+		if(updated > 0) {
+			changed();
+		}
+		return updated > 0;
+	}
+	
+	private void changed() {
+		lock.lock();
+		try {
+			generation++;
+			changed.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	private long generation() {
+		lock.lock();
+		try {
+			return generation;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.cos.book.jobs;
+
+import java.util.List;
+import java.util.function.IntFunction;
+
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import com.cos.book.domain.Book;
+import com.cos.book.domain.BookJob;
+import com.cos.book.service.BookSearchIndex;
+import com.cos.book.service.BookService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 작업 종류별 실제 일. 모두 BookService 를 거쳐서 캐시/검색 색인/변경 구독/shard 가 요청으로 지운 것과 똑같이 처리된다.
+ * 삭제는 chunk-size 만큼씩 트랜잭션을 나눠서 (긴 트랜잭션으로 락을 오래 잡지 않게) chunk 사이에서 취소를 확인한다.
+ * 다시 돌려도 결과가 같아야 한다. (재시작하면 처음부터 다시 돈다)
+ */
+@RequiredArgsConstructor
+@Component
+public class BookJobTasks {
+	private final BookService bookService;
+	private final BookSearchIndex searchIndex;
+	private final BookJobProperties properties;
+	
+	//결과 메시지
+	public String run(BookJob job, BookJobContext context) {
+		switch (job.getType()) {
+		case DELETE_BY_AUTHOR:
+			return deleteMatching(context, limit -> bookService.getByAuthor(job.getTarget(), null, null, limit));
+		case DELETE_BY_TITLE_PREFIX:
+			return deleteMatching(context, limit -> bookService.getByTitlePrefix(job.getTarget(), null, null, limit));
+		case REINDEX: { //새 색인을 다 채운 뒤에 바꿔 끼우므로 중간에 멈추지 않는다. (대기 중일때만 취소됨, 그 동안 검색은 지금 색인으로)
+			int size = searchIndex.rebuild();
+			context.progress(size);
+			return "검색 색인 " + size + "건";
+		}
+		default:
+			throw new IllegalArgumentException("지원하지 않는 작업입니다. : " + job.getType());
+		}
+	}
+	
+	//지우고 나면 다음 chunk 가 다시 첫 페이지가 된다.
+	private String deleteMatching(BookJobContext context, IntFunction<Slice<Book>> firstPage) {
+		long deleted = 0;
+		while(true) {
+			context.checkCancelled();
+			List<Long> ids = firstPage.apply(properties.getChunkSize()).map(Book::getId).getContent();
+			if(ids.isEmpty()) {
+				break;
+			}
+			int count = bookService.deleteAll(ids).size();
+			deleted += count;
+			context.progress(deleted);
+			if(count == 0) { //읽은 곳(replica)이 아직 삭제를 못 봤음 => 다음에 다시 돌리면 된다.
+				throw new IllegalStateException("삭제할 책을 다시 읽었습니다. 잠시 후 다시 실행해주세요.");
+			}
+		}
+		return "삭제 " + deleted + "건";
+	}
+}
@@ -0,0 +1,56 @@
+package com.cos.book.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * BookService / BookBulkService 메소드별 타이머 (book.service{class, method})
+ * 캐시/트랜잭션 프록시보다 바깥에서 재서 캐시 hit 도 포함된다.
+ */
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Aspect
+public class BookServiceMetricsAspect {
+	private final MeterRegistry meterRegistry;
+	private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+	
+	public BookServiceMetricsAspect(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+	
+	@Around("within(com.cos.book.service.BookService) || within(com.cos.book.service.BookBulkService)")
+	public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+		RequestTiming timing = RequestTiming.current();
+		boolean outermost = timing != null && timing.enterService();
+		long start = System.nanoTime();
+		try {
+			return joinPoint.proceed();
+		} finally {
+			long nanos = System.nanoTime() - start;
+			timer(joinPoint).record(nanos, TimeUnit.NANOSECONDS);
+			if(timing != null) {
+				timing.exitService(outermost, nanos);
+			}
+		}
+	}
+	
+	private Timer timer(ProceedingJoinPoint joinPoint) {
+		Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+		return timers.computeIfAbsent(method, key -> Timer.builder("book.service")
+				.description("BookService 메소드 실행 시간")
+				.tags("class", key.getDeclaringClass().getSimpleName(), "method", key.getName())
+				.publishPercentiles(0.5, 0.95, 0.99)
+				.register(meterRegistry));
+	}
+}
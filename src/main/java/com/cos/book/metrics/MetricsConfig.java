@@ -0,0 +1,80 @@
+package com.cos.book.metrics;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 요청 경로 계층별 메트릭 (/actuator/prometheus 로 수집)
+ * - http.server.requests : 컨트롤러 엔드포인트 (스프링부트 기본, 백분위는 application.yml)
+ * - book.service         : BookService 메소드
+ * - book.sql, book.request.sql.* : JDBC 문장 시간, 요청당 SQL 수/시간
+ * - book.serialization   : 응답 JSON 직렬화
+ * - hikaricp.connections.acquire : 커넥션 풀 대기 시간, jvm.gc.memory.allocated : 할당량 (스프링부트 기본)
+ * book.metrics.enabled=false 면 전부 끈다. (스프링부트 기본 메트릭은 그대로)
+ */
+@ConditionalOnProperty(name = "book.metrics.enabled", havingValue = "true", matchIfMissing = true)
+@Configuration
+public class MetricsConfig {
+	
+	@Bean
+	public BookServiceMetricsAspect bookServiceMetricsAspect(MeterRegistry meterRegistry) {
+		return new BookServiceMetricsAspect(meterRegistry);
+	}
+	
+	//DataSource를 감싼다. (static : BeanPostProcessor는 다른 빈보다 먼저 만들어져야 함)
+	@Bean
+	@ConditionalOnProperty(name = "book.metrics.sql", havingValue = "true", matchIfMissing = true)
+	public static BeanPostProcessor sqlMetricsDataSourcePostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if(bean instanceof DataSource dataSource && !(bean instanceof SqlMetricsDataSource)) {
+					return new SqlMetricsDataSource(dataSource, meterRegistry.getObject());
+				}
+				return bean;
+			}
+		};
+	}
+	
+	@Bean
+	@ConditionalOnWebApplication(type = Type.SERVLET)
+	public FilterRegistrationBean<RequestTimingFilter> requestTimingFilter(MeterRegistry meterRegistry,
+			@Value("${book.metrics.timing-header:true}") boolean timingHeaderEnabled) {
+		FilterRegistrationBean<RequestTimingFilter> registration = new FilterRegistrationBean<>(new RequestTimingFilter(meterRegistry, timingHeaderEnabled));
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+		return registration;
+	}
+	
+	@Bean
+	@ConditionalOnWebApplication(type = Type.SERVLET)
+	public WebMvcConfigurer timedJacksonConverterConfigurer(MeterRegistry meterRegistry) {
+		return new WebMvcConfigurer() {
+			@Override
+			public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+				for(int i = 0; i < converters.size(); i++) {
+					if(converters.get(i).getClass() == MappingJackson2HttpMessageConverter.class) {
+						MappingJackson2HttpMessageConverter converter = (MappingJackson2HttpMessageConverter) converters.get(i);
+						converters.set(i, new TimedJackson2HttpMessageConverter(converter.getObjectMapper(), meterRegistry));
+					}
+				}
+			}
+		};
+	}
+}
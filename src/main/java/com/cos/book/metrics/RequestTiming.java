@@ -0,0 +1,73 @@
+package com.cos.book.metrics;
+
+/**
+ * 요청 하나에서 service / SQL / 직렬화에 쓴 시간 (요청 스레드의 ThreadLocal)
+ * RequestTimingFilter가 시작하고 끝낸다. 요청 밖(스케줄러, write-behind flush 등)에서는 current()가 null
+ */
+public class RequestTiming {
+	private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+	
+	private final long startNanos = System.nanoTime();
+	private long serviceNanos;
+	private int serviceDepth; //BookBulkService -> BookService 처럼 겹치면 바깥 것만 더한다.
+	private long sqlNanos;
+	private int sqlCount;
+	private long serializationNanos;
+	
+	static RequestTiming start() {
+		RequestTiming timing = new RequestTiming();
+		CURRENT.set(timing);
+		return timing;
+	}
+	
+	static void end() {
+		CURRENT.remove();
+	}
+	
+	public static RequestTiming current() {
+		return CURRENT.get();
+	}
+	
+	boolean enterService() {
+		return serviceDepth++ == 0;
+	}
+	
+	void exitService(boolean outermost, long nanos) {
+		serviceDepth--;
+		if(outermost) {
+			serviceNanos += nanos;
+		}
+	}
+	
+	void addSql(long nanos) {
+		sqlNanos += nanos;
+		sqlCount++;
+	}
+	
+	void addSerialization(long nanos) {
+		serializationNanos += nanos;
+	}
+	
+	long getSqlNanos() {
+		return sqlNanos;
+	}
+	
+	int getSqlCount() {
+		return sqlCount;
+	}
+	
+	//Server-Timing 헤더 값 (ms). controller = 전체 - service - 직렬화 (컨트롤러 자체 + 스프링 MVC 처리)
+	String toServerTiming() {
+		long totalNanos = System.nanoTime() - startNanos;
+		long controllerNanos = Math.max(totalNanos - serviceNanos - serializationNanos, 0);
+		return "total;dur=" + ms(totalNanos)
+				+ ", controller;dur=" + ms(controllerNanos)
+				+ ", service;dur=" + ms(serviceNanos)
+				+ ", sql;dur=" + ms(sqlNanos) + ";desc=\"" + sqlCount + " statements\""
+				+ ", ser;dur=" + ms(serializationNanos);
+	}
+	
+	private static String ms(long nanos) {
+		return String.format("%.3f", nanos / 1_000_000.0);
+	}
+}
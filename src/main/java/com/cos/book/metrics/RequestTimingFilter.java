@@ -0,0 +1,94 @@
+package com.cos.book.metrics;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 요청마다 RequestTiming을 시작하고, 끝나면 요청당 SQL 수/시간을 method, uri(route), status 별로 기록한다.
+ * meter 는 처음 한번만 만들어서 들고 있는다. (요청마다 builder + register 조회를 하지 않음)
+ * 요청에 X-Book-Timing 헤더가 있으면 응답에 Server-Timing 헤더로 내역을 붙인다. (브라우저 개발자도구 Timing 탭에 보임)
+ * 헤더는 본문보다 먼저 나가야 해서 이때만 본문을 버퍼에 모았다가 보낸다. (NDJSON 스트리밍은 제외)
+ */
+public class RequestTimingFilter extends OncePerRequestFilter {
+	public static final String TIMING_HEADER = "X-Book-Timing";
+	public static final String SERVER_TIMING_HEADER = "Server-Timing";
+	
+	private final MeterRegistry meterRegistry;
+	private final boolean timingHeaderEnabled;
+	private final ConcurrentHashMap<Route, Meters> meters = new ConcurrentHashMap<>();
+	
+	//uri 는 매핑 패턴 (/book/{id}) 이라서 종류가 정해져 있다.
+	private record Route(String method, String uri, int status) {
+	}
+	
+	private record Meters(DistributionSummary statements, Timer time) {
+	}
+	
+	public RequestTimingFilter(MeterRegistry meterRegistry, boolean timingHeaderEnabled) {
+		this.meterRegistry = meterRegistry;
+		this.timingHeaderEnabled = timingHeaderEnabled;
+	}
+	
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		RequestTiming timing = RequestTiming.start();
+		boolean debug = timingHeaderEnabled && request.getHeader(TIMING_HEADER) != null && !isStreaming(request);
+		ContentCachingResponseWrapper wrapper = debug ? new ContentCachingResponseWrapper(response) : null;
+		try {
+			filterChain.doFilter(request, debug ? wrapper : response);
+		} finally {
+			RequestTiming.end();
+			record(request, response, timing);
+			if(debug) {
+				wrapper.setHeader(SERVER_TIMING_HEADER, timing.toServerTiming());
+				wrapper.copyBodyToResponse();
+			}
+		}
+	}
+	
+	private void record(HttpServletRequest request, HttpServletResponse response, RequestTiming timing) {
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		Route route = new Route(request.getMethod(), pattern == null ? "UNKNOWN" : pattern.toString(), response.getStatus());
+		Meters routeMeters = meters.get(route);
+		if(routeMeters == null) {
+			routeMeters = meters.computeIfAbsent(route, this::register);
+		}
+		routeMeters.statements().record(timing.getSqlCount());
+		routeMeters.time().record(timing.getSqlNanos(), TimeUnit.NANOSECONDS);
+	}
+	
+	private Meters register(Route route) {
+		String status = String.valueOf(route.status());
+		return new Meters(
+				DistributionSummary.builder("book.request.sql.statements")
+						.description("요청 하나에서 실행된 SQL 수")
+						.tags("method", route.method(), "uri", route.uri(), "status", status)
+						.publishPercentiles(0.5, 0.99)
+						.register(meterRegistry),
+				Timer.builder("book.request.sql.time")
+						.description("요청 하나에서 SQL에 쓴 시간 합")
+						.tags("method", route.method(), "uri", route.uri(), "status", status)
+						.publishPercentiles(0.5, 0.99)
+						.register(meterRegistry));
+	}
+	
+	private static boolean isStreaming(HttpServletRequest request) {
+		String accept = request.getHeader(HttpHeaders.ACCEPT);
+		return accept != null && accept.contains("ndjson");
+	}
+}
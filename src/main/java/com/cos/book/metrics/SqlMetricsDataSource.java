@@ -0,0 +1,107 @@
+package com.cos.book.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * JDBC 실행마다 시간을 잰다. (JPA/Hibernate, JdbcTemplate 모두 이 DataSource를 거침)
+ * book.sql{kind=select|insert|update|delete|other} 타이머 + 요청 중이면 RequestTiming에 더한다.
+ * executeQuery 는 첫 결과가 올때까지만 잰다. (ResultSet 읽는 시간은 service 시간에 들어감)
+ * Hikari 메트릭은 DelegatingDataSource 를 벗겨서 원래 풀에 붙는다.
+ */
+public class SqlMetricsDataSource extends DelegatingDataSource {
+	private static final String[] KINDS = { "select", "insert", "update", "delete", "other" };
+	
+	private final Timer[] timers = new Timer[KINDS.length];
+	
+	public SqlMetricsDataSource(DataSource target, MeterRegistry meterRegistry) {
+		super(target);
+		for(int i = 0; i < KINDS.length; i++) {
+			timers[i] = Timer.builder("book.sql")
+					.description("JDBC 문장 실행 시간")
+					.tag("kind", KINDS[i])
+					.publishPercentiles(0.5, 0.95, 0.99)
+					.register(meterRegistry);
+		}
+	}
+	
+	@Override
+	public Connection getConnection() throws SQLException {
+		return connection(super.getConnection());
+	}
+	
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return connection(super.getConnection(username, password));
+	}
+	
+	private Connection connection(Connection target) {
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+			Object result = invoke(target, method, args);
+			if(result instanceof Statement statement) {
+				String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+				return statement(statement, sql);
+			}
+			return result;
+		});
+	}
+	
+	private Statement statement(Statement target, String preparedSql) {
+		Class<?> type = target instanceof CallableStatement ? CallableStatement.class
+				: target instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+		InvocationHandler handler = (proxy, method, args) -> {
+			if(!method.getName().startsWith("execute")) {
+				return invoke(target, method, args);
+			}
+			String sql = preparedSql != null ? preparedSql : args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+			long start = System.nanoTime();
+			try {
+				return invoke(target, method, args);
+			} finally {
+				long nanos = System.nanoTime() - start;
+				timers[kind(sql)].record(nanos, TimeUnit.NANOSECONDS);
+				RequestTiming timing = RequestTiming.current();
+				if(timing != null) {
+					timing.addSql(nanos);
+				}
+			}
+		};
+		return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+	
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+	
+	private static int kind(String sql) {
+		if(sql == null) {
+			return KINDS.length - 1;
+		}
+		String head = sql.stripLeading();
+		for(int i = 0; i < KINDS.length - 1; i++) {
+			if(head.regionMatches(true, 0, KINDS[i], 0, KINDS[i].length())) {
+				return i;
+			}
+		}
+		return KINDS.length - 1;
+	}
+}
@@ -0,0 +1,44 @@
+package com.cos.book.metrics;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+//응답 JSON 직렬화 시간 (book.serialization) : 스프링 기본 Jackson 컨버터를 이걸로 바꿔 끼운다.
+public class TimedJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+	private final Timer timer;
+	
+	public TimedJackson2HttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+		super(objectMapper);
+		this.timer = Timer.builder("book.serialization")
+				.description("응답 본문 JSON 직렬화 시간")
+				.tag("format", "json")
+				.publishPercentiles(0.5, 0.95, 0.99)
+				.register(meterRegistry);
+	}
+	
+	@Override
+	protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+			throws IOException, HttpMessageNotWritableException {
+		long start = System.nanoTime();
+		try {
+			super.writeInternal(object, type, outputMessage);
+		} finally {
+			long nanos = System.nanoTime() - start;
+			timer.record(nanos, TimeUnit.NANOSECONDS);
+			RequestTiming timing = RequestTiming.current();
+			if(timing != null) {
+				timing.addSerialization(nanos);
+			}
+		}
+	}
+}
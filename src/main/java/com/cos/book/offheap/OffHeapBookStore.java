@@ -0,0 +1,703 @@
+package com.cos.book.offheap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import com.cos.book.domain.Book;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * book 을 힙 밖(메모리 맵 파일)에 두는 저장소 (offheap 프로필)
+ * - book.dat : 레코드를 뒤에 붙이기만 한다. [id][version][title 길이][author 길이][title UTF-8][author UTF-8] (8바이트 정렬)
+ *   segmentBytes 씩 나눠서 map 한다. (MappedByteBuffer 하나는 2GB 까지) 레코드는 segment 경계를 넘지 않는다.
+ * - book.idx : id -> 레코드 주소. long 키 open addressing (선형 탐색), 슬롯 = [id][주소] 16바이트. Long 박싱이나 엔트리 객체가 없다.
+ * - book.meta : 스냅샷 때의 길이/개수. clean 이면 다음에 뜰때 파일을 그대로 map 해서 바로 쓴다. (다시 읽어 올리는 과정이 없음)
+ * 읽기는 락 없이 슬롯을 acquire 로 읽고, 쓰기는 writeLock 하나로 한번에 한 스레드만 한다.
+ * 레코드는 한번 쓰면 바뀌지 않는다. 수정은 새 레코드를 붙이고 슬롯의 주소만 release 로 바꾼다. (지우기는 주소를 TOMBSTONE 으로)
+ * 슬롯의 키는 한번 쓰면 그 색인이 살아있는 동안 바뀌지 않는다. TOMBSTONE 은 색인을 다시 만들때(resize, compact)만 치운다.
+ */
+@Slf4j
+public class OffHeapBookStore implements Closeable {
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+	private static final long MAGIC = 0x424F4F4B4F464631L; //BOOKOFF1
+	private static final int META_BYTES = 64;
+	private static final int SLOT_BYTES = 16;
+	private static final int RECORD_HEADER = 24;
+	private static final long EMPTY = 0; //id 는 1 부터
+	private static final long TOMBSTONE = -1;
+	private static final int MAX_CAPACITY = 1 << 26; //슬롯 파일 1GB (MappedByteBuffer 하나)
+	private static final double LOAD_FACTOR = 0.7;
+	
+	private final Path dir;
+	private final long segmentBytes;
+	private final double compactRatio;
+	private final boolean warm;
+	private final FileChannel metaChannel;
+	private final ReentrantLock writeLock = new ReentrantLock();
+	
+	//읽는 쪽은 state 를 한번 읽고 그 색인/segment 로만 찾는다.
+	private volatile State state;
+	private volatile long size;
+	
+	//아래는 writeLock 안에서만
+	private FileChannel dataChannel;
+	private long dataEnd;
+	private long liveBytes;
+	private long tombstones;
+	private long nextId;
+	private boolean clean;
+	private int pendingWrites; //db 에 커밋 중인 쓰기 (beginWrite ~ endWrite)
+	
+	private volatile boolean running;
+	private Thread snapshotter;
+	
+	//색인 하나와 그 색인의 주소가 가리키는 segment 들. segment 는 같은 State 에 붙인다. (색인을 바꾸는 rehash/compact 만 State 를 새로)
+	//읽는 쪽이 잡고 있던 State 가 바뀐 뒤에도 그 색인에서 읽은 주소의 segment 를 찾을 수 있게
+	private static final class State {
+		private final Index index;
+		private volatile MappedByteBuffer[] segments;
+		
+		State(Index index, MappedByteBuffer[] segments) {
+			this.index = index;
+			this.segments = segments;
+		}
+	}
+	
+	public OffHeapBookStore(Path dir, long segmentBytes, int initialCapacity, double compactRatio) throws IOException {
+		if(segmentBytes > Integer.MAX_VALUE || segmentBytes < 4096) {
+			throw new IllegalArgumentException("segmentBytes 는 4KB ~ 2GB 사이여야 합니다 : " + segmentBytes);
+		}
+		this.dir = dir;
+		this.segmentBytes = segmentBytes;
+		this.compactRatio = compactRatio;
+		Files.createDirectories(dir);
+		this.metaChannel = FileChannel.open(dir.resolve("book.meta"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer meta = ByteBuffer.allocate(META_BYTES);
+		metaChannel.read(meta, 0);
+		meta.flip();
+		this.warm = meta.remaining() == META_BYTES && meta.getLong(0) == MAGIC && meta.getLong(8) == 1
+				&& Files.exists(dir.resolve("book.idx")) && Files.size(dir.resolve("book.idx")) == meta.getLong(48) * SLOT_BYTES;
+		int capacity;
+		if(warm) {
+			dataEnd = meta.getLong(16);
+			size = meta.getLong(24);
+			liveBytes = meta.getLong(32);
+			nextId = meta.getLong(40);
+			capacity = (int) meta.getLong(48);
+			tombstones = meta.getLong(56);
+		} else {
+			if(meta.remaining() > 0) {
+				log.warn("offheap 스냅샷이 없거나 깨끗하게 닫히지 않았습니다. 비우고 시작합니다 : {}", dir);
+			}
+			Files.deleteIfExists(dir.resolve("book.dat"));
+			Files.deleteIfExists(dir.resolve("book.idx"));
+			nextId = 1;
+			capacity = Integer.highestOneBit(Math.max(initialCapacity, 16) - 1) << 1;
+		}
+		this.dataChannel = FileChannel.open(dir.resolve("book.dat"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		int segments = (int) Math.max(1, (dataEnd + segmentBytes - 1) / segmentBytes);
+		MappedByteBuffer[] mapped = new MappedByteBuffer[segments];
+		for(int i = 0; i < segments; i++) {
+			mapped[i] = dataChannel.map(FileChannel.MapMode.READ_WRITE, i * segmentBytes, segmentBytes);
+		}
+		this.state = new State(Index.map(dir.resolve("book.idx"), capacity), mapped);
+		this.clean = warm;
+		if(!warm) {
+			writeMeta(false);
+		}
+	}
+	
+	//스냅샷에서 바로 떴는지 (false 면 빈 저장소)
+	public boolean isWarm() {
+		return warm;
+	}
+	
+	public long size() {
+		return size;
+	}
+	
+	//book.dat 에서 쓴 곳까지 + book.idx (힙 밖에 map 된 크기)
+	public long mappedBytes() {
+		writeLock.lock();
+		try {
+			return dataEnd + (long) state.index.capacity * SLOT_BYTES;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+	
+	//없거나 지워졌으면 null
+	public Book get(long id) {
+		State s = state;
+		long address = s.index.find(id);
+		return address < 0 ? null : read(s, address);
+	}
+	
+	public Long version(long id) {
+		State s = state;
+		long address = s.index.find(id);
+		return address < 0 ? null : segment(s, address).getLong(offset(address) + 8);
+	}
+	
+	public boolean contains(long id) {
+		return state.index.find(id) >= 0;
+	}
+	
+	//살아있는 book 전부 (id 순서 : db 의 order by id 와 같게). 슬롯을 한번 훑어 id 만 모아 정렬한 뒤 한 건씩 읽는다. (힙에는 long[n] 만)
+	//훑은 뒤에 지워진 것은 빠진다.
+	public void forEach(Consumer<Book> consumer) {
+		Index index = state.index;
+		long[] ids = new long[(int) Math.max(size, 16)];
+		int count = 0;
+		for(int slot = 0; slot < index.capacity; slot++) {
+			long id = index.liveKey(slot);
+			if(id == EMPTY) {
+				continue;
+			}
+			if(count == ids.length) {
+				ids = Arrays.copyOf(ids, count * 2);
+			}
+			ids[count++] = id;
+		}
+		Arrays.sort(ids, 0, count);
+		for(int i = 0; i < count; i++) {
+			Book book = get(ids[i]);
+			if(book != null) {
+				consumer.accept(book);
+			}
+		}
+	}
+	
+	//title 이나 author 가 value 와 같은 (prefix 면 value 로 시작하는) book. UTF-8 바이트끼리 비교해서 맞는 것만 String 으로 만든다.
+	public void forEachMatching(boolean author, String value, boolean prefix, Consumer<Book> consumer) {
+		byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+		State s = state;
+		Index index = s.index;
+		for(int slot = 0; slot < index.capacity; slot++) {
+			long address = index.liveAddress(slot);
+			if(address < 0) {
+				continue;
+			}
+			ByteBuffer buffer = segment(s, address);
+			int offset = offset(address);
+			int titleLength = buffer.getInt(offset + 16);
+			int length = author ? buffer.getInt(offset + 20) : titleLength;
+			int start = offset + RECORD_HEADER + (author ? Math.max(titleLength, 0) : 0);
+			if(length < expected.length || (!prefix && length != expected.length)) {
+				continue;
+			}
+			if(startsWith(buffer, start, expected)) {
+				consumer.accept(read(s, address));
+			}
+		}
+	}
+	
+	//after 보다 큰 id 중 작은 것부터 limit 개 (오름차순). 힙 배열로 골라서 id 를 박싱하지 않는다.
+	public long[] idsAfter(long after, int limit) {
+		if(limit <= 0) {
+			return new long[0];
+		}
+		Index index = state.index;
+		long[] heap = new long[limit]; //최대 힙 : 지금까지 고른 것 중 가장 큰 id 가 heap[0]
+		int count = 0;
+		for(int slot = 0; slot < index.capacity; slot++) {
+			long id = index.liveKey(slot);
+			if(id <= after) {
+				continue;
+			}
+			if(count < limit) {
+				heap[count] = id;
+				siftUp(heap, count++);
+			} else if(id < heap[0]) {
+				heap[0] = id;
+				siftDown(heap, count);
+			}
+		}
+		long[] ids = Arrays.copyOf(heap, count);
+		Arrays.sort(ids);
+		return ids;
+	}
+	
+	//id 가 없으면 새로 받는다. 저장한 version 을 돌려준다. (있던 것이면 +1, 새 것이면 0)
+	public Book put(Book book) {
+		writeLock.lock();
+		try {
+			long id = book.getId() == null ? nextId : book.getId();
+			Long current = version(id);
+			long version = current == null ? 0 : current + 1;
+			write(id, version, book.getTitle(), book.getAuthor());
+			return new Book(id, book.getTitle(), book.getAuthor(), version);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+	
+	//version 까지 그대로 (db 에서 채우거나 커밋된 변경을 반영할때). 같거나 새 version 이 이미 있으면 두지 않는다. (반영 순서가 커밋 순서와 달라도)
+	public void restore(Book book) {
+		writeLock.lock();
+		try {
+			long version = book.getVersion() == null ? 0 : book.getVersion();
+			Long current = version(book.getId());
+			if(current != null && current >= version) {
+				return;
+			}
+			write(book.getId(), version, book.getTitle(), book.getAuthor());
+		} finally {
+			writeLock.unlock();
+		}
+	}
+	
+	//지금 version 이 expected 일때만 바꾼다. (다르거나 없으면 null)
+	public Book putIfVersion(long id, long expected, String title, String author) {
+		writeLock.lock();
+		try {
+			Long current = version(id);
+			if(current == null || current != expected) {
+				return null;
+			}
+			write(id, expected + 1, title, author);
+			return new Book(id, title, author, expected + 1);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+	
+	public boolean remove(long id) {
+		writeLock.lock();
+		try {
+			State s = state;
+			int slot = s.index.slotOf(id);
+			long address = s.index.address(slot);
+			if(s.index.key(slot) != id || address < 0) {
+				return false;
+			}
+			markDirty();
+			s.index.publishAddress(slot, TOMBSTONE);
+			liveBytes -= recordBytes(s, address);
+			tombstones++;
+			size--;
+			return true;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+	
+	//db 에 쓰기 전에 부른다. 끝날때(endWrite)까지 스냅샷을 만들지 않아서,
+	//db 에는 커밋됐는데 저장소에 반영하기 전에 죽어도 meta 가 dirty 로 남는다. (다음에 뜰때 db 로 다시 채움)
+	public void beginWrite() {
+		writeLock.lock();
+		try {
+			markDirty();
+			pendingWrites++;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+	
+	public void endWrite() {
+		writeLock.lock();
+		try {
+			pendingWrites--;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+	
+	public long nextId() {
+		writeLock.lock();
+		try {
+			return nextId;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+	
+	//파일을 디스크까지 내리고 meta 를 clean 으로. 버려진 레코드가 compactRatio 를 넘으면 먼저 정리한다.
+	//반영 중인 쓰기가 있으면 다음 주기로 미룬다.
+	public void snapshot() {
+		writeLock.lock();
+		try {
+			if(clean || pendingWrites > 0) {
+				return;
+			}
+			if(dataEnd > 0 && dataEnd - liveBytes > dataEnd * compactRatio) {
+				compact();
+			}
+			State s = state;
+			for(MappedByteBuffer segment : s.segments) {
+				segment.force();
+			}
+			s.index.buffer.force();
+			writeMeta(true);
+			clean = true;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+	
+	public void startSnapshots(long intervalMs) {
+		running = true;
+		snapshotter = new Thread(() -> {
+			while(running) {
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(intervalMs));
+				try {
+					snapshot();
+				} catch (RuntimeException e) {
+					log.warn("offheap 스냅샷 실패", e);
+				}
+			}
+		}, "book-offheap-snapshot");
+		snapshotter.setDaemon(true);
+		snapshotter.start();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		running = false;
+		if(snapshotter != null) {
+			LockSupport.unpark(snapshotter);
+			try {
+				snapshotter.join(TimeUnit.SECONDS.toMillis(10));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		snapshot();
+		dataChannel.close();
+		metaChannel.close();
+	}
+	
+	//writeLock 안에서
+	private void write(long id, long version, String title, String author) {
+		if(id <= 0) {
+			throw new IllegalArgumentException("id를 확인해주세요");
+		}
+		markDirty();
+		byte[] titleBytes = title == null ? null : title.getBytes(StandardCharsets.UTF_8);
+		byte[] authorBytes = author == null ? null : author.getBytes(StandardCharsets.UTF_8);
+		int length = align(RECORD_HEADER + (titleBytes == null ? 0 : titleBytes.length) + (authorBytes == null ? 0 : authorBytes.length));
+		long address = allocate(length);
+		State s = state;
+		ByteBuffer buffer = segment(s, address);
+		int offset = offset(address);
+		buffer.putLong(offset, id);
+		buffer.putLong(offset + 8, version);
+		buffer.putInt(offset + 16, titleBytes == null ? -1 : titleBytes.length);
+		buffer.putInt(offset + 20, authorBytes == null ? -1 : authorBytes.length);
+		if(titleBytes != null) {
+			buffer.put(offset + RECORD_HEADER, titleBytes);
+		}
+		if(authorBytes != null) {
+			buffer.put(offset + RECORD_HEADER + (titleBytes == null ? 0 : titleBytes.length), authorBytes);
+		}
+		//레코드를 다 쓴 뒤에 주소를 release => 주소를 본 읽기는 레코드 내용도 본다.
+		int slot = s.index.slotOf(id);
+		if(s.index.key(slot) == id) {
+			long old = s.index.address(slot);
+			s.index.publishAddress(slot, address);
+			if(old >= 0) {
+				liveBytes -= recordBytes(s, old);
+			} else {
+				tombstones--;
+				size++;
+			}
+		} else {
+			s.index.publishNew(slot, id, address);
+			size++;
+		}
+		liveBytes += length;
+		nextId = Math.max(nextId, id + 1);
+		if(size + tombstones > s.index.capacity * LOAD_FACTOR) {
+			rehash(size * 2 > s.index.capacity * LOAD_FACTOR ? s.index.capacity * 2 : s.index.capacity);
+		}
+	}
+	
+	//segment 끝에 안들어가면 남은 자리는 버리고 다음 segment 처음부터
+	private long allocate(int length) {
+		if(length > segmentBytes) {
+			throw new IllegalArgumentException("책 한권이 segment 보다 큽니다 : " + length);
+		}
+		if(dataEnd % segmentBytes + length > segmentBytes) {
+			dataEnd = (dataEnd / segmentBytes + 1) * segmentBytes;
+		}
+		int segment = (int) (dataEnd / segmentBytes);
+		State s = state;
+		if(segment >= s.segments.length) {
+			try {
+				MappedByteBuffer[] segments = Arrays.copyOf(s.segments, segment + 1);
+				segments[segment] = dataChannel.map(FileChannel.MapMode.READ_WRITE, segment * segmentBytes, segmentBytes);
+				s.segments = segments;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		long address = dataEnd;
+		dataEnd += length;
+		return address;
+	}
+	
+	//TOMBSTONE 을 치우고 (필요하면 크기를 늘려서) 새 색인 파일로 바꾼다. 이전 색인을 보고 있던 읽기는 그대로 끝난다.
+	private void rehash(int capacity) {
+		if(capacity > MAX_CAPACITY) {
+			throw new IllegalStateException("offheap 색인이 가득 찼습니다 : " + size);
+		}
+		try {
+			State s = state;
+			Path tmp = dir.resolve("book.idx.tmp");
+			Files.deleteIfExists(tmp);
+			Index index = Index.map(tmp, capacity);
+			for(int slot = 0; slot < s.index.capacity; slot++) {
+				long address = s.index.liveAddress(slot);
+				if(address >= 0) {
+					index.publishNew(index.slotOf(s.index.key(slot)), s.index.key(slot), address);
+				}
+			}
+			Files.move(tmp, dir.resolve("book.idx"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			state = new State(index, s.segments);
+			tombstones = 0;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	//살아있는 레코드만 새 파일로 복사하고 색인도 새로 만든다. (파일 두개를 바꾸는 사이에 죽으면 meta 가 dirty 라서 다음엔 빈 채로 뜬다)
+	private void compact() throws IOException {
+		State s = state;
+		Path dataTmp = dir.resolve("book.dat.tmp");
+		Path indexTmp = dir.resolve("book.idx.tmp");
+		Files.deleteIfExists(dataTmp);
+		Files.deleteIfExists(indexTmp);
+		FileChannel channel = FileChannel.open(dataTmp, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		Index index = Index.map(indexTmp, s.index.capacity);
+		MappedByteBuffer[] segments = { channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes) };
+		long end = 0;
+		for(int slot = 0; slot < s.index.capacity; slot++) {
+			long address = s.index.liveAddress(slot);
+			if(address < 0) {
+				continue;
+			}
+			int length = recordBytes(s, address);
+			if(end % segmentBytes + length > segmentBytes) {
+				end = (end / segmentBytes + 1) * segmentBytes;
+			}
+			int segment = (int) (end / segmentBytes);
+			if(segment >= segments.length) {
+				segments = Arrays.copyOf(segments, segment + 1);
+				segments[segment] = channel.map(FileChannel.MapMode.READ_WRITE, segment * segmentBytes, segmentBytes);
+			}
+			segments[segment].put(offset(end), segment(s, address), offset(address), length);
+			index.publishNew(index.slotOf(s.index.key(slot)), s.index.key(slot), end);
+			end += length;
+		}
+		Files.move(dataTmp, dir.resolve("book.dat"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		Files.move(indexTmp, dir.resolve("book.idx"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		state = new State(index, segments);
+		dataChannel.close();
+		dataChannel = channel;
+		log.info("offheap compact : {} -> {} bytes", dataEnd, end);
+		dataEnd = end;
+		liveBytes = end;
+		tombstones = 0;
+	}
+	
+	private void markDirty() {
+		if(clean) {
+			writeMeta(false);
+			clean = false;
+		}
+	}
+	
+	private void writeMeta(boolean clean) {
+		ByteBuffer meta = ByteBuffer.allocate(META_BYTES);
+		meta.putLong(MAGIC).putLong(clean ? 1 : 0).putLong(dataEnd).putLong(size).putLong(liveBytes)
+			.putLong(nextId).putLong(state == null ? 0 : state.index.capacity).putLong(tombstones);
+		meta.flip();
+		try {
+			while(meta.hasRemaining()) {
+				metaChannel.write(meta, meta.position());
+			}
+			metaChannel.force(false);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private Book read(State s, long address) {
+		ByteBuffer buffer = segment(s, address);
+		int offset = offset(address);
+		int titleLength = buffer.getInt(offset + 16);
+		int authorLength = buffer.getInt(offset + 20);
+		String title = string(buffer, offset + RECORD_HEADER, titleLength);
+		String author = string(buffer, offset + RECORD_HEADER + Math.max(titleLength, 0), authorLength);
+		return new Book(buffer.getLong(offset), title, author, buffer.getLong(offset + 8));
+	}
+	
+	private int recordBytes(State s, long address) {
+		ByteBuffer buffer = segment(s, address);
+		int offset = offset(address);
+		return align(RECORD_HEADER + Math.max(buffer.getInt(offset + 16), 0) + Math.max(buffer.getInt(offset + 20), 0));
+	}
+	
+	//segment 를 주소보다 먼저 publish 하므로 주소를 읽은 뒤에 s.segments 를 읽으면 있다.
+	private ByteBuffer segment(State s, long address) {
+		return s.segments[(int) (address / segmentBytes)];
+	}
+	
+	private int offset(long address) {
+		return (int) (address % segmentBytes);
+	}
+	
+	private static String string(ByteBuffer buffer, int offset, int length) {
+		if(length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(offset, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	private static boolean startsWith(ByteBuffer buffer, int offset, byte[] expected) {
+		for(int i = 0; i < expected.length; i++) {
+			if(buffer.get(offset + i) != expected[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static int align(int length) {
+		return (length + 7) & ~7;
+	}
+	
+	private static void siftUp(long[] heap, int i) {
+		while(i > 0 && heap[(i - 1) / 2] < heap[i]) {
+			swap(heap, i, (i - 1) / 2);
+			i = (i - 1) / 2;
+		}
+	}
+	
+	private static void siftDown(long[] heap, int size) {
+		int i = 0;
+		while(true) {
+			int largest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if(left < size && heap[left] > heap[largest]) {
+				largest = left;
+			}
+			if(right < size && heap[right] > heap[largest]) {
+				largest = right;
+			}
+			if(largest == i) {
+				return;
+			}
+			swap(heap, i, largest);
+			i = largest;
+		}
+	}
+	
+	private static void swap(long[] heap, int a, int b) {
+		long tmp = heap[a];
+		heap[a] = heap[b];
+		heap[b] = tmp;
+	}
+	
+	//슬롯 [id][주소]. 새 키는 주소 -> 키 순서로 release, 읽기는 키 -> 주소 순서로 acquire
+	private static final class Index {
+		private final MappedByteBuffer buffer;
+		private final int capacity;
+		private final int mask;
+		
+		private Index(MappedByteBuffer buffer, int capacity) {
+			this.buffer = buffer;
+			this.capacity = capacity;
+			this.mask = capacity - 1;
+		}
+		
+		static Index map(Path path, int capacity) throws IOException {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				return new Index(channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * SLOT_BYTES), capacity);
+			}
+		}
+		
+		//id 의 주소 (없으면 EMPTY 를 만날때까지 보고 -1, 지워졌으면 TOMBSTONE)
+		long find(long id) {
+			for(int slot = hash(id) & mask;; slot = (slot + 1) & mask) {
+				long key = key(slot);
+				if(key == EMPTY) {
+					return -1;
+				}
+				if(key == id) {
+					return address(slot);
+				}
+			}
+		}
+		
+		//id 가 있는 슬롯, 없으면 처음 만나는 빈 슬롯 (writeLock 안에서)
+		int slotOf(long id) {
+			for(int slot = hash(id) & mask;; slot = (slot + 1) & mask) {
+				long key = key(slot);
+				if(key == EMPTY || key == id) {
+					return slot;
+				}
+			}
+		}
+		
+		long key(int slot) {
+			return (long) LONGS.getAcquire(buffer, slot * SLOT_BYTES);
+		}
+		
+		long address(int slot) {
+			return (long) LONGS.getAcquire(buffer, slot * SLOT_BYTES + 8);
+		}
+		
+		long liveKey(int slot) {
+			long key = key(slot);
+			return key != EMPTY && address(slot) >= 0 ? key : EMPTY;
+		}
+		
+		long liveAddress(int slot) {
+			return key(slot) == EMPTY ? -1 : address(slot);
+		}
+		
+		void publishNew(int slot, long id, long address) {
+			LONGS.setRelease(buffer, slot * SLOT_BYTES + 8, address);
+			LONGS.setRelease(buffer, slot * SLOT_BYTES, id);
+		}
+		
+		void publishAddress(int slot, long address) {
+			LONGS.setRelease(buffer, slot * SLOT_BYTES + 8, address);
+		}
+		
+		//fmix64 (murmur3) : Snowflake 처럼 아래 비트가 고르지 않은 id 도 슬롯에 고르게
+		private static int hash(long id) {
+			long h = id;
+			h ^= h >>> 33;
+			h *= 0xff51afd7ed558ccdL;
+			h ^= h >>> 33;
+			h *= 0xc4ceb53a87c2a2b3L;
+			h ^= h >>> 33;
+			return (int) h;
+		}
+	}
+}
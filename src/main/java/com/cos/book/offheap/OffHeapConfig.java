@@ -0,0 +1,64 @@
+package com.cos.book.offheap;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.cos.book.domain.Book;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * book 읽기를 힙 밖 메모리 맵 파일에서 한다. (--spring.profiles.active=offheap, 읽기 위주 edge 노드용)
+ * 쓰기는 그대로 db 에 하고 (원본), 커밋된 변경을 저장소에 반영한다. (OffHeapWriteThrough) 저장소가 없어져도 잃는 쓰기가 없다.
+ * 조회마다 db 왕복이 없고, 깨끗하게 닫혔으면 다시 뜰때 파일을 그대로 map 해서 바로 쓴다.
+ * 스냅샷이 없으면 (처음이거나 죽었으면) db 의 book 테이블로 다시 채운다.
+ * 이 인스턴스에서 커밋한 변경만 반영하므로 다른 인스턴스가 쓰는 db 와는 같이 못쓴다.
+ * write-behind, shard 프로필과는 같이 못쓴다.
+ */
+@Slf4j
+@Profile("offheap")
+@EnableConfigurationProperties(OffHeapProperties.class)
+@Configuration
+public class OffHeapConfig {
+	
+	public OffHeapConfig(@Value("${book.write-behind.enabled:false}") boolean writeBehind) {
+		if(writeBehind) {
+			throw new IllegalStateException("offheap 프로필에서는 book.write-behind.enabled 를 쓸 수 없습니다.");
+		}
+	}
+	
+	@Bean
+	public OffHeapBookStore offHeapBookStore(OffHeapProperties properties, JdbcTemplate jdbcTemplate) throws IOException {
+		OffHeapBookStore store = new OffHeapBookStore(Path.of(properties.getDir()), properties.getSegmentBytes(),
+				properties.getInitialCapacity(), properties.getCompactRatio());
+		if(!store.isWarm()) {
+			long start = System.nanoTime();
+			jdbcTemplate.query("SELECT id, title, author, version FROM book",
+					(RowCallbackHandler) rs -> store.restore(new Book(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getObject(4, Long.class))));
+			store.snapshot();
+			log.info("offheap 저장소를 db 로 채웠습니다 : {}권, {}ms", store.size(), (System.nanoTime() - start) / 1_000_000);
+		}
+		if(properties.getSnapshotIntervalMs() > 0) {
+			store.startSnapshots(properties.getSnapshotIntervalMs());
+		}
+		return store;
+	}
+	
+	@Bean
+	public OffHeapReadAspect offHeapReadAspect(OffHeapBookStore offHeapBookStore) {
+		return new OffHeapReadAspect(offHeapBookStore);
+	}
+	
+	@Bean
+	public OffHeapWriteThrough offHeapWriteThrough(OffHeapBookStore offHeapBookStore) {
+		return new OffHeapWriteThrough(offHeapBookStore);
+	}
+}
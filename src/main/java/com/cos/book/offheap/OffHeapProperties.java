@@ -0,0 +1,16 @@
+package com.cos.book.offheap;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+//book.offheap.* (offheap 프로필)
+@Data
+@ConfigurationProperties("book.offheap")
+public class OffHeapProperties {
+	private String dir = "data/offheap"; //book.dat, book.idx, book.meta 가 생기는 곳
+	private long segmentBytes = 256L * 1024 * 1024; //book.dat 를 이만큼씩 map 한다. (2GB 이하)
+	private int initialCapacity = 1 << 16; //색인 슬롯 수 (70% 가 차면 두배로)
+	private double compactRatio = 0.5; //스냅샷 때 버려진 레코드가 이 비율을 넘으면 살아있는 것만 새 파일로
+	private long snapshotIntervalMs = 60000; //0이면 끌때만
+}
@@ -0,0 +1,118 @@
+package com.cos.book.offheap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.cos.book.domain.Book;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * BookRepository 의 읽기를 OffHeapBookStore 에서 답한다. (offheap 프로필)
+ * 트랜잭션 밖이거나 readOnly 일때만. 쓰기 트랜잭션 안의 읽기(updateAll 의 더티체킹 등)와 나머지 메소드는 db 로 간다.
+ * - findById/findAllById/existsById/findIdsByIdIn : id 색인
+ * - findByIdGreaterThanOrderByIdAsc : 색인에서 after 보다 큰 id 를 size+1 개만 골라서 (다음 페이지가 있는지)
+ * - findByAuthorAfter/findByTitlePrefixAfter : author/title 보조 색인이 없어서 페이지마다 전체를 훑는다.
+ *   O(n) + 맞는 것 m 개를 크기 size+1 heap 에 (m log size). 맞는 것만 String 으로 만든다.
+ * - findAll()/streamAll : db 와 같이 id 순서 (id 를 모아 정렬 => O(n log n), 힙에 long[n])
+ */
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@Aspect
+@RequiredArgsConstructor
+public class OffHeapReadAspect {
+	private final OffHeapBookStore store;
+	
+	@Around("this(com.cos.book.domain.BookRepository) && execution(* *(..))")
+	@SuppressWarnings("unchecked")
+	public Object read(ProceedingJoinPoint joinPoint) throws Throwable {
+		if(TransactionSynchronizationManager.isActualTransactionActive() && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return joinPoint.proceed();
+		}
+		Object[] args = joinPoint.getArgs();
+		switch(joinPoint.getSignature().getName() + "/" + args.length) {
+		case "findById/1":
+			return Optional.ofNullable(store.get((Long) args[0]));
+		case "existsById/1":
+			return store.contains((Long) args[0]);
+		case "findAllById/1": {
+			List<Book> books = new ArrayList<>();
+			for(Long id : (Iterable<Long>) args[0]) {
+				Book book = store.get(id);
+				if(book != null) {
+					books.add(book);
+				}
+			}
+			return books;
+		}
+		case "findIdsByIdIn/1":
+			return ((List<Long>) args[0]).stream().filter(store::contains).toList();
+		case "findAll/0": {
+			List<Book> books = new ArrayList<>();
+			store.forEach(books::add);
+			return books;
+		}
+		case "findByIdGreaterThanOrderByIdAsc/2":
+			return page((Long) args[0], (Pageable) args[1]);
+		case "findByAuthorAfter/4":
+			return titlePage(true, (String) args[0], (String) args[1], (Long) args[2], (Pageable) args[3]);
+		case "findByTitlePrefixAfter/4":
+			return titlePage(false, (String) args[0], (String) args[1], (Long) args[2], (Pageable) args[3]);
+		case "streamAll/2":
+			store.forEach((Consumer<Book>) args[1]);
+			return null;
+		default:
+			return joinPoint.proceed();
+		}
+	}
+	
+	private Slice<Book> page(Long after, Pageable pageable) {
+		int size = pageable.getPageSize();
+		long[] ids = store.idsAfter(after, size + 1);
+		List<Book> books = new ArrayList<>();
+		for(int i = 0; i < Math.min(ids.length, size); i++) {
+			Book book = store.get(ids[i]);
+			if(book != null) {
+				books.add(book);
+			}
+		}
+		return new SliceImpl<>(books, pageable, ids.length > size);
+	}
+	
+	//(title, id) 순으로 cursor 다음 것 중 앞의 size+1 개만 남긴다. (제목 null 이 먼저, 다음 페이지가 있는지)
+	private Slice<Book> titlePage(boolean author, String value, String afterTitle, Long afterId, Pageable pageable) {
+		Comparator<String> titles = Comparator.nullsFirst(Comparator.naturalOrder());
+		Comparator<Book> order = Comparator.comparing(Book::getTitle, titles).thenComparing(Book::getId);
+		int size = pageable.getPageSize();
+		PriorityQueue<Book> heap = new PriorityQueue<>(order.reversed()); //제일 뒤의 것이 맨 위
+		store.forEachMatching(author, value, !author, book -> {
+			int compared = afterId == null ? 1 : Objects.compare(book.getTitle(), afterTitle, titles);
+			if(compared < 0 || (compared == 0 && book.getId() <= afterId)) {
+				return;
+			}
+			if(heap.size() <= size) {
+				heap.add(book);
+			} else if(order.compare(book, heap.peek()) < 0) {
+				heap.poll();
+				heap.add(book);
+			}
+		});
+		List<Book> books = new ArrayList<>(heap);
+		books.sort(order);
+		return new SliceImpl<>(new ArrayList<>(books.subList(0, Math.min(size, books.size()))), pageable, books.size() > size);
+	}
+}
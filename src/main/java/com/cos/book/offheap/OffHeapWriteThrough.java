@@ -0,0 +1,71 @@
+package com.cos.book.offheap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.cos.book.service.BookChangedEvent;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * db 에 커밋된 변경을 OffHeapBookStore 에 반영한다. (offheap 프로필, db 가 원본이고 저장소는 읽기용 사본)
+ * 변경 이벤트를 트랜잭션마다 모아뒀다가 커밋되면 version 까지 그대로 쓴다. (롤백이면 버림)
+ * 첫 변경 때 store.beginWrite() 로 meta 를 dirty 로 해둬서, 커밋과 반영 사이에 죽으면 다음에 뜰때 db 로 다시 채운다.
+ * 트랜잭션 밖에서 발행된 것 (reactive) 은 db 에 이미 쓴 뒤라서 바로 반영한다.
+ */
+@RequiredArgsConstructor
+public class OffHeapWriteThrough {
+	private final OffHeapBookStore store;
+	
+	@EventListener
+	public void onChanged(BookChangedEvent event) {
+		if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+			store.beginWrite();
+			try {
+				apply(event);
+			} finally {
+				store.endWrite();
+			}
+			return;
+		}
+		pending().add(event);
+	}
+	
+	//트랜잭션마다 하나
+	@SuppressWarnings("unchecked")
+	private List<BookChangedEvent> pending() {
+		List<BookChangedEvent> pending = (List<BookChangedEvent>) TransactionSynchronizationManager.getResource(this);
+		if(pending == null) {
+			List<BookChangedEvent> created = new ArrayList<>();
+			store.beginWrite();
+			TransactionSynchronizationManager.bindResource(this, created);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(OffHeapWriteThrough.this);
+					try {
+						if(status == STATUS_COMMITTED) {
+							created.forEach(OffHeapWriteThrough.this::apply);
+						}
+					} finally {
+						store.endWrite();
+					}
+				}
+			});
+			pending = created;
+		}
+		return pending;
+	}
+	
+	private void apply(BookChangedEvent event) {
+		if(event.isDeleted()) {
+			store.remove(event.getId());
+		} else {
+			store.restore(event.getBook());
+		}
+	}
+}
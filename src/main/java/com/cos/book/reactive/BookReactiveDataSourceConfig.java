@@ -0,0 +1,26 @@
+package com.cos.book.reactive;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+//R2DBC ConnectionFactory가 있으면 스프링부트가 DataSource를 안만든다.
+//reactive 프로필에서도 JPA(테이블 생성, 검색 색인, 나머지 API)는 그대로 쓰기 때문에 직접 등록한다.
+@Profile("reactive")
+@EnableConfigurationProperties(DataSourceProperties.class)
+@Configuration
+public class BookReactiveDataSourceConfig {
+	
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	public DataSource dataSource(DataSourceProperties properties) {
+		return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+	}
+}
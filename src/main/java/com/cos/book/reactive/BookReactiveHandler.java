@@ -0,0 +1,107 @@
+package com.cos.book.reactive;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.cos.book.domain.Book;
+import com.cos.book.service.BookService;
+import com.cos.book.web.BookController;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+//BookController와 같은 /book API를 논블로킹으로 처리 (응답 모양도 같다)
+@Profile("reactive")
+@RequiredArgsConstructor
+@Component
+public class BookReactiveHandler {
+	
+	private final BookReactiveRepository bookReactiveRepository;
+	
+	public Mono<ServerResponse> save(ServerRequest request) {
+		return request.bodyToMono(Book.class)
+				.flatMap(bookReactiveRepository::insert)
+				.flatMap(bookEntity -> ServerResponse.status(HttpStatus.CREATED).bodyValue(bookEntity));
+	}
+	
+	public Mono<ServerResponse> findAll(ServerRequest request) {
+		long after;
+		int limit;
+		try {
+			after = request.queryParam("after").map(Long::parseLong).orElse(0L);
+			limit = request.queryParam("limit").map(Integer::parseInt).orElse(BookService.DEFAULT_PAGE_SIZE);
+		} catch (NumberFormatException e) {
+			return badRequest("after, limit 은 숫자입니다.");
+		}
+		int size = Math.min(Math.max(limit, 1), BookService.MAX_PAGE_SIZE);
+		//한 건 더 읽어서 다음 페이지가 있는지 본다. (count 쿼리 없음)
+		return bookReactiveRepository.findPage(after, size + 1)
+				.collectList()
+				.flatMap(books -> {
+					List<Book> content = books.size() > size ? books.subList(0, size) : books;
+					ServerResponse.BodyBuilder builder = ServerResponse.ok().contentType(MediaType.APPLICATION_JSON);
+					if(books.size() > size) {
+						builder.header(BookController.NEXT_AFTER_HEADER, String.valueOf(content.get(size - 1).getId()));
+					}
+					return builder.bodyValue(content);
+				});
+	}
+	
+	//없는 id는 404
+	public Mono<ServerResponse> findById(ServerRequest request) {
+		Long id = id(request);
+		if(id == null) {
+			return badRequest("id를 확인해주세요");
+		}
+		return bookReactiveRepository.findById(id)
+				.flatMap(bookEntity -> ServerResponse.ok().bodyValue(bookEntity))
+				.switchIfEmpty(ServerResponse.notFound().build());
+	}
+	
+	public Mono<ServerResponse> update(ServerRequest request) {
+		Long id = id(request);
+		if(id == null) {
+			return badRequest("id를 확인해주세요");
+		}
+		return request.bodyToMono(Book.class)
+				.flatMap(book -> bookReactiveRepository.update(id, book))
+				.flatMap(bookEntity -> ServerResponse.ok().bodyValue(bookEntity))
+				.switchIfEmpty(ServerResponse.notFound().build())
+				.onErrorResume(OptimisticLockingFailureException.class, BookReactiveHandler::conflict);
+	}
+	
+	public Mono<ServerResponse> deleteById(ServerRequest request) {
+		Long id = id(request);
+		if(id == null) {
+			return badRequest("id를 확인해주세요");
+		}
+		return bookReactiveRepository.deleteById(id)
+				.then(ServerResponse.ok().contentType(MediaType.TEXT_PLAIN).bodyValue("ok"))
+				.onErrorResume(OptimisticLockingFailureException.class, BookReactiveHandler::conflict);
+	}
+	
+	//라우터가 숫자만 받지만 long 범위를 넘을 수 있다.
+	private static Long id(ServerRequest request) {
+		try {
+			return Long.valueOf(request.pathVariable("id"));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+	
+	//같은 책에 동시 쓰기가 몰려서 다시 읽고 쓰기를 여러번 해도 못함 (If-Match 가 없어서 412 가 아니라 409)
+	private static Mono<ServerResponse> conflict(OptimisticLockingFailureException e) {
+		return ServerResponse.status(HttpStatus.CONFLICT).contentType(MediaType.TEXT_PLAIN).bodyValue(e.getMessage());
+	}
+	
+	private static Mono<ServerResponse> badRequest(String message) {
+		return ServerResponse.badRequest().contentType(MediaType.TEXT_PLAIN).bodyValue(message);
+	}
+}
@@ -0,0 +1,117 @@
+package com.cos.book.reactive;
+
+import java.time.Duration;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Repository;
+
+import com.cos.book.domain.Book;
+import com.cos.book.service.BookChangedEvent;
+
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+//R2DBC로 book 테이블을 직접 다룬다. (JPA 엔티티를 R2DBC 매핑에 쓰지 않으려고 SQL로 작성)
+@Profile("reactive")
+@RequiredArgsConstructor
+@Repository
+public class BookReactiveRepository {
+	private static final String COLUMNS = "SELECT id, title, author, version FROM book";
+	private static final int MAX_CONFLICT_RETRIES = 5;
+	private static final Duration CONFLICT_BACKOFF = Duration.ofMillis(5);
+	
+	private final DatabaseClient databaseClient;
+	private final ApplicationEventPublisher eventPublisher; //검색 색인 갱신
+	
+	public Mono<Book> findById(Long id) {
+		return databaseClient.sql(COLUMNS + " WHERE id = :id")
+				.bind("id", id)
+				.map(BookReactiveRepository::toBook)
+				.one();
+	}
+	
+	//키셋 페이징
+	public Flux<Book> findPage(long after, int limit) {
+		return databaseClient.sql(COLUMNS + " WHERE id > :after ORDER BY id LIMIT :limit")
+				.bind("after", after)
+				.bind("limit", limit)
+				.map(BookReactiveRepository::toBook)
+				.all();
+	}
+	
+	//JPA의 pooled 시퀀스와 겹치지 않게 시퀀스 값 하나(=블록 하나)를 받아서 그 값을 id로 쓴다.
+	public Mono<Book> insert(Book book) {
+		return databaseClient.sql("SELECT NEXT VALUE FOR book_seq")
+				.map(row -> row.get(0, Long.class))
+				.one()
+				.flatMap(id -> bindBook(databaseClient.sql("INSERT INTO book (id, title, author, version) VALUES (:id, :title, :author, 0)"), id, book)
+						.fetch()
+						.rowsUpdated()
+						.thenReturn(new Book(id, book.getTitle(), book.getAuthor(), 0L)))
+				.flatMap(bookEntity -> publish(bookEntity, BookChangedEvent.saved(bookEntity)));
+	}
+	
+	//트랜잭션이 없어서 읽은 값(이벤트의 previous)의 version 이 그대로일때만 update. 없는 id면 empty
+	//그 사이에 바뀌었으면 다시 읽는다. (backoff 로 MAX_CONFLICT_RETRIES 번까지, 그래도 안되면 OptimisticLockingFailureException)
+	public Mono<Book> update(Long id, Book book) {
+		return findById(id)
+				.flatMap(previous -> bindBook(databaseClient.sql("UPDATE book SET title = :title, author = :author, version = version + 1 WHERE id = :id AND version = :version"), id, book)
+						.bind("version", previous.getVersion())
+						.fetch()
+						.rowsUpdated()
+						.flatMap(count -> count > 0
+								? Mono.just(new Book(id, book.getTitle(), book.getAuthor(), previous.getVersion() + 1))
+										.flatMap(bookEntity -> publish(bookEntity, BookChangedEvent.saved(bookEntity, previous)))
+								: Mono.error(conflict(id))))
+				.retryWhen(retryOnConflict());
+	}
+	
+	//update 와 같이 읽은 version 일때만 지운다. 없는 id면 0
+	public Mono<Long> deleteById(Long id) {
+		return findById(id)
+				.flatMap(previous -> databaseClient.sql("DELETE FROM book WHERE id = :id AND version = :version")
+						.bind("id", id)
+						.bind("version", previous.getVersion())
+						.fetch()
+						.rowsUpdated()
+						.flatMap(count -> count > 0 ? publish(count, BookChangedEvent.deleted(previous)) : Mono.<Long>error(conflict(id))))
+				.retryWhen(retryOnConflict())
+				.defaultIfEmpty(0L);
+	}
+	
+	//한 행에 쓰기가 몰려도 무한히 돌지 않게
+	private static Retry retryOnConflict() {
+		return Retry.backoff(MAX_CONFLICT_RETRIES, CONFLICT_BACKOFF)
+				.filter(OptimisticLockingFailureException.class::isInstance)
+				.onRetryExhaustedThrow((spec, signal) -> signal.failure());
+	}
+	
+	private static OptimisticLockingFailureException conflict(Long id) {
+		return new OptimisticLockingFailureException("다른 요청이 먼저 수정했습니다. 다시 시도해주세요. id=" + id);
+	}
+	
+	//리스너(검색 색인, 통계 등)가 락을 잡거나 블로킹할 수 있어서 이벤트 루프가 아닌 boundedElastic 에서 발행한다.
+	private <T> Mono<T> publish(T result, BookChangedEvent event) {
+		return Mono.fromRunnable(() -> eventPublisher.publishEvent(event))
+				.subscribeOn(Schedulers.boundedElastic())
+				.thenReturn(result);
+	}
+	
+	private static GenericExecuteSpec bindBook(GenericExecuteSpec spec, Long id, Book book) {
+		spec = spec.bind("id", id);
+		spec = book.getTitle() == null ? spec.bindNull("title", String.class) : spec.bind("title", book.getTitle());
+		return book.getAuthor() == null ? spec.bindNull("author", String.class) : spec.bind("author", book.getAuthor());
+	}
+	
+	private static Book toBook(Readable row) {
+		return new Book(row.get("id", Long.class), row.get("title", String.class), row.get("author", String.class), row.get("version", Long.class));
+	}
+}
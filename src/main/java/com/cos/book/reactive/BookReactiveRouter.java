@@ -0,0 +1,42 @@
+package com.cos.book.reactive;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.DELETE;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RequestPredicates.PUT;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.cors.reactive.CorsWebFilter;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.cos.book.config.CorsConfig;
+import com.cos.book.config.CorsProperties;
+
+//reactive 프로필의 /book 라우팅. RouterFunction이 @RestController 매핑보다 먼저 매칭된다.
+//id는 숫자만 받아서 /book/search 같은 나머지 경로는 기존 컨트롤러로 넘어간다.
+@Profile("reactive")
+@Configuration
+public class BookReactiveRouter {
+	
+	@Bean
+	public RouterFunction<ServerResponse> bookRoutes(BookReactiveHandler handler) {
+		return RouterFunctions.route(POST("/book"), handler::save)
+				.andRoute(GET("/book"), handler::findAll)
+				.andRoute(GET("/book/{id:[0-9]+}"), handler::findById)
+				.andRoute(PUT("/book/{id:[0-9]+}"), handler::update)
+				.andRoute(DELETE("/book/{id:[0-9]+}"), handler::deleteById);
+	}
+	
+	//톰켓 쪽과 같은 CORS 설정 (CorsConfig, book.cors.*)
+	@Bean
+	public CorsWebFilter corsWebFilter(CorsProperties corsProperties) {
+		UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+		source.registerCorsConfiguration("/book/**", CorsConfig.corsConfiguration(corsProperties));
+		return new CorsWebFilter(source);
+	}
+}
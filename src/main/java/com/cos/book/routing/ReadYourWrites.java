@@ -0,0 +1,41 @@
+package com.cos.book.routing;
+
+import java.time.Duration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * 클라이언트별 마지막 쓰기 시각 (sticky-ms 지나면 자동으로 사라짐)
+ * 요청 스레드의 클라이언트는 ReadYourWritesFilter가 넣어준다. 요청 밖(스케줄러 등)은 null => sticky 아님
+ */
+public class ReadYourWrites {
+	private static final ThreadLocal<String> CLIENT = new ThreadLocal<>();
+	
+	private final Cache<String, Boolean> recentWriters;
+	
+	public ReadYourWrites(long stickyMs) {
+		this.recentWriters = Caffeine.newBuilder()
+				.expireAfterWrite(Duration.ofMillis(stickyMs))
+				.maximumSize(1_000_000)
+				.build();
+	}
+	
+	static void setClient(String client) {
+		CLIENT.set(client);
+	}
+	
+	static void clearClient() {
+		CLIENT.remove();
+	}
+	
+	void wrote(String client) {
+		recentWriters.put(client, Boolean.TRUE);
+	}
+	
+	//지금 요청한 클라이언트가 방금 썼나
+	boolean isSticky() {
+		String client = CLIENT.get();
+		return client != null && recentWriters.getIfPresent(client) != null;
+	}
+}
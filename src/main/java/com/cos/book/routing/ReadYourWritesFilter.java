@@ -0,0 +1,45 @@
+package com.cos.book.routing;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+//POST/PUT/PATCH/DELETE 를 보낸 클라이언트는 sticky-ms 동안 읽기도 primary로 간다.
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+	private final ReadYourWrites readYourWrites;
+	private final String clientHeader;
+	
+	public ReadYourWritesFilter(ReadYourWrites readYourWrites, String clientHeader) {
+		this.readYourWrites = readYourWrites;
+		this.clientHeader = clientHeader;
+	}
+	
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		String client = request.getHeader(clientHeader);
+		if(client == null) {
+			client = request.getRemoteAddr();
+		}
+		boolean write = !HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())
+				&& !HttpMethod.OPTIONS.matches(request.getMethod());
+		if(write) {
+			readYourWrites.wrote(client); //커밋 전부터 => 응답 직후 읽기도 primary
+		}
+		ReadYourWrites.setClient(client);
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			ReadYourWrites.clearClient();
+			if(write) {
+				readYourWrites.wrote(client); //sticky 시간은 쓰기가 끝난 시점부터
+			}
+		}
+	}
+}
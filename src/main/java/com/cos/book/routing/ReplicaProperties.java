@@ -0,0 +1,29 @@
+package com.cos.book.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+//book.replica.* (replica 프로필)
+@Data
+@ConfigurationProperties("book.replica")
+public class ReplicaProperties {
+	private List<Replica> replicas = new ArrayList<>();
+	private long stickyMs = 2000; //쓰기 후 이 시간 동안은 같은 클라이언트의 읽기를 primary로 (복제 지연 동안 자기가 쓴게 안보이는 문제)
+	private String clientHeader = "X-Client-Id"; //없으면 IP로 클라이언트 구분
+	private long healthCheckMs = 1000;
+	private long maxLagMs = 1000; //지연이 이보다 크면 빼고, 다시 따라잡으면 넣는다.
+	private String lagQuery; //지연(초)을 돌려주는 쿼리. 예) MariaDB : SHOW REPLICA STATUS (Seconds_Behind_Master 컬럼)
+	
+	@Data
+	public static class Replica {
+		private String url;
+		private String username;
+		private String password;
+		private int maximumPoolSize = 10;
+		private long connectionTimeoutMs = 1000; //죽은 replica에서 오래 기다리지 않게 짧게
+	}
+}
@@ -0,0 +1,73 @@
+package com.cos.book.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * primary(spring.datasource) + replica(book.replica.replicas) 라우팅 (--spring.profiles.active=replica)
+ * LazyConnectionDataSourceProxy : 첫 SQL을 실행할때 커넥션을 얻는다. => 그때는 트랜잭션의 readOnly가 정해져 있어서 라우팅이 된다.
+ */
+@Profile("replica")
+@EnableConfigurationProperties({ DataSourceProperties.class, ReplicaProperties.class })
+@Configuration
+public class ReplicaRoutingConfig {
+	
+	@Bean
+	public ReadYourWrites readYourWrites(ReplicaProperties properties) {
+		return new ReadYourWrites(properties.getStickyMs());
+	}
+	
+	@Bean
+	public DataSource dataSource(DataSourceProperties dataSourceProperties, ReplicaProperties properties,
+			ReadYourWrites readYourWrites, ObjectProvider<MeterRegistry> meterRegistry) {
+		HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		primary.setPoolName(ReplicaRoutingDataSource.PRIMARY);
+		meterRegistry.ifAvailable(primary::setMetricRegistry);
+		List<DataSource> replicas = new ArrayList<>();
+		for(ReplicaProperties.Replica replica : properties.getReplicas()) {
+			HikariDataSource pool = new HikariDataSource();
+			pool.setPoolName("replica-" + replicas.size());
+			pool.setJdbcUrl(replica.getUrl());
+			pool.setUsername(replica.getUsername());
+			pool.setPassword(replica.getPassword());
+			pool.setMaximumPoolSize(replica.getMaximumPoolSize());
+			pool.setConnectionTimeout(replica.getConnectionTimeoutMs());
+			pool.setInitializationFailTimeout(-1); //replica가 죽어있어도 서버는 뜬다. (헬스체크가 뺌)
+			pool.setReadOnly(true);
+			meterRegistry.ifAvailable(pool::setMetricRegistry);
+			replicas.add(pool);
+		}
+		return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replicas, readYourWrites, properties));
+	}
+	
+	//종료시 헬스체크 스레드 정리
+	@Bean
+	public DisposableBean replicaHealthCheckShutdown(DataSource dataSource) throws Exception {
+		ReplicaRoutingDataSource routing = dataSource.unwrap(ReplicaRoutingDataSource.class);
+		return routing::close;
+	}
+	
+	@Bean
+	public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(ReadYourWrites readYourWrites, ReplicaProperties properties) {
+		FilterRegistrationBean<ReadYourWritesFilter> registration = new FilterRegistrationBean<>(new ReadYourWritesFilter(readYourWrites, properties.getClientHeader()));
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+		return registration;
+	}
+}
@@ -0,0 +1,181 @@
+package com.cos.book.routing;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true))은 replica, 나머지는 primary
+ * - replica는 round-robin, 헬스체크(연결 + 복제 지연)에 실패한 replica는 빼고 돌린다. 다 빠지면 primary
+ * - 커넥션을 얻다가 실패하면 그 replica를 바로 빼고 primary로
+ * - 방금 쓴 클라이언트는 (ReadYourWrites) primary
+ * 트랜잭션 시작 시점에는 readOnly 여부가 아직 안정해져서 LazyConnectionDataSourceProxy로 감싸서 쓴다. (ReplicaRoutingConfig)
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+	public static final String PRIMARY = "primary";
+	
+	private final DataSource primary;
+	private final List<DataSource> replicas;
+	private final String[] replicaKeys;
+	private final AtomicIntegerArray healthy; //1 = 사용
+	private final AtomicInteger next = new AtomicInteger();
+	private final ReadYourWrites readYourWrites;
+	private final long maxLagMs;
+	private final String lagQuery;
+	private final ScheduledExecutorService healthChecker;
+	
+	public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, ReadYourWrites readYourWrites, ReplicaProperties properties) {
+		this.primary = primary;
+		this.replicas = replicas;
+		this.readYourWrites = readYourWrites;
+		this.maxLagMs = properties.getMaxLagMs();
+		this.lagQuery = properties.getLagQuery();
+		this.replicaKeys = new String[replicas.size()];
+		this.healthy = new AtomicIntegerArray(replicas.size());
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(PRIMARY, primary);
+		for(int i = 0; i < replicas.size(); i++) {
+			replicaKeys[i] = "replica-" + i;
+			targets.put(replicaKeys[i], replicas.get(i));
+		}
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+		afterPropertiesSet();
+		
+		checkHealth(); //처음 한번은 바로 (죽은 replica로 첫 요청이 가지 않게)
+		healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "book-replica-health");
+			thread.setDaemon(true);
+			return thread;
+		});
+		healthChecker.scheduleWithFixedDelay(this::checkHealth, properties.getHealthCheckMs(), properties.getHealthCheckMs(), TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if(!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || readYourWrites.isSticky()) {
+			return PRIMARY;
+		}
+		int index = nextHealthyReplica();
+		return index < 0 ? PRIMARY : replicaKeys[index];
+	}
+	
+	@Override
+	public Connection getConnection() throws SQLException {
+		Object key = determineCurrentLookupKey();
+		if(PRIMARY.equals(key)) {
+			return primary.getConnection();
+		}
+		int index = indexOf(key);
+		try {
+			return replicas.get(index).getConnection();
+		} catch (SQLException e) {
+			if(healthy.compareAndSet(index, 1, 0)) {
+				log.warn("{} 연결 실패, 헬스체크가 통과할때까지 뺍니다 : {}", key, e.getMessage());
+			}
+			return primary.getConnection();
+		}
+	}
+	
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return primary.getConnection(username, password);
+	}
+	
+	boolean isHealthy(int index) {
+		return healthy.get(index) == 1;
+	}
+	
+	private int nextHealthyReplica() {
+		int size = replicaKeys.length;
+		int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+		for(int i = 0; i < size; i++) {
+			int index = (start + i) % size;
+			if(healthy.get(index) == 1) {
+				return index;
+			}
+		}
+		return -1;
+	}
+	
+	private int indexOf(Object key) {
+		for(int i = 0; i < replicaKeys.length; i++) {
+			if(replicaKeys[i].equals(key)) {
+				return i;
+			}
+		}
+		throw new IllegalStateException("replica 없음 : " + key);
+	}
+	
+	void checkHealth() {
+		for(int i = 0; i < replicas.size(); i++) {
+			boolean ok = check(replicas.get(i), replicaKeys[i]);
+			int before = healthy.getAndSet(i, ok ? 1 : 0);
+			if(before != (ok ? 1 : 0)) {
+				log.info("{} {}", replicaKeys[i], ok ? "사용" : "제외");
+			}
+		}
+	}
+	
+	private boolean check(DataSource replica, String key) {
+		try(Connection connection = replica.getConnection()) {
+			if(!connection.isValid(1)) {
+				return false;
+			}
+			if(lagQuery == null || lagQuery.isBlank()) {
+				return true;
+			}
+			try(Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(lagQuery)) {
+				if(!rs.next()) {
+					return false; //복제 설정이 없음
+				}
+				int column;
+				try {
+					column = rs.findColumn("Seconds_Behind_Master");
+				} catch (SQLException e) {
+					column = 1;
+				}
+				long lagSeconds = rs.getLong(column);
+				return !rs.wasNull() && lagSeconds * 1000 <= maxLagMs; //null = 복제가 멈춤
+			}
+		} catch (SQLException e) {
+			log.debug("{} 헬스체크 실패 : {}", key, e.getMessage());
+			return false;
+		}
+	}
+	
+	public void close() {
+		healthChecker.shutdownNow();
+		for(DataSource dataSource : replicas) {
+			closeQuietly(dataSource);
+		}
+		closeQuietly(primary);
+	}
+	
+	private static void closeQuietly(DataSource dataSource) {
+		if(dataSource instanceof AutoCloseable closeable) {
+			try {
+				closeable.close();
+			} catch (Exception e) {
+				log.debug("풀 종료 실패", e);
+			}
+		}
+	}
+}
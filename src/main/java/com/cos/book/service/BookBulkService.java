@@ -0,0 +1,123 @@
+package com.cos.book.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.cos.book.domain.Book;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+
+//벌크 insert/update/delete : 요청을 chunkSize 단위로 잘라서 chunk 하나를 트랜잭션 하나로 처리한다.
+//chunk가 실패하면 그 chunk만 롤백되고 나머지는 계속 진행.
+//본문을 읽다가 실패한 항목도 failed 로 남기고, 그 앞까지 읽은 chunk 는 처리한다. (500 으로 끝나면 어디까지 들어갔는지 알 수 없음)
+@Service
+public class BookBulkService {
+	private final BookService bookService;
+	private final int chunkSize;
+	
+	public BookBulkService(BookService bookService, @Value("${book.bulk.chunk-size:1000}") int chunkSize) {
+		this.bookService = bookService;
+		this.chunkSize = chunkSize;
+	}
+	
+	public BulkResult saveAll(Iterator<Book> books) {
+		return run(books, book -> null, (chunk, items) -> { //롤백되면 insert 때 받은 id 는 없는 id 라서 돌려주지 않는다.
+			chunk.forEach(book -> book.setId(null)); //항상 insert
+			List<Book> bookEntities = bookService.saveAll(chunk);
+			for(Book bookEntity : bookEntities) {
+				items.add(new BulkResult.Item(0, bookEntity.getId(), BulkResult.CREATED, null));
+			}
+		});
+	}
+	
+	public BulkResult updateAll(Iterator<Book> books) {
+		return run(books, Book::getId, (chunk, items) -> {
+			Set<Long> updatedIds = bookService.updateAll(chunk).stream().map(Book::getId).collect(Collectors.toSet());
+			for(Book book : chunk) {
+				String status = updatedIds.contains(book.getId()) ? BulkResult.UPDATED : BulkResult.NOT_FOUND;
+				items.add(new BulkResult.Item(0, book.getId(), status, null));
+			}
+		});
+	}
+	
+	public BulkResult deleteAll(Iterator<Long> ids) {
+		return run(ids, Function.identity(), (chunk, items) -> {
+			Set<Long> deletedIds = new HashSet<>(bookService.deleteAll(chunk));
+			for(Long id : chunk) {
+				String status = deletedIds.contains(id) ? BulkResult.DELETED : BulkResult.NOT_FOUND;
+				items.add(new BulkResult.Item(0, id, status, null));
+			}
+		});
+	}
+	
+	//handler는 chunk 순서대로 건별 결과를 items에 채운다. idOf 는 chunk 가 실패했을때 돌려줄 요청의 id
+	private <T> BulkResult run(Iterator<T> source, Function<T, Long> idOf, BiConsumer<List<T>, List<BulkResult.Item>> handler) {
+		long start = System.nanoTime();
+		BulkResult result = new BulkResult();
+		List<T> chunk = new ArrayList<>(chunkSize);
+		while(true) {
+			T next;
+			try {
+				if(!source.hasNext()) {
+					break;
+				}
+				next = source.next();
+			} catch (RuntimeException e) { //JSON 문법/타입 오류 (MappingIterator)
+				flush(result, chunk, idOf, handler);
+				chunk = new ArrayList<>(chunkSize);
+				add(result, new BulkResult.Item(0, null, BulkResult.FAILED, "읽을 수 없는 항목입니다. : " + e.getMessage()));
+				if(e.getCause() instanceof JsonProcessingException && !(e.getCause() instanceof JsonMappingException)) {
+					break; //문법 오류 : 다음 항목이 어디서 시작하는지 알 수 없어서 나머지는 읽지 않는다.
+				}
+				continue; //타입 오류 : 그 항목만 건너뛰고 다음 항목부터
+			}
+			chunk.add(next);
+			if(chunk.size() == chunkSize) {
+				flush(result, chunk, idOf, handler);
+				chunk = new ArrayList<>(chunkSize);
+			}
+		}
+		flush(result, chunk, idOf, handler);
+		long elapsedNanos = System.nanoTime() - start;
+		result.setElapsedMs(elapsedNanos / 1_000_000);
+		result.setItemsPerSecond(elapsedNanos == 0 ? 0 : result.getTotal() * 1_000_000_000.0 / elapsedNanos);
+		return result;
+	}
+	
+	private <T> void flush(BulkResult result, List<T> chunk, Function<T, Long> idOf, BiConsumer<List<T>, List<BulkResult.Item>> handler) {
+		if(chunk.isEmpty()) {
+			return;
+		}
+		List<Long> ids = chunk.stream().map(idOf).collect(Collectors.toList()); //handler 가 요청 객체의 id 를 바꿀 수 있어서 미리
+		List<BulkResult.Item> items = new ArrayList<>(chunk.size());
+		try {
+			handler.accept(chunk, items);
+		} catch (RuntimeException e) {
+			items.clear();
+			for(Long id : ids) {
+				items.add(new BulkResult.Item(0, id, BulkResult.FAILED, e.getMessage()));
+			}
+		}
+		items.forEach(item -> add(result, item));
+	}
+	
+	private static void add(BulkResult result, BulkResult.Item item) {
+		item.setIndex(result.getTotal());
+		result.setTotal(result.getTotal() + 1);
+		if(BulkResult.FAILED.equals(item.getStatus()) || BulkResult.NOT_FOUND.equals(item.getStatus())) {
+			result.setFailed(result.getFailed() + 1);
+		} else {
+			result.setSucceeded(result.getSucceeded() + 1);
+		}
+		result.getItems().add(item);
+	}
+}
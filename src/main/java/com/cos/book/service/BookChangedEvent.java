@@ -0,0 +1,35 @@
+package com.cos.book.service;
+
+import com.cos.book.domain.Book;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//BookService에서 저장/수정/삭제가 일어나면 발행된다. (트랜잭션 커밋 후에 받으려면 @TransactionalEventListener)
+//previous 는 바뀌기 전 값 => 통계는 previous 를 빼고 book 을 더한다. (책마다 기억하지 않음)
+//쓰기 경로에 select 를 더하지 않으려고 이미 손에 있을때만 채운다. (수정인데 null 이면 모름 => 통계는 reconcile 때 맞춤)
+@AllArgsConstructor
+@Getter
+public class BookChangedEvent {
+	private final Long id;
+	private final Book book; //삭제면 null
+	private final Book previous; //새로 만든 것이거나 모르면 null
+	private final boolean created;
+	
+	//새로 만든 것
+	public static BookChangedEvent saved(Book book) {
+		return new BookChangedEvent(book.getId(), book, null, true);
+	}
+	
+	public static BookChangedEvent saved(Book book, Book previous) {
+		return new BookChangedEvent(book.getId(), book, previous, false);
+	}
+	
+	public static BookChangedEvent deleted(Book previous) {
+		return new BookChangedEvent(previous.getId(), null, previous, false);
+	}
+	
+	public boolean isDeleted() {
+		return book == null;
+	}
+}
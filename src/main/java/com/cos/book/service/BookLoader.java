@@ -0,0 +1,202 @@
+package com.cos.book.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.cos.book.domain.Book;
+import com.cos.book.domain.BookRepository;
+import com.cos.book.domain.BookShardContext;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * getOne 용 id 조회 (캐시 miss 일때)
+ * - single-flight : 같은 id를 동시에 찾으면 db 조회 하나를 같이 기다린다.
+ * - micro-batching : batch-window-us 안에 들어온 다른 id들은 where id in (...) 한번으로
+ * 창을 연 첫 요청(리더)이 그 시간만큼 기다렸다가 자기 스레드에서 조회하고 나머지에게 결과를 넘긴다. (별도 스레드 없음)
+ * 리더 말고 조회 중인 요청이 없으면 (혼자면) 기다리지 않고 바로 조회한다.
+ * 나머지 요청은 커넥션을 잡지 않고 기다리기만 한다. shard 프로필이면 shard 별로 따로 모은다.
+ */
+@Component
+public class BookLoader {
+	private static final Integer NO_SHARD = -1;
+	
+	private record Key(Integer shard, Long id) {
+	}
+	
+	//한 창에 모인 조회들
+	private static class Batch {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Thread leader = Thread.currentThread();
+		private final Map<Long, CompletableFuture<Optional<Book>>> futures = new HashMap<>();
+		private boolean closed;
+		
+		//닫혔거나 가득 찼으면 false
+		boolean add(Long id, CompletableFuture<Optional<Book>> future, int maxBatch) {
+			lock.lock();
+			try {
+				if(closed || futures.size() >= maxBatch) {
+					return false;
+				}
+				futures.put(id, future);
+				if(futures.size() >= maxBatch) {
+					LockSupport.unpark(leader); //가득 참 => 리더가 바로 조회
+				}
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		Map<Long, CompletableFuture<Optional<Book>>> close() {
+			lock.lock();
+			try {
+				closed = true;
+				return futures;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+	
+	private final BookRepository bookRepository;
+	private final boolean enabled;
+	private final long windowNanos;
+	private final int maxBatch;
+	private final ConcurrentHashMap<Key, CompletableFuture<Optional<Book>>> inFlight = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Integer, Batch> open = new ConcurrentHashMap<>();
+	private final AtomicInteger active = new AtomicInteger(); //지금 findById 안에 있는 요청 수 (합쳐진 요청 포함)
+	
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder batchedIds = new LongAdder();
+	
+	public BookLoader(BookRepository bookRepository, ObjectProvider<MeterRegistry> meterRegistry,
+			@Value("${book.loader.enabled:true}") boolean enabled,
+			@Value("${book.loader.batch-window-us:200}") long batchWindowMicros,
+			@Value("${book.loader.max-batch:100}") int maxBatch) {
+		this.bookRepository = bookRepository;
+		this.enabled = enabled;
+		this.windowNanos = TimeUnit.MICROSECONDS.toNanos(batchWindowMicros);
+		this.maxBatch = maxBatch;
+		meterRegistry.ifAvailable(registry -> {
+			FunctionCounter.builder("book.loader.requests", requests, LongAdder::sum).description("getOne db 조회 요청").register(registry);
+			FunctionCounter.builder("book.loader.coalesced", coalesced, LongAdder::sum).description("진행 중인 같은 id 조회에 합쳐진 요청").register(registry);
+			FunctionCounter.builder("book.loader.batches", batches, LongAdder::sum).description("실제로 나간 where id in 조회").register(registry);
+			FunctionCounter.builder("book.loader.batched.ids", batchedIds, LongAdder::sum).description("배치 조회로 찾은 id 수").register(registry);
+		});
+	}
+	
+	public Optional<Book> findById(Long id) {
+		requests.increment();
+		if(!enabled) {
+			batches.increment();
+			batchedIds.increment();
+			return bookRepository.findById(id);
+		}
+		Integer shard = BookShardContext.current() == null ? NO_SHARD : BookShardContext.current();
+		Key key = new Key(shard, id);
+		CompletableFuture<Optional<Book>> future = new CompletableFuture<>();
+		active.incrementAndGet();
+		try {
+			CompletableFuture<Optional<Book>> running = inFlight.putIfAbsent(key, future);
+			if(running != null) {
+				coalesced.increment();
+				return join(running);
+			}
+			try {
+				while(true) {
+					Batch batch = open.get(shard);
+					if(batch != null && batch.add(id, future, maxBatch)) {
+						break; //다른 리더가 조회해준다.
+					}
+					Batch mine = new Batch();
+					mine.add(id, future, maxBatch);
+					if(batch == null ? open.putIfAbsent(shard, mine) == null : open.replace(shard, batch, mine)) {
+						lead(shard, mine);
+						break;
+					}
+				}
+				return join(future);
+			} finally {
+				inFlight.remove(key, future);
+			}
+		} finally {
+			active.decrementAndGet();
+		}
+	}
+	
+	public Map<String, Long> stats() {
+		Map<String, Long> stats = new HashMap<>();
+		stats.put("requests", requests.sum());
+		stats.put("coalesced", coalesced.sum());
+		stats.put("batches", batches.sum());
+		stats.put("batchedIds", batchedIds.sum());
+		return stats;
+	}
+	
+	//다른 요청이 없으면 창을 기다리지 않는다. (혼자일때 batch-window-us 만큼 지연이 늘지 않게)
+	private void lead(Integer shard, Batch batch) {
+		if(active.get() > 1) {
+			long deadline = System.nanoTime() + windowNanos;
+			long remaining;
+			while((remaining = deadline - System.nanoTime()) > 0 && !isFull(batch)) {
+				LockSupport.parkNanos(this, remaining);
+			}
+		}
+		open.remove(shard, batch);
+		Map<Long, CompletableFuture<Optional<Book>>> futures = batch.close();
+		try {
+			List<Long> ids = new ArrayList<>(futures.keySet());
+			Map<Long, Book> found = new HashMap<>();
+			for(Book book : bookRepository.findAllById(ids)) {
+				found.put(book.getId(), book);
+			}
+			batches.increment();
+			batchedIds.add(ids.size());
+			futures.forEach((id, future) -> future.complete(Optional.ofNullable(found.get(id))));
+		} catch (Throwable e) { //Error 도 넘겨야 기다리는 요청들이 멈춰있지 않는다. (리더는 자기 future 로 받음)
+			futures.values().forEach(future -> future.completeExceptionally(e));
+		}
+	}
+	
+	private boolean isFull(Batch batch) {
+		batch.lock.lock();
+		try {
+			return batch.futures.size() >= maxBatch;
+		} finally {
+			batch.lock.unlock();
+		}
+	}
+	
+	private static Optional<Book> join(CompletableFuture<Optional<Book>> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if(e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			if(e.getCause() instanceof Error cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,8 @@
+package com.cos.book.service;
+
+//없는 id (404). 예전처럼 IllegalArgumentException 으로 잡던 곳은 그대로 동작한다.
+public class BookNotFoundException extends IllegalArgumentException {
+	public BookNotFoundException(Long id) {
+		super("id를 확인해주세요 : " + id);
+	}
+}
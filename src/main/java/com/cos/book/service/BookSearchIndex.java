@@ -0,0 +1,548 @@
+package com.cos.book.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.cos.book.domain.Book;
+import com.cos.book.domain.BookRepository;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * title/author 부분 문자열 검색용 메모리 역색인 (필드별 문자 1-gram + 2-gram)
+ * 점수는 필드 안에서 어디에 맞았는지 (완전/맨앞/단어 시작/중간) 와 필드 길이로 정해진다. => 높은 점수가 나올 수 있는 후보부터 본다.
+ * - 단어 시작 posting : 필드별로 (맨앞 ^, 다른 단어 시작 ~) 의 첫 1~2글자 -> 필드 길이 -> id (정렬)
+ *   짧은 필드 (점수가 높은 것) 부터, 최고 점수가 같은 길이들은 묶어서 id 가 작은 것부터 꺼낸다.
+ * - 필드마다 아직 안 본 후보가 받을 수 있는 최고 점수 (bound) 를 알아서 크기 limit 인 heap 의 제일 낮은 점수가
+ *   bound 합보다 높으면 (같으면 남은 후보의 id 가 더 크면) 멈춘다. => limit 개를 채우고 나면 더 보지 않는다.
+ *   검색어의 gram 이 한 필드에 하나라도 없으면 그 필드는 0점으로 안다.
+ * - bound 가 큰 필드가 중간 일치까지 내려가면 그때만 gram 들의 posting list 교집합 전체를 본다. (prefix 검색은 중간 일치가 0점이라 안 봄)
+ *   단어 가운데에만 맞는 검색어와, 맨앞 2글자는 같은데 그 뒤가 다른 책이 많은 검색어는 지금도 후보 수에 비례한다. (BookSearchBenchmark)
+ * 서버가 뜰때 db에서 전체를 다시 만들고, 이후에는 BookChangedEvent(커밋 후)로 한 건씩 갱신한다.
+ * 다시 만들때는 락 밖에서 새 색인을 채우고 (그 동안 검색/갱신은 지금 색인으로) 그 사이에 온 변경을 새 색인에 다시 적용한 뒤 바꿔 끼운다.
+ */
+@Slf4j
+@Component
+public class BookSearchIndex {
+	private static final int TITLE_WEIGHT = 2;
+	private static final int AUTHOR_WEIGHT = 1;
+	private static final int EXACT_SCORE = 100;
+	private static final int START_SCORE = 50;
+	private static final int WORD_START_SCORE = 30;
+	private static final int MIDDLE_SCORE = 10;
+	private static final int REBUILD_FETCH_SIZE = 1000;
+	private static final int MAX_FIELD_LENGTH = 255; //단어 시작 posting 의 길이 묶음 (더 긴 것은 마지막 묶음, bound 는 255 로 계산해서 더 크게 잡힘)
+	private static final char TITLE = 't';
+	private static final char AUTHOR = 'a';
+	public static final int MAX_LIMIT = 100;
+	//점수가 낮은 것이 먼저 (heap 에서 먼저 빠짐), 같으면 id 가 큰 것이 먼저
+	private static final Comparator<Hit> WORST_FIRST = Comparator.comparingInt((Hit hit) -> hit.score)
+			.thenComparing(Comparator.comparingLong((Hit hit) -> hit.doc.id).reversed());
+	
+	private final BookRepository bookRepository;
+	private final boolean rebuildOnStartup;
+	
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final ReentrantLock rebuildLock = new ReentrantLock(); //rebuild 는 한번에 하나
+	private Index index = new Index(); //lock 안에서 읽고 바꾼다.
+	private List<BookChangedEvent> changedDuringRebuild; //rebuild 중이면 그 사이에 온 변경 (lock 안에서)
+	
+	public BookSearchIndex(BookRepository bookRepository,
+			@Value("${book.search.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+		this.bookRepository = bookRepository;
+		this.rebuildOnStartup = rebuildOnStartup;
+	}
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuildOnStartup() {
+		if(rebuildOnStartup) {
+			rebuild();
+		}
+	}
+	
+	//db 전체를 새 색인으로 읽는다. 그 동안 검색과 커밋 후 갱신은 지금 색인으로 계속한다. (POST /book/_jobs REINDEX 도 이것)
+	//읽는 동안 온 변경은 모아뒀다가 새 색인에 순서대로 다시 적용하고 바꿔 끼운다. (이미 읽은 것이어도 put/remove 라 결과가 같다)
+	public int rebuild() {
+		rebuildLock.lock();
+		try {
+			long start = System.currentTimeMillis();
+			lock.writeLock().lock();
+			try {
+				changedDuringRebuild = new ArrayList<>();
+			} finally {
+				lock.writeLock().unlock();
+			}
+			Index fresh = new Index();
+			boolean read = false;
+			try {
+				bookRepository.streamAll(REBUILD_FETCH_SIZE, fresh::put);
+				read = true;
+			} finally {
+				lock.writeLock().lock();
+				try {
+					List<BookChangedEvent> replay = changedDuringRebuild;
+					changedDuringRebuild = null;
+					if(read) { //실패하면 지금 색인을 그대로 둔다.
+						replay.forEach(fresh::apply);
+						index = fresh;
+					}
+				} finally {
+					lock.writeLock().unlock();
+				}
+			}
+			int size = fresh.docs.size();
+			log.info("검색 색인 생성 완료 : {}건, {}ms", size, System.currentTimeMillis() - start);
+			return size;
+		} finally {
+			rebuildLock.unlock();
+		}
+	}
+	
+	//롤백된 변경이 색인에 들어가지 않게 커밋 후에 반영
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void on(BookChangedEvent event) {
+		lock.writeLock().lock();
+		try {
+			index.apply(event);
+			if(changedDuringRebuild != null) {
+				changedDuringRebuild.add(event);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	public void put(Book book) {
+		on(BookChangedEvent.saved(book));
+	}
+	
+	public void remove(Long id) {
+		on(new BookChangedEvent(id, null, null, false));
+	}
+	
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return index.docs.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * @param prefix true면 title/author의 단어 시작 부분만 매칭 (자동완성용)
+	 * @param limit 최대 MAX_LIMIT
+	 */
+	public List<Book> search(String q, boolean prefix, int limit) {
+		String query = normalize(q);
+		int size = Math.min(limit, MAX_LIMIT);
+		List<Book> result = new ArrayList<>();
+		if(query.isEmpty() || size <= 0) {
+			return result;
+		}
+		PriorityQueue<Hit> top = new PriorityQueue<>(size + 1, WORST_FIRST);
+		lock.readLock().lock();
+		try {
+			List<LongPostings> titleLists = lists(index, TITLE, query);
+			List<LongPostings> authorLists = lists(index, AUTHOR, query);
+			if(titleLists == null && authorLists == null) {
+				return result;
+			}
+			FieldCursor title = new FieldCursor(index, TITLE, query, prefix, titleLists != null);
+			FieldCursor author = new FieldCursor(index, AUTHOR, query, prefix, authorLists != null);
+			while(true) {
+				int titleBound = title.bound() * TITLE_WEIGHT;
+				int authorBound = author.bound() * AUTHOR_WEIGHT;
+				int bound = titleBound + authorBound;
+				if(bound == 0) {
+					break;
+				}
+				if(top.size() == size) { //남은 후보는 아무리 높아도 bound, 같으면 bound 가 있는 필드마다 지금 묶음에서 지나간 id 보다 크다.
+					Hit worst = top.peek();
+					long passed = Math.max(titleBound > 0 ? title.passed() : Long.MIN_VALUE, authorBound > 0 ? author.passed() : Long.MIN_VALUE);
+					if(worst.score > bound || (worst.score == bound && passed >= worst.doc.id)) {
+						break;
+					}
+				}
+				FieldCursor next = titleBound >= authorBound ? title : author;
+				if(next.inMiddle()) { //중간 일치는 순서가 없어서 교집합 전체를 본다.
+					scan(titleLists, top, size, query, prefix);
+					scan(authorLists, top, size, query, prefix);
+					break;
+				}
+				long id = next.next(); //맨앞 2글자만 맞는 후보가 많아서 gram 으로 먼저 거른다. (문서를 읽지 않음)
+				if((titleLists != null && containsAllFromEnd(titleLists, id)) || (authorLists != null && containsAllFromEnd(authorLists, id))) {
+					offer(top, size, index.docs.get(id), query, prefix);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		List<Hit> hits = new ArrayList<>(top);
+		hits.sort(WORST_FIRST.reversed());
+		for(Hit hit : hits) {
+			result.add(new Book(hit.doc.id, hit.doc.title, hit.doc.author));
+		}
+		return result;
+	}
+	
+	//검색어의 gram 들의 posting list, 검색어 순서 (하나라도 없으면 이 필드에는 검색어가 없다 => null)
+	private static List<LongPostings> lists(Index index, char field, String query) {
+		List<LongPostings> lists = new ArrayList<>();
+		for(String gram : grams(query)) {
+			LongPostings list = index.postings.get(field + gram);
+			if(list == null) {
+				return null;
+			}
+			lists.add(list);
+		}
+		return lists;
+	}
+	
+	//제일 짧은 목록을 돌면서 나머지에 있는지 본다.
+	private void scan(List<LongPostings> gramLists, PriorityQueue<Hit> top, int size, String query, boolean prefix) {
+		if(gramLists == null) {
+			return;
+		}
+		List<LongPostings> lists = new ArrayList<>(gramLists);
+		lists.sort(Comparator.comparingInt(LongPostings::size));
+		lists.get(0).forEach(id -> {
+			if(containsAll(lists, 1, id)) {
+				offer(top, size, index.docs.get(id), query, prefix);
+			}
+		});
+	}
+	
+	//점수를 매겨서 heap 에 (꽉 찼으면 제일 낮은 것보다 나을때만, Hit 을 만들지 않음)
+	//같은 책이 다른 필드나 단계에서 다시 올 수 있다 : 들어갈 만할때만 heap 에 이미 있는지 본다. (빠진 것은 다시 와도 못 들어감)
+	private static void offer(PriorityQueue<Hit> top, int size, Doc doc, String query, boolean prefix) {
+		int score = score(doc.normTitle, query, prefix) * TITLE_WEIGHT + score(doc.normAuthor, query, prefix) * AUTHOR_WEIGHT;
+		if(score <= 0) {
+			return;
+		}
+		if(top.size() == size) {
+			Hit worst = top.peek();
+			if(score < worst.score || (score == worst.score && doc.id > worst.doc.id)) {
+				return;
+			}
+		}
+		for(Hit hit : top) {
+			if(hit.doc.id == doc.id) {
+				return;
+			}
+		}
+		if(top.size() == size) {
+			top.poll();
+		}
+		top.add(new Hit(doc, score));
+	}
+	
+	private static boolean containsAll(List<LongPostings> lists, int from, long id) {
+		for(int i = from; i < lists.size(); i++) {
+			if(!lists.get(i).contains(id)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	//단어 시작 후보는 검색어 맨앞 2글자로 고른 것이라 앞 gram 은 거의 다 있다 => 뒤 gram 부터
+	private static boolean containsAllFromEnd(List<LongPostings> lists, long id) {
+		for(int i = lists.size() - 1; i >= 0; i--) {
+			if(!lists.get(i).contains(id)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	//완전일치 > 맨앞 일치 > 단어 시작 일치 > 중간 일치, 필드가 짧을수록 조금 더 높게
+	private static int score(String field, String query, boolean prefix) {
+		int idx = field.indexOf(query);
+		if(idx < 0) {
+			return 0;
+		}
+		int score;
+		if(field.equals(query)) {
+			score = EXACT_SCORE;
+		} else if(idx == 0) {
+			score = START_SCORE;
+		} else if(isWordStart(field, query)) {
+			score = WORD_START_SCORE;
+		} else if(prefix) {
+			return 0;
+		} else {
+			score = MIDDLE_SCORE;
+		}
+		return score + query.length() * 10 / field.length();
+	}
+	
+	private static boolean isWordStart(String field, String query) {
+		for(int idx = field.indexOf(query); idx >= 0; idx = field.indexOf(query, idx + 1)) {
+			if(idx == 0 || Character.isWhitespace(field.charAt(idx - 1))) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	//필드 글자 + gram
+	private static Set<String> fieldGrams(char field, String text) {
+		Set<String> grams = new LinkedHashSet<>();
+		addGrams(grams, text, true);
+		Set<String> keys = new LinkedHashSet<>();
+		grams.forEach(gram -> keys.add(field + gram));
+		return keys;
+	}
+	
+	//단어가 시작하는 자리마다 첫 1글자, 2글자 (필드 + ^ 맨앞 / ~ 다른 단어)
+	private static Set<String> startKeys(char field, String text) {
+		Set<String> keys = new LinkedHashSet<>();
+		for(int i = 0; i < text.length(); i++) {
+			if(i == 0 || Character.isWhitespace(text.charAt(i - 1))) {
+				keys.add(startKey(field, i == 0, text.substring(i, i + 1)));
+				if(i + 2 <= text.length()) {
+					keys.add(startKey(field, i == 0, text.substring(i, i + 2)));
+				}
+			}
+		}
+		return keys;
+	}
+	
+	private static String startKey(char field, boolean first, String head) {
+		return field + (first ? "^" : "~") + head;
+	}
+	
+	//검색어는 2-gram만 (한 글자면 1-gram)
+	private static Set<String> grams(String query) {
+		Set<String> grams = new LinkedHashSet<>();
+		addGrams(grams, query, query.length() == 1);
+		return grams;
+	}
+	
+	private static void addGrams(Set<String> grams, String text, boolean unigrams) {
+		for(int i = 0; i < text.length(); i++) {
+			if(unigrams) {
+				grams.add(text.substring(i, i + 1));
+			}
+			if(i + 2 <= text.length()) {
+				grams.add(text.substring(i, i + 2));
+			}
+		}
+	}
+	
+	static String normalize(String text) {
+		return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+	}
+	
+	//gram -> posting list, id -> 문서. rebuild 는 새 것을 채워서 통째로 바꾼다.
+	private static class Index {
+		private final Map<String, LongPostings> postings = new HashMap<>();
+		private final Map<String, StartPostings> starts = new HashMap<>();
+		private final LongMap<Doc> docs = new LongMap<>();
+		
+		void apply(BookChangedEvent event) {
+			if(event.isDeleted()) {
+				remove(event.getId());
+			} else {
+				put(event.getBook());
+			}
+		}
+		
+		void put(Book book) {
+			remove(book.getId());
+			Doc doc = new Doc(book.getId(), book.getTitle(), book.getAuthor(), normalize(book.getTitle()), normalize(book.getAuthor()));
+			docs.put(doc.id, doc);
+			add(TITLE, doc.normTitle, doc.id);
+			add(AUTHOR, doc.normAuthor, doc.id);
+		}
+		
+		void remove(Long id) {
+			Doc doc = docs.remove(id);
+			if(doc == null) {
+				return;
+			}
+			remove(TITLE, doc.normTitle, id);
+			remove(AUTHOR, doc.normAuthor, id);
+		}
+		
+		private void add(char field, String text, long id) {
+			for(String gram : fieldGrams(field, text)) {
+				postings.computeIfAbsent(gram, key -> new LongPostings()).add(id);
+			}
+			for(String key : startKeys(field, text)) {
+				starts.computeIfAbsent(key, k -> new StartPostings()).add(text.length(), id);
+			}
+		}
+		
+		private void remove(char field, String text, long id) {
+			for(String gram : fieldGrams(field, text)) {
+				LongPostings list = postings.get(gram);
+				if(list != null) {
+					list.remove(id);
+					if(list.size() == 0) {
+						postings.remove(gram);
+					}
+				}
+			}
+			for(String key : startKeys(field, text)) {
+				StartPostings list = starts.get(key);
+				if(list != null) {
+					list.remove(text.length(), id);
+					if(list.size() == 0) {
+						starts.remove(key);
+					}
+				}
+			}
+		}
+	}
+	
+	//필드 길이 -> id (같은 자리에서 맞으면 짧은 필드가 점수가 높다)
+	private static class StartPostings {
+		private SortedLongs[] byLength = new SortedLongs[0];
+		private int size;
+		
+		void add(int length, long id) {
+			int bucket = Math.min(length, MAX_FIELD_LENGTH);
+			if(bucket >= byLength.length) {
+				byLength = Arrays.copyOf(byLength, bucket + 1);
+			}
+			if(byLength[bucket] == null) {
+				byLength[bucket] = new SortedLongs();
+			}
+			int before = byLength[bucket].size();
+			byLength[bucket].add(id);
+			size += byLength[bucket].size() - before;
+		}
+		
+		void remove(int length, long id) {
+			int bucket = Math.min(length, MAX_FIELD_LENGTH);
+			if(bucket >= byLength.length || byLength[bucket] == null) {
+				return;
+			}
+			int before = byLength[bucket].size();
+			byLength[bucket].remove(id);
+			size -= before - byLength[bucket].size();
+			if(byLength[bucket].size() == 0) {
+				byLength[bucket] = null;
+			}
+		}
+		
+		SortedLongs at(int length) {
+			return length < byLength.length ? byLength[length] : null;
+		}
+		
+		int maxLength() {
+			return byLength.length - 1;
+		}
+		
+		int size() {
+			return size;
+		}
+	}
+	
+	//필드 하나의 후보를 점수가 높을 수 있는 순서로 : 맨앞 일치 -> 다른 단어 시작 -> 중간 일치
+	//앞의 둘은 짧은 필드부터, 최고 점수가 같은 길이들은 묶어서 id 가 작은 것부터
+	private static class FieldCursor {
+		private final StartPostings[] stages; //맨앞, 다른 단어 시작. 다 보면 중간 일치
+		private final int queryLength;
+		private final int middleBound;
+		private final List<SortedLongs.Cursor> group = new ArrayList<>();
+		private int groupBound;
+		private long passed = Long.MIN_VALUE; //지금 묶음에서 마지막으로 꺼낸 id
+		private int stage;
+		private int length;
+		
+		//found : 이 필드에 검색어의 gram 이 다 있음
+		FieldCursor(Index index, char field, String query, boolean prefix, boolean found) {
+			String head = query.substring(0, Math.min(2, query.length()));
+			this.stages = found ? new StartPostings[] { index.starts.get(startKey(field, true, head)), index.starts.get(startKey(field, false, head)) } : new StartPostings[0];
+			this.queryLength = query.length();
+			this.middleBound = found && !prefix ? MIDDLE_SCORE + queryLength * 10 / (queryLength + 1) : 0;
+			this.length = queryLength;
+		}
+		
+		//아직 안 본 후보가 이 필드에서 받을 수 있는 최고 점수 (지금 묶음을 다 봤으면 다음 묶음을 연다)
+		int bound() {
+			for(SortedLongs.Cursor cursor : group) {
+				if(cursor.hasNext()) {
+					return groupBound;
+				}
+			}
+			group.clear();
+			passed = Long.MIN_VALUE;
+			for(; stage < stages.length; stage++, length = queryLength) {
+				StartPostings list = stages[stage];
+				for(; list != null && length <= list.maxLength(); length++) {
+					SortedLongs ids = list.at(length);
+					if(ids == null) {
+						continue;
+					}
+					int bound = (stage == 1 ? WORD_START_SCORE : length == queryLength ? EXACT_SCORE : START_SCORE) + queryLength * 10 / length;
+					if(!group.isEmpty() && bound != groupBound) {
+						return groupBound;
+					}
+					groupBound = bound;
+					group.add(ids.cursor());
+				}
+				if(!group.isEmpty()) {
+					return groupBound;
+				}
+			}
+			return middleBound;
+		}
+		
+		boolean inMiddle() {
+			return stage == stages.length;
+		}
+		
+		long passed() {
+			return passed;
+		}
+		
+		//지금 묶음에서 id 가 제일 작은 것 (bound() 다음에)
+		long next() {
+			SortedLongs.Cursor min = null;
+			for(SortedLongs.Cursor cursor : group) {
+				if(cursor.hasNext() && (min == null || cursor.peek() < min.peek())) {
+					min = cursor;
+				}
+			}
+			passed = min.next();
+			return passed;
+		}
+	}
+	
+	@AllArgsConstructor
+	private static class Doc {
+		private final long id;
+		private final String title;
+		private final String author;
+		private final String normTitle;
+		private final String normAuthor;
+	}
+	
+	@AllArgsConstructor
+	private static class Hit {
+		private final Doc doc;
+		private final int score;
+	}
+}
@@ -1,10 +1,27 @@
 package com.cos.book.service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.cos.book.config.CacheConfig;
 import com.cos.book.domain.Book;
 import com.cos.book.domain.BookRepository;
 
@@ -14,32 +31,167 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 @Service
 public class BookService {
+	public static final int DEFAULT_PAGE_SIZE = 100;
+	public static final int MAX_PAGE_SIZE = 1000;
+	private static final int STREAM_FETCH_SIZE = 500;
+	
 	private final BookRepository bookRepository;
+	private final ApplicationEventPublisher eventPublisher; //검색 색인 등이 BookChangedEvent를 받는다.
+	private final BookLoader bookLoader; //같은 id 동시 조회는 하나로, 다른 id는 in (...) 한번으로 모은다.
+	private final CacheManager cacheManager; //getMany 는 id 마다 @Cacheable 을 탈 수 없어서 직접
 	
+	@CachePut(cacheNames = CacheConfig.BOOK, key = "#result.id")
 	@Transactional
 	public Book save(Book book) {
-		return bookRepository.save(book);
+		book.setVersion(null); //새로 만드는 것 (보낸 version 이 있으면 merge 로 다른 책을 덮어씀)
+		Book bookEntity = bookRepository.save(book);
+		eventPublisher.publishEvent(BookChangedEvent.saved(bookEntity));
+		return bookEntity;
 	}
-	@Transactional(readOnly = true)
+	//캐시에 있으면 db를 안간다.
+	//트랜잭션은 BookLoader가 조회할때 repository에서 (readOnly) 연다. 기다리는 동안 커넥션을 잡지 않도록 여기선 안 연다.
+	@Cacheable(cacheNames = CacheConfig.BOOK)
 	public Book getOne(Long id) {
-		return bookRepository.findById(id).orElseThrow(()->new IllegalArgumentException("id를 확인해주세요"));
+		return bookLoader.findById(id).orElseThrow(()->new BookNotFoundException(id));
+	}
+	//여러 권을 한번에 : 캐시에 없는 id만 findAllById (in (...)) 한번. 요청한 순서대로, 없는 id는 빠진다.
+	@Transactional(readOnly = true)
+	public List<Book> getMany(List<Long> ids) {
+		List<Long> distinct = ids.stream().distinct().collect(Collectors.toList());
+		if(distinct.size() > MAX_PAGE_SIZE) {
+			throw new IllegalArgumentException("id는 한번에 " + MAX_PAGE_SIZE + "개까지 조회할 수 있습니다.");
+		}
+		Cache cache = cacheManager.getCache(CacheConfig.BOOK);
+		Map<Long, Book> found = new HashMap<>();
+		List<Long> misses = new ArrayList<>();
+		for(Long id : distinct) {
+			Book cached = cache == null ? null : cache.get(id, Book.class);
+			if(cached != null) {
+				found.put(id, cached);
+			} else {
+				misses.add(id);
+			}
+		}
+		if(!misses.isEmpty()) {
+			for(Book book : bookRepository.findAllById(misses)) {
+				found.put(book.getId(), book);
+				if(cache != null) {
+					cache.put(book.getId(), book);
+				}
+			}
+		}
+		return distinct.stream().map(found::get).filter(Objects::nonNull).collect(Collectors.toList());
 	}
 	@Transactional(readOnly = true)
 	public List<Book> getAll() {
 		return bookRepository.findAll();
 	}
+	//after 보다 큰 id 부터 limit 개 (after가 null이면 처음부터)
+	//cluster 프로필에서만 캐시된다. (CacheConfig.bookPageCacheResolver)
+	@Cacheable(cacheResolver = "bookPageCacheResolver", sync = true)
+	@Transactional(readOnly = true)
+	public Slice<Book> getPage(Long after, int limit) {
+		int size = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+		return bookRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after, PageRequest.of(0, size));
+	}
+	//저자의 책을 제목순(같은 제목은 id 순)으로 limit 개. (afterTitle, afterId) 는 이전 페이지의 마지막 책, 처음이면 afterId = null
+	//offset 이 없어서 뒤 페이지도 앞 페이지만큼 빠르다. (author, title 인덱스 순서 그대로라 정렬을 따로 안한다)
+	@Transactional(readOnly = true)
+	public Slice<Book> getByAuthor(String author, String afterTitle, Long afterId, int limit) {
+		return bookRepository.findByAuthorAfter(author, afterTitle, afterId, firstPage(limit));
+	}
+	//제목이 prefix 로 시작하는 책을 제목순(같은 제목은 id 순)으로
+	@Transactional(readOnly = true)
+	public Slice<Book> getByTitlePrefix(String prefix, String afterTitle, Long afterId, int limit) {
+		return bookRepository.findByTitlePrefixAfter(prefix, afterTitle, afterId, firstPage(limit));
+	}
+	private PageRequest firstPage(int limit) {
+		return PageRequest.of(0, Math.min(Math.max(limit, 1), MAX_PAGE_SIZE));
+	}
+	//전체를 메모리에 올리지 않고 한 건씩 consumer로 흘려보낸다.
+	public void streamAll(Consumer<Book> consumer) {
+		bookRepository.streamAll(STREAM_FETCH_SIZE, consumer);
+	}
+	//select 없이 update 한번 (마지막에 쓴 것이 이긴다. 동시에 수정해도 412 없음)
+	//update 가 잡은 행 락 안에서 version 을 다시 읽어서 ETag/변경 이벤트에 쓴다.
+	@CachePut(cacheNames = CacheConfig.BOOK, key = "#id")
 	@Transactional
 	public Book update(Long id, Book book) {
-		//더티체킹
-		Book bookEntity = bookRepository.findById(id).orElseThrow(()->new IllegalArgumentException("id를 확인해주세요"));
-		//셀렉하여 영속화시킨다.
-		bookEntity.setTitle(book.getTitle());
-		bookEntity.setAuthor(book.getAuthor());
+		if(bookRepository.updateById(id, book.getTitle(), book.getAuthor()) == 0) {
+			throw new BookNotFoundException(id);
+		}
+		Book bookEntity = new Book(id, book.getTitle(), book.getAuthor(), bookRepository.findVersionById(id));
+		eventPublisher.publishEvent(BookChangedEvent.saved(bookEntity, cachedVersion(id, bookEntity.getVersion() - 1)));
+		return bookEntity;
+	}
+	//If-Match 로 버전을 알고 있으면 select 없이 update ... where id=? and version=? 한번으로 끝낸다.
+	@CachePut(cacheNames = CacheConfig.BOOK, key = "#id")
+	@Transactional
+	public Book updateIfMatch(Long id, Long version, Book book) {
+		int count = bookRepository.updateIfVersion(id, version, book.getTitle(), book.getAuthor());
+		if(count == 0) {
+			if(!bookRepository.existsById(id)) { //버전보다 먼저 : 없는 id는 404
+				throw new BookNotFoundException(id);
+			}
+			throw new OptimisticLockingFailureException("버전이 맞지 않습니다. id=" + id + ", version=" + version);
+		}
+		Book bookEntity = new Book(id, book.getTitle(), book.getAuthor(), version + 1);
+		eventPublisher.publishEvent(BookChangedEvent.saved(bookEntity, cachedVersion(id, version)));
 		return bookEntity;
-	} // 함수종료 -> 트랜잭션 종료 -> 영속화 되어있는 데이터를 db로 갱신(flush) == 더티체킹
+	}
+	//deleteById 와 같은 select + delete (where version=?) 두번. 읽은 엔티티를 지우기 전 값으로 쓴다. 없는 id 여도 ok
+	@CacheEvict(cacheNames = CacheConfig.BOOK)
 	@Transactional
 	public String delete(Long id) {
-		bookRepository.deleteById(id);
+		bookRepository.findById(id).ifPresent(bookEntity -> {
+			bookRepository.delete(bookEntity);
+			eventPublisher.publishEvent(BookChangedEvent.deleted(bookEntity));
+		});
 		return "ok";
 	}
+	//바꾸기 전 값 (변경 이벤트의 previous) 을 db 에서 읽지 않고 캐시에서 : 바로 앞 version 이 캐시에 있을때만
+	//없으면 null => 통계는 이 변경을 건너뛰고 reconcile 때 맞춘다.
+	private Book cachedVersion(Long id, Long version) {
+		Cache cache = cacheManager.getCache(CacheConfig.BOOK);
+		Book cached = cache == null ? null : cache.get(id, Book.class);
+		return cached != null && version.equals(cached.getVersion()) ? cached : null;
+	}
+	//벌크용 : 한 트랜잭션 안에서 hibernate.jdbc.batch_size 만큼씩 insert가 배치로 나간다.
+	@Transactional
+	public List<Book> saveAll(List<Book> books) {
+		books.forEach(book -> book.setVersion(null)); //새로 만드는 것이므로 버전은 hibernate가 0부터
+		List<Book> bookEntities = bookRepository.saveAll(books);
+		bookEntities.forEach(bookEntity -> eventPublisher.publishEvent(BookChangedEvent.saved(bookEntity)));
+		return bookEntities;
+	}
+	//select ... in (...) 한번 + 더티체킹된 update 배치. 없는 id는 결과에서 빠진다.
+	@CacheEvict(cacheNames = CacheConfig.BOOK, allEntries = true)
+	@Transactional
+	public List<Book> updateAll(List<Book> books) {
+		List<Long> ids = books.stream().map(Book::getId).collect(Collectors.toList());
+		Map<Long, Book> bookEntities = bookRepository.findAllById(ids).stream()
+				.collect(Collectors.toMap(Book::getId, Function.identity()));
+		for(Book book : books) {
+			Book bookEntity = bookEntities.get(book.getId());
+			if(bookEntity != null) {
+				Book previous = new Book(bookEntity.getId(), bookEntity.getTitle(), bookEntity.getAuthor(), bookEntity.getVersion());
+				bookEntity.setTitle(book.getTitle());
+				bookEntity.setAuthor(book.getAuthor());
+				eventPublisher.publishEvent(BookChangedEvent.saved(bookEntity, previous));
+			}
+		}
+		return bookEntities.values().stream().collect(Collectors.toList());
+	}
+	//실제로 지워진 id 목록을 돌려준다. (select ... in 으로 읽은 값을 지우기 전 값으로 이벤트에)
+	@CacheEvict(cacheNames = CacheConfig.BOOK, allEntries = true)
+	@Transactional
+	public List<Long> deleteAll(List<Long> ids) {
+		List<Book> previous = bookRepository.findAllById(ids);
+		List<Long> existIds = previous.stream().map(Book::getId).collect(Collectors.toList());
+		if(!existIds.isEmpty()) {
+			bookRepository.deleteByIdIn(existIds);
+			previous.forEach(book -> eventPublisher.publishEvent(BookChangedEvent.deleted(book)));
+		}
+		return existIds;
+	}
 }
@@ -0,0 +1,332 @@
+package com.cos.book.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.cos.book.domain.Book;
+import com.cos.book.domain.BookRepository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * GET /book/stats 집계 (전체 수, 저자별 수, 상위 저자, 제목 길이 분포)
+ * 테이블을 세지 않고 BookChangedEvent(커밋 후)로 LongAdder 카운터를 바로 고친다. => 조회는 테이블 크기와 상관없이 O(1)
+ * 수정/삭제때 뺄 값은 이벤트의 previous (바꾸기 전 값) 에서 얻는다. 책마다 기억하지 않아서 메모리는 저자 수만큼만 쓴다.
+ * previous 가 없는 수정 (PUT 은 select 없이 update 하고 캐시에 바로 앞 version 이 없을때) 은 reconcile 때 맞춰진다.
+ * (빼고 더하기라서 같은 책의 이벤트가 커밋 순서와 다르게 와도 결과가 같다)
+ * 상위 저자는 top-interval-ms 마다 미리 골라두고, reconcile-interval-ms 마다 db 전체를 다시 읽어서 새로 만든 뒤 바꿔 끼운다.
+ * (다른 인스턴스에서 쓴 것처럼 이 인스턴스에 이벤트가 오지 않는 변경은 reconcile 때 반영된다)
+ */
+@Slf4j
+@Component
+public class BookStats {
+	public static final int TITLE_BUCKET_WIDTH = 10;
+	private static final int TITLE_BUCKETS = 26; //0~9, 10~19, ... 250~ (title 컬럼이 255자)
+	private static final int RECONCILE_FETCH_SIZE = 1000;
+	private static final String NO_AUTHOR = ""; //ConcurrentHashMap 은 null 키가 안됨
+	
+	private final BookRepository bookRepository;
+	private final boolean reconcileOnStartup;
+	private final long reconcileIntervalNanos;
+	private final long topIntervalNanos;
+	private final int topSize;
+	
+	private volatile State state = new State();
+	private volatile Top top = new Top(List.of(), 0, 0);
+	private volatile long reconciledAt;
+	private volatile long lastDrift; //마지막 reconcile 에서 db 와 달랐던 전체 수 (db - 메모리)
+	//reconcile 중에 온 이벤트 : 새 State 에도 다시 적용 (바꿔 끼우는 순간만 write lock)
+	private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+	private final Queue<BookChangedEvent> pending = new ConcurrentLinkedQueue<>();
+	//reconcile 이 id 순으로 어디까지 셌는지. 이벤트가 온 순간 이미 센 id 면 (이전 값을 셌으므로) 빼고 더하고,
+	//아직이면 읽을때 건너뛰고 마지막 값만 더한다. (touched : 이벤트가 온 id => 그때 이미 셌는지)
+	private final ReentrantLock scanLock = new ReentrantLock();
+	private final Map<Long, Boolean> touched = new ConcurrentHashMap<>();
+	private long scanned;
+	private volatile boolean reconciling;
+	private final ReentrantLock reconcileLock = new ReentrantLock();
+	
+	private volatile boolean running;
+	private Thread worker;
+	
+	public BookStats(BookRepository bookRepository,
+			@Value("${book.stats.reconcile-on-startup:true}") boolean reconcileOnStartup,
+			@Value("${book.stats.reconcile-interval-ms:600000}") long reconcileIntervalMs,
+			@Value("${book.stats.top-interval-ms:1000}") long topIntervalMs,
+			@Value("${book.stats.top-size:100}") int topSize) {
+		this.bookRepository = bookRepository;
+		this.reconcileOnStartup = reconcileOnStartup;
+		this.reconcileIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reconcileIntervalMs);
+		this.topIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(topIntervalMs, 1));
+		this.topSize = topSize;
+	}
+	
+	public record TopAuthor(String author, long count) {
+	}
+	
+	public record TitleLengthBucket(int from, int to, long count) { //to 는 포함하지 않음 (마지막 구간은 -1 : 끝까지)
+	}
+	
+	public record Summary(long total, long authors, List<TopAuthor> topAuthors, List<TitleLengthBucket> titleLengths,
+			long topAuthorsAt, long reconciledAt, long lastDrift) {
+	}
+	
+	private record Top(List<TopAuthor> authors, long distinctAuthors, long at) {
+	}
+	
+	//카운터 묶음. reconcile 하면 통째로 새것으로 바뀐다.
+	private static class State {
+		final LongAdder total = new LongAdder();
+		final ConcurrentHashMap<String, LongAdder> authors = new ConcurrentHashMap<>();
+		final LongAdder[] titleLengths = new LongAdder[TITLE_BUCKETS];
+		
+		State() {
+			for(int i = 0; i < TITLE_BUCKETS; i++) {
+				titleLengths[i] = new LongAdder();
+			}
+		}
+		
+		//이전 값을 빼고 새 값을 더한다. (잠깐 음수가 될 수 있지만 같은 책의 이벤트가 다 오면 맞는다)
+		//이전 값을 모르는 수정/삭제는 건너뛴다. (전체 수가 같은 수정은 저자/제목 길이만 reconcile 때까지 틀림)
+		void apply(BookChangedEvent event) {
+			if(event.getPrevious() == null && !event.isCreated()) {
+				return;
+			}
+			if(event.getPrevious() != null) {
+				count(event.getPrevious(), -1);
+			}
+			if(event.getBook() != null) {
+				count(event.getBook(), 1);
+			}
+		}
+		
+		void count(Book book, int delta) {
+			String title = book.getTitle() == null ? "" : book.getTitle();
+			total.add(delta);
+			authors.computeIfAbsent(book.getAuthor() == null ? NO_AUTHOR : book.getAuthor(), author -> new LongAdder()).add(delta);
+			titleLengths[Math.min(title.length() / TITLE_BUCKET_WIDTH, TITLE_BUCKETS - 1)].add(delta);
+		}
+	}
+	
+	//커밋 후에만 (롤백된 변경은 세지 않음). 트랜잭션 없이 발행된 것(reactive)은 바로
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void on(BookChangedEvent event) {
+		swapLock.readLock().lock();
+		try {
+			state.apply(event);
+			if(reconciling) {
+				scanLock.lock();
+				try {
+					touched.putIfAbsent(event.getId(), event.getId() <= scanned);
+					pending.add(event);
+				} finally {
+					scanLock.unlock();
+				}
+			}
+		} finally {
+			swapLock.readLock().unlock();
+		}
+	}
+	
+	public long getTotal() {
+		return state.total.sum();
+	}
+	
+	public long countByAuthor(String author) {
+		LongAdder count = state.authors.get(author == null ? NO_AUTHOR : author);
+		return count == null ? 0 : count.sum();
+	}
+	
+	//top-interval-ms 전까지의 순위
+	public List<TopAuthor> topAuthors(int limit) {
+		List<TopAuthor> authors = top.authors();
+		return authors.subList(0, Math.max(0, Math.min(limit, authors.size())));
+	}
+	
+	public List<TitleLengthBucket> titleLengths() {
+		LongAdder[] counts = state.titleLengths;
+		List<TitleLengthBucket> buckets = new ArrayList<>(TITLE_BUCKETS);
+		for(int i = 0; i < TITLE_BUCKETS; i++) {
+			int to = i == TITLE_BUCKETS - 1 ? -1 : (i + 1) * TITLE_BUCKET_WIDTH;
+			buckets.add(new TitleLengthBucket(i * TITLE_BUCKET_WIDTH, to, counts[i].sum()));
+		}
+		return buckets;
+	}
+	
+	public Summary summary(int topLimit) {
+		Top current = top;
+		return new Summary(getTotal(), current.distinctAuthors(), topAuthors(topLimit), titleLengths(), current.at(), reconciledAt, lastDrift);
+	}
+	
+	/**
+	 * db 전체를 id 순으로 (키셋 페이지) 읽어서 새 카운터를 만들고 바꿔 끼운다. 읽는 동안에도 이벤트는 지금 카운터에 바로 반영되고 (요청 스레드를 막지 않음)
+	 * 따로 모아뒀다가 새 카운터에도 적용한다. 이벤트가 온 id 가 아직 안 읽은 쪽이면 읽을때 건너뛰고 마지막 값만 더한다.
+	 * (커밋과 이벤트 사이에 읽힌 행은 두번 셀 수 있다 => 다음 reconcile 때 맞춰짐)
+	 */
+	public void reconcile() {
+		reconcileLock.lock();
+		try {
+			long start = System.currentTimeMillis();
+			State fresh = new State();
+			swapLock.writeLock().lock();
+			try {
+				scanned = 0;
+				reconciling = true;
+			} finally {
+				swapLock.writeLock().unlock();
+			}
+			try {
+				Slice<Book> page;
+				long after = 0;
+				do {
+					page = bookRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, RECONCILE_FETCH_SIZE));
+					scanLock.lock();
+					try {
+						for(Book book : page) {
+							if(!touched.containsKey(book.getId())) {
+								fresh.count(book, 1);
+							}
+							after = book.getId();
+						}
+						scanned = after;
+					} finally {
+						scanLock.unlock();
+					}
+				} while(page.hasNext());
+			} catch (RuntimeException e) {
+				swapLock.writeLock().lock();
+				try {
+					reconciling = false;
+					pending.clear();
+					touched.clear();
+				} finally {
+					swapLock.writeLock().unlock();
+				}
+				throw e;
+			}
+			long drift;
+			swapLock.writeLock().lock();
+			try {
+				replay(fresh);
+				drift = fresh.total.sum() - state.total.sum();
+				state = fresh;
+				reconciling = false;
+			} finally {
+				swapLock.writeLock().unlock();
+			}
+			reconciledAt = System.currentTimeMillis();
+			lastDrift = drift;
+			refreshTop();
+			log.info("통계 다시 계산 : {}건 (차이 {}), {}ms", fresh.total.sum(), drift, reconciledAt - start);
+		} finally {
+			reconcileLock.unlock();
+		}
+	}
+	
+	//읽을때 이미 센 id 는 이벤트대로 빼고 더한다. 건너뛴 id 는 마지막 값만 (삭제가 있으면 없음, 아니면 version 이 가장 큰 것)
+	private void replay(State fresh) {
+		Map<Long, Book> skipped = new HashMap<>();
+		BookChangedEvent event;
+		while((event = pending.poll()) != null) {
+			Long id = event.getId();
+			if(touched.get(id)) {
+				fresh.apply(event);
+				continue;
+			}
+			if(skipped.containsKey(id) && skipped.get(id) == null) {
+				continue; //지워진 책 (id 는 다시 쓰지 않음)
+			}
+			Book last = skipped.get(id);
+			Book book = event.getBook();
+			skipped.put(id, book == null || last == null || isNewer(book, last) ? book : last);
+		}
+		touched.clear();
+		skipped.values().stream().filter(Objects::nonNull).forEach(book -> fresh.count(book, 1));
+	}
+	
+	private static boolean isNewer(Book book, Book than) {
+		return book.getVersion() == null || than.getVersion() == null || book.getVersion() >= than.getVersion();
+	}
+	
+	//저자 수만큼 돈다. (조회마다 하지 않고 주기적으로)
+	public void refreshTop() {
+		Map<String, LongAdder> authors = state.authors;
+		PriorityQueue<TopAuthor> heap = new PriorityQueue<>(Comparator.comparingLong(TopAuthor::count));
+		long distinct = 0;
+		for(Map.Entry<String, LongAdder> entry : authors.entrySet()) {
+			long count = entry.getValue().sum();
+			if(count <= 0) {
+				continue; //다 지워진 저자 (reconcile 때 없어진다)
+			}
+			distinct++;
+			if(heap.size() < topSize) {
+				heap.add(new TopAuthor(entry.getKey().isEmpty() ? null : entry.getKey(), count));
+			} else if(heap.peek().count() < count) {
+				heap.poll();
+				heap.add(new TopAuthor(entry.getKey().isEmpty() ? null : entry.getKey(), count));
+			}
+		}
+		List<TopAuthor> sorted = new ArrayList<>(heap);
+		sorted.sort(Comparator.comparingLong(TopAuthor::count).reversed()
+				.thenComparing(TopAuthor::author, Comparator.nullsLast(Comparator.naturalOrder())));
+		top = new Top(List.copyOf(sorted), distinct, System.currentTimeMillis());
+	}
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		running = true;
+		worker = new Thread(this::run, "book-stats");
+		worker.setDaemon(true);
+		worker.start();
+	}
+	
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		running = false;
+		if(worker != null) {
+			LockSupport.unpark(worker);
+			worker.join(TimeUnit.SECONDS.toMillis(10));
+		}
+	}
+	
+	private void run() {
+		long nextReconcile = System.nanoTime() + (reconcileOnStartup ? 0 : reconcileIntervalNanos);
+		while(running) {
+			try {
+				if(System.nanoTime() - nextReconcile >= 0) {
+					reconcile();
+					nextReconcile = System.nanoTime() + reconcileIntervalNanos;
+				} else {
+					refreshTop();
+				}
+			} catch (RuntimeException e) {
+				log.warn("통계 갱신 실패 (다음 주기에 다시 시도)", e);
+				nextReconcile = System.nanoTime() + reconcileIntervalNanos;
+			}
+			LockSupport.parkNanos(this, topIntervalNanos);
+		}
+	}
+}
@@ -0,0 +1,417 @@
+package com.cos.book.service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cos.book.config.CacheConfig;
+import com.cos.book.domain.Book;
+import com.cos.book.domain.BookIdAllocator;
+import com.cos.book.domain.BookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * write-behind (book.write-behind.enabled=true 일때만)
+ * POST/PUT/DELETE 를 바로 db에 쓰지 않고 큐에 넣고 응답한다. 백그라운드 스레드 하나가 batch-size 만큼씩 꺼내서
+ * 같은 id끼리 합친 뒤 (update는 마지막 값, insert 후 delete는 둘 다 취소) 트랜잭션 하나 + JDBC 배치로 쓴다.
+ * - 큐 : ConcurrentLinkedQueue + AtomicInteger 로 크기 제한, 가득 차면 WriteBehindFullException
+ *   넣을때는 id 별 stripe 락을 잡는다. (아래 저널/큐/캐시 순서 때문, 다른 id 끼리는 64개 락으로 나눠져 거의 안 막힘, 락 안에서 db 호출 없음)
+ * - 자기가 쓴 건 바로 읽히게 큐에 넣을때 book 캐시에도 넣고, 커밋 후에는 flush 가 db 에 쓴 값 (version 포함) 으로 캐시를 바꾼다.
+ * - version 은 큐에 넣을때 정한다. (insert 0, update 는 큐의 마지막 쓰기나 캐시의 version +1) flush 가 그 version 으로 써서 202 의 ETag 가 커밋 후에도 맞는다.
+ *   둘 다 없으면 db 를 읽지 않고 version 없이 넣는다. (202 에 ETag 없음, flush 때 db 의 version +1)
+ * - 큐에서 지워진 id 의 update 는 BookNotFoundException (404), db 에 없는 id 의 update 는 flush 때 아무것도 바꾸지 않는다.
+ * - book.write-behind.journal 경로를 주면 큐에 넣기 전에 저널에 남겨서 재시작시 복구한다.
+ *   저널 기록/큐/캐시는 같은 id 끼리 같은 락 안에서 바뀌어서 셋의 순서가 같다.
+ * - 배치가 max-retries 까지 실패하면 한 건씩 다시 쓰고, 그래도 안되는 건 dead-letter (저널 경로 + .dead) 에 남긴다.
+ */
+@Slf4j
+@ConditionalOnProperty(name = "book.write-behind.enabled", havingValue = "true")
+@Service
+public class BookWriteBehind {
+	public enum Op { INSERT, UPDATE, DELETE }
+	private static final int STRIPES = 64;
+	
+	@AllArgsConstructor
+	@NoArgsConstructor
+	@Data
+	public static class Write {
+		private Op op;
+		private Long id;
+		private String title;
+		private String author;
+		private Long version; //예전 저널 줄에는 없다 (null => db 에서 +1)
+		
+		Book toBook() {
+			return new Book(id, title, author, version);
+		}
+	}
+	
+	private final BookRepository bookRepository;
+	private final BookIdAllocator bookIdAllocator;
+	private final TransactionTemplate transactionTemplate;
+	private final ApplicationEventPublisher eventPublisher;
+	private final Cache cache;
+	private final int capacity;
+	private final int batchSize;
+	private final long flushIntervalNanos;
+	private final int maxRetries;
+	private final BookWriteBehindJournal journal; //null 이면 저널 없음
+	private final BookWriteBehindJournal deadLetter; //저널이 있을때만
+	
+	private final ConcurrentLinkedQueue<Write> queue = new ConcurrentLinkedQueue<>();
+	private final ConcurrentHashMap<Long, Write> pending = new ConcurrentHashMap<>(); //id 별 마지막으로 큐에 넣은 쓰기 (커밋되면 빠짐)
+	private final ReentrantLock[] stripes = new ReentrantLock[STRIPES]; //같은 id 는 같은 락
+	private final AtomicInteger depth = new AtomicInteger(); //아직 커밋 안된 쓰기 수 (꺼내서 쓰는 중인 것 포함)
+	private volatile boolean running;
+	private Thread flusher;
+	
+	private final LongAdder enqueued = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder written = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder deadLettered = new LongAdder();
+	private final LongAdder flushCount = new LongAdder();
+	private final LongAdder flushNanosTotal = new LongAdder();
+	private final AtomicLong flushNanosMax = new AtomicLong();
+	private volatile long flushNanosLast;
+	
+	public BookWriteBehind(BookRepository bookRepository, BookIdAllocator bookIdAllocator, TransactionTemplate transactionTemplate,
+			ApplicationEventPublisher eventPublisher, CacheManager cacheManager, ObjectMapper objectMapper,
+			@Value("${book.write-behind.capacity:100000}") int capacity,
+			@Value("${book.write-behind.batch-size:500}") int batchSize,
+			@Value("${book.write-behind.flush-interval-ms:50}") long flushIntervalMs,
+			@Value("${book.write-behind.max-retries:3}") int maxRetries,
+			@Value("${book.write-behind.journal:}") String journalPath,
+			@Value("${book.write-behind.fsync:false}") boolean fsync) throws IOException {
+		this.bookRepository = bookRepository;
+		this.bookIdAllocator = bookIdAllocator;
+		this.transactionTemplate = transactionTemplate;
+		this.eventPublisher = eventPublisher;
+		this.cache = cacheManager.getCache(CacheConfig.BOOK);
+		this.capacity = capacity;
+		this.batchSize = batchSize;
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+		this.maxRetries = maxRetries;
+		this.journal = journalPath.isEmpty() ? null : new BookWriteBehindJournal(Paths.get(journalPath), objectMapper, fsync);
+		this.deadLetter = journalPath.isEmpty() ? null : new BookWriteBehindJournal(Paths.get(journalPath + ".dead"), objectMapper, fsync);
+		for(int i = 0; i < STRIPES; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+		if(journal != null) {
+			List<Write> recovered = journal.readAll();
+			for(Write write : recovered) {
+				depth.incrementAndGet();
+				queue.offer(write);
+				pending.put(write.getId(), write);
+			}
+			if(!recovered.isEmpty()) {
+				log.info("write-behind 저널에서 {}건 복구", recovered.size());
+			}
+		}
+	}
+	
+	@PostConstruct
+	public void start() {
+		running = true;
+		flusher = new Thread(this::run, "book-write-behind");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+	
+	//남은 쓰기를 다 flush 하고 끝낸다.
+	@PreDestroy
+	public void stop() throws InterruptedException, IOException {
+		running = false;
+		if(flusher != null) {
+			LockSupport.unpark(flusher);
+			flusher.join(TimeUnit.SECONDS.toMillis(30));
+		}
+		if(journal != null) {
+			journal.close();
+			deadLetter.close();
+		}
+	}
+	
+	//id를 미리 받아서 돌려준다. (version 0)
+	public Book save(Book book) {
+		Write write = new Write(Op.INSERT, bookIdAllocator.next(), book.getTitle(), book.getAuthor(), 0L);
+		enqueue(write);
+		return write.toBook();
+	}
+	
+	//version 은 큐에 있는 마지막 쓰기나 캐시의 version + 1 (요청 스레드에서 db 를 읽지 않는다, 모르면 null)
+	public Book update(Long id, Book book) {
+		ReentrantLock lock = stripe(id);
+		lock.lock();
+		try {
+			Write last = pending.get(id);
+			if(last != null && last.getOp() == Op.DELETE) {
+				throw new BookNotFoundException(id);
+			}
+			Long current = last != null ? last.getVersion() : cachedVersion(id);
+			Write write = new Write(Op.UPDATE, id, book.getTitle(), book.getAuthor(), current == null ? null : current + 1);
+			enqueue(write);
+			return write.toBook();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public String delete(Long id) {
+		enqueue(new Write(Op.DELETE, id, null, null, null));
+		return "ok";
+	}
+	
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		long flushes = flushCount.sum();
+		stats.put("depth", depth.get());
+		stats.put("capacity", capacity);
+		stats.put("enqueued", enqueued.sum());
+		stats.put("rejected", rejected.sum());
+		stats.put("coalesced", coalesced.sum());
+		stats.put("written", written.sum());
+		stats.put("failed", failed.sum());
+		stats.put("deadLettered", deadLettered.sum());
+		stats.put("flushes", flushes);
+		stats.put("flushLastMs", flushNanosLast / 1_000_000.0);
+		stats.put("flushAvgMs", flushes == 0 ? 0 : flushNanosTotal.sum() / 1_000_000.0 / flushes);
+		stats.put("flushMaxMs", flushNanosMax.get() / 1_000_000.0);
+		return stats;
+	}
+	
+	//저널 기록, 큐, 캐시를 id 락 안에서 같이 바꾼다. (다른 스레드가 같은 id 를 끼워넣어 저널과 큐 순서가 달라지지 않게)
+	private void enqueue(Write write) {
+		ReentrantLock lock = stripe(write.getId());
+		lock.lock();
+		try {
+			if(depth.incrementAndGet() > capacity) {
+				depth.decrementAndGet();
+				rejected.increment();
+				throw new WriteBehindFullException(capacity);
+			}
+			if(journal != null) {
+				try {
+					journal.append(write);
+				} catch (RuntimeException e) {
+					depth.decrementAndGet();
+					throw e;
+				}
+			}
+			queue.offer(write);
+			pending.put(write.getId(), write);
+			enqueued.increment();
+			//자기가 쓴 것은 flush 전에도 읽히게
+			if(cache != null) {
+				if(write.getOp() == Op.DELETE) {
+					cache.evict(write.getId());
+				} else {
+					cache.put(write.getId(), write.toBook());
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		if(depth.get() >= batchSize && flusher != null) {
+			LockSupport.unpark(flusher);
+		}
+	}
+	
+	private Long cachedVersion(Long id) {
+		Book cached = cache == null ? null : cache.get(id, Book.class);
+		return cached == null ? null : cached.getVersion();
+	}
+	
+	private ReentrantLock stripe(Long id) {
+		return stripes[(Long.hashCode(id) & Integer.MAX_VALUE) % STRIPES];
+	}
+	
+	private void run() {
+		while(running || !queue.isEmpty()) {
+			if(running && queue.size() < batchSize) {
+				LockSupport.parkNanos(this, flushIntervalNanos);
+			}
+			flush();
+		}
+	}
+	
+	//큐를 batch-size 만큼씩 비운다.
+	void flush() {
+		List<Write> batch = new ArrayList<>(batchSize);
+		Write write;
+		while(batch.size() < batchSize && (write = queue.poll()) != null) {
+			batch.add(write);
+		}
+		if(batch.isEmpty()) {
+			return;
+		}
+		Map<Long, Write> writes = coalesce(batch);
+		Map<Long, Book> committed = new HashMap<>();
+		long start = System.nanoTime();
+		for(int attempt = 1; ; attempt++) {
+			try {
+				committed.putAll(write(writes));
+				written.add(writes.size());
+				break;
+			} catch (RuntimeException e) {
+				if(attempt > maxRetries) {
+					log.warn("write-behind flush 실패, {}건을 한 건씩 다시 씁니다.", writes.size(), e);
+					writeOneByOne(writes, committed);
+					break;
+				}
+				log.warn("write-behind flush 실패, 재시도 {}/{}", attempt, maxRetries, e);
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100L << attempt));
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		flushCount.increment();
+		flushNanosTotal.add(elapsed);
+		flushNanosLast = elapsed;
+		flushNanosMax.accumulateAndGet(elapsed, Math::max);
+		batch.forEach(queued -> settle(queued, committed.get(queued.getId())));
+		depth.addAndGet(-batch.size());
+		if(journal != null) {
+			journal.truncateIfIdle(depth);
+		}
+	}
+	
+	//배치 안의 한 건 때문에 전체가 실패한 경우 : 나머지는 쓰고, 실패한 건은 dead-letter 로 (저널을 비워도 남는다)
+	private void writeOneByOne(Map<Long, Write> writes, Map<Long, Book> committed) {
+		for(Write write : writes.values()) {
+			try {
+				committed.putAll(write(Map.of(write.getId(), write)));
+				written.increment();
+			} catch (RuntimeException e) {
+				failed.increment();
+				if(deadLetter != null) {
+					deadLetter.append(write);
+					deadLettered.increment();
+				}
+				log.error("write-behind 쓰기 실패 (dead-letter) : {}", write, e);
+			}
+		}
+	}
+	
+	//커밋된 (또는 dead-letter 로 간) 쓰기가 그 id 의 마지막 쓰기면 pending 에서 빼고 캐시를 db 에 쓴 값으로 바꾼다.
+	//db 에 남은 게 없으면 (삭제, 없는 책, dead-letter) 캐시를 지운다. (다음 조회는 db 에서)
+	//그 사이에 새로 들어온 쓰기가 있으면 그것의 캐시는 그대로 둔다.
+	private void settle(Write write, Book committed) {
+		ReentrantLock lock = stripe(write.getId());
+		lock.lock();
+		try {
+			if(pending.get(write.getId()) == write) {
+				pending.remove(write.getId());
+				if(cache != null) {
+					if(committed == null) {
+						cache.evict(write.getId());
+					} else {
+						cache.put(write.getId(), committed);
+					}
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	//같은 id는 하나로 : update는 마지막 값, insert 후 update는 insert, insert 후 delete는 취소, delete 후 update는 delete
+	private Map<Long, Write> coalesce(List<Write> batch) {
+		Map<Long, Write> writes = new LinkedHashMap<>();
+		for(Write write : batch) {
+			Write prev = writes.get(write.getId());
+			if(prev == null) {
+				writes.put(write.getId(), write);
+				continue;
+			}
+			coalesced.increment();
+			if(write.getOp() == Op.DELETE) {
+				if(prev.getOp() == Op.INSERT) {
+					writes.remove(write.getId());
+				} else {
+					writes.put(write.getId(), write);
+				}
+			} else if(prev.getOp() == Op.INSERT) {
+				writes.put(write.getId(), new Write(Op.INSERT, write.getId(), write.getTitle(), write.getAuthor(), write.getVersion()));
+			} else if(prev.getOp() != Op.DELETE) {
+				writes.put(write.getId(), write);
+			}
+		}
+		return writes;
+	}
+	
+	//커밋된 뒤 db 에 있는 값을 돌려준다. (update 의 version 은 batchWrite 와 같게 GREATEST(version + 1, ?))
+	private Map<Long, Book> write(Map<Long, Write> writes) {
+		Map<Long, Book> committed = new HashMap<>();
+		transactionTemplate.executeWithoutResult(status -> {
+			committed.clear();
+			//바꾸기 전 값 (변경 이벤트의 previous) 을 행 락을 잡고 읽는다.
+			//저널 복구로 다시 들어온 insert는 이미 있을 수 있다 => update로 (flush를 몇번 해도 같은 결과)
+			Map<Long, Book> previous = new HashMap<>();
+			for(Book book : bookRepository.findForUpdateByIdIn(new ArrayList<>(writes.keySet()))) {
+				previous.put(book.getId(), book);
+			}
+			Set<Long> existIds = previous.keySet();
+			List<Book> inserts = new ArrayList<>();
+			List<Book> updates = new ArrayList<>();
+			List<Long> deletes = new ArrayList<>();
+			for(Write write : writes.values()) {
+				if(write.getOp() == Op.DELETE) {
+					deletes.add(write.getId());
+				} else if(write.getOp() == Op.INSERT && !existIds.contains(write.getId())) {
+					inserts.add(write.toBook());
+				} else {
+					updates.add(write.toBook());
+				}
+			}
+			bookRepository.batchWrite(inserts, updates, deletes);
+			//검색 색인 등은 커밋 후에 받는다.
+			for(Write write : writes.values()) {
+				Book before = previous.get(write.getId());
+				Book after = write.toBook();
+				if(write.getOp() == Op.INSERT && before == null) {
+					after.setVersion(write.getVersion() == null ? 0L : write.getVersion());
+					committed.put(write.getId(), after);
+					eventPublisher.publishEvent(BookChangedEvent.saved(after));
+				} else if(before == null) {
+					continue; //이미 없는 책의 update/delete 는 db 에서 아무것도 안 바뀜
+				} else if(write.getOp() == Op.DELETE) {
+					eventPublisher.publishEvent(BookChangedEvent.deleted(before));
+				} else {
+					after.setVersion(Math.max(before.getVersion() + 1, write.getVersion() == null ? 0L : write.getVersion()));
+					committed.put(write.getId(), after);
+					eventPublisher.publishEvent(BookChangedEvent.saved(after, before));
+				}
+			}
+		});
+		return committed;
+	}
+}
@@ -0,0 +1,102 @@
+package com.cos.book.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * write-behind 추가 전용 저널 (한 줄에 쓰기 하나, NDJSON)
+ * 큐에 넣기 전에 먼저 기록 => 서버가 죽어도 다시 뜰때 읽어서 큐에 되살린다.
+ * 큐가 다 비워지면(db에 커밋되면) 파일을 비운다.
+ */
+@Slf4j
+class BookWriteBehindJournal {
+	private final ObjectMapper objectMapper;
+	private final boolean fsync; //true면 기록할때마다 디스크까지 (OS가 죽어도 안전, 대신 느림)
+	private final FileChannel channel;
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	BookWriteBehindJournal(Path path, ObjectMapper objectMapper, boolean fsync) throws IOException {
+		this.objectMapper = objectMapper;
+		this.fsync = fsync;
+		if(path.getParent() != null) {
+			Files.createDirectories(path.getParent());
+		}
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.channel.position(channel.size());
+	}
+	
+	//마지막 줄이 쓰다 만 줄이면 버린다.
+	List<BookWriteBehind.Write> readAll() throws IOException {
+		lock.lock();
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+			channel.read(buffer, 0);
+			List<BookWriteBehind.Write> writes = new ArrayList<>();
+			for(String line : new String(buffer.array(), StandardCharsets.UTF_8).split("\n")) {
+				if(line.isEmpty()) {
+					continue;
+				}
+				try {
+					writes.add(objectMapper.readValue(line, BookWriteBehind.Write.class));
+				} catch (IOException e) {
+					log.warn("저널의 잘린 줄을 무시합니다 : {}", line);
+				}
+			}
+			return writes;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	void append(BookWriteBehind.Write write) {
+		lock.lock();
+		try {
+			byte[] json = objectMapper.writeValueAsBytes(write);
+			ByteBuffer buffer = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n');
+			buffer.flip();
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			if(fsync) {
+				channel.force(false);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	//커밋 안된 쓰기가 하나도 없을때만 비운다. (depth는 append 전에 올라가므로 lock 안에서 0이면 안전)
+	void truncateIfIdle(AtomicInteger depth) {
+		lock.lock();
+		try {
+			if(depth.get() == 0 && channel.size() > 0) {
+				channel.truncate(0);
+				channel.position(0);
+			}
+		} catch (IOException e) {
+			log.warn("저널 비우기 실패", e);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,35 @@
+package com.cos.book.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//벌크 요청 결과 (건별 결과 + 처리량)
+@Data
+public class BulkResult {
+	public static final String CREATED = "created";
+	public static final String UPDATED = "updated";
+	public static final String DELETED = "deleted";
+	public static final String NOT_FOUND = "not_found";
+	public static final String FAILED = "failed";
+	
+	private int total;
+	private int succeeded;
+	private int failed;
+	private long elapsedMs;
+	private double itemsPerSecond;
+	private List<Item> items = new ArrayList<>();
+	
+	@AllArgsConstructor
+	@NoArgsConstructor
+	@Data
+	public static class Item {
+		private int index; //요청 본문에서의 순서
+		private Long id;
+		private String status;
+		private String message;
+	}
+}
@@ -0,0 +1,101 @@
+package com.cos.book.service;
+
+import java.util.Arrays;
+
+//long 키 해시 맵 (키를 박싱하지 않음). LongPostings 와 같은 열린 주소법 + 선형 탐사
+class LongMap<V> {
+	private static final long EMPTY = Long.MIN_VALUE;
+	
+	private long[] keys = newKeys(16);
+	private Object[] values = new Object[16];
+	private int size;
+	
+	@SuppressWarnings("unchecked")
+	V get(long key) {
+		int idx = indexOf(keys, key);
+		return keys[idx] == EMPTY ? null : (V) values[idx];
+	}
+	
+	@SuppressWarnings("unchecked")
+	V put(long key, V value) {
+		if((size + 1) * 4 > keys.length * 3) {
+			resize(keys.length * 2);
+		}
+		int idx = indexOf(keys, key);
+		V old = (V) values[idx];
+		if(keys[idx] == EMPTY) {
+			keys[idx] = key;
+			size++;
+		}
+		values[idx] = value;
+		return old;
+	}
+	
+	@SuppressWarnings("unchecked")
+	V remove(long key) {
+		int mask = keys.length - 1;
+		int idx = indexOf(keys, key);
+		if(keys[idx] == EMPTY) {
+			return null;
+		}
+		V old = (V) values[idx];
+		keys[idx] = EMPTY;
+		values[idx] = null;
+		size--;
+		for(int next = (idx + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+			int home = hash(keys[next]) & mask;
+			if(idx <= next ? (home <= idx || home > next) : (home <= idx && home > next)) {
+				keys[idx] = keys[next];
+				values[idx] = values[next];
+				keys[next] = EMPTY;
+				values[next] = null;
+				idx = next;
+			}
+		}
+		return old;
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	void clear() {
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+	
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = newKeys(capacity);
+		values = new Object[capacity];
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != EMPTY) {
+				int idx = indexOf(keys, oldKeys[i]);
+				keys[idx] = oldKeys[i];
+				values[idx] = oldValues[i];
+			}
+		}
+	}
+	
+	private static int indexOf(long[] keys, long key) {
+		int mask = keys.length - 1;
+		int idx = hash(key) & mask;
+		while(keys[idx] != EMPTY && keys[idx] != key) {
+			idx = (idx + 1) & mask;
+		}
+		return idx;
+	}
+	
+	static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+	
+	private static long[] newKeys(int capacity) {
+		long[] keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		return keys;
+	}
+}
@@ -0,0 +1,92 @@
+package com.cos.book.service;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+//long 해시 집합 (박싱 없는 posting list). 열린 주소법 + 선형 탐사라서 add/remove/contains 가 O(1) (정렬 배열의 arraycopy 없음)
+class LongPostings {
+	private static final long EMPTY = Long.MIN_VALUE; //id 로 쓰이지 않는 값
+	
+	private long[] slots = newSlots(4);
+	private int size;
+	
+	void add(long id) {
+		if((size + 1) * 4 > slots.length * 3) { //75% 넘으면 두배
+			resize(slots.length * 2);
+		}
+		int idx = indexOf(slots, id);
+		if(slots[idx] == EMPTY) {
+			slots[idx] = id;
+			size++;
+		}
+	}
+	
+	//지운 자리 뒤에 같은 묶음으로 밀려있던 값들을 당겨온다. (tombstone 없음)
+	void remove(long id) {
+		int mask = slots.length - 1;
+		int idx = indexOf(slots, id);
+		if(slots[idx] == EMPTY) {
+			return;
+		}
+		slots[idx] = EMPTY;
+		size--;
+		for(int next = (idx + 1) & mask; slots[next] != EMPTY; next = (next + 1) & mask) {
+			long moved = slots[next];
+			int home = hash(moved) & mask;
+			//home 이 (idx, next] 밖이면 idx 로 옮겨도 찾아진다.
+			if(idx <= next ? (home <= idx || home > next) : (home <= idx && home > next)) {
+				slots[idx] = moved;
+				slots[next] = EMPTY;
+				idx = next;
+			}
+		}
+	}
+	
+	boolean contains(long id) {
+		return slots[indexOf(slots, id)] != EMPTY;
+	}
+	
+	//순서 없음
+	void forEach(LongConsumer consumer) {
+		for(long id : slots) {
+			if(id != EMPTY) {
+				consumer.accept(id);
+			}
+		}
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	private void resize(int capacity) {
+		long[] old = slots;
+		slots = newSlots(capacity);
+		for(long id : old) {
+			if(id != EMPTY) {
+				slots[indexOf(slots, id)] = id;
+			}
+		}
+	}
+	
+	//id 가 있는 자리, 없으면 들어갈 빈 자리
+	private static int indexOf(long[] slots, long id) {
+		int mask = slots.length - 1;
+		int idx = hash(id) & mask;
+		while(slots[idx] != EMPTY && slots[idx] != id) {
+			idx = (idx + 1) & mask;
+		}
+		return idx;
+	}
+	
+	private static int hash(long id) {
+		long h = id * 0x9E3779B97F4A7C15L; //증가하는 id 가 한쪽에 몰리지 않게
+		return (int) (h ^ (h >>> 32));
+	}
+	
+	private static long[] newSlots(int capacity) {
+		long[] slots = new long[capacity];
+		Arrays.fill(slots, EMPTY);
+		return slots;
+	}
+}
@@ -0,0 +1,123 @@
+package com.cos.book.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//정렬된 long 집합 (박싱 없음, 작은 순서로 읽기). 크기 BLOCK 까지의 정렬 배열 블록들이라서 add/remove 는 블록 하나 안의 arraycopy
+//블록은 4칸부터 두배로 키운다. (원소 몇개짜리 집합이 많아서)
+class SortedLongs {
+	private static final int BLOCK = 256;
+	
+	private final List<Block> blocks = new ArrayList<>();
+	private int size;
+	
+	private static class Block {
+		private long[] ids = new long[4];
+		private int count;
+	}
+	
+	void add(long id) {
+		if(blocks.isEmpty()) {
+			blocks.add(new Block());
+		}
+		int index = blockOf(id);
+		Block block = blocks.get(index);
+		int pos = Arrays.binarySearch(block.ids, 0, block.count, id);
+		if(pos >= 0) {
+			return;
+		}
+		pos = -pos - 1;
+		if(block.count == BLOCK) { //반으로 나눈다.
+			Block right = new Block();
+			right.ids = Arrays.copyOfRange(block.ids, BLOCK / 2, BLOCK);
+			right.count = BLOCK - BLOCK / 2;
+			block.count = BLOCK / 2;
+			blocks.add(index + 1, right);
+			if(pos > BLOCK / 2) {
+				block = right;
+				pos -= BLOCK / 2;
+			}
+		}
+		if(block.count == block.ids.length) {
+			block.ids = Arrays.copyOf(block.ids, Math.min(block.ids.length * 2, BLOCK));
+		}
+		System.arraycopy(block.ids, pos, block.ids, pos + 1, block.count - pos);
+		block.ids[pos] = id;
+		block.count++;
+		size++;
+	}
+	
+	void remove(long id) {
+		if(blocks.isEmpty()) {
+			return;
+		}
+		int index = blockOf(id);
+		Block block = blocks.get(index);
+		int pos = Arrays.binarySearch(block.ids, 0, block.count, id);
+		if(pos < 0) {
+			return;
+		}
+		System.arraycopy(block.ids, pos + 1, block.ids, pos, block.count - pos - 1);
+		block.count--;
+		size--;
+		if(block.count == 0 && blocks.size() > 1) {
+			blocks.remove(index);
+		}
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	Cursor cursor() {
+		return new Cursor();
+	}
+	
+	//첫 값이 id 이하인 마지막 블록 (없으면 0)
+	private int blockOf(long id) {
+		int low = 0;
+		int high = blocks.size() - 1;
+		while(low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if(blocks.get(mid).ids[0] <= id) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+	
+	//작은 것부터 하나씩 (읽는 동안 바뀌지 않아야 한다)
+	class Cursor {
+		private int block;
+		private int pos;
+		
+		private Cursor() {
+			skipEmpty();
+		}
+		
+		boolean hasNext() {
+			return block < blocks.size();
+		}
+		
+		long peek() {
+			return blocks.get(block).ids[pos];
+		}
+		
+		long next() {
+			long id = peek();
+			pos++;
+			skipEmpty();
+			return id;
+		}
+		
+		private void skipEmpty() {
+			while(block < blocks.size() && pos >= blocks.get(block).count) {
+				block++;
+				pos = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,8 @@
+package com.cos.book.service;
+
+//write-behind 큐가 가득 참 (잠시 후 다시 요청)
+public class WriteBehindFullException extends RuntimeException {
+	public WriteBehindFullException(int capacity) {
+		super("쓰기 대기열이 가득 찼습니다. capacity=" + capacity);
+	}
+}
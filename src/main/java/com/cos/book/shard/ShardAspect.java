@@ -0,0 +1,344 @@
+package com.cos.book.shard;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cos.book.domain.Book;
+import com.cos.book.domain.BookShardContext;
+import com.cos.book.service.BookService;
+
+/**
+ * BookService 호출을 shard로 보낸다. (캐시/트랜잭션 프록시 바깥 => shard 마다 트랜잭션 하나)
+ * - save : Snowflake id를 먼저 받고 그 id의 shard로
+ * - getOne/update/updateIfMatch/delete : id의 shard로
+ * - getMany : shard 별로 나눠서 동시에 (요청한 id 순서로 돌려줌)
+ * - getAll/getPage : 모든 shard에 동시에 보내고 id 순으로 합친다. (getPage는 k-way merge)
+ * - getByAuthor/getByTitlePrefix : 모든 shard에서 같은 cursor 다음 limit 개씩 받아서 (제목, id) 순으로 합친다.
+ * - saveAll/updateAll/deleteAll : shard 별로 나눠서 동시에 (shard 사이는 원자적이지 않음)
+ * - BookRepository.streamAll (NDJSON, 검색 색인) : shard 차례로 (shard 안에서만 id 순)
+ * - BookRepository.findByIdGreaterThanOrderByIdAsc (통계 reconcile) : getPage 처럼 모든 shard 에서 받아서 id 순으로 합친다.
+ * 쓰기는 shard 트랜잭션을 여기서 열고 book_bucket 행을 잠근 뒤 서비스를 부른다. (서비스의 @Transactional 은 참여)
+ * 리밸런싱 마지막 동기화 동안은 기다리고, 다른 인스턴스가 bucket을 옮겼으면 맵을 다시 읽고 새 shard로 다시 보낸다.
+ */
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@Aspect
+public class ShardAspect {
+	private static final int MAX_ATTEMPTS = 5;
+	
+	private final ShardMap shardMap;
+	private final SnowflakeIdGenerator idGenerator;
+	private final TransactionTemplate transactionTemplate;
+	private final JdbcTemplate jdbcTemplate; //라우팅 DataSource : 트랜잭션이 잡은 shard 커넥션을 같이 쓴다.
+	private final ExecutorService executor;
+	
+	public ShardAspect(ShardMap shardMap, SnowflakeIdGenerator idGenerator, PlatformTransactionManager transactionManager, JdbcTemplate jdbcTemplate) {
+		this.shardMap = shardMap;
+		this.idGenerator = idGenerator;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.jdbcTemplate = jdbcTemplate;
+		//scatter-gather : shard 마다 JDBC로 블로킹 => 가상 스레드 (동시 수는 shard 풀 크기가 제한)
+		//Executor 빈으로 등록하면 스프링부트 기본 applicationTaskExecutor가 빠져서 직접 가진다.
+		this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("book-shard-", 0).factory());
+	}
+	
+	public void close() {
+		executor.shutdown();
+	}
+	
+	@FunctionalInterface
+	interface Call<R> {
+		R run() throws Throwable;
+	}
+	
+	//shard 의 book_bucket 이 다른 shard 를 가리킴 (다른 인스턴스가 옮김)
+	private static class BucketMovedException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		
+		BucketMovedException(int shard, Map<Integer, Integer> owners) {
+			super("shard " + shard + " 의 bucket 주인 : " + owners);
+		}
+	}
+	
+	@Around("execution(public * com.cos.book.service.BookService.*(..))")
+	@SuppressWarnings("unchecked")
+	public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+		if(BookShardContext.current() != null) {
+			return joinPoint.proceed();
+		}
+		Object[] args = joinPoint.getArgs();
+		switch(joinPoint.getSignature().getName()) {
+		case "save": {
+			Book book = (Book) args[0];
+			book.setId(idGenerator.next()); //새로 만드는 것 : 보낸 id는 무시
+			return writeOne(book.getId(), joinPoint::proceed);
+		}
+		case "update":
+		case "updateIfMatch":
+		case "delete": {
+			return writeOne((Long) args[0], joinPoint::proceed);
+		}
+		case "getOne":
+			return onShard(shardMap.shardOf((Long) args[0]), joinPoint::proceed);
+		case "getMany": { //shard 별로 나눠서 조회하고 요청한 순서로 되돌린다.
+			List<Long> ids = ((List<Long>) args[0]).stream().distinct().toList();
+			Map<Long, Book> found = new HashMap<>();
+			for(Object book : grouped(joinPoint, ids, Function.identity(), false)) {
+				found.put(((Book) book).getId(), (Book) book);
+			}
+			return ids.stream().map(found::get).filter(Objects::nonNull).collect(Collectors.toList());
+		}
+		case "getAll": {
+			List<Book> books = new ArrayList<>();
+			scatter(joinPoint).forEach(result -> books.addAll((List<Book>) result));
+			books.sort(Comparator.comparing(Book::getId));
+			return books;
+		}
+		case "getPage":
+			return page((List<Slice<Book>>) (List<?>) scatter(joinPoint), (int) args[1]);
+		case "getByAuthor":
+		case "getByTitlePrefix": //shard 마다 cursor 다음 limit 개 => (제목, id) 순으로 합쳐서 limit 개
+			return titlePage((List<Slice<Book>>) (List<?>) scatter(joinPoint), Math.min(Math.max((int) args[3], 1), BookService.MAX_PAGE_SIZE));
+		case "saveAll": {
+			List<Book> books = (List<Book>) args[0];
+			books.forEach(book -> book.setId(idGenerator.next()));
+			return grouped(joinPoint, books, Book::getId, true);
+		}
+		case "updateAll":
+			return grouped(joinPoint, (List<Book>) args[0], Book::getId, true);
+		case "deleteAll":
+			return grouped(joinPoint, (List<Long>) args[0], Function.identity(), true);
+		default:
+			return joinPoint.proceed();
+		}
+	}
+	
+	@Around("execution(* com.cos.book.domain.BookRepositoryCustom.streamAll(..))")
+	public Object streamAll(ProceedingJoinPoint joinPoint) throws Throwable {
+		if(BookShardContext.current() != null) {
+			return joinPoint.proceed();
+		}
+		for(int shard = 0; shard < shardMap.shardCount(); shard++) {
+			onShard(shard, joinPoint::proceed);
+		}
+		return null;
+	}
+	
+	@Around("execution(* com.cos.book.domain.BookRepository.findByIdGreaterThanOrderByIdAsc(..))")
+	@SuppressWarnings("unchecked")
+	public Object page(ProceedingJoinPoint joinPoint) throws Throwable {
+		if(BookShardContext.current() != null) {
+			return joinPoint.proceed();
+		}
+		return page((List<Slice<Book>>) (List<?>) scatter(joinPoint), ((Pageable) joinPoint.getArgs()[1]).getPageSize());
+	}
+	
+	private static <R> R onShard(int shard, Call<R> call) throws Throwable {
+		Integer previous = BookShardContext.set(shard);
+		try {
+			return call.run();
+		} finally {
+			BookShardContext.restore(previous);
+		}
+	}
+	
+	//id 하나 : 그 shard 에서 bucket 을 잠그고 실행, 옮겨졌으면 맵을 다시 읽고 다시
+	private Object writeOne(Long id, Call<Object> call) throws Throwable {
+		for(int attempt = 1; ; attempt++) {
+			try {
+				return fenced(shardMap.shardOf(id), List.of(id), call);
+			} catch (BucketMovedException e) {
+				moved(attempt, e);
+			}
+		}
+	}
+	
+	//shard 트랜잭션을 열고 ids 의 book_bucket 행을 잠근 뒤 (리밸런싱과 겹치지 않게) 이 shard 것이면 call
+	private <R> R fenced(int shard, Collection<Long> ids, Call<R> call) throws Throwable {
+		TreeSet<Integer> buckets = new TreeSet<>();
+		for(Long id : ids) {
+			buckets.add(SnowflakeIdGenerator.bucketOf(id));
+		}
+		return onShard(shard, () -> inTransaction(() -> {
+			Map<Integer, Integer> owners = shardMap.lockBuckets(jdbcTemplate, buckets, false);
+			for(int bucket : buckets) {
+				if(!Objects.equals(owners.get(bucket), shard)) {
+					throw new BucketMovedException(shard, owners);
+				}
+			}
+			return call.run();
+		}));
+	}
+	
+	private void moved(int attempt, BucketMovedException e) {
+		if(attempt >= MAX_ATTEMPTS) {
+			throw new IllegalStateException("bucket 을 옮기는 중입니다. 잠시 후 다시 요청해주세요. (" + e.getMessage() + ")", e);
+		}
+		LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10L * attempt));
+		shardMap.reload();
+	}
+	
+	//TransactionCallback 은 Throwable 을 못 던져서 감쌌다가 푼다.
+	private <R> R inTransaction(Call<R> call) throws Throwable {
+		try {
+			return transactionTemplate.execute(status -> {
+				try {
+					return call.run();
+				} catch (RuntimeException | Error e) {
+					throw e;
+				} catch (Throwable e) {
+					throw new UndeclaredThrowableException(e);
+				}
+			});
+		} catch (UndeclaredThrowableException e) {
+			throw e.getUndeclaredThrowable();
+		}
+	}
+	
+	//모든 shard에서 같은 인자로
+	private List<Object> scatter(ProceedingJoinPoint joinPoint) throws Throwable {
+		List<Future<Object>> futures = new ArrayList<>();
+		for(int shard = 0; shard < shardMap.shardCount(); shard++) {
+			int target = shard;
+			futures.add(executor.submit(() -> call(() -> onShard(target, joinPoint::proceed))));
+		}
+		return await(futures);
+	}
+	
+	//shard 별로 나눠서 각 shard에 그 부분만 넘기고 결과(List)를 이어붙인다.
+	//쓰기(write)면 shard 마다 bucket 을 잠그고, 옮겨진 shard 의 몫만 맵을 다시 읽고 다시 나눈다.
+	private <T> List<Object> grouped(ProceedingJoinPoint joinPoint, List<T> items, Function<T, Long> idOf, boolean write) throws Throwable {
+		List<Object> results = new ArrayList<>();
+		List<T> pending = items;
+		for(int attempt = 1; !pending.isEmpty(); attempt++) {
+			Map<Integer, List<T>> groups = new LinkedHashMap<>();
+			for(T item : pending) {
+				groups.computeIfAbsent(shardMap.shardOf(idOf.apply(item)), shard -> new ArrayList<>()).add(item);
+			}
+			List<Future<List<?>>> futures = new ArrayList<>();
+			groups.forEach((shard, group) -> {
+				Call<List<?>> proceed = () -> (List<?>) joinPoint.proceed(new Object[] { group });
+				List<Long> ids = group.stream().map(idOf).toList();
+				futures.add(executor.submit(() -> call(() -> write ? fenced(shard, ids, proceed) : onShard(shard, proceed))));
+			});
+			List<T> retry = new ArrayList<>();
+			BucketMovedException moved = null;
+			int i = 0;
+			for(List<T> group : groups.values()) {
+				try {
+					results.addAll(futures.get(i++).get());
+				} catch (ExecutionException e) {
+					if(!(e.getCause() instanceof BucketMovedException bucketMoved)) {
+						throw e.getCause();
+					}
+					moved = bucketMoved;
+					retry.addAll(group);
+				}
+			}
+			if(moved != null) {
+				moved(attempt, moved);
+			}
+			pending = retry;
+		}
+		return results;
+	}
+	
+	private static Slice<Book> page(List<Slice<Book>> slices, int limit) {
+		int size = Math.min(Math.max(limit, 1), BookService.MAX_PAGE_SIZE);
+		List<List<Book>> contents = new ArrayList<>();
+		boolean hasNext = false;
+		int total = 0;
+		for(Slice<Book> slice : slices) {
+			contents.add(slice.getContent());
+			hasNext |= slice.hasNext();
+			total += slice.getNumberOfElements();
+		}
+		return new SliceImpl<>(merge(contents, size), PageRequest.of(0, size), hasNext || total > size);
+	}
+	
+	//각 shard 의 cursor 다음 size 개(제목, id 순)를 합쳐서 다시 (제목, id) 순으로 size 개
+	//db 정렬과 순서가 다르면 다음 cursor 에서 빠지거나 겹친다. => ShardDataSources 가 뜰때 모든 shard 가 String.compareTo 순서인지 (H2, COLLATION 없음) 확인한다.
+	private static Slice<Book> titlePage(List<Slice<Book>> slices, int size) {
+		List<Book> books = new ArrayList<>();
+		boolean hasNext = false;
+		for(Slice<Book> slice : slices) {
+			books.addAll(slice.getContent());
+			hasNext |= slice.hasNext();
+		}
+		books.sort(Comparator.comparing(Book::getTitle, Comparator.nullsFirst(Comparator.<String>naturalOrder())).thenComparing(Book::getId));
+		int to = Math.min(size, books.size());
+		return new SliceImpl<>(new ArrayList<>(books.subList(0, to)), PageRequest.of(0, size), hasNext || books.size() > to);
+	}
+	
+	//각 목록은 id 순 => 합쳐서 id 순으로 limit 개
+	static List<Book> merge(List<List<Book>> lists, int limit) {
+		PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> Long.compare(lists.get(a[0]).get(a[1]).getId(), lists.get(b[0]).get(b[1]).getId()));
+		for(int i = 0; i < lists.size(); i++) {
+			if(!lists.get(i).isEmpty()) {
+				heads.add(new int[] { i, 0 });
+			}
+		}
+		List<Book> merged = new ArrayList<>();
+		while(!heads.isEmpty() && merged.size() < limit) {
+			int[] head = heads.poll();
+			List<Book> list = lists.get(head[0]);
+			merged.add(list.get(head[1]));
+			if(++head[1] < list.size()) {
+				heads.add(head);
+			}
+		}
+		return merged;
+	}
+	
+	//Callable은 Exception만 던질 수 있어서 감싼다.
+	private static <R> R call(Call<R> call) throws Exception {
+		try {
+			return call.run();
+		} catch (Exception | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	private static List<Object> await(List<Future<Object>> futures) throws Throwable {
+		List<Object> results = new ArrayList<>(futures.size());
+		for(Future<Object> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (ExecutionException e) {
+				throw e.getCause();
+			}
+		}
+		return results;
+	}
+}
@@ -0,0 +1,64 @@
+package com.cos.book.shard;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * book 테이블을 여러 db에 id 해시로 나눠 저장 (--spring.profiles.active=shard)
+ * id(Snowflake) -> bucket(해시, 1024개) -> shard(book_shard_map)
+ * 트랜잭션이 시작될때 shard가 정해져 있지 않을 수 있어서(0번 기본) LazyConnectionDataSourceProxy로 첫 SQL 때 고른다.
+ * write-behind, replica 프로필과는 같이 못쓴다.
+ */
+@Profile("shard")
+@EnableConfigurationProperties(ShardProperties.class)
+@Configuration
+public class ShardConfig {
+	
+	public ShardConfig(@Value("${book.write-behind.enabled:false}") boolean writeBehind) {
+		if(writeBehind) {
+			throw new IllegalStateException("shard 프로필에서는 book.write-behind.enabled 를 쓸 수 없습니다. (시퀀스 id를 씀)");
+		}
+	}
+	
+	@Bean
+	public ShardDataSources shardDataSources(ShardProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+		return new ShardDataSources(properties, meterRegistry.getIfAvailable());
+	}
+	
+	@Bean
+	public DataSource dataSource(ShardDataSources shardDataSources) {
+		return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(shardDataSources.dataSources()));
+	}
+	
+	@Bean
+	public ShardMap shardMap(ShardDataSources shardDataSources, ShardProperties properties) {
+		return new ShardMap(shardDataSources, properties.getMapRefreshMs());
+	}
+	
+	@Bean
+	public SnowflakeIdGenerator snowflakeIdGenerator(ShardProperties properties) {
+		return new SnowflakeIdGenerator(properties.getWorkerId());
+	}
+	
+	@Bean
+	public ShardAspect shardAspect(ShardMap shardMap, SnowflakeIdGenerator snowflakeIdGenerator,
+			PlatformTransactionManager transactionManager, JdbcTemplate jdbcTemplate) {
+		return new ShardAspect(shardMap, snowflakeIdGenerator, transactionManager, jdbcTemplate);
+	}
+	
+	@Bean
+	public ShardRebalancer shardRebalancer(ShardDataSources shardDataSources, ShardMap shardMap, ShardProperties properties) {
+		return new ShardRebalancer(shardDataSources, shardMap, properties.getRebalanceBatchBuckets());
+	}
+}
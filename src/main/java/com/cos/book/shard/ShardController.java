@@ -0,0 +1,38 @@
+package com.cos.book.shard;
+
+import java.util.Map;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+
+//shard 상태 확인, 리밸런싱 (운영 도구)
+@Profile("shard")
+@RequiredArgsConstructor
+@RestController
+public class ShardController {
+	
+	private final ShardRebalancer shardRebalancer;
+	
+	@GetMapping("/book/_shards")
+	public ResponseEntity<?> status() {
+		return new ResponseEntity<>(shardRebalancer.status(),HttpStatus.OK);
+	}
+	
+	//bucket 수가 고르게 되도록 옮긴다. (shard를 추가한 뒤)
+	@PostMapping("/book/_shards/rebalance")
+	public ResponseEntity<?> rebalance() {
+		return new ResponseEntity<>(shardRebalancer.rebalance(),HttpStatus.OK);
+	}
+	
+	@PostMapping("/book/_shards/move")
+	public ResponseEntity<?> move(@RequestParam int bucket, @RequestParam int to) {
+		return new ResponseEntity<>(shardRebalancer.move(Map.of(bucket, to)),HttpStatus.OK);
+	}
+}
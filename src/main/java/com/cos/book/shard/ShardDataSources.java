@@ -0,0 +1,75 @@
+package com.cos.book.shard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+//shard 별 커넥션 풀 (라우팅 없이 특정 shard에 바로 쓸때 : bucket 맵, 리밸런싱)
+public class ShardDataSources implements DisposableBean {
+	private final List<HikariDataSource> pools = new ArrayList<>();
+	private final List<JdbcTemplate> jdbcTemplates = new ArrayList<>();
+	
+	public ShardDataSources(ShardProperties properties, MeterRegistry meterRegistry) {
+		if(properties.getShards().isEmpty()) {
+			throw new IllegalStateException("book.shard.shards 가 비어있습니다.");
+		}
+		ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("db/shard-schema.sql"));
+		for(ShardProperties.Shard shard : properties.getShards()) {
+			HikariDataSource pool = new HikariDataSource();
+			pool.setPoolName("shard-" + pools.size());
+			pool.setJdbcUrl(shard.getUrl());
+			pool.setUsername(shard.getUsername());
+			pool.setPassword(shard.getPassword());
+			pool.setMaximumPoolSize(shard.getMaximumPoolSize());
+			if(meterRegistry != null) {
+				pool.setMetricRegistry(meterRegistry);
+			}
+			schema.execute(pool);
+			pools.add(pool);
+			jdbcTemplates.add(new JdbcTemplate(pool));
+			checkCollation(pool.getPoolName(), jdbcTemplates.get(jdbcTemplates.size() - 1));
+		}
+	}
+	
+	//getByAuthor/getByTitlePrefix 는 shard 마다 제목 순으로 받은 것을 String.compareTo 로 합친다. (ShardAspect.titlePage)
+	//db 정렬이 다르면 (MariaDB 의 utf8mb4_*_ci, H2 의 COLLATION 설정) 다음 cursor 에서 빠지거나 겹치므로 뜰때 막는다.
+	//H2 는 COLLATION 을 정하지 않으면 String.compareTo 순서다. (shard-schema.sql 도 H2 문법)
+	private static void checkCollation(String name, JdbcTemplate jdbcTemplate) {
+		String product = jdbcTemplate.execute((ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+		List<String> collation = "H2".equals(product)
+				? jdbcTemplate.queryForList("SELECT SETTING_VALUE FROM INFORMATION_SCHEMA.SETTINGS WHERE SETTING_NAME = 'COLLATION'", String.class)
+				: List.of(product);
+		if(!collation.isEmpty() && !"OFF".equals(collation.get(0))) {
+			throw new IllegalStateException(name + " 의 문자열 정렬 (" + collation.get(0) + ") 이 shard 결과를 합치는 순서 (String.compareTo) 와 다릅니다. H2 를 COLLATION 없이 써주세요.");
+		}
+	}
+	
+	public int size() {
+		return pools.size();
+	}
+	
+	public List<DataSource> dataSources() {
+		return Collections.unmodifiableList(pools);
+	}
+	
+	public JdbcTemplate jdbcTemplate(int shard) {
+		return jdbcTemplates.get(shard);
+	}
+	
+	@Override
+	public void destroy() {
+		pools.forEach(HikariDataSource::close);
+	}
+}
@@ -0,0 +1,147 @@
+package com.cos.book.shard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * bucket(0~1023) -> shard 번호. shard 0 의 book_shard_map 테이블에 저장
+ * 처음이면 bucket % shard수, shard를 늘린 뒤에는 저장된 맵을 그대로 쓰고 리밸런싱(ShardRebalancer)으로 옮긴다.
+ * 읽기는 배열 하나 (volatile, 바뀔때 통째로 교체)
+ * 여러 인스턴스 사이의 락은 shard 마다 있는 book_bucket 행 (bucket -> 그 shard 가 아는 주인)
+ * - 쓰기 : 트랜잭션 안에서 자기 bucket 행을 공유 락으로 읽고 이 shard 것이 아니면 (다른 인스턴스가 옮김) 맵을 다시 읽고 다시
+ * - 리밸런싱 : 원본 shard 의 행을 배타 락으로 잡고 동기화한 뒤 주인을 바꾼다.
+ * H2 는 공유 락(FOR SHARE) 이 없어서 FOR UPDATE (같은 bucket 쓰기끼리도 차례로)
+ */
+@Slf4j
+public class ShardMap {
+	private final JdbcTemplate metadata; //shard 0
+	private final int shardCount;
+	private final String sharedLock;
+	private final ScheduledExecutorService refresher;
+	private volatile int[] shards;
+	
+	public ShardMap(ShardDataSources shardDataSources, long refreshMs) {
+		this.metadata = shardDataSources.jdbcTemplate(0);
+		this.shardCount = shardDataSources.size();
+		String product = metadata.execute((ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+		this.sharedLock = "H2".equals(product) ? "FOR UPDATE" : "LOCK IN SHARE MODE";
+		if(metadata.queryForObject("SELECT COUNT(*) FROM book_shard_map", Integer.class) == 0) {
+			List<Object[]> rows = new ArrayList<>();
+			for(int bucket = 0; bucket < SnowflakeIdGenerator.BUCKETS; bucket++) {
+				rows.add(new Object[] { bucket, bucket % shardCount });
+			}
+			metadata.batchUpdate("INSERT INTO book_shard_map (bucket, shard) VALUES (?, ?)", rows);
+		}
+		reload();
+		for(int shard = 0; shard < shardCount; shard++) {
+			fillBuckets(shardDataSources.jdbcTemplate(shard));
+		}
+		//다른 인스턴스가 리밸런싱한 맵 반영
+		refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "book-shard-map");
+			thread.setDaemon(true);
+			return thread;
+		});
+		refresher.scheduleWithFixedDelay(this::refresh, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+	}
+	
+	private void refresh() {
+		try {
+			reload();
+		} catch (RuntimeException e) {
+			log.warn("bucket 맵 다시 읽기 실패", e);
+		}
+	}
+	
+	public void close() {
+		refresher.shutdownNow();
+	}
+	
+	public void reload() {
+		int[] loaded = new int[SnowflakeIdGenerator.BUCKETS];
+		Arrays.fill(loaded, -1);
+		metadata.query("SELECT bucket, shard FROM book_shard_map", rs -> {
+			loaded[rs.getInt(1)] = rs.getInt(2);
+		});
+		for(int bucket = 0; bucket < loaded.length; bucket++) {
+			if(loaded[bucket] < 0 || loaded[bucket] >= shardCount) {
+				throw new IllegalStateException("bucket " + bucket + " 의 shard(" + loaded[bucket] + ")가 설정에 없습니다. shard 수 : " + shardCount);
+			}
+		}
+		shards = loaded;
+	}
+	
+	public int shardCount() {
+		return shardCount;
+	}
+	
+	public int shardOf(long id) {
+		return shards[SnowflakeIdGenerator.bucketOf(id)];
+	}
+	
+	public int shardOfBucket(int bucket) {
+		return shards[bucket];
+	}
+	
+	public int[] snapshot() {
+		return shards.clone();
+	}
+	
+	//shard 를 처음 쓸때 book_bucket 을 맵대로 채운다. (있는 행은 리밸런싱이 바꾼 것이라 그대로)
+	private void fillBuckets(JdbcTemplate jdbcTemplate) {
+		Set<Integer> existing = new HashSet<>(jdbcTemplate.queryForList("SELECT bucket FROM book_bucket", Integer.class));
+		List<Object[]> rows = new ArrayList<>();
+		for(int bucket = 0; bucket < SnowflakeIdGenerator.BUCKETS; bucket++) {
+			if(!existing.contains(bucket)) {
+				rows.add(new Object[] { bucket, shards[bucket] });
+			}
+		}
+		if(!rows.isEmpty()) {
+			jdbcTemplate.batchUpdate("INSERT INTO book_bucket (bucket, shard) VALUES (?, ?)", rows);
+		}
+	}
+	
+	//jdbcTemplate 의 트랜잭션 안에서 book_bucket 행을 잠그고 bucket -> 주인. (exclusive : 리밸런싱)
+	Map<Integer, Integer> lockBuckets(JdbcTemplate jdbcTemplate, Collection<Integer> buckets, boolean exclusive) {
+		String in = String.join(",", Collections.nCopies(buckets.size(), "?"));
+		Map<Integer, Integer> owners = new HashMap<>();
+		jdbcTemplate.query("SELECT bucket, shard FROM book_bucket WHERE bucket IN (" + in + ") ORDER BY bucket " + (exclusive ? "FOR UPDATE" : sharedLock),
+				rs -> {
+					owners.put(rs.getInt(1), rs.getInt(2));
+				}, buckets.toArray());
+		return owners;
+	}
+	
+	//한 shard 의 book_bucket 주인을 바꾼다. (moves : bucket -> shard)
+	static void setOwners(JdbcTemplate jdbcTemplate, Map<Integer, Integer> moves) {
+		List<Object[]> rows = new ArrayList<>();
+		moves.forEach((bucket, shard) -> rows.add(new Object[] { shard, bucket }));
+		jdbcTemplate.batchUpdate("UPDATE book_bucket SET shard = ? WHERE bucket = ?", rows);
+	}
+	
+	//원본 shard 의 book_bucket 을 바꿔서 커밋한 뒤에 부른다.
+	void assign(Map<Integer, Integer> moves) {
+		List<Object[]> rows = new ArrayList<>();
+		moves.forEach((bucket, shard) -> rows.add(new Object[] { shard, bucket }));
+		metadata.batchUpdate("UPDATE book_shard_map SET shard = ? WHERE bucket = ?", rows);
+		int[] next = shards.clone();
+		moves.forEach((bucket, shard) -> next[bucket] = shard);
+		shards = next;
+		log.info("bucket {}개 이동 : {}", moves.size(), moves);
+	}
+}
@@ -0,0 +1,26 @@
+package com.cos.book.shard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+//book.shard.* (shard 프로필)
+@Data
+@ConfigurationProperties("book.shard")
+public class ShardProperties {
+	private List<Shard> shards = new ArrayList<>(); //0번이 bucket 맵, 시퀀스 등 메타데이터도 가진다.
+	private int workerId; //Snowflake 워커 번호 (0~1023) 인스턴스마다 달라야 한다.
+	private long mapRefreshMs = 5000; //다른 인스턴스가 옮긴 bucket 맵을 다시 읽는 주기
+	private int rebalanceBatchBuckets = 64; //한번에 옮기는 bucket 수 (이 bucket들은 마지막 동기화 동안 쓰기가 잠깐 멈춤)
+	
+	@Data
+	public static class Shard {
+		private String url;
+		private String username;
+		private String password;
+		private int maximumPoolSize = 10;
+	}
+}
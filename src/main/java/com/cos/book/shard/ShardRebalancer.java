@@ -0,0 +1,277 @@
+package com.cos.book.shard;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cos.book.domain.Book;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 온라인 리밸런싱 : bucket을 다른 shard로 옮긴다. (shard를 추가한 뒤 rebalance())
+ * 1. 복사 : 원본 shard의 그 bucket 행들을 대상 shard로 (락 없음, 이 동안 읽기/쓰기 모두 원본에서 계속)
+ *    행마다 있는 bucket 컬럼 인덱스로 그 bucket 만 읽는다. (book 전체를 읽지 않음) 복사한 id -> version 을 기억해 둔다.
+ * 2. 동기화 : 원본 shard 트랜잭션에서 그 bucket들의 book_bucket 행을 배타 락으로 잡고 (모든 인스턴스의 그 bucket 쓰기가 기다림)
+ *    원본의 (id, version) 만 인덱스로 읽어서 복사 때와 다른 것 (수정/추가/삭제) 만 대상에 다시 맞춘 뒤
+ *    원본의 book_bucket 주인을 바꿔서 커밋, 그 다음 맵을 바꾼다. (모든 쓰기가 version 을 올려서 version 이 같으면 내용도 같다)
+ *    기다리던 쓰기는 주인이 바뀐 것을 보고 맵을 다시 읽어서 대상 shard로 간다. (다른 인스턴스도 map-refresh-ms 를 기다리지 않음)
+ * 3. 정리 : 원본 shard에서 옮긴 행을 지운다.
+ * 원본 커밋 후 맵을 바꾸기 전에 죽으면 그 bucket 쓰기는 실패한다. (다시 rebalance 하면 이어서 옮김, 데이터는 잃지 않음)
+ */
+@Slf4j
+public class ShardRebalancer {
+	private static final int BATCH = 1000;
+	private static final int FETCH_SIZE = 500;
+	
+	private final ShardDataSources shardDataSources;
+	private final ShardMap shardMap;
+	private final int batchBuckets;
+	private final ReentrantLock running = new ReentrantLock(); //한번에 하나만 (가상 스레드 pinning 때문에 synchronized 대신)
+	
+	public ShardRebalancer(ShardDataSources shardDataSources, ShardMap shardMap, int batchBuckets) {
+		this.shardDataSources = shardDataSources;
+		this.shardMap = shardMap;
+		this.batchBuckets = batchBuckets;
+	}
+	
+	//shard 마다 bucket 수, 행 수
+	public List<Map<String, Object>> status() {
+		int[] map = shardMap.snapshot();
+		List<Map<String, Object>> shards = new ArrayList<>();
+		for(int shard = 0; shard < shardMap.shardCount(); shard++) {
+			int buckets = 0;
+			for(int owner : map) {
+				if(owner == shard) {
+					buckets++;
+				}
+			}
+			Map<String, Object> status = new LinkedHashMap<>();
+			status.put("shard", shard);
+			status.put("buckets", buckets);
+			status.put("rows", shardDataSources.jdbcTemplate(shard).queryForObject("SELECT COUNT(*) FROM book", Long.class));
+			shards.add(status);
+		}
+		return shards;
+	}
+	
+	//bucket 수가 고르게 되도록 최소한만 옮기는 계획 (bucket -> 대상 shard)
+	public Map<Integer, Integer> plan() {
+		int[] map = shardMap.snapshot();
+		int shardCount = shardMap.shardCount();
+		int[] counts = new int[shardCount];
+		for(int owner : map) {
+			counts[owner]++;
+		}
+		int[] quota = new int[shardCount];
+		for(int shard = 0; shard < shardCount; shard++) {
+			quota[shard] = map.length / shardCount + (shard < map.length % shardCount ? 1 : 0);
+		}
+		Map<Integer, Integer> moves = new TreeMap<>();
+		int to = 0;
+		for(int bucket = 0; bucket < map.length; bucket++) {
+			int from = map[bucket];
+			if(counts[from] <= quota[from]) {
+				continue;
+			}
+			while(counts[to] >= quota[to]) {
+				to++;
+			}
+			moves.put(bucket, to);
+			counts[from]--;
+			counts[to]++;
+		}
+		return moves;
+	}
+	
+	public Map<String, Object> rebalance() {
+		return move(plan());
+	}
+	
+	//moves : bucket -> 대상 shard
+	public Map<String, Object> move(Map<Integer, Integer> moves) {
+		if(!running.tryLock()) {
+			throw new IllegalStateException("이미 리밸런싱 중입니다.");
+		}
+		try {
+			long start = System.nanoTime();
+			long rows = 0;
+			Map<Integer, Map<Integer, Integer>> bySource = new TreeMap<>();
+			moves.forEach((bucket, to) -> {
+				if(to < 0 || to >= shardMap.shardCount()) {
+					throw new IllegalArgumentException("shard를 확인해주세요 : " + to);
+				}
+				int from = shardMap.shardOfBucket(bucket);
+				if(from != to) {
+					bySource.computeIfAbsent(from, key -> new TreeMap<>()).put(bucket, to);
+				}
+			});
+			int moved = 0;
+			for(Map.Entry<Integer, Map<Integer, Integer>> entry : bySource.entrySet()) {
+				List<Map.Entry<Integer, Integer>> buckets = new ArrayList<>(entry.getValue().entrySet());
+				for(int i = 0; i < buckets.size(); i += batchBuckets) {
+					Map<Integer, Integer> chunk = new TreeMap<>();
+					buckets.subList(i, Math.min(i + batchBuckets, buckets.size())).forEach(e -> chunk.put(e.getKey(), e.getValue()));
+					rows += moveChunk(entry.getKey(), chunk);
+					moved += chunk.size();
+				}
+			}
+			Map<String, Object> result = new LinkedHashMap<>();
+			result.put("movedBuckets", moved);
+			result.put("movedRows", rows);
+			result.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+			return result;
+		} finally {
+			running.unlock();
+		}
+	}
+	
+	//원본 shard 하나에서 bucket 여러개 (chunk : bucket -> 대상 shard)
+	private long moveChunk(int from, Map<Integer, Integer> chunk) {
+		Map<Integer, Map<Integer, Integer>> byTarget = new TreeMap<>();
+		chunk.forEach((bucket, to) -> byTarget.computeIfAbsent(to, key -> new TreeMap<>()).put(bucket, to));
+		
+		//1. 복사 (지난번에 멈춘 리밸런싱이 대상에 남긴 행은 지우고 다시, 그 bucket 쓰기는 아직 원본으로만 간다)
+		byTarget.forEach((to, buckets) -> shardDataSources.jdbcTemplate(to)
+				.update("DELETE FROM book WHERE bucket IN (" + placeholders(buckets.size()) + ")", buckets.keySet().toArray()));
+		Map<Long, Long> copied = new HashMap<>(); //id -> 복사한 version
+		Map<Integer, List<Book>> copies = new HashMap<>();
+		scan(from, chunk.keySet(), book -> {
+			copied.put(book.getId(), book.getVersion());
+			List<Book> batch = copies.computeIfAbsent(targetOf(chunk, book.getId()), key -> new ArrayList<>());
+			batch.add(book);
+			if(batch.size() >= BATCH) {
+				upsert(targetOf(chunk, book.getId()), batch);
+				batch.clear();
+			}
+		});
+		copies.forEach(this::upsert);
+		
+		//2. 동기화 + 맵 변경
+		byTarget.forEach((to, buckets) -> ShardMap.setOwners(shardDataSources.jdbcTemplate(to), buckets)); //대상은 먼저 (맵이 바뀌면 바로 받게)
+		List<Long> movedIds = new ArrayList<>();
+		JdbcTemplate source = shardDataSources.jdbcTemplate(from);
+		new TransactionTemplate(new DataSourceTransactionManager(shardDataSources.dataSources().get(from))).executeWithoutResult(status -> {
+			Map<Integer, Integer> owners = shardMap.lockBuckets(source, chunk.keySet(), true);
+			chunk.forEach((bucket, to) -> {
+				Integer owner = owners.get(bucket);
+				if(owner == null || (owner != from && !owner.equals(to))) { //to 면 지난번에 맵을 바꾸기 전에 멈춘 것 => 이어서
+					throw new IllegalStateException("bucket " + bucket + " 은 다른 인스턴스가 옮겼습니다. (shard " + owner + ")");
+				}
+			});
+			//락 안에서는 (id, version) 인덱스만 읽고, 복사 후에 바뀐 행만 다시 읽어서 맞춘다.
+			Map<Long, Long> current = versions(from, chunk.keySet());
+			movedIds.addAll(current.keySet());
+			List<Long> changed = new ArrayList<>();
+			current.forEach((id, version) -> {
+				if(!copied.containsKey(id) || !Objects.equals(copied.remove(id), version)) {
+					changed.add(id);
+				}
+			});
+			Map<Integer, List<Book>> upserts = new HashMap<>();
+			fetch(from, changed).forEach(book -> upserts.computeIfAbsent(targetOf(chunk, book.getId()), key -> new ArrayList<>()).add(book));
+			upserts.forEach(this::upsert);
+			Map<Integer, List<Long>> deletes = new HashMap<>(); //복사 후 원본에서 지워진 것
+			copied.keySet().forEach(id -> deletes.computeIfAbsent(targetOf(chunk, id), key -> new ArrayList<>()).add(id));
+			deletes.forEach(this::delete);
+			ShardMap.setOwners(source, chunk);
+		});
+		shardMap.assign(chunk);
+		
+		//3. 정리
+		delete(from, movedIds);
+		log.info("shard {} -> {} : bucket {}개, {}행", from, chunk.values(), chunk.size(), movedIds.size());
+		return movedIds.size();
+	}
+	
+	private static int targetOf(Map<Integer, Integer> chunk, long id) {
+		return chunk.get(SnowflakeIdGenerator.bucketOf(id));
+	}
+	
+	private static String placeholders(int count) {
+		return String.join(",", Collections.nCopies(count, "?"));
+	}
+	
+	//그 bucket 행만 (idx_book_bucket)
+	private void scan(int shard, Collection<Integer> buckets, Consumer<Book> consumer) {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(shardDataSources.dataSources().get(shard));
+		jdbcTemplate.setFetchSize(FETCH_SIZE);
+		jdbcTemplate.query("SELECT id, title, author, version FROM book WHERE bucket IN (" + placeholders(buckets.size()) + ")",
+				rs -> {
+					consumer.accept(toBook(rs));
+				}, buckets.toArray());
+	}
+	
+	//그 bucket 의 id -> version (idx_book_bucket 만 읽음)
+	private Map<Long, Long> versions(int shard, Collection<Integer> buckets) {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(shardDataSources.dataSources().get(shard));
+		jdbcTemplate.setFetchSize(FETCH_SIZE);
+		Map<Long, Long> versions = new HashMap<>();
+		jdbcTemplate.query("SELECT id, version FROM book WHERE bucket IN (" + placeholders(buckets.size()) + ")",
+				rs -> {
+					long version = rs.getLong(2);
+					versions.put(rs.getLong(1), rs.wasNull() ? null : version);
+				}, buckets.toArray());
+		return versions;
+	}
+	
+	private List<Book> fetch(int shard, List<Long> ids) {
+		JdbcTemplate jdbcTemplate = shardDataSources.jdbcTemplate(shard);
+		List<Book> books = new ArrayList<>();
+		for(int i = 0; i < ids.size(); i += BATCH) {
+			List<Long> batch = ids.subList(i, Math.min(i + BATCH, ids.size()));
+			jdbcTemplate.query("SELECT id, title, author, version FROM book WHERE id IN (" + placeholders(batch.size()) + ")",
+					rs -> {
+						books.add(toBook(rs));
+					}, batch.toArray());
+		}
+		return books;
+	}
+	
+	private static Book toBook(ResultSet rs) throws SQLException {
+		long version = rs.getLong(4);
+		return new Book(rs.getLong(1), rs.getString(2), rs.getString(3), rs.wasNull() ? null : version);
+	}
+	
+	//delete + insert (H2/MariaDB 공통) : 버전은 원본 그대로
+	private void upsert(int shard, List<Book> books) {
+		if(books.isEmpty()) {
+			return;
+		}
+		JdbcTemplate jdbcTemplate = shardDataSources.jdbcTemplate(shard);
+		for(int i = 0; i < books.size(); i += BATCH) {
+			List<Book> batch = books.subList(i, Math.min(i + BATCH, books.size()));
+			List<Object[]> ids = new ArrayList<>();
+			List<Object[]> rows = new ArrayList<>();
+			for(Book book : batch) {
+				ids.add(new Object[] { book.getId() });
+				rows.add(new Object[] { book.getId(), book.getTitle(), book.getAuthor(), book.getVersion() });
+			}
+			jdbcTemplate.batchUpdate("DELETE FROM book WHERE id = ?", ids);
+			jdbcTemplate.batchUpdate("INSERT INTO book (id, title, author, version) VALUES (?, ?, ?, ?)", rows);
+		}
+	}
+	
+	private void delete(int shard, List<Long> ids) {
+		JdbcTemplate jdbcTemplate = shardDataSources.jdbcTemplate(shard);
+		for(int i = 0; i < ids.size(); i += BATCH) {
+			List<Object[]> batch = new ArrayList<>();
+			ids.subList(i, Math.min(i + BATCH, ids.size())).forEach(id -> batch.add(new Object[] { id }));
+			jdbcTemplate.batchUpdate("DELETE FROM book WHERE id = ?", batch);
+		}
+	}
+}
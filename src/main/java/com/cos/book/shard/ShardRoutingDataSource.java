@@ -0,0 +1,30 @@
+package com.cos.book.shard;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import com.cos.book.domain.BookShardContext;
+
+//BookShardContext 의 shard로 (없으면 0번 : hibernate 메타데이터 조회 등)
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+	
+	public ShardRoutingDataSource(List<DataSource> shards) {
+		Map<Object, Object> targets = new HashMap<>();
+		for(int i = 0; i < shards.size(); i++) {
+			targets.put(i, shards.get(i));
+		}
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(shards.get(0));
+		afterPropertiesSet();
+	}
+	
+	@Override
+	protected Object determineCurrentLookupKey() {
+		return BookShardContext.current();
+	}
+}
@@ -0,0 +1,45 @@
+package com.cos.book.shard;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake id : 41비트 ms (2024-01-01 기준) | 10비트 워커 | 12비트 순번
+ * 상태(ms << 12 | 순번)를 CAS 한번으로 올린다. (락 없음)
+ * 같은 ms에 4096개를 넘기거나 시계가 뒤로 가면 ms를 앞당겨 쓴다. => 항상 증가, 중복 없음
+ * bucket 은 id의 해시 (bucketOf) => shard는 id만 보고 정해진다.
+ */
+public class SnowflakeIdGenerator {
+	public static final long EPOCH = 1704067200000L; //2024-01-01T00:00:00Z
+	public static final int BUCKETS = 1024;
+	private static final int WORKER_BITS = 10;
+	private static final int SEQUENCE_BITS = 12;
+	private static final long MAX_WORKER = (1L << WORKER_BITS) - 1;
+	
+	private final long worker;
+	private final AtomicLong state = new AtomicLong();
+	
+	public SnowflakeIdGenerator(int workerId) {
+		if(workerId < 0 || workerId > MAX_WORKER) {
+			throw new IllegalArgumentException("workerId는 0~" + MAX_WORKER + " 입니다 : " + workerId);
+		}
+		this.worker = (long) workerId << SEQUENCE_BITS;
+	}
+	
+	public long next() {
+		long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+		long prev;
+		long next;
+		do {
+			prev = state.get();
+			next = Math.max(now, prev + 1);
+		} while(!state.compareAndSet(prev, next));
+		long millis = next >>> SEQUENCE_BITS;
+		long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+		return (millis << (WORKER_BITS + SEQUENCE_BITS)) | worker | sequence;
+	}
+	
+	//피보나치 해싱 상위 10비트 (연속된 id도 bucket이 고르게 퍼진다)
+	public static int bucketOf(long id) {
+		return (int) ((id * 0x9E3779B97F4A7C15L) >>> (64 - 10));
+	}
+}
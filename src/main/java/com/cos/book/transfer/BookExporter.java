@@ -0,0 +1,129 @@
+package com.cos.book.transfer;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.stereotype.Component;
+
+import com.cos.book.service.BookService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * GET /book/_export : BookService.streamAll (forward-only JDBC 커서, fetchSize 만큼씩) 에서 한 행씩 바로 응답에 쓴다.
+ * csv 는 첫 줄이 헤더 (id,title,author,version) 라서 그대로 POST /book/_import 에 넣을 수 있다. (id, version 은 무시)
+ */
+@RequiredArgsConstructor
+@Component
+public class BookExporter {
+	private static final int WRITE_BUFFER = 64 * 1024;
+	
+	private final BookService bookService;
+	private final ObjectMapper objectMapper;
+	private final TransferJobs jobs;
+	
+	public TransferJob start(boolean csv) {
+		return jobs.start(TransferJob.Type.EXPORT, csv ? "csv" : "ndjson", -1);
+	}
+	
+	public void write(TransferJob job, OutputStream out, boolean csv) throws IOException {
+		OutputStream counting = new FilterOutputStream(out) {
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				job.addBytes(1);
+			}
+			
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				job.addBytes(len);
+			}
+		};
+		try {
+			if(csv) {
+				writeCsv(job, counting);
+			} else {
+				writeNdjson(job, counting);
+			}
+			job.complete();
+		} catch (IOException | RuntimeException e) {
+			job.fail(e.toString()); //보통은 클라이언트가 끊음
+			throw e;
+		}
+	}
+	
+	private void writeCsv(TransferJob job, OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER);
+		writer.write("id,title,author,version\n");
+		try {
+			bookService.streamAll(book -> {
+				job.addRead(1);
+				try {
+					writer.write(String.valueOf(book.getId()));
+					writer.write(',');
+					writeField(writer, book.getTitle());
+					writer.write(',');
+					writeField(writer, book.getAuthor());
+					writer.write(',');
+					writer.write(book.getVersion() == null ? "" : String.valueOf(book.getVersion()));
+					writer.write('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				job.addWritten(1);
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		writer.flush();
+	}
+	
+	private void writeNdjson(TransferJob job, OutputStream out) throws IOException {
+		JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+				.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		try {
+			bookService.streamAll(book -> {
+				job.addRead(1);
+				try {
+					generator.writeObject(book);
+					generator.writeRaw('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				job.addWritten(1);
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			generator.close();
+		}
+	}
+	
+	//, " 줄바꿈이 있으면 따옴표로 감싸고 " 는 "" 로 (RFC 4180)
+	static void writeField(Writer writer, String value) throws IOException {
+		if(value == null) {
+			return;
+		}
+		boolean quote = false;
+		for(int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if(!quote) {
+			writer.write(value);
+			return;
+		}
+		writer.write('"');
+		writer.write(value.replace("\"", "\"\""));
+		writer.write('"');
+	}
+}
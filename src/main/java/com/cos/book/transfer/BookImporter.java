@@ -0,0 +1,303 @@
+package com.cos.book.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import com.cos.book.domain.Book;
+import com.cos.book.service.BookService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * POST /book/_import : 읽기(요청 스레드, RecordReader) -> 검증(validate-workers) -> insert(insert-workers) 단계로 흘려보낸다.
+ * 단계 사이는 크기가 정해진 큐라서 insert 가 밀리면 읽기도 멈추고 (TCP 로 업로드가 느려짐) 메모리는 chunk 몇개 분량만 쓴다.
+ * insert 는 chunk 하나가 BookService.saveAll 트랜잭션 하나 (JDBC 배치, 변경 이벤트/검색 색인 그대로).
+ * chunk 가 실패하면 그 chunk 만 한 행씩 다시 저장해서 실패한 행만 거절한다.
+ * insert 워커가 여러개라서 파일 순서대로 들어가지는 않는다.
+ * 워커는 import 마다 만들지 않고 공유 스레드 풀에서 돈다. 풀 크기는 max-imports 개의 import 가 워커를 모두 띄울 만큼이고
+ * (한 import 의 워커가 일부만 떠서 큐에서 서로 기다리는 일이 없게) 동시에 max-imports 개를 넘으면 바로 거절한다. (503)
+ */
+@Slf4j
+@Component
+public class BookImporter {
+	private static final int MAX_LENGTH = 255; //book.title, book.author 컬럼 크기
+	
+	private final BookService bookService;
+	private final ObjectMapper objectMapper;
+	private final TransferJobs jobs;
+	private final TransferProperties properties;
+	private final Semaphore imports;
+	private final ExecutorService executor;
+	
+	public BookImporter(BookService bookService, ObjectMapper objectMapper, TransferJobs jobs, TransferProperties properties) {
+		this.bookService = bookService;
+		this.objectMapper = objectMapper;
+		this.jobs = jobs;
+		this.properties = properties;
+		this.imports = new Semaphore(properties.getMaxImports());
+		//Executor 빈으로 등록하면 스프링부트 기본 applicationTaskExecutor가 빠져서 직접 가진다.
+		this.executor = Executors.newFixedThreadPool(properties.getMaxImports() * (properties.getValidateWorkers() + properties.getInsertWorkers()),
+				Thread.ofPlatform().name("book-import-", 0).daemon().factory());
+	}
+	
+	@PreDestroy
+	public void stop() {
+		executor.shutdownNow();
+	}
+	
+	record Record(long line, List<String> fields) {
+	}
+	
+	record Row(long line, Book book) {
+	}
+	
+	//본문이 잘못됐으면 (헤더, 인코딩, 따옴표) 작업은 FAILED 로 끝난다. 업로드가 끊기면 IOException
+	//이미 max-imports 개가 돌고 있으면 TransferBusyException
+	public TransferJob importBooks(InputStream body, boolean csv, long contentLength) throws IOException {
+		if(!imports.tryAcquire()) {
+			throw new TransferBusyException(properties.getMaxImports());
+		}
+		try {
+			return run(body, csv, contentLength);
+		} finally {
+			imports.release();
+		}
+	}
+	
+	private TransferJob run(InputStream body, boolean csv, long contentLength) throws IOException {
+		TransferJob job = jobs.start(TransferJob.Type.IMPORT, csv ? "csv" : "ndjson", contentLength);
+		Pipeline pipeline = new Pipeline(job, csv);
+		try {
+			pipeline.start();
+			new RecordReader(csv, pipeline::accept).read(Channels.newChannel(body), properties.getBufferBytes(), job::addBytes);
+			pipeline.finish();
+			job.complete();
+		} catch (IllegalArgumentException e) {
+			pipeline.abort();
+			job.fail(e.getMessage());
+		} catch (IOException | RuntimeException e) {
+			pipeline.abort();
+			job.fail(e.toString());
+			throw e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			pipeline.abort();
+			job.fail("중단되었습니다.");
+		}
+		log.info("import {} : {} {}행 저장, {}행 거절, {}ms", job.getId(), job.getStatus(), job.getRowsWritten(), job.getRowsRejected(),
+				job.getFinishedAt() - job.getStartedAt());
+		return job;
+	}
+	
+	private class Pipeline {
+		private final TransferJob job;
+		private final boolean csv;
+		private final BlockingQueue<List<Record>> parsed;
+		private final BlockingQueue<List<Row>> valid;
+		private final List<Future<?>> validators = new ArrayList<>();
+		private final List<Future<?>> inserters = new ArrayList<>();
+		private volatile Throwable failure;
+		private List<Record> chunk;
+		private int titleColumn = -1;
+		private int authorColumn = -1;
+		
+		Pipeline(TransferJob job, boolean csv) {
+			this.job = job;
+			this.csv = csv;
+			this.parsed = new ArrayBlockingQueue<>(properties.getQueueChunks());
+			this.valid = new ArrayBlockingQueue<>(properties.getQueueChunks());
+			this.chunk = new ArrayList<>(properties.getChunkSize());
+		}
+		
+		void start() {
+			for(int i = 0; i < properties.getValidateWorkers(); i++) {
+				validators.add(worker("book-import-validate-" + i, this::validate));
+			}
+			for(int i = 0; i < properties.getInsertWorkers(); i++) {
+				inserters.add(worker("book-import-insert-" + i, this::insert));
+			}
+		}
+		
+		//읽기 단계 (요청 스레드)
+		void accept(long line, List<String> fields) throws InterruptedException {
+			if(csv && titleColumn < 0) {
+				header(fields);
+				return;
+			}
+			job.addRead(1);
+			chunk.add(new Record(line, fields));
+			if(chunk.size() == properties.getChunkSize()) {
+				put(parsed, chunk);
+				chunk = new ArrayList<>(properties.getChunkSize());
+			}
+		}
+		
+		//남은 chunk 를 넣고 앞 단계부터 차례로 닫는다.
+		void finish() throws InterruptedException {
+			if(!chunk.isEmpty()) {
+				put(parsed, chunk);
+			}
+			for(int i = 0; i < validators.size(); i++) {
+				put(parsed, List.of()); //빈 chunk = 끝, 워커마다 하나씩
+			}
+			join(validators);
+			for(int i = 0; i < inserters.size(); i++) {
+				put(valid, List.of());
+			}
+			join(inserters);
+			checkFailure();
+		}
+		
+		void abort() {
+			if(failure == null) {
+				failure = new IllegalStateException("import 가 중단되었습니다.");
+			}
+			validators.forEach(worker -> worker.cancel(true));
+			inserters.forEach(worker -> worker.cancel(true));
+		}
+		
+		private void header(List<String> fields) {
+			for(int i = 0; i < fields.size(); i++) {
+				String name = fields.get(i).strip().toLowerCase(Locale.ROOT);
+				if(name.equals("title")) {
+					titleColumn = i;
+				} else if(name.equals("author")) {
+					authorColumn = i;
+				}
+			}
+			if(titleColumn < 0 || authorColumn < 0) {
+				throw new IllegalArgumentException("csv 첫 줄(헤더)에 title, author 열이 있어야 합니다. : " + fields);
+			}
+		}
+		
+		private void validate() throws InterruptedException {
+			while(true) {
+				List<Record> records = parsed.take();
+				if(records.isEmpty()) {
+					return;
+				}
+				List<Row> rows = new ArrayList<>(records.size());
+				for(Record record : records) {
+					try {
+						rows.add(new Row(record.line(), toBook(record)));
+					} catch (IllegalArgumentException e) {
+						job.reject(record.line(), e.getMessage());
+					}
+				}
+				if(!rows.isEmpty()) {
+					put(valid, rows);
+				}
+			}
+		}
+		
+		private void insert() throws InterruptedException {
+			while(true) {
+				List<Row> rows = valid.take();
+				if(rows.isEmpty()) {
+					return;
+				}
+				List<Book> books = new ArrayList<>(rows.size());
+				rows.forEach(row -> books.add(row.book()));
+				try {
+					bookService.saveAll(books);
+					job.addWritten(rows.size());
+				} catch (RuntimeException e) {
+					log.warn("import {} : {}행 chunk 저장 실패, 한 행씩 다시 저장합니다.", job.getId(), rows.size(), e);
+					insertEach(rows);
+				}
+			}
+		}
+		
+		//롤백된 chunk 의 book 에는 id/version 이 남아있을 수 있어서 새로 만들어 저장한다.
+		private void insertEach(List<Row> rows) {
+			for(Row row : rows) {
+				try {
+					bookService.save(new Book(null, row.book().getTitle(), row.book().getAuthor()));
+					job.addWritten(1);
+				} catch (RuntimeException e) {
+					job.reject(row.line(), "저장 실패 : " + e.getMessage());
+				}
+			}
+		}
+		
+		private Book toBook(Record record) {
+			Book book;
+			if(csv) {
+				if(record.fields().size() <= Math.max(titleColumn, authorColumn)) {
+					throw new IllegalArgumentException("열 수가 헤더보다 적습니다.");
+				}
+				book = new Book(null, record.fields().get(titleColumn), record.fields().get(authorColumn));
+			} else {
+				try {
+					book = objectMapper.readValue(record.fields().get(0), Book.class);
+				} catch (JsonProcessingException e) {
+					throw new IllegalArgumentException("JSON 을 읽을 수 없습니다. : " + e.getOriginalMessage());
+				}
+				book.setId(null); //항상 insert
+			}
+			if(book.getTitle() == null || book.getTitle().isBlank()) {
+				throw new IllegalArgumentException("title 이 비어있습니다.");
+			}
+			if(book.getTitle().length() > MAX_LENGTH || (book.getAuthor() != null && book.getAuthor().length() > MAX_LENGTH)) {
+				throw new IllegalArgumentException("title, author 는 " + MAX_LENGTH + "자까지입니다.");
+			}
+			return book;
+		}
+		
+		//다음 단계가 밀려있으면 기다린다. 그 사이 다른 단계가 죽었으면 멈춘다.
+		private <T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+			while(!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+				checkFailure();
+			}
+		}
+		
+		private void checkFailure() {
+			if(failure != null) {
+				throw new IllegalStateException("import 작업 스레드가 실패했습니다.", failure);
+			}
+		}
+		
+		private void join(List<Future<?>> workers) throws InterruptedException {
+			for(Future<?> worker : workers) {
+				try {
+					worker.get();
+				} catch (ExecutionException e) { //worker 안에서 failure 로 남김
+				}
+			}
+		}
+		
+		private Future<?> worker(String name, Stage stage) {
+			return executor.submit(() -> {
+				try {
+					stage.run();
+				} catch (InterruptedException e) {
+					//abort
+				} catch (Throwable e) {
+					log.error("import {} : {} 실패", job.getId(), name, e);
+					failure = e;
+				}
+			});
+		}
+	}
+	
+	private interface Stage {
+		void run() throws InterruptedException;
+	}
+}
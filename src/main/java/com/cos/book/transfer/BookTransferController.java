@@ -0,0 +1,80 @@
+package com.cos.book.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.cos.book.web.BookController;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 대량 import/export (POST /book/_bulk 처럼 본문 전체를 List 로 받지 않고 흘려서 처리)
+ * - POST /book/_import : text/csv (첫 줄 헤더) 또는 application/x-ndjson. 끝나면 작업 결과 (행별 오류 포함)
+ * - GET /book/_export : Accept 에 따라 csv / ndjson 으로 전체를 내려준다. 작업 id 는 X-Job-Id 헤더
+ * - GET /book/_transfer/{id} : 진행 상황 (export 중이거나 다른 요청에서 보낸 import 를 볼때)
+ */
+@ConditionalOnWebApplication(type = Type.SERVLET)
+@RequiredArgsConstructor
+@RestController
+public class BookTransferController {
+	public static final String CSV = "text/csv";
+	public static final String JOB_ID_HEADER = "X-Job-Id";
+	
+	private final BookImporter importer;
+	private final BookExporter exporter;
+	private final TransferJobs jobs;
+	
+	//본문은 InputStream 그대로 (HttpMessageConverter 가 통째로 읽지 않게)
+	@PostMapping(value = "/book/_import", consumes = { CSV, BookController.NDJSON })
+	public ResponseEntity<?> importBooks(InputStream body, @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+			@RequestHeader(value = HttpHeaders.CONTENT_LENGTH, defaultValue = "-1") long contentLength) throws IOException {
+		TransferJob job = importer.importBooks(body, contentType.startsWith(CSV), contentLength);
+		HttpHeaders headers = new HttpHeaders();
+		headers.add(HttpHeaders.LOCATION, "/book/_transfer/" + job.getId());
+		return new ResponseEntity<>(job,headers,job.getStatus() == TransferJob.Status.FAILED ? HttpStatus.BAD_REQUEST : HttpStatus.OK);
+	}
+	
+	@GetMapping(value = "/book/_export", produces = CSV)
+	public ResponseEntity<StreamingResponseBody> exportCsv() {
+		return export(true);
+	}
+	
+	@GetMapping(value = "/book/_export", produces = BookController.NDJSON)
+	public ResponseEntity<StreamingResponseBody> exportNdjson() {
+		return export(false);
+	}
+	
+	@GetMapping("/book/_transfer")
+	public ResponseEntity<?> findAll() {
+		return new ResponseEntity<>(jobs.list(),HttpStatus.OK);
+	}
+	
+	@GetMapping("/book/_transfer/{id}")
+	public ResponseEntity<?> findById(@PathVariable String id) {
+		return jobs.get(id)
+				.<ResponseEntity<?>>map(job -> new ResponseEntity<>(job,HttpStatus.OK))
+				.orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+	}
+	
+	private ResponseEntity<StreamingResponseBody> export(boolean csv) {
+		TransferJob job = exporter.start(csv);
+		StreamingResponseBody body = out -> exporter.write(job, out, csv);
+		return ResponseEntity.ok()
+				.header(HttpHeaders.CONTENT_TYPE, csv ? CSV + ";charset=UTF-8" : BookController.NDJSON)
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"book." + (csv ? "csv" : "ndjson") + "\"")
+				.header(JOB_ID_HEADER, job.getId())
+				.body(body);
+	}
+}
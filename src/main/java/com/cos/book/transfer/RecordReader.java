@@ -0,0 +1,165 @@
+package com.cos.book.transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * 업로드를 고정 크기 ByteBuffer 로 조금씩 읽어서 (NIO 채널) 행 단위로 넘긴다. 파일 전체를 메모리에 올리지 않는다.
+ * 버퍼 경계에서 잘린 UTF-8 글자는 다음 read 까지 ByteBuffer 에 남는다. (CharsetDecoder)
+ * csv : RFC 4180 (따옴표 안의 , "" 줄바꿈), ndjson : 한 줄이 필드 하나. 빈 줄은 건너뛴다.
+ */
+class RecordReader {
+	interface Sink {
+		void accept(long line, List<String> fields) throws InterruptedException;
+	}
+	
+	private final boolean csv;
+	private final Sink sink;
+	private List<String> fields = new ArrayList<>();
+	private final StringBuilder field = new StringBuilder();
+	private boolean inQuotes;
+	private boolean quoteInQuotes; //따옴표 안에서 " 를 만남 (다음이 " 면 글자, 아니면 닫힘)
+	private boolean skipLf; //\r 다음의 \n 은 건너뜀
+	private long line = 1; //지금 읽는 줄
+	private long recordLine = 1; //지금 행이 시작된 줄
+	
+	RecordReader(boolean csv, Sink sink) {
+		this.csv = csv;
+		this.sink = sink;
+	}
+	
+	//다 읽으면 읽은 바이트 수
+	long read(ReadableByteChannel channel, int bufferBytes, LongConsumer onBytes) throws IOException, InterruptedException {
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		ByteBuffer bytes = ByteBuffer.allocate(bufferBytes);
+		CharBuffer chars = CharBuffer.allocate(bufferBytes);
+		long total = 0;
+		int read;
+		while((read = channel.read(bytes)) != -1) {
+			total += read;
+			onBytes.accept(read);
+			bytes.flip();
+			decode(decoder, bytes, chars, false);
+			bytes.compact();
+		}
+		bytes.flip();
+		decode(decoder, bytes, chars, true);
+		chars.clear();
+		decoder.flush(chars);
+		chars.flip();
+		feed(chars);
+		finish();
+		return total;
+	}
+	
+	private void decode(CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars, boolean endOfInput) throws InterruptedException {
+		CoderResult result;
+		do {
+			chars.clear();
+			result = decoder.decode(bytes, chars, endOfInput);
+			if(result.isError()) {
+				throw new IllegalArgumentException(line + "번째 줄 : UTF-8 이 아닌 바이트가 있습니다.");
+			}
+			chars.flip();
+			feed(chars);
+		} while(result.isOverflow());
+	}
+	
+	void feed(CharBuffer chars) throws InterruptedException {
+		while(chars.hasRemaining()) {
+			char c = chars.get();
+			if(skipLf) {
+				skipLf = false;
+				if(c == '\n') {
+					continue;
+				}
+			}
+			if(c == '\r') { //\r\n, \r 은 \n 으로
+				skipLf = true;
+				c = '\n';
+			}
+			if(c == '\n') {
+				line++;
+			}
+			if(!csv) {
+				if(c == '\n') {
+					endRecord();
+				} else {
+					field.append(c);
+				}
+				continue;
+			}
+			if(inQuotes) {
+				if(quoteInQuotes) {
+					quoteInQuotes = false;
+					if(c == '"') {
+						field.append('"');
+						continue;
+					}
+					inQuotes = false; //닫는 따옴표였음 => 아래에서 따옴표 밖 글자로
+				} else {
+					if(c == '"') {
+						quoteInQuotes = true;
+					} else {
+						field.append(c);
+					}
+					continue;
+				}
+			}
+			switch (c) {
+			case ',':
+				endField();
+				break;
+			case '"':
+				if(field.length() == 0) {
+					inQuotes = true;
+				} else {
+					field.append(c);
+				}
+				break;
+			case '\n':
+				endRecord();
+				break;
+			default:
+				field.append(c);
+			}
+		}
+	}
+	
+	void finish() throws InterruptedException {
+		if(inQuotes && !quoteInQuotes) {
+			throw new IllegalArgumentException(recordLine + "번째 줄 : 따옴표가 닫히지 않았습니다.");
+		}
+		inQuotes = false;
+		quoteInQuotes = false;
+		endRecord();
+	}
+	
+	private void endField() {
+		fields.add(field.toString());
+		field.setLength(0);
+	}
+	
+	private void endRecord() throws InterruptedException {
+		endField();
+		List<String> record = fields;
+		long start = recordLine;
+		fields = new ArrayList<>(record.size());
+		recordLine = line;
+		if(record.size() == 1 && record.get(0).isBlank()) {
+			return; //빈 줄
+		}
+		sink.accept(start, record);
+	}
+}
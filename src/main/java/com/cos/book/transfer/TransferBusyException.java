@@ -0,0 +1,8 @@
+package com.cos.book.transfer;
+
+//동시에 돌 수 있는 import 수를 넘음 (잠시 후 다시 요청)
+public class TransferBusyException extends RuntimeException {
+	public TransferBusyException(int maxImports) {
+		super("진행 중인 import 가 너무 많습니다. max-imports=" + maxImports);
+	}
+}
@@ -0,0 +1,123 @@
+package com.cos.book.transfer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.Getter;
+
+/**
+ * import/export 작업 하나의 진행 상황 (GET /book/_transfer/{id})
+ * 단계별 스레드가 카운터를 올리고, 조회할때 그 순간 값을 읽는다.
+ */
+public class TransferJob {
+	public enum Type { IMPORT, EXPORT }
+	public enum Status { RUNNING, COMPLETED, FAILED }
+	
+	@Getter
+	private final String id;
+	@Getter
+	private final Type type;
+	@Getter
+	private final String format;
+	@Getter
+	private final long contentLength; //업로드 크기 (모르면 -1)
+	@Getter
+	private final long startedAt;
+	@Getter
+	private volatile long finishedAt;
+	@Getter
+	private volatile Status status = Status.RUNNING;
+	@Getter
+	private volatile String message;
+	
+	private final AtomicLong bytes = new AtomicLong(); //import 는 읽은, export 는 쓴 바이트
+	private final AtomicLong rowsRead = new AtomicLong(); //import 는 파싱된 행, export 는 커서에서 읽은 행
+	private final AtomicLong rowsWritten = new AtomicLong(); //import 는 insert 커밋된 행, export 는 응답에 쓴 행
+	private final AtomicLong rowsRejected = new AtomicLong();
+	private final int maxErrors;
+	private final ReentrantLock errorsLock = new ReentrantLock();
+	private final List<RowError> errors = new ArrayList<>();
+	
+	public record RowError(long line, String message) {
+	}
+	
+	TransferJob(String id, Type type, String format, long contentLength, int maxErrors) {
+		this.id = id;
+		this.type = type;
+		this.format = format;
+		this.contentLength = contentLength;
+		this.maxErrors = maxErrors;
+		this.startedAt = System.currentTimeMillis();
+	}
+	
+	public long getBytes() {
+		return bytes.get();
+	}
+	
+	public long getRowsRead() {
+		return rowsRead.get();
+	}
+	
+	public long getRowsWritten() {
+		return rowsWritten.get();
+	}
+	
+	public long getRowsRejected() {
+		return rowsRejected.get();
+	}
+	
+	public double getRowsPerSecond() {
+		long end = finishedAt == 0 ? System.currentTimeMillis() : finishedAt;
+		return end == startedAt ? 0 : rowsWritten.get() * 1000.0 / (end - startedAt);
+	}
+	
+	public List<RowError> getErrors() {
+		errorsLock.lock();
+		try {
+			return new ArrayList<>(errors);
+		} finally {
+			errorsLock.unlock();
+		}
+	}
+	
+	void addBytes(long count) {
+		bytes.addAndGet(count);
+	}
+	
+	void addRead(long count) {
+		rowsRead.addAndGet(count);
+	}
+	
+	void addWritten(long count) {
+		rowsWritten.addAndGet(count);
+	}
+	
+	void reject(long line, String message) {
+		rowsRejected.incrementAndGet();
+		errorsLock.lock();
+		try {
+			if(errors.size() < maxErrors) {
+				errors.add(new RowError(line, message));
+			}
+		} finally {
+			errorsLock.unlock();
+		}
+	}
+	
+	void complete() {
+		finishedAt = System.currentTimeMillis();
+		status = Status.COMPLETED;
+	}
+	
+	void fail(String message) {
+		this.message = message;
+		finishedAt = System.currentTimeMillis();
+		status = Status.FAILED;
+	}
+	
+	boolean isFinished() {
+		return status != Status.RUNNING;
+	}
+}
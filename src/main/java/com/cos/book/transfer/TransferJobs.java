@@ -0,0 +1,67 @@
+package com.cos.book.transfer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+//진행중인 작업 + 최근에 끝난 작업 (인스턴스 메모리에만, 재시작하면 없어진다)
+@EnableConfigurationProperties(TransferProperties.class)
+@Component
+public class TransferJobs {
+	private final TransferProperties properties;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LinkedHashMap<String, TransferJob> jobs = new LinkedHashMap<>();
+	
+	public TransferJobs(TransferProperties properties) {
+		this.properties = properties;
+	}
+	
+	public TransferJob start(TransferJob.Type type, String format, long contentLength) {
+		TransferJob job = new TransferJob(UUID.randomUUID().toString(), type, format, contentLength, properties.getMaxErrors());
+		lock.lock();
+		try {
+			jobs.put(job.getId(), job);
+			int finished = (int) jobs.values().stream().filter(TransferJob::isFinished).count();
+			Iterator<Map.Entry<String, TransferJob>> oldest = jobs.entrySet().iterator();
+			while(finished > properties.getKeepJobs() && oldest.hasNext()) {
+				if(oldest.next().getValue().isFinished()) {
+					oldest.remove();
+					finished--;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		return job;
+	}
+	
+	public Optional<TransferJob> get(String id) {
+		lock.lock();
+		try {
+			return Optional.ofNullable(jobs.get(id));
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	//최근 것부터
+	public List<TransferJob> list() {
+		lock.lock();
+		try {
+			List<TransferJob> list = new ArrayList<>(jobs.values());
+			Collections.reverse(list);
+			return list;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
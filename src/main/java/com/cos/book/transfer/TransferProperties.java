@@ -0,0 +1,19 @@
+package com.cos.book.transfer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+//book.transfer.* (POST /book/_import, GET /book/_export)
+@Data
+@ConfigurationProperties("book.transfer")
+public class TransferProperties {
+	private int bufferBytes = 64 * 1024; //업로드를 이만큼씩 읽는다. (파일 전체를 메모리에 올리지 않음)
+	private int chunkSize = 1000; //검증/insert 단위 (insert 는 chunk 하나가 트랜잭션 하나)
+	private int queueChunks = 4; //단계 사이 큐에 쌓을 수 있는 chunk 수. 차면 앞 단계가 기다린다.
+	private int validateWorkers = 2;
+	private int insertWorkers = 2;
+	private int maxImports = 2; //동시에 도는 import 수. 워커 스레드 풀은 이만큼 x (validate + insert) 개
+	private int maxErrors = 100; //작업 상태에 남기는 거절된 행 수 (개수는 전부 센다)
+	private int keepJobs = 100; //끝난 작업은 최근 이만큼만 기억
+}
@@ -0,0 +1,53 @@
+package com.cos.book.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.cos.book.domain.Book;
+import com.cos.book.service.BookBulkService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+
+//본문은 JSON 배열 또는 NDJSON(한 줄에 하나). 전체를 List로 만들지 않고 읽으면서 chunk로 넘긴다.
+@RequiredArgsConstructor
+@RestController
+public class BookBulkController {
+	
+	private final BookBulkService bookBulkService;
+	private final ObjectMapper objectMapper;
+	
+	//항목 하나가 잘못돼도 예외가 hasNext/next 에서 나서 BookBulkService 가 건별로 failed 로 남긴다.
+	private MappingIterator<Book> books(InputStream body) throws IOException {
+		return objectMapper.readerFor(Book.class).readValues(body);
+	}
+	
+	private MappingIterator<Long> ids(InputStream body) throws IOException {
+		return objectMapper.readerFor(Long.class).readValues(body);
+	}
+	
+	@PostMapping(value = "/book/_bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, BookController.NDJSON})
+	public ResponseEntity<?> saveAll(InputStream body) throws IOException {
+		return new ResponseEntity<>(bookBulkService.saveAll(books(body)),HttpStatus.OK);
+	}
+	
+	@PutMapping(value = "/book/_bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, BookController.NDJSON})
+	public ResponseEntity<?> updateAll(InputStream body) throws IOException {
+		return new ResponseEntity<>(bookBulkService.updateAll(books(body)),HttpStatus.OK);
+	}
+	
+	//본문은 id 배열
+	@DeleteMapping(value = "/book/_bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, BookController.NDJSON})
+	public ResponseEntity<?> deleteAll(InputStream body) throws IOException {
+		return new ResponseEntity<>(bookBulkService.deleteAll(ids(body)),HttpStatus.OK);
+	}
+}
@@ -0,0 +1,41 @@
+package com.cos.book.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.cos.book.config.CacheConfig;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import lombok.RequiredArgsConstructor;
+
+//book 캐시의 hit/miss/eviction 카운터 확인용
+@RequiredArgsConstructor
+@RestController
+public class BookCacheController {
+	
+	private final CacheManager cacheManager;
+	
+	@GetMapping("/book/_cache")
+	public ResponseEntity<?> stats() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		Cache cache = cacheManager.getCache(CacheConfig.BOOK);
+		if(cache == null || !(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache)) {
+			return new ResponseEntity<>(result,HttpStatus.OK); //캐시가 꺼져있는 경우(테스트 등)
+		}
+		com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache = (com.github.benmanes.caffeine.cache.Cache<?, ?>) cache.getNativeCache();
+		CacheStats stats = nativeCache.stats();
+		result.put("size", nativeCache.estimatedSize());
+		result.put("hitCount", stats.hitCount());
+		result.put("missCount", stats.missCount());
+		result.put("hitRate", stats.hitRate());
+		result.put("evictionCount", stats.evictionCount());
+		return new ResponseEntity<>(result,HttpStatus.OK);
+	}
+}
@@ -1,53 +1,176 @@
 package com.cos.book.web;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.cos.book.domain.Book;
 import com.cos.book.service.BookService;
+import com.cos.book.service.BookWriteBehind;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.RequiredArgsConstructor;
 
 @RequiredArgsConstructor
 @RestController
 public class BookController {
+	public static final String NDJSON = "application/x-ndjson";
+	public static final String NEXT_AFTER_HEADER = "X-Next-After";
+	public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 	
 	private final BookService bookService;
+	private final ObjectMapper objectMapper;
+	private final ObjectProvider<BookWriteBehind> writeBehind; //book.write-behind.enabled=true 일때만 있음
 	
-	//security는 CORS를 따로 가지고 있어서 따로 해제해줘야한다.
-	@CrossOrigin
 	@PostMapping("/book")
 	public ResponseEntity<?> save(@RequestBody Book book) {
+		BookWriteBehind buffer = writeBehind.getIfAvailable();
+		if(buffer != null) { //큐에만 넣고 202 (id는 미리 받아서 돌려줌)
+			Book queued = buffer.save(book);
+			return ResponseEntity.accepted().eTag(BookETags.of(queued)).body(queued);
+		}
 		return new ResponseEntity<>(bookService.save(book),HttpStatus.CREATED);
 	}
 	
-	@CrossOrigin
-	@GetMapping("/book")
-	public ResponseEntity<?> findAll() {
-		return new ResponseEntity<>(bookService.getAll(),HttpStatus.OK);
+	//키셋 페이징 : 다음 페이지가 있으면 X-Next-After 헤더에 마지막 id를 담아준다.
+	//아래 author, titlePrefix, ids 는 하나만 받는다. 같이 오면 맞는 매핑이 없어서 400
+	@GetMapping(value = "/book", params = { "!author", "!titlePrefix", "!ids" })
+	public ResponseEntity<?> findAll(@RequestParam(required = false) Long after,
+			@RequestParam(defaultValue = "" + BookService.DEFAULT_PAGE_SIZE) int limit) {
+		Slice<Book> slice = bookService.getPage(after, limit);
+		List<Book> books = slice.getContent();
+		HttpHeaders headers = new HttpHeaders();
+		if(slice.hasNext()) {
+			headers.add(NEXT_AFTER_HEADER, String.valueOf(books.get(books.size() - 1).getId()));
+		}
+		return new ResponseEntity<>(new BookList(books),headers,HttpStatus.OK);
+	}
+	
+	//GET /book?author=.. : 저자의 책을 제목순(같은 제목은 id 순)으로. 다음 페이지가 있으면 X-Next-Cursor 헤더 => cursor 파라미터로 (키셋)
+	@GetMapping(value = "/book", params = { "author", "!titlePrefix", "!ids" })
+	public ResponseEntity<?> findByAuthor(@RequestParam String author,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(defaultValue = "" + BookService.DEFAULT_PAGE_SIZE) int limit) {
+		BookCursor after = BookCursor.parse(cursor);
+		if(after == null) {
+			return new ResponseEntity<>("cursor를 확인해주세요.",HttpStatus.BAD_REQUEST);
+		}
+		return pageOf(bookService.getByAuthor(author, after.title(), after.id(), limit));
+	}
+	
+	//GET /book?titlePrefix=.. : 제목이 titlePrefix 로 시작하는 책 (중간 단어 검색은 /book/search)
+	@GetMapping(value = "/book", params = { "titlePrefix", "!author", "!ids" })
+	public ResponseEntity<?> findByTitlePrefix(@RequestParam String titlePrefix,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(defaultValue = "" + BookService.DEFAULT_PAGE_SIZE) int limit) {
+		BookCursor after = BookCursor.parse(cursor);
+		if(after == null) {
+			return new ResponseEntity<>("cursor를 확인해주세요.",HttpStatus.BAD_REQUEST);
+		}
+		return pageOf(bookService.getByTitlePrefix(titlePrefix, after.title(), after.id(), limit));
+	}
+	
+	private ResponseEntity<?> pageOf(Slice<Book> slice) {
+		List<Book> books = slice.getContent();
+		HttpHeaders headers = new HttpHeaders();
+		if(slice.hasNext()) {
+			headers.add(NEXT_CURSOR_HEADER, BookCursor.of(books.get(books.size() - 1)));
+		}
+		return new ResponseEntity<>(new BookList(books),headers,HttpStatus.OK);
+	}
+	
+	//GET /book?ids=1,2,3 : 여러 권을 요청 한번, 쿼리 한번으로 (화면에서 /book/{id} 를 여러번 부르는 대신). 없는 id는 빠진다.
+	@GetMapping(value = "/book", params = { "ids", "!author", "!titlePrefix" })
+	public ResponseEntity<?> findAllById(@RequestParam List<Long> ids) {
+		return new ResponseEntity<>(new BookList(bookService.getMany(ids)),HttpStatus.OK);
+	}
+	
+	//Accept: application/x-ndjson 이면 전체를 한 줄에 한 권씩 흘려보낸다. (메모리 사용량이 테이블 크기와 무관)
+	@GetMapping(value = "/book", params = { "!author", "!titlePrefix", "!ids" }, produces = NDJSON)
+	public ResponseEntity<StreamingResponseBody> streamAll() {
+		StreamingResponseBody body = out -> {
+			JsonGenerator generator = objectMapper.getFactory().createGenerator(out)
+					.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			try {
+				bookService.streamAll(book -> {
+					try {
+						generator.writeObject(book);
+						generator.writeRaw('\n');
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			} finally {
+				generator.close();
+			}
+		};
+		return ResponseEntity.ok().header(HttpHeaders.CONTENT_TYPE, NDJSON).body(body);
 	}
 	
-	@CrossOrigin
+	//ETag = 버전. If-None-Match가 현재 버전이면 304 (getOne이 캐시에 있으면 db도 안간다)
 	@GetMapping("/book/{id}")
-	public ResponseEntity<?> findById(@PathVariable Long id) {
-		return new ResponseEntity<>(bookService.getOne(id),HttpStatus.OK);
+	public ResponseEntity<?> findById(@PathVariable Long id, WebRequest request) {
+		Book book = bookService.getOne(id);
+		String etag = BookETags.of(book);
+		if(etag != null && request.checkNotModified(etag)) {
+			return null; //304
+		}
+		return ResponseEntity.ok().eTag(etag).body(book);
 	}
-	@CrossOrigin
+	//If-Match : 그 버전일때만 수정 (select 없이 update 한번), 다르면 412
+	//If-None-Match : 현재 버전과 맞으면(* 포함) 412
 	@PutMapping("/book/{id}")
-	public ResponseEntity<?> update(@PathVariable Long id, @RequestBody Book book) {
-		return new ResponseEntity<>(bookService.update(id,book),HttpStatus.OK);
+	public ResponseEntity<?> update(@PathVariable Long id, @RequestBody Book book,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+		if(ifNoneMatch != null && BookETags.matches(ifNoneMatch, bookService.getOne(id).getVersion())) {
+			return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+		}
+		BookWriteBehind buffer = writeBehind.getIfAvailable();
+		if(buffer != null && ifMatch == null && ifNoneMatch == null) { //조건 없는 수정만 큐로
+			Book queued = buffer.update(id,book);
+			return ResponseEntity.accepted().eTag(BookETags.of(queued)).body(queued);
+		}
+		Book bookEntity;
+		if(ifMatch == null) {
+			bookEntity = bookService.update(id,book);
+		} else {
+			Long version = BookETags.parseVersion(ifMatch);
+			if(version == null) { //* 이거나 여러개
+				if(!BookETags.matches(ifMatch, bookService.getOne(id).getVersion())) {
+					return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+				}
+				bookEntity = bookService.update(id,book);
+			} else {
+				bookEntity = bookService.updateIfMatch(id,version,book);
+			}
+		}
+		return ResponseEntity.ok().eTag(BookETags.of(bookEntity)).body(bookEntity);
 	}
-	@CrossOrigin
 	@DeleteMapping("/book/{id}")
 	public ResponseEntity<?> deleteById(@PathVariable Long id) {
+		BookWriteBehind buffer = writeBehind.getIfAvailable();
+		if(buffer != null) {
+			return new ResponseEntity<>(buffer.delete(id),HttpStatus.ACCEPTED);
+		}
 		return new ResponseEntity<>(bookService.delete(id),HttpStatus.OK);
 	}
 }
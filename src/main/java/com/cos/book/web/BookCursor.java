@@ -0,0 +1,30 @@
+package com.cos.book.web;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import com.cos.book.domain.Book;
+
+//제목순 키셋 페이지의 위치 (마지막 책의 title, id). X-Next-Cursor 헤더 <-> cursor 파라미터로 base64url("id:제목") (제목이 null 이면 "id")
+record BookCursor(String title, Long id) {
+	static final BookCursor FIRST = new BookCursor(null, null);
+	
+	static String of(Book book) {
+		String value = book.getTitle() == null ? String.valueOf(book.getId()) : book.getId() + ":" + book.getTitle();
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	//없으면 처음, 잘못된 값이면 null
+	static BookCursor parse(String cursor) {
+		if(cursor == null) {
+			return FIRST;
+		}
+		try {
+			String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			int colon = value.indexOf(':');
+			return colon < 0 ? new BookCursor(null, Long.valueOf(value)) : new BookCursor(value.substring(colon + 1), Long.valueOf(value.substring(0, colon)));
+		} catch (IllegalArgumentException e) { //base64, 숫자 (NumberFormatException 포함)
+			return null;
+		}
+	}
+}
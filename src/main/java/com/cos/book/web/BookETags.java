@@ -0,0 +1,48 @@
+package com.cos.book.web;
+
+import com.cos.book.domain.Book;
+
+//Book 버전 <-> ETag 헤더 값 ("3", W/"3", *, "1", "2")
+class BookETags {
+	
+	static String of(Book book) {
+		return book == null || book.getVersion() == null ? null : "\"" + book.getVersion() + "\"";
+	}
+	
+	//태그가 하나일때만 버전을 돌려준다. (* 나 여러개면 null)
+	static Long parseVersion(String header) {
+		String[] tags = header.split(",");
+		if(tags.length != 1) {
+			return null;
+		}
+		return toVersion(tags[0]);
+	}
+	
+	static boolean matches(String header, Long version) {
+		for(String tag : header.split(",")) {
+			if("*".equals(tag.trim())) {
+				return true;
+			}
+			Long tagVersion = toVersion(tag);
+			if(tagVersion != null && tagVersion.equals(version)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static Long toVersion(String tag) {
+		String value = tag.trim();
+		if(value.startsWith("W/")) {
+			value = value.substring(2);
+		}
+		if(value.length() < 2 || !value.startsWith("\"") || !value.endsWith("\"")) {
+			return null;
+		}
+		try {
+			return Long.valueOf(value.substring(1, value.length() - 1));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
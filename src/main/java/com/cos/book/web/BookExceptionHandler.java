@@ -0,0 +1,47 @@
+package com.cos.book.web;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import com.cos.book.jobs.BookJobQueueFullException;
+import com.cos.book.service.BookNotFoundException;
+import com.cos.book.service.WriteBehindFullException;
+import com.cos.book.transfer.TransferBusyException;
+
+@RestControllerAdvice
+public class BookExceptionHandler {
+	
+	//다른 사람이 먼저 수정함 (If-Match 버전 불일치, 더티체킹 flush시 버전 충돌)
+	@ExceptionHandler(OptimisticLockingFailureException.class)
+	public ResponseEntity<?> optimisticLock(OptimisticLockingFailureException e) {
+		return new ResponseEntity<>(e.getMessage(),HttpStatus.PRECONDITION_FAILED);
+	}
+	
+	//없는 책
+	@ExceptionHandler(BookNotFoundException.class)
+	public ResponseEntity<?> notFound(BookNotFoundException e) {
+		return new ResponseEntity<>(e.getMessage(),HttpStatus.NOT_FOUND);
+	}
+	
+	//write-behind 큐가 가득 참 => 잠시 후 다시
+	@ExceptionHandler(WriteBehindFullException.class)
+	public ResponseEntity<?> writeBehindFull(WriteBehindFullException e) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(e.getMessage());
+	}
+	
+	//POST /book/_jobs 대기열이 가득 참 => 작업이 빠진 뒤에 다시
+	@ExceptionHandler(BookJobQueueFullException.class)
+	public ResponseEntity<?> jobQueueFull(BookJobQueueFullException e) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").body(e.getMessage());
+	}
+	
+	//POST /book/_import 가 max-imports 개 돌고 있음 => 하나가 끝난 뒤에 다시
+	@ExceptionHandler(TransferBusyException.class)
+	public ResponseEntity<?> transferBusy(TransferBusyException e) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").body(e.getMessage());
+	}
+}
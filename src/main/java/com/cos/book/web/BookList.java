@@ -0,0 +1,15 @@
+package com.cos.book.web;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import com.cos.book.domain.Book;
+
+//응답용 Book 목록. ResponseEntity<?> 로 나가면 제네릭 타입이 지워져서 protobuf 컨버터가 원소 타입을 알 수 있게 따로 둔다. (JSON 은 그냥 배열)
+class BookList extends ArrayList<Book> {
+	private static final long serialVersionUID = 1L;
+	
+	BookList(Collection<Book> books) {
+		super(books);
+	}
+}
@@ -0,0 +1,92 @@
+package com.cos.book.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+
+import org.springframework.http.MediaType;
+
+import com.cos.book.domain.Book;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+/**
+ * Book <-> protobuf (src/main/resources/book.proto)
+ * 필드 4개뿐이라 생성 코드 없이 CodedOutputStream 으로 바로 쓴다. (중간 Message 객체를 안만듦)
+ */
+public final class BookProtobuf {
+	public static final MediaType MEDIA_TYPE = new MediaType("application", "x-protobuf");
+	private static final int BUFFER_SIZE = 8192;
+	
+	private BookProtobuf() {
+	}
+	
+	//message Book
+	public static void write(Book book, OutputStream outputStream) throws IOException {
+		CodedOutputStream out = CodedOutputStream.newInstance(outputStream, BUFFER_SIZE);
+		writeFields(book, out);
+		out.flush();
+	}
+	
+	//message BookList { repeated Book books = 1; }
+	public static void writeList(Collection<Book> books, OutputStream outputStream) throws IOException {
+		CodedOutputStream out = CodedOutputStream.newInstance(outputStream, BUFFER_SIZE);
+		for(Book book : books) {
+			out.writeTag(1, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			out.writeUInt32NoTag(size(book));
+			writeFields(book, out);
+		}
+		out.flush();
+	}
+	
+	public static Book read(InputStream inputStream) throws IOException {
+		CodedInputStream in = CodedInputStream.newInstance(inputStream);
+		Book book = new Book();
+		int tag;
+		while((tag = in.readTag()) != 0) {
+			switch(WireFormat.getTagFieldNumber(tag)) {
+			case 1 -> book.setId(in.readInt64());
+			case 2 -> book.setTitle(in.readStringRequireUtf8());
+			case 3 -> book.setAuthor(in.readStringRequireUtf8());
+			case 4 -> book.setVersion(in.readInt64());
+			default -> in.skipField(tag);
+			}
+		}
+		return book;
+	}
+	
+	//proto3 : 기본값(null)인 필드는 안쓴다.
+	private static void writeFields(Book book, CodedOutputStream out) throws IOException {
+		if(book.getId() != null) {
+			out.writeInt64(1, book.getId());
+		}
+		if(book.getTitle() != null) {
+			out.writeString(2, book.getTitle());
+		}
+		if(book.getAuthor() != null) {
+			out.writeString(3, book.getAuthor());
+		}
+		if(book.getVersion() != null) {
+			out.writeInt64(4, book.getVersion());
+		}
+	}
+	
+	private static int size(Book book) {
+		int size = 0;
+		if(book.getId() != null) {
+			size += CodedOutputStream.computeInt64Size(1, book.getId());
+		}
+		if(book.getTitle() != null) {
+			size += CodedOutputStream.computeStringSize(2, book.getTitle());
+		}
+		if(book.getAuthor() != null) {
+			size += CodedOutputStream.computeStringSize(3, book.getAuthor());
+		}
+		if(book.getVersion() != null) {
+			size += CodedOutputStream.computeInt64Size(4, book.getVersion());
+		}
+		return size;
+	}
+}
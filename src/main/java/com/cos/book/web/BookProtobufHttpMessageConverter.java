@@ -0,0 +1,67 @@
+package com.cos.book.web;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import com.cos.book.domain.Book;
+
+//Accept/Content-Type: application/x-protobuf 일때 Book, List<Book> (그 외 응답은 406)
+//목록은 BookList 이거나 선언된 타입이 Collection<Book> 일때만 (다른 원소의 목록을 받았다가 쓰는 중에 500 이 나지 않게)
+//컨버터 목록 맨 뒤에 둬서 Accept: */* 이면 JSON이 먼저 골라진다.
+public class BookProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+	
+	public BookProtobufHttpMessageConverter() {
+		super(BookProtobuf.MEDIA_TYPE);
+	}
+	
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return Book.class.isAssignableFrom(clazz) || BookList.class.isAssignableFrom(clazz);
+	}
+	
+	@Override
+	public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+		if(type instanceof ParameterizedType parameterized && parameterized.getRawType() instanceof Class<?> raw
+				&& Collection.class.isAssignableFrom(raw)) {
+			return parameterized.getActualTypeArguments()[0] == Book.class && canWrite(mediaType);
+		}
+		return supports(clazz) && canWrite(mediaType);
+	}
+	
+	@Override
+	public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+		return type == Book.class && canRead(mediaType);
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+			throws IOException, HttpMessageNotWritableException {
+		if(object instanceof Book book) {
+			BookProtobuf.write(book, outputMessage.getBody());
+			return;
+		}
+		BookProtobuf.writeList((Collection<Book>) object, outputMessage.getBody());
+	}
+	
+	@Override
+	public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+			throws IOException, HttpMessageNotReadableException {
+		return readInternal(Book.class, inputMessage);
+	}
+	
+	@Override
+	protected Object readInternal(Class<? extends Object> clazz, HttpInputMessage inputMessage)
+			throws IOException, HttpMessageNotReadableException {
+		return BookProtobuf.read(inputMessage.getBody());
+	}
+}
@@ -0,0 +1,26 @@
+package com.cos.book.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.cos.book.service.BookSearchIndex;
+
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+@RestController
+public class BookSearchController {
+	
+	private final BookSearchIndex bookSearchIndex;
+	
+	//title/author 부분 문자열 검색 (점수순). prefix=true 면 단어 앞부분만 매칭 (자동완성)
+	@GetMapping("/book/search")
+	public ResponseEntity<?> search(@RequestParam String q,
+			@RequestParam(defaultValue = "false") boolean prefix,
+			@RequestParam(defaultValue = "20") int limit) {
+		return new ResponseEntity<>(bookSearchIndex.search(q, prefix, limit),HttpStatus.OK);
+	}
+}
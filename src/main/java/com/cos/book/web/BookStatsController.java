@@ -0,0 +1,32 @@
+package com.cos.book.web;
+
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.cos.book.service.BookStats;
+
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+@RestController
+public class BookStatsController {
+	
+	private final BookStats bookStats;
+	
+	//전체 수, 상위 저자 top 명, 제목 길이 분포 (GET /book 을 다 받아서 세지 않아도 된다)
+	@GetMapping("/book/stats")
+	public ResponseEntity<?> summary(@RequestParam(defaultValue = "10") int top) {
+		return new ResponseEntity<>(bookStats.summary(top),HttpStatus.OK);
+	}
+	
+	//저자 한명의 책 수
+	@GetMapping(value = "/book/stats", params = "author")
+	public ResponseEntity<?> countByAuthor(@RequestParam String author) {
+		return new ResponseEntity<>(Map.of("author", author, "count", bookStats.countByAuthor(author)),HttpStatus.OK);
+	}
+}
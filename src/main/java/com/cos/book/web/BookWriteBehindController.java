@@ -0,0 +1,25 @@
+package com.cos.book.web;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.cos.book.service.BookWriteBehind;
+
+import lombok.RequiredArgsConstructor;
+
+//write-behind 큐 깊이/flush 시간 확인용
+@ConditionalOnProperty(name = "book.write-behind.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@RestController
+public class BookWriteBehindController {
+	
+	private final BookWriteBehind bookWriteBehind;
+	
+	@GetMapping("/book/_write-behind")
+	public ResponseEntity<?> stats() {
+		return new ResponseEntity<>(bookWriteBehind.stats(),HttpStatus.OK);
+	}
+}
@@ -0,0 +1,34 @@
+-- prod 프로필 (hibernate ddl-auto 를 끄고 flyway 로 만든다) : Book, BookOutbox, BookChange, BookChangeCursor 엔티티와 맞춰야 한다.
+CREATE SEQUENCE book_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE book (
+  id BIGINT NOT NULL PRIMARY KEY,
+  title VARCHAR(255),
+  author VARCHAR(255),
+  version BIGINT
+);
+
+CREATE TABLE book_outbox (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  book_id BIGINT,
+  deleted BOOLEAN NOT NULL,
+  title VARCHAR(255),
+  author VARCHAR(255),
+  version BIGINT,
+  created_at BIGINT NOT NULL
+);
+
+CREATE TABLE book_change (
+  seq BIGINT NOT NULL PRIMARY KEY,
+  book_id BIGINT,
+  deleted BOOLEAN NOT NULL,
+  title VARCHAR(255),
+  author VARCHAR(255),
+  version BIGINT,
+  committed_at BIGINT NOT NULL
+);
+
+CREATE TABLE book_change_cursor (
+  id BIGINT NOT NULL PRIMARY KEY,
+  last_seq BIGINT NOT NULL
+);
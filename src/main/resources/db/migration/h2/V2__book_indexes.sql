@@ -0,0 +1,4 @@
+-- 저자별 목록(author = ? order by title)과 제목 앞부분 검색(title like '접두어%')이 테이블 전체를 읽지 않게 한다.
+-- author 단독 인덱스는 만들지 않는다. (author, title) 의 앞 컬럼이라 author = ? 만으로도 이 인덱스를 탄다.
+CREATE INDEX idx_book_title ON book (title);
+CREATE INDEX idx_book_author_title ON book (author, title);
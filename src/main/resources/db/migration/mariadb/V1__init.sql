@@ -0,0 +1,35 @@
+-- prod 프로필 (hibernate ddl-auto 를 끄고 flyway 로 만든다) : Book, BookOutbox, BookChange, BookChangeCursor 엔티티와 맞춰야 한다.
+-- 시퀀스는 MariaDB 10.3 이상
+CREATE SEQUENCE book_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE book (
+  id BIGINT NOT NULL PRIMARY KEY,
+  title VARCHAR(255),
+  author VARCHAR(255),
+  version BIGINT
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE book_outbox (
+  id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  book_id BIGINT,
+  deleted BOOLEAN NOT NULL,
+  title VARCHAR(255),
+  author VARCHAR(255),
+  version BIGINT,
+  created_at BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE book_change (
+  seq BIGINT NOT NULL PRIMARY KEY,
+  book_id BIGINT,
+  deleted BOOLEAN NOT NULL,
+  title VARCHAR(255),
+  author VARCHAR(255),
+  version BIGINT,
+  committed_at BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE book_change_cursor (
+  id BIGINT NOT NULL PRIMARY KEY,
+  last_seq BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,5 @@
+-- 저자별 목록(author = ? order by title)과 제목 앞부분 검색(title like '접두어%')이 테이블 전체를 읽지 않게 한다.
+-- author 단독 인덱스는 만들지 않는다. (author, title) 의 앞 컬럼이라 author = ? 만으로도 이 인덱스를 탄다.
+-- InnoDB online DDL : 인덱스를 만드는 동안에도 book 읽기/쓰기가 막히지 않는다. (안되는 경우면 잠그지 않고 에러로 끝남)
+CREATE INDEX idx_book_title ON book (title) ALGORITHM=INPLACE LOCK=NONE;
+CREATE INDEX idx_book_author_title ON book (author, title) ALGORITHM=INPLACE LOCK=NONE;
@@ -0,0 +1,17 @@
+-- POST /book/_jobs 작업 (BookJob 엔티티와 맞춰야 한다.)
+CREATE TABLE book_job (
+  id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  type VARCHAR(32) NOT NULL,
+  target VARCHAR(255),
+  priority INT NOT NULL,
+  status VARCHAR(16) NOT NULL,
+  cancel_requested BOOLEAN NOT NULL,
+  processed BIGINT NOT NULL,
+  message VARCHAR(1000),
+  attempts INT NOT NULL,
+  created_at BIGINT NOT NULL,
+  started_at BIGINT,
+  finished_at BIGINT
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+-- 뜰때 남은 작업을 다시 큐에 넣고 (status), 보관 기간이 지난 것을 지운다.
+CREATE INDEX idx_book_job_status ON book_job (status, priority);
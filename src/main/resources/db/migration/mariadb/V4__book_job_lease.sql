@@ -0,0 +1,4 @@
+-- 작업을 가진 인스턴스와 그 임대 기간. 돌리는 인스턴스가 주기적으로 lease_until 을 늘리고,
+-- 지난 RUNNING 작업만 (죽은 인스턴스의 것) 다른 인스턴스가 다시 대기열에 넣는다.
+ALTER TABLE book_job ADD COLUMN owner VARCHAR(64);
+ALTER TABLE book_job ADD COLUMN lease_until BIGINT;
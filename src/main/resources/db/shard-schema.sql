@@ -0,0 +1,46 @@
+-- shard 프로필 : 서버가 뜰때 모든 shard에 실행 (hibernate ddl-auto는 끔). H2 문법, 문자열 정렬은 기본 (COLLATION 없음 = String.compareTo 순서)
+CREATE TABLE IF NOT EXISTS book (
+  id BIGINT NOT NULL PRIMARY KEY,
+  title VARCHAR(255),
+  author VARCHAR(255),
+  version BIGINT
+);
+CREATE SEQUENCE IF NOT EXISTS book_seq START WITH 1 INCREMENT BY 50;
+-- bucket(0~1023) -> shard 번호. shard 0 의 것만 사용
+CREATE TABLE IF NOT EXISTS book_shard_map (
+  bucket INT NOT NULL PRIMARY KEY,
+  shard INT NOT NULL
+);
+-- bucket -> shard 번호. shard 마다 있다. 쓰기는 자기 bucket 행을 잠그고 이 shard 것인지 확인, 리밸런싱은 옮기는 동안 배타 락
+CREATE TABLE IF NOT EXISTS book_bucket (
+  bucket INT NOT NULL PRIMARY KEY,
+  shard INT NOT NULL
+);
+-- db/migration/*/V2__book_indexes.sql 과 같은 인덱스
+CREATE INDEX IF NOT EXISTS idx_book_title ON book (title);
+CREATE INDEX IF NOT EXISTS idx_book_author_title ON book (author, title);
+-- POST /book/_jobs 작업 (db/migration/*/V3__book_job.sql). shard 0 의 것만 사용
+CREATE TABLE IF NOT EXISTS book_job (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  type VARCHAR(32) NOT NULL,
+  target VARCHAR(255),
+  priority INT NOT NULL,
+  status VARCHAR(16) NOT NULL,
+  cancel_requested BOOLEAN NOT NULL,
+  processed BIGINT NOT NULL,
+  message VARCHAR(1000),
+  attempts INT NOT NULL,
+  created_at BIGINT NOT NULL,
+  started_at BIGINT,
+  finished_at BIGINT,
+  owner VARCHAR(64),
+  lease_until BIGINT
+);
+-- 리밸런싱이 옮길 bucket 행만 읽게 (SnowflakeIdGenerator.bucketOf 와 같은 식 : id * 0x9E3779B97F4A7C15 mod 2^64 의 상위 10비트)
+-- 쓰는 쪽은 모른다. (계산 컬럼) 이미 있는 shard 는 추가할때 채워진다.
+ALTER TABLE book ADD COLUMN IF NOT EXISTS bucket INT GENERATED ALWAYS AS (
+  CAST(FLOOR(MOD(MOD(CAST(id AS NUMERIC(40)) * 11400714819323198485, 18446744073709551616) + 18446744073709551616, 18446744073709551616) / 18014398509481984) AS INT));
+CREATE INDEX IF NOT EXISTS idx_book_bucket ON book (bucket, id, version);
+-- db/migration/*/V4__book_job_lease.sql (V4 전에 만든 shard)
+ALTER TABLE book_job ADD COLUMN IF NOT EXISTS owner VARCHAR(64);
+ALTER TABLE book_job ADD COLUMN IF NOT EXISTS lease_until BIGINT;
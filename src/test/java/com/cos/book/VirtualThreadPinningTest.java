@@ -0,0 +1,73 @@
+package com.cos.book;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.cos.book.domain.Book;
+import com.cos.book.service.BookService;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * 가상 스레드 pinning 검사
+ * synchronized 안에서 블로킹(JDBC 드라이버, 커넥션 풀...)하면 가상 스레드가 OS 스레드에 고정(pinning)된다.
+ * JFR 의 jdk.VirtualThreadPinned 이벤트가 하나라도 나오면 실패하고 스택을 보여준다.
+ */
+@ActiveProfiles("virtual")
+@SpringBootTest(properties = "spring.cache.type=none") //캐시를 끄고 매번 db까지 간다.
+public class VirtualThreadPinningTest {
+	
+	@Autowired
+	private BookService bookService;
+	
+	@Test
+	public void pinning_test() throws Exception {
+		List<String> pinned = new CopyOnWriteArrayList<>();
+		try (RecordingStream recording = new RecordingStream()) {
+			recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+			recording.onEvent("jdk.VirtualThreadPinned", event -> pinned.add(topFrames(event)));
+			recording.startAsync();
+			
+			//커넥션 풀(20개)보다 훨씬 많은 동시 작업
+			List<Future<?>> futures = new ArrayList<>();
+			try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				for(int i = 0; i < 200; i++) {
+					futures.add(executor.submit(() -> {
+						Book bookEntity = bookService.save(new Book(null,"가상 스레드","코스"));
+						bookService.getOne(bookEntity.getId());
+						bookService.update(bookEntity.getId(), new Book(null,"가상 스레드2","코스"));
+					}));
+				}
+			}
+			for(Future<?> future : futures) {
+				future.get();
+			}
+			recording.stop(); //남은 이벤트까지 다 받는다.
+		}
+		assertTrue(pinned.isEmpty(), () -> "가상 스레드 pinning 발생 " + pinned.size() + "건\n" + String.join("\n\n", pinned));
+	}
+	
+	private static String topFrames(RecordedEvent event) {
+		if(event.getStackTrace() == null) {
+			return "(스택 없음)";
+		}
+		return event.getStackTrace().getFrames().stream()
+				.limit(15)
+				.map(frame -> "  at " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber())
+				.collect(Collectors.joining("\n"));
+	}
+}
@@ -0,0 +1,140 @@
+package com.cos.book.admission;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+//단위 테스트 (시간은 직접 넣는다, 필터는 mock 요청으로)
+public class AdmissionUnitTest {
+	
+	@Test
+	public void rateLimiter_burst_test() {
+		//given (초당 10개, 한번에 5개까지)
+		ClientRateLimiter limiter = new ClientRateLimiter(10, 5, 100);
+		long now = System.nanoTime();
+		for(int i = 0; i < 5; i++) {
+			assertEquals(0, limiter.tryAcquire("client1", now));
+		}
+		
+		//when
+		long wait = limiter.tryAcquire("client1", now);
+		
+		//then (다음 토큰은 100ms 뒤, 다른 클라이언트는 상관없음)
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(100), wait);
+		assertEquals(0, limiter.tryAcquire("client2", now));
+		assertEquals(0, limiter.tryAcquire("client1", now + TimeUnit.MILLISECONDS.toNanos(100)));
+	}
+	
+	@Test
+	public void concurrencyLimiter_latency_test() {
+		//given (window 0 : min-samples 만큼 모이면 바로 계산)
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 100, 0, 10, 1.5, 1.0);
+		long now = System.nanoTime();
+		
+		//when (평소 1ms => 꽉 채워 쓰면 늘어남)
+		for(int window = 0; window < 5; window++) {
+			now = run(limiter, now, TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		int grown = limiter.getLimit();
+		//latency 10배 => 줄어듦
+		for(int window = 0; window < 5; window++) {
+			now = run(limiter, now, TimeUnit.MILLISECONDS.toNanos(10));
+		}
+		
+		//then
+		assertTrue(grown > 20, "limit=" + grown);
+		assertTrue(limiter.getLimit() < grown, "limit=" + limiter.getLimit());
+		for(int i = 0; i < limiter.getLimit(); i++) {
+			assertTrue(limiter.tryAcquire());
+		}
+		assertFalse(limiter.tryAcquire());
+	}
+	
+	@Test
+	public void concurrencyLimiter_overload_noLoadRtt_test() {
+		//given (평소 1ms)
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 100, 0, 10, 1.5, 1.0);
+		long now = System.nanoTime();
+		for(int window = 0; window < 5; window++) {
+			now = run(limiter, now, TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		
+		//when (limit 을 꽉 채운 채로 20ms 가 오래 이어짐)
+		for(int window = 0; window < 300; window++) {
+			now = run(limiter, now, TimeUnit.MILLISECONDS.toNanos(20));
+		}
+		
+		//then (과부하 latency 를 평소값으로 배우지 않아서 limit 이 바닥에 있음)
+		assertEquals(1.0, limiter.getNoLoadRttMs(), 0.001);
+		assertEquals(4, limiter.getLimit());
+	}
+	
+	@Test
+	public void filter_rateLimit_test() throws Exception {
+		//given (초당 1개, 등록된 키는 key1 만)
+		AdmissionFilter filter = new AdmissionFilter(new ClientRateLimiter(1, 1, 100), new AdaptiveConcurrencyLimiter(10, 1, 10, 100, 10, 2.0, 0.2),
+				"X-Api-Key", Set.of("key1"), null, null);
+		assertEquals(200, perform(filter, "10.0.0.1", null).getStatus());
+		
+		//when (같은 IP에서 등록 안 된 키로 바꿔도)
+		MockHttpServletResponse limited = perform(filter, "10.0.0.1", "unknown");
+		
+		//then (IP 로 세서 429, 다른 IP 와 등록된 키는 따로)
+		assertEquals(429, limited.getStatus());
+		assertEquals("1", limited.getHeader(HttpHeaders.RETRY_AFTER));
+		assertEquals(200, perform(filter, "10.0.0.2", null).getStatus());
+		assertEquals(200, perform(filter, "10.0.0.1", "key1").getStatus());
+	}
+	
+	@Test
+	public void filter_concurrency_test() throws Exception {
+		//given (동시 처리 1개를 이미 쓰는 중)
+		AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(1, 1, 10, 100, 10, 2.0, 0.2);
+		AdmissionFilter filter = new AdmissionFilter(new ClientRateLimiter(1000, 1000, 100), concurrencyLimiter, "X-Api-Key", Set.of(), null, null);
+		assertTrue(concurrencyLimiter.tryAcquire());
+		
+		//when
+		MockHttpServletResponse overloaded = perform(filter, "10.0.0.1", null);
+		
+		//then (503 + Retry-After 1, 컨트롤러까지 안 감. 끝나면 다시 받음)
+		assertEquals(503, overloaded.getStatus());
+		assertEquals("1", overloaded.getHeader(HttpHeaders.RETRY_AFTER));
+		concurrencyLimiter.release(0, 1, false);
+		assertEquals(200, perform(filter, "10.0.0.1", null).getStatus());
+		assertEquals(0, concurrencyLimiter.getInFlight());
+	}
+	
+	private static MockHttpServletResponse perform(AdmissionFilter filter, String remoteAddr, String apiKey) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/book");
+		request.setRemoteAddr(remoteAddr);
+		if(apiKey != null) {
+			request.addHeader("X-Api-Key", apiKey);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+		filter.doFilter(request, response, chain);
+		assertEquals(response.getStatus() == 200, chain.getRequest() != null); //거절되면 컨트롤러까지 안 감
+		return response;
+	}
+	
+	//limit 만큼 동시에 받고 rtt 뒤에 다 끝냄
+	private static long run(AdaptiveConcurrencyLimiter limiter, long start, long rtt) {
+		int count = 0;
+		while(limiter.tryAcquire()) {
+			count++;
+		}
+		for(int i = 0; i < count; i++) {
+			limiter.release(start, start + rtt, true);
+		}
+		return start + rtt;
+	}
+}
@@ -0,0 +1,162 @@
+package com.cos.book.changes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.cos.book.domain.Book;
+import com.cos.book.domain.BookChange;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.AsyncListener;
+
+/**
+ * 통합 테스트 (outbox => relay => GET /book/changes)
+ * relay는 커밋된 것만 옮기므로 @Transactional(롤백) 을 쓰지 않는다. 브로커 없이 db만 있으면 된다.
+ */
+@AutoConfigureMockMvc
+@SpringBootTest(properties = { "book.search.rebuild-on-startup=false", "book.changes.relay-interval-ms=20" })
+public class BookChangeIntegreTest {
+	
+	@Autowired
+	private MockMvc mockMvc;
+	
+	private final ObjectMapper mapper = new ObjectMapper();
+	
+	@Test
+	public void changes_longPoll_test() throws Exception {
+		//given
+		long since = nextSince(0);
+		Long id = saveBook("변경 구독1");
+		mockMvc.perform(put("/book/{id}", id).contentType(MediaType.APPLICATION_JSON)
+				.content(mapper.writeValueAsString(new Book(null,"변경 구독1-수정","코스"))))
+			.andExpect(status().isOk());
+		mockMvc.perform(delete("/book/{id}", id)).andExpect(status().isOk());
+		
+		//when (relay가 옮길때까지 기다림)
+		List<BookChange> changes = awaitChanges(since, 3);
+		
+		//then (커밋 순서대로 seq가 1씩)
+		assertEquals(3, changes.size());
+		assertEquals(since + 1, changes.get(0).getSeq());
+		assertEquals(since + 3, changes.get(2).getSeq());
+		assertEquals("변경 구독1", changes.get(0).getTitle());
+		assertEquals("변경 구독1-수정", changes.get(1).getTitle());
+		assertTrue(changes.get(1).getVersion() > changes.get(0).getVersion(), changes.toString());
+		assertTrue(changes.get(2).isDeleted());
+		assertTrue(changes.stream().allMatch(change -> change.getBookId().equals(id)));
+	}
+	
+	@Test
+	public void changes_sse_test() throws Exception {
+		//given
+		long since = nextSince(0);
+		MvcResult result = mockMvc.perform(get("/book/changes").param("since", String.valueOf(since)).accept(MediaType.TEXT_EVENT_STREAM))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		
+		//when
+		saveBook("변경 구독2");
+		
+		//then
+		MockHttpServletResponse response = result.getResponse();
+		long deadline = System.currentTimeMillis() + 5000;
+		while(!response.getContentAsString(StandardCharsets.UTF_8).contains("변경 구독2") && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		String body = response.getContentAsString(StandardCharsets.UTF_8);
+		assertTrue(body.contains("id:" + (since + 1)), body);
+		assertTrue(body.contains("event:saved"), body);
+		assertTrue(body.contains("변경 구독2"), body);
+	}
+	
+	@Test
+	public void changes_deferred_test() throws Exception {
+		//given (since 이후가 없음 => 요청 스레드를 잡지 않고 기다림)
+		long since = nextSince(0);
+		MvcResult waiting = mockMvc.perform(get("/book/changes").param("since", String.valueOf(since)).param("waitMs", "5000"))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		MvcResult timedOut = mockMvc.perform(get("/book/changes").param("since", String.valueOf(since)).param("waitMs", "5000"))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		
+		//when
+		for(AsyncListener listener : ((MockAsyncContext) timedOut.getRequest().getAsyncContext()).getListeners()) {
+			listener.onTimeout(null);
+		}
+		saveBook("변경 구독3");
+		
+		//then (기다리던 요청은 새 변경을, 타임아웃은 빈 목록과 같은 since)
+		MockHttpServletResponse response = mockMvc.perform(asyncDispatch(waiting))
+			.andExpect(status().isOk())
+			.andReturn().getResponse();
+		List<BookChange> changes = mapper.readValue(response.getContentAsString(StandardCharsets.UTF_8), new TypeReference<List<BookChange>>() {});
+		assertEquals("변경 구독3", changes.get(0).getTitle());
+		assertEquals(String.valueOf(changes.get(changes.size() - 1).getSeq()), response.getHeader(BookChangeController.NEXT_SINCE_HEADER));
+		mockMvc.perform(asyncDispatch(timedOut))
+			.andExpect(status().isOk())
+			.andExpect(content().json("[]"))
+			.andExpect(header().string(BookChangeController.NEXT_SINCE_HEADER, String.valueOf(since)));
+	}
+	
+	private Long saveBook(String title) throws Exception {
+		String created = mockMvc.perform(post("/book").contentType(MediaType.APPLICATION_JSON)
+				.content(mapper.writeValueAsString(new Book(null,title,"코스"))))
+			.andExpect(status().isCreated())
+			.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+		return mapper.readValue(created, Book.class).getId();
+	}
+	
+	//지금까지 쌓인 변경을 건너뛴 seq
+	private long nextSince(long since) throws Exception {
+		while(true) {
+			String next = changes(since, 0).getHeader(BookChangeController.NEXT_SINCE_HEADER);
+			if(Long.parseLong(next) == since) {
+				return since;
+			}
+			since = Long.parseLong(next);
+		}
+	}
+	
+	private List<BookChange> awaitChanges(long since, int count) throws Exception {
+		long deadline = System.currentTimeMillis() + 5000;
+		List<BookChange> changes;
+		do {
+			String body = changes(since, 1000).getContentAsString(StandardCharsets.UTF_8);
+			changes = mapper.readValue(body, new TypeReference<List<BookChange>>() {});
+		} while(changes.size() < count && System.currentTimeMillis() < deadline);
+		return changes;
+	}
+	
+	private MockHttpServletResponse changes(long since, long waitMs) throws Exception {
+		MvcResult result = mockMvc.perform(get("/book/changes").param("since", String.valueOf(since)).param("waitMs", String.valueOf(waitMs)))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		return mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isOk())
+			.andReturn().getResponse();
+	}
+}
@@ -0,0 +1,105 @@
+package com.cos.book.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.cos.book.BookApplication;
+import com.cos.book.config.CacheConfig;
+import com.cos.book.domain.Book;
+import com.cos.book.service.BookService;
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * 통합 테스트 (cluster 프로필 : 한 JVM 에 인스턴스 2개, 같은 H2 db, Hazelcast 멤버 2개)
+ * 한쪽에서 쓰면 다른쪽 near 캐시가 무효화되는지, 무효화 뒤에 옛날 버전이 다시 들어가지 않는지 본다.
+ */
+public class ClusterCacheIntegreTest {
+	private static ConfigurableApplicationContext node1;
+	private static ConfigurableApplicationContext node2;
+	
+	@BeforeAll
+	public static void startNodes() {
+		System.setProperty("hazelcast.wait.seconds.before.join", "0"); //첫 멤버가 다른 멤버를 기다리지 않게
+		node1 = start();
+		node2 = start();
+		assertEquals(2, node1.getBean(HazelcastInstance.class).getCluster().getMembers().size());
+	}
+	
+	@AfterAll
+	public static void stopNodes() {
+		node2.close();
+		node1.close();
+	}
+	
+	private static ConfigurableApplicationContext start() {
+		return new SpringApplicationBuilder(BookApplication.class)
+				.web(WebApplicationType.NONE)
+				.profiles("cluster")
+				.properties("spring.devtools.restart.enabled=false")
+				.run("--spring.datasource.url=jdbc:h2:mem:cluster-test;DB_CLOSE_DELAY=-1",
+						"--book.cluster.name=cluster-test",
+						"--book.cluster.port=5901",
+						"--book.cluster.members=127.0.0.1:5901,127.0.0.1:5902"); //profile yml 보다 우선하도록 인자로
+	}
+	
+	@Test
+	public void update_invalidatesOtherNode_test() throws Exception {
+		//given (node1 이 읽어서 near + shared 에 올림)
+		BookService service1 = node1.getBean(BookService.class);
+		BookService service2 = node2.getBean(BookService.class);
+		Long id = service1.save(new Book(null, "스프링부트 따라하기", "코스")).getId();
+		service1.getOne(id);
+		int pageSize = service1.getPage(null, 1000).getContent().size();
+		assertTrue(node2.getBean(HazelcastInstance.class).getMap(CacheConfig.BOOK).containsKey(id));
+		
+		//when (node2 에서 수정, 추가)
+		service2.update(id, new Book(null, "리액트 따라하기", "코스"));
+		service2.save(new Book(null, "J유닛 따라하기", "코스"));
+		
+		//then (node1 도 새 값을 본다)
+		await(() -> service1.getOne(id).getTitle().equals("리액트 따라하기"));
+		await(() -> service1.getPage(null, 1000).getContent().size() == pageSize + 1);
+		assertEquals(1L, service1.getOne(id).getVersion());
+	}
+	
+	@Test
+	public void stalePut_rejected_test() throws Exception {
+		//given (node1 이 느린 조회로 version 0 을 들고 있는 사이에 node2 가 수정)
+		BookService service1 = node1.getBean(BookService.class);
+		BookService service2 = node2.getBean(BookService.class);
+		Book stale = service1.save(new Book(null, "스프링부트 따라하기", "코스"));
+		Long id = stale.getId();
+		service2.update(id, new Book(null, "리액트 따라하기", "코스"));
+		await(() -> service1.getOne(id).getVersion() == 1L);
+		
+		//when (늦게 끝난 조회가 옛날 값을 넣으려고 함)
+		Cache cache1 = node1.getBean(CacheManager.class).getCache(CacheConfig.BOOK);
+		cache1.evict(id);
+		cache1.put(id, stale);
+		
+		//then (near 에도 shared 에도 들어가지 않는다)
+		assertEquals(null, cache1.get(id));
+		assertEquals("리액트 따라하기", service1.getOne(id).getTitle());
+		Book shared = (Book) node2.getBean(HazelcastInstance.class).getMap(CacheConfig.BOOK).get(id);
+		assertEquals(1L, shared.getVersion());
+	}
+	
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while(!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, "5초 안에 반영되지 않음");
+			Thread.sleep(20);
+		}
+	}
+}
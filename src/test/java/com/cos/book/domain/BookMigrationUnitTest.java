@@ -0,0 +1,36 @@
+package com.cos.book.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+//단위 테스트 (flyway 로 만든 스키마가 엔티티와 맞는지 : ddl-auto=validate 로 떠야 한다)
+@AutoConfigureTestDatabase(replace = Replace.ANY)
+@DataJpaTest
+public class BookMigrationUnitTest {
+	
+	@Autowired
+	private Flyway flyway;
+	
+	@Autowired
+	private BookRepository bookRepository;
+	
+	@Test
+	public void migrate_validate_test() {
+		//given
+		Book book = new Book(null, "책제목1", "책저자1");
+		
+		//when
+		Book bookEntity = bookRepository.save(book);
+		
+		//then
+		assertNotNull(bookEntity.getId());
+		assertEquals(flyway.info().all().length, flyway.info().applied().length);
+	}
+}
@@ -0,0 +1,194 @@
+package com.cos.book.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+//단위 테스트 (repository 쿼리가 인덱스를 타는지 : 실제로 나간 SQL 을 같은 파라미터로 EXPLAIN 해서 tableScan 이 있으면 빌드 실패)
+//새 쿼리 메서드를 만들면 아래 queries 에도 넣어야 통과한다. (안 넣으면 coverage 에서 실패)
+@AutoConfigureTestDatabase(replace = Replace.ANY)
+@DataJpaTest
+public class BookQueryPlanUnitTest {
+	//원래 전체를 읽는 메서드
+	private static final Set<String> FULL_SCAN_ALLOWED = Set.of("streamAll");
+	
+	@Autowired
+	private BookRepository bookRepository;
+	
+	@Autowired
+	private DataSource dataSource;
+	
+	@Autowired
+	private SqlCapture sqlCapture;
+	
+	@Test
+	public void no_full_scan_test() throws SQLException {
+		//given
+		List<Book> saved = bookRepository.saveAllAndFlush(List.of(
+				new Book(null, "스프링 부트", "저자A"),
+				new Book(null, "자바", "저자A"),
+				new Book(null, "스프링 배치", "저자B")));
+		Book first = saved.get(0);
+		Map<String, Runnable> queries = new LinkedHashMap<>();
+		queries.put("findByIdGreaterThanOrderByIdAsc", () -> bookRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 10)));
+		queries.put("findByAuthorAfter", () -> bookRepository.findByAuthorAfter("저자A", first.getTitle(), first.getId(), PageRequest.of(0, 10)));
+		queries.put("findByTitlePrefixAfter", () -> bookRepository.findByTitlePrefixAfter("스프링", first.getTitle(), first.getId(), PageRequest.of(0, 10)));
+		queries.put("findIdsByIdIn", () -> bookRepository.findIdsByIdIn(List.of(first.getId(), -1L)));
+		queries.put("findForUpdateByIdIn", () -> bookRepository.findForUpdateByIdIn(List.of(first.getId(), -1L)));
+		queries.put("updateIfVersion", () -> bookRepository.updateIfVersion(first.getId(), first.getVersion(), "스프링 부트2", "저자A"));
+		queries.put("updateById", () -> bookRepository.updateById(first.getId(), "스프링 부트3", "저자A"));
+		queries.put("findVersionById", () -> bookRepository.findVersionById(first.getId()));
+		queries.put("deleteByIdIn", () -> bookRepository.deleteByIdIn(List.of(saved.get(2).getId())));
+		queries.put("batchWrite", () -> bookRepository.batchWrite(List.of(), List.of(first), List.of(saved.get(1).getId())));
+		
+		//when
+		Map<String, List<String>> fullScans = new LinkedHashMap<>();
+		Connection con = DataSourceUtils.getConnection(dataSource); //테스트 트랜잭션과 같은 커넥션
+		for(Map.Entry<String, Runnable> query : queries.entrySet()) {
+			List<CapturedSql> statements = sqlCapture.capture(query.getValue());
+			for(CapturedSql statement : statements) {
+				String plan = explain(con, statement);
+				if(plan.contains("tableScan")) {
+					fullScans.computeIfAbsent(query.getKey(), k -> new ArrayList<>()).add(plan);
+				}
+			}
+		}
+		
+		//then
+		Set<String> declared = Stream.of(BookRepository.class, BookRepositoryCustom.class)
+				.flatMap(type -> Arrays.stream(type.getDeclaredMethods()))
+				.map(Method::getName)
+				.filter(name -> !FULL_SCAN_ALLOWED.contains(name))
+				.collect(Collectors.toCollection(TreeSet::new));
+		assertEquals(declared, new TreeSet<>(queries.keySet()), "EXPLAIN 으로 확인하지 않은 쿼리 메서드가 있음");
+		assertTrue(fullScans.isEmpty(), "full table scan : " + fullScans);
+	}
+	
+	private String explain(Connection con, CapturedSql statement) throws SQLException {
+		try (PreparedStatement ps = con.prepareStatement("EXPLAIN " + statement.sql())) {
+			for(Map.Entry<Integer, Object> param : statement.params().entrySet()) {
+				ps.setObject(param.getKey(), param.getValue());
+			}
+			try (ResultSet rs = ps.executeQuery()) {
+				StringBuilder plan = new StringBuilder();
+				while(rs.next()) {
+					plan.append(rs.getString(1));
+				}
+				return plan.toString();
+			}
+		}
+	}
+	
+	record CapturedSql(String sql, Map<Integer, Object> params) {
+	}
+	
+	//capture() 안에서 실행된 select/update/delete 의 SQL 과 바인딩된 파라미터를 모은다.
+	static class SqlCapture {
+		private List<CapturedSql> captured;
+		
+		List<CapturedSql> capture(Runnable query) {
+			captured = new ArrayList<>();
+			try {
+				query.run();
+				return captured;
+			} finally {
+				captured = null;
+			}
+		}
+		
+		DataSource wrap(DataSource target) {
+			return proxy(DataSource.class, target, (method, args, result) ->
+				method.getName().equals("getConnection") ? wrap((Connection) result) : result);
+		}
+		
+		private Connection wrap(Connection target) {
+			return proxy(Connection.class, target, (method, args, result) ->
+				method.getName().equals("prepareStatement") ? wrap((PreparedStatement) result, (String) args[0]) : result);
+		}
+		
+		private PreparedStatement wrap(PreparedStatement target, String sql) {
+			Map<Integer, Object> params = new TreeMap<>();
+			return proxy(PreparedStatement.class, target, (method, args, result) -> {
+				String name = method.getName();
+				if(name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+					params.put(index, name.equals("setNull") ? null : args[1]);
+				} else if(name.equals("clearParameters")) {
+					params.clear();
+				} else if((name.startsWith("execute") || name.equals("addBatch")) && captured != null && isQuery(sql)) {
+					captured.add(new CapturedSql(sql, new TreeMap<>(params)));
+				}
+				return result;
+			});
+		}
+		
+		private static boolean isQuery(String sql) {
+			String head = sql.stripLeading().toLowerCase();
+			return head.startsWith("select") || head.startsWith("update") || head.startsWith("delete");
+		}
+		
+		interface After {
+			Object apply(Method method, Object[] args, Object result) throws Exception;
+		}
+		
+		@SuppressWarnings("unchecked")
+		private static <T> T proxy(Class<T> type, T target, After after) {
+			return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (p, method, args) -> {
+				Object result;
+				try {
+					result = method.invoke(target, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+				return after.apply(method, args, result);
+			});
+		}
+	}
+	
+	@TestConfiguration
+	static class CaptureConfig {
+		@Bean
+		static SqlCapture sqlCapture() {
+			return new SqlCapture();
+		}
+		
+		@Bean
+		static BeanPostProcessor sqlCaptureDataSource(SqlCapture sqlCapture) {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) {
+					return bean instanceof DataSource dataSource ? sqlCapture.wrap(dataSource) : bean;
+				}
+			};
+		}
+	}
+}
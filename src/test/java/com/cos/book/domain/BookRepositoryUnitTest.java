@@ -1,12 +1,19 @@
 package com.cos.book.domain;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.transaction.annotation.Transactional;
 
 //단위 테스트( DB 관련된 Bean이 Ioc에 등록되면 됨)
@@ -29,4 +36,70 @@ public class BookRepositoryUnitTest {
 		//then
 		assertEquals("책제목1", bookEntity.getTitle());
 	}
+	
+	@Test
+	public void findByIdGreaterThan_test() {
+		//given
+		List<Book> books = new ArrayList<Book>();
+		for(int i = 1; i <= 5; i++) {
+			books.add(new Book(null, "책제목"+i, "책저자"+i));
+		}
+		List<Book> saved = bookRepository.saveAll(books);
+		
+		//when
+		Slice<Book> slice = bookRepository.findByIdGreaterThanOrderByIdAsc(saved.get(1).getId(), PageRequest.of(0, 2));
+		
+		//then
+		assertEquals(2, slice.getNumberOfElements());
+		assertEquals("책제목3", slice.getContent().get(0).getTitle());
+		assertTrue(slice.hasNext());
+	}
+	
+	@Test
+	public void findByAuthor_titlePrefix_test() {
+		//given
+		bookRepository.saveAll(List.of(
+				new Book(null, "스프링 부트", "저자A"),
+				new Book(null, "자바", "저자A"),
+				new Book(null, "스프링 배치", "저자B")));
+		
+		//when
+		Slice<Book> byAuthor = bookRepository.findByAuthorAfter("저자A", null, null, PageRequest.of(0, 10));
+		Slice<Book> byPrefix = bookRepository.findByTitlePrefixAfter("스프링", null, null, PageRequest.of(0, 1));
+		Book last = byPrefix.getContent().get(0);
+		Slice<Book> nextPrefix = bookRepository.findByTitlePrefixAfter("스프링", last.getTitle(), last.getId(), PageRequest.of(0, 1));
+		
+		//then
+		assertEquals(List.of("스프링 부트", "자바"), byAuthor.map(Book::getTitle).getContent());
+		assertEquals("스프링 배치", last.getTitle());
+		assertTrue(byPrefix.hasNext());
+		assertEquals("스프링 부트", nextPrefix.getContent().get(0).getTitle());
+		assertFalse(nextPrefix.hasNext());
+		assertTrue(bookRepository.findByTitlePrefixAfter("스%", null, null, PageRequest.of(0, 10)).isEmpty()); //% 는 글자 그대로
+	}
+	
+	@Test
+	public void findByAuthorAfter_sameTitle_test() {
+		//given (같은 제목, 제목 없는 책)
+		List<Book> saved = bookRepository.saveAll(List.of(
+				new Book(null, "같은 제목", "저자C"),
+				new Book(null, "같은 제목", "저자C"),
+				new Book(null, null, "저자C"),
+				new Book(null, "같은 제목", "저자C")));
+		
+		//when (한권씩 cursor 로 끝까지)
+		List<Long> ids = new ArrayList<>();
+		Slice<Book> page = bookRepository.findByAuthorAfter("저자C", null, null, PageRequest.of(0, 1));
+		while(true) {
+			Book last = page.getContent().get(0);
+			ids.add(last.getId());
+			if(!page.hasNext()) {
+				break;
+			}
+			page = bookRepository.findByAuthorAfter("저자C", last.getTitle(), last.getId(), PageRequest.of(0, 1));
+		}
+		
+		//then (제목 없는 책 먼저, 같은 제목은 id 순으로 빠짐없이)
+		assertEquals(List.of(saved.get(2).getId(), saved.get(0).getId(), saved.get(1).getId(), saved.get(3).getId()), ids);
+	}
 }
@@ -0,0 +1,197 @@
+package com.cos.book.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.cos.book.BookApplication;
+import com.cos.book.domain.Book;
+import com.cos.book.domain.BookJob;
+import com.cos.book.service.BookService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 통합 테스트 (POST /book/_jobs => 작업 스레드 => GET /book/_jobs/{id})
+ * 작업은 다른 스레드에서 커밋되므로 @Transactional(롤백) 을 쓰지 않는다.
+ */
+@AutoConfigureMockMvc
+@SpringBootTest(properties = { "book.search.rebuild-on-startup=false", "book.jobs.chunk-size=2" })
+public class BookJobIntegreTest {
+	
+	@Autowired
+	private MockMvc mockMvc;
+	
+	@Autowired
+	private BookService bookService;
+	
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	
+	private final ObjectMapper mapper = new ObjectMapper();
+	
+	@Test
+	public void deleteByAuthor_test() throws Exception {
+		//given (chunk 2 => 트랜잭션 3번)
+		for(int i = 0; i < 5; i++) {
+			bookService.save(new Book(null, "지울 책" + i, "작업테스트"));
+		}
+		bookService.save(new Book(null, "남을 책", "작업테스트2"));
+		String content = mapper.writeValueAsString(new BookJobRequest(BookJob.Type.DELETE_BY_AUTHOR, "작업테스트", 0));
+		
+		//when (바로 202)
+		String location = mockMvc.perform(post("/book/_jobs").contentType(MediaType.APPLICATION_JSON).content(content))
+			.andExpect(status().isAccepted())
+			.andExpect(jsonPath("$.status").value("QUEUED"))
+			.andReturn().getResponse().getHeader("Location");
+		
+		//then (끝날때까지 기다림)
+		mockMvc.perform(get(location).param("waitMs", "10000"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.status").value("SUCCEEDED"))
+			.andExpect(jsonPath("$.processed").value(5))
+			.andExpect(jsonPath("$.message").value("삭제 5건"));
+		assertEquals(0, bookService.getByAuthor("작업테스트", null, null, 10).getContent().size());
+		assertEquals(1, bookService.getByAuthor("작업테스트2", null, null, 10).getContent().size());
+	}
+	
+	@Test
+	public void reindex_sse_test() throws Exception {
+		//given
+		String content = mapper.writeValueAsString(new BookJobRequest(BookJob.Type.REINDEX, null, 9));
+		String created = mockMvc.perform(post("/book/_jobs").contentType(MediaType.APPLICATION_JSON).content(content))
+			.andExpect(status().isAccepted())
+			.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+		long id = mapper.readTree(created).get("id").asLong();
+		
+		//when
+		MvcResult result = mockMvc.perform(get("/book/_jobs/{id}", id).accept(MediaType.TEXT_EVENT_STREAM))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		
+		//then (끝나면 done 이벤트)
+		MockHttpServletResponse response = result.getResponse();
+		long deadline = System.currentTimeMillis() + 10000;
+		while(!response.getContentAsString(StandardCharsets.UTF_8).contains("event:done") && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		String body = response.getContentAsString(StandardCharsets.UTF_8);
+		assertTrue(body.contains("event:done"), body);
+		assertTrue(body.contains("\"status\":\"SUCCEEDED\""), body);
+	}
+	
+	@Test
+	public void submit_badRequest_test() throws Exception {
+		//when, then (target 없음, 없는 작업)
+		mockMvc.perform(post("/book/_jobs").contentType(MediaType.APPLICATION_JSON).content("{\"type\":\"DELETE_BY_AUTHOR\"}"))
+			.andExpect(status().isBadRequest());
+		mockMvc.perform(get("/book/_jobs/{id}", Long.MAX_VALUE))
+			.andExpect(status().isNotFound());
+		mockMvc.perform(get("/book/_jobs"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$").isArray());
+		mockMvc.perform(get("/actuator/metrics/book.jobs.queue.depth"))
+			.andExpect(status().isOk());
+	}
+	
+	@Test
+	public void requeueExpired_onlyExpiredLease_test() {
+		//given (한 인스턴스가 가져간 작업, 다른 인스턴스)
+		BookJobStore mine = new BookJobStore(jdbcTemplate, new BookJobProperties());
+		BookJobStore other = new BookJobStore(jdbcTemplate, new BookJobProperties());
+		long id = mine.insert(BookJob.Type.REINDEX, null, 0).getId();
+		assertTrue(mine.claim(id));
+		
+		//when, then (임대가 살아있으면 다른 인스턴스가 건드리지 않는다)
+		assertTrue(other.requeueExpired().stream().noneMatch(job -> job.getId() == id));
+		assertEquals(1, mine.renew());
+		
+		//when, then (늘리지 못하고 임대가 지나면 다시 대기열에, 원래 인스턴스는 손을 뗀다)
+		jdbcTemplate.update("update book_job set lease_until = ? where id = ?", System.currentTimeMillis() - 1, id);
+		assertTrue(other.requeueExpired().stream().anyMatch(job -> job.getId() == id));
+		assertThrows(BookJobStore.LostLeaseException.class, () -> mine.progress(id, 1));
+		assertEquals(BookJob.Status.QUEUED, other.find(id).orElseThrow().getStatus());
+		other.cancel(id);
+	}
+	
+	/**
+	 * 재시작 : 작업 스레드가 없는 인스턴스에 등록 => 내림 => 같은 db로 다시 띄우면 남은 작업이 우선순위대로 돈다.
+	 * 하나는 RUNNING 인 채로 (죽은 것처럼) 남겨서 임대가 지난 뒤에 처음부터 다시 도는지도 본다.
+	 */
+	@Test
+	public void restart_resumesQueuedJobs_test() throws Exception {
+		//given
+		ConfigurableApplicationContext first = start(0, 300);
+		BookJobExecutor executor = first.getBean(BookJobExecutor.class);
+		BookJobStore store = first.getBean(BookJobStore.class);
+		BookService service = first.getBean(BookService.class);
+		for(int i = 0; i < 3; i++) {
+			service.save(new Book(null, "재시작" + i, "재시작테스트"));
+		}
+		long delete = executor.submit(BookJob.Type.DELETE_BY_AUTHOR, "재시작테스트", 1).getId();
+		long cancelled = executor.submit(BookJob.Type.DELETE_BY_TITLE_PREFIX, "재시작", 5).getId();
+		long reindex = executor.submit(BookJob.Type.REINDEX, null, 9).getId();
+		assertTrue(executor.cancel(cancelled));
+		assertEquals(2, executor.getQueueDepth());
+		assertTrue(store.claim(delete)); //돌다가 죽음
+		first.close();
+		Thread.sleep(500); //임대(300ms)가 지나도록
+		
+		//when
+		ConfigurableApplicationContext second = start(1, 30000);
+		try {
+			BookJobStore store2 = second.getBean(BookJobStore.class);
+			BookJob deleteJob = awaitFinished(store2, delete);
+			BookJob reindexJob = awaitFinished(store2, reindex);
+			
+			//then
+			assertEquals(BookJob.Status.SUCCEEDED, deleteJob.getStatus());
+			assertEquals(3, deleteJob.getProcessed());
+			assertEquals(2, deleteJob.getAttempts());
+			assertEquals(BookJob.Status.SUCCEEDED, reindexJob.getStatus());
+			assertTrue(reindexJob.getStartedAt() <= deleteJob.getStartedAt()); //우선순위가 높은 것부터
+			assertEquals(BookJob.Status.CANCELLED, store2.find(cancelled).orElseThrow().getStatus());
+			assertEquals(0, second.getBean(BookService.class).getByAuthor("재시작테스트", null, null, 10).getContent().size());
+		} finally {
+			second.close();
+		}
+	}
+	
+	private static ConfigurableApplicationContext start(int workers, long leaseMs) {
+		return new SpringApplicationBuilder(BookApplication.class)
+				.web(WebApplicationType.NONE)
+				.properties("spring.devtools.restart.enabled=false")
+				.run("--spring.datasource.url=jdbc:h2:mem:jobs-test;DB_CLOSE_DELAY=-1",
+						"--book.search.rebuild-on-startup=false",
+						"--book.jobs.workers=" + workers,
+						"--book.jobs.lease-ms=" + leaseMs);
+	}
+	
+	private static BookJob awaitFinished(BookJobStore store, long id) throws InterruptedException {
+		BookJob job = store.find(id).orElseThrow();
+		long deadline = System.currentTimeMillis() + 10000;
+		while(!job.isFinished() && System.currentTimeMillis() < deadline) {
+			job = store.await(id, job, 1000).orElseThrow();
+		}
+		return job;
+	}
+}
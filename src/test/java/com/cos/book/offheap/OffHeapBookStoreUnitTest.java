@@ -0,0 +1,164 @@
+package com.cos.book.offheap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.cos.book.domain.Book;
+
+//단위 테스트 (스프링 없이 OffHeapBookStore 만)
+public class OffHeapBookStoreUnitTest {
+	private static final long SEGMENT_BYTES = 4096; //segment 를 여러개 넘나들게 작게
+	
+	@TempDir
+	private Path dir;
+	
+	@Test
+	public void snapshot_reopen_test() throws Exception {
+		//given
+		OffHeapBookStore store = new OffHeapBookStore(dir, SEGMENT_BYTES, 16, 0.5);
+		List<Long> ids = new ArrayList<>();
+		for(int i = 0; i < 200; i++) {
+			ids.add(store.put(new Book(null, "책제목" + i, i % 2 == 0 ? "코스" : null)).getId());
+		}
+		store.put(new Book(ids.get(0), "스프링 부트", "코스"));
+		store.remove(ids.get(1));
+		
+		//when
+		store.close(); //버려진 레코드가 적어서 compact 없이 스냅샷
+		OffHeapBookStore reopened = new OffHeapBookStore(dir, SEGMENT_BYTES, 16, 0.5);
+		
+		//then
+		assertTrue(reopened.isWarm());
+		assertEquals(199, reopened.size());
+		assertEquals(new Book(ids.get(0), "스프링 부트", "코스", 1L), reopened.get(ids.get(0)));
+		assertNull(reopened.get(ids.get(1)));
+		assertNull(reopened.get(ids.get(3)).getAuthor());
+		assertArrayEquals(new long[] { ids.get(2), ids.get(3) }, reopened.idsAfter(ids.get(0), 2));
+		List<Long> all = new ArrayList<>();
+		reopened.forEach(book -> all.add(book.getId()));
+		assertEquals(ids.stream().filter(id -> !id.equals(ids.get(1))).toList(), all); //id 순서
+		List<Book> byPrefix = new ArrayList<>();
+		reopened.forEachMatching(false, "스프링", true, byPrefix::add);
+		assertEquals(1, byPrefix.size());
+		assertEquals(ids.get(199) + 1, reopened.put(new Book(null, "새책", "코스")).getId());
+		reopened.close();
+	}
+	
+	@Test
+	public void dirty_reopen_cold_test() throws Exception {
+		//given
+		OffHeapBookStore store = new OffHeapBookStore(dir, SEGMENT_BYTES, 16, 0.5);
+		store.put(new Book(null, "책제목1", "코스"));
+		store.snapshot();
+		store.put(new Book(null, "책제목2", "코스")); //스냅샷 뒤에 쓰고 close 없이 죽었다고 치면
+		
+		//when
+		OffHeapBookStore reopened = new OffHeapBookStore(dir, SEGMENT_BYTES, 16, 0.5);
+		
+		//then
+		assertFalse(reopened.isWarm());
+		assertEquals(0, reopened.size());
+		reopened.close();
+	}
+	
+	@Test
+	public void beginWrite_reopen_cold_test() throws Exception {
+		//given
+		OffHeapBookStore store = new OffHeapBookStore(dir, SEGMENT_BYTES, 16, 0.5);
+		store.restore(new Book(1L, "책제목1", "코스", 0L));
+		store.snapshot();
+		store.beginWrite(); //db 에 커밋하는 중 (아직 반영 전)
+		
+		//when
+		store.close(); //반영 중인 쓰기가 있어서 스냅샷을 만들지 않는다.
+		OffHeapBookStore reopened = new OffHeapBookStore(dir, SEGMENT_BYTES, 16, 0.5);
+		
+		//then (db 로 다시 채우게 빈 채로)
+		assertFalse(reopened.isWarm());
+		reopened.close();
+	}
+	
+	@Test
+	public void restore_olderVersion_test() throws Exception {
+		//given
+		OffHeapBookStore store = new OffHeapBookStore(dir, SEGMENT_BYTES, 16, 0.5);
+		store.restore(new Book(1L, "책제목2", "코스", 2L));
+		
+		//when (늦게 반영되는 이전 커밋)
+		store.restore(new Book(1L, "책제목1", "코스", 1L));
+		
+		//then
+		assertEquals(new Book(1L, "책제목2", "코스", 2L), store.get(1L));
+		store.close();
+	}
+	
+	//쓰기 스레드 하나가 수정/추가/지우기/compact 를 하는 동안 락 없이 읽어도 반쯤 쓴 레코드나 다른 id 의 레코드를 보지 않는다.
+	@Test
+	public void concurrent_read_test() throws Exception {
+		//given
+		OffHeapBookStore store = new OffHeapBookStore(dir, SEGMENT_BYTES, 16, 0.3);
+		int books = 2000;
+		for(int i = 1; i <= books; i++) {
+			store.put(new Book((long) i, "t" + i + "-0", "a" + i + "-0"));
+		}
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicReference<String> broken = new AtomicReference<>();
+		List<Thread> readers = new ArrayList<>();
+		for(int r = 0; r < 3; r++) {
+			Thread reader = new Thread(() -> {
+				while(running.get() && broken.get() == null) {
+					long id = ThreadLocalRandom.current().nextLong(1, books * 2);
+					try {
+						Book book = store.get(id);
+						if(book == null) {
+							continue;
+						}
+						String n = book.getTitle().substring(book.getTitle().indexOf('-') + 1);
+						if(book.getId() != id || !book.getTitle().equals("t" + id + "-" + n) || !book.getAuthor().equals("a" + id + "-" + n)) {
+							broken.set(id + " => " + book);
+						}
+					} catch (RuntimeException e) { //읽기 스레드가 죽으면 그냥 끝나버리므로
+						broken.set(id + " => " + e);
+					}
+				}
+			});
+			reader.start();
+			readers.add(reader);
+		}
+		
+		//when
+		for(int n = 1; n <= 20; n++) {
+			for(int i = 1; i <= books; i++) {
+				store.put(new Book((long) i, "t" + i + "-" + n, "a" + i + "-" + n));
+			}
+			for(int i = books + 1; i <= books + 50; i++) {
+				store.put(new Book((long) i + n * 50, "t" + (i + n * 50) + "-" + n, "a" + (i + n * 50) + "-" + n));
+				store.remove(i + (n - 1) * 50);
+			}
+			store.snapshot(); //버려진 레코드가 많아서 compact
+		}
+		running.set(false);
+		for(Thread reader : readers) {
+			reader.join();
+		}
+		
+		//then
+		assertNull(broken.get());
+		assertEquals(books + 50, store.size());
+		assertEquals(20L, store.version(1));
+		store.close();
+	}
+}
@@ -0,0 +1,143 @@
+package com.cos.book.offheap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.cos.book.domain.Book;
+import com.cos.book.domain.BookRepository;
+import com.cos.book.web.BookController;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 통합 테스트 (offheap 프로필 : 쓰기는 db, 읽기는 OffHeapBookStore)
+ * 커밋된 변경이 저장소에 반영되어야 해서 @Transactional(롤백)을 쓰지 않는다.
+ */
+@ActiveProfiles("offheap")
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+		"book.offheap.dir=target/offheap-test/${random.uuid}",
+		"book.offheap.snapshot-interval-ms=0" })
+public class OffHeapIntegreTest {
+	
+	@Autowired
+	private MockMvc mockMvc;
+	
+	@Autowired
+	private ObjectMapper objectMapper;
+	
+	@Autowired
+	private OffHeapBookStore store;
+	
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	
+	@Autowired
+	private BookRepository bookRepository;
+	
+	@Test
+	public void save_update_find_test() throws Exception {
+		//given
+		String saved = mockMvc.perform(post("/book")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(new Book(null, "스프링따라하기", "코스"))))
+			.andExpect(status().isCreated())
+			.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+		Long id = objectMapper.readValue(saved, Book.class).getId();
+		
+		//when (If-Match 없는 수정 => findById 후 더티체킹)
+		mockMvc.perform(put("/book/{id}", id)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(new Book(null, "스프링부트 따라하기", "코스"))))
+			.andExpect(status().isOk())
+			.andExpect(header().string("ETag", "\"1\""));
+		
+		//then
+		mockMvc.perform(get("/book/{id}", id).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.title").value("스프링부트 따라하기"))
+			.andExpect(jsonPath("$.version").value(1));
+		mockMvc.perform(get("/book").param("titlePrefix", "스프링부트").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", Matchers.hasSize(1)))
+			.andExpect(jsonPath("$[0].id").value(id));
+	}
+	
+	@Test
+	public void writeThrough_test() throws Exception {
+		//given
+		String saved = mockMvc.perform(post("/book")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(new Book(null, "오프힙 따라하기", "코스"))))
+			.andExpect(status().isCreated())
+			.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+		Long id = objectMapper.readValue(saved, Book.class).getId();
+		
+		//when (db 만 바꿈)
+		jdbcTemplate.update("update book set title = ? where id = ?", "db에서만 바꾼 제목", id);
+		
+		//then (db 에 써졌고, 읽기는 저장소에서)
+		assertEquals(new Book(id, "오프힙 따라하기", "코스", 0L), store.get(id));
+		mockMvc.perform(get("/book").param("titlePrefix", "오프힙").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$", Matchers.hasSize(1)))
+			.andExpect(jsonPath("$[0].title").value("오프힙 따라하기"));
+		mockMvc.perform(delete("/book/{id}", id))
+			.andExpect(status().isOk());
+		assertNull(store.get(id));
+		assertEquals(0, jdbcTemplate.queryForObject("select count(*) from book where id = ?", Integer.class, id));
+	}
+	
+	@Test
+	public void order_test() throws Exception {
+		//given (제목 순서와 id 순서가 다르게)
+		String[] titles = { "순서 라", "순서 가", "순서 다", "순서 가", "순서 나" };
+		for(String title : titles) {
+			store.put(new Book(null, title, "코스"));
+		}
+		
+		//when
+		List<Long> streamed = new ArrayList<>();
+		bookRepository.streamAll(100, book -> streamed.add(book.getId()));
+		List<String> paged = new ArrayList<>();
+		String cursor = null;
+		do {
+			MockHttpServletRequestBuilder request = get("/book").param("titlePrefix", "순서").param("limit", "2").accept(MediaType.APPLICATION_JSON);
+			if(cursor != null) {
+				request.param("cursor", cursor);
+			}
+			MockHttpServletResponse response = mockMvc.perform(request).andExpect(status().isOk()).andReturn().getResponse();
+			for(Book book : objectMapper.readValue(response.getContentAsString(StandardCharsets.UTF_8), Book[].class)) {
+				paged.add(book.getTitle());
+			}
+			cursor = response.getHeader(BookController.NEXT_CURSOR_HEADER);
+		} while(cursor != null);
+		
+		//then (db 와 같이 streamAll 은 id 순, 제목 페이지는 (title, id) 순으로 이어진다)
+		assertEquals(streamed.stream().sorted().toList(), streamed);
+		assertEquals(bookRepository.findAll().stream().map(Book::getId).toList(), streamed);
+		assertEquals(List.of("순서 가", "순서 가", "순서 나", "순서 다", "순서 라"), paged);
+	}
+}
@@ -0,0 +1,131 @@
+package com.cos.book.reactive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.cos.book.changes.BookOutboxWriter;
+import com.cos.book.domain.Book;
+import com.cos.book.service.BookSearchIndex;
+
+/**
+ * 통합 테스트 (reactive 프로필 : WebFlux + R2DBC)
+ * 리액티브는 테스트 트랜잭션 롤백이 안되서 테스트마다 새로 저장한 id만 사용한다.
+ */
+@ActiveProfiles("reactive")
+@AutoConfigureWebTestClient
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK,
+		properties = "spring.main.web-application-type=reactive") //테스트는 yml이 아니라 클래스패스로 웹 타입을 정해서 따로 지정
+public class BookReactiveIntegreTest {
+	
+	@Autowired
+	private WebTestClient webTestClient;
+	
+	@Autowired
+	private ApplicationContext context;
+	
+	@Autowired
+	private BookSearchIndex bookSearchIndex;
+	
+	@Test
+	public void save_findById_test() {
+		//given
+		Book bookEntity = save(new Book(null,"스프링따라하기","코스"));
+		
+		//when, then
+		webTestClient.get().uri("/book/{id}", bookEntity.getId())
+			.exchange()
+			.expectStatus().isOk()
+			.expectBody()
+			.jsonPath("$.title").isEqualTo("스프링따라하기")
+			.jsonPath("$.author").isEqualTo("코스");
+	}
+	
+	@Test
+	public void findAll_test() {
+		//given
+		Book first = save(new Book(null,"스프링부트 따라하기","코스"));
+		save(new Book(null,"리액트 따라하기","코스"));
+		save(new Book(null,"J유닛 따라하기","코스"));
+		
+		//when, then
+		webTestClient.get().uri("/book?after={after}&limit=1", first.getId())
+			.exchange()
+			.expectStatus().isOk()
+			.expectHeader().exists("X-Next-After")
+			.expectBody()
+			.jsonPath("$.length()").isEqualTo(1)
+			.jsonPath("$[0].title").isEqualTo("리액트 따라하기");
+	}
+	
+	@Test
+	public void update_delete_test() {
+		//given
+		Book bookEntity = save(new Book(null,"스프링부트 따라하기","코스"));
+		
+		//when, then
+		webTestClient.put().uri("/book/{id}", bookEntity.getId())
+			.contentType(MediaType.APPLICATION_JSON)
+			.bodyValue(new Book(null,"c++따라하기","코스"))
+			.exchange()
+			.expectStatus().isOk()
+			.expectBody()
+			.jsonPath("$.title").isEqualTo("c++따라하기");
+		
+		String result = webTestClient.delete().uri("/book/{id}", bookEntity.getId())
+			.exchange()
+			.expectStatus().isOk()
+			.expectBody(String.class)
+			.returnResult().getResponseBody();
+		assertEquals("ok", result);
+	}
+	
+	@Test
+	public void badRequest_notFound_test() {
+		//when, then (숫자가 아님, long 범위를 넘음, 없는 id)
+		webTestClient.get().uri("/book?limit=abc")
+			.exchange()
+			.expectStatus().isBadRequest();
+		webTestClient.get().uri("/book/99999999999999999999")
+			.exchange()
+			.expectStatus().isBadRequest();
+		webTestClient.get().uri("/book/{id}", Long.MAX_VALUE)
+			.exchange()
+			.expectStatus().isNotFound();
+		webTestClient.put().uri("/book/{id}", Long.MAX_VALUE)
+			.contentType(MediaType.APPLICATION_JSON)
+			.bodyValue(new Book(null,"없는책","코스"))
+			.exchange()
+			.expectStatus().isNotFound();
+	}
+	
+	@Test
+	public void event_noOutbox_test() {
+		//given
+		Book bookEntity = save(new Book(null,"리액티브이벤트확인","코스"));
+		
+		//then (이벤트 리스너는 받고, R2DBC 쓰기와 따로 커밋되는 JDBC outbox 는 꺼져있음)
+		assertTrue(context.getBeansOfType(BookOutboxWriter.class).isEmpty());
+		assertEquals(List.of(bookEntity.getId()), bookSearchIndex.search("리액티브이벤트확인", false, 10).stream().map(Book::getId).toList());
+	}
+	
+	private Book save(Book book) {
+		return webTestClient.post().uri("/book")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue(book)
+				.exchange()
+				.expectStatus().isCreated()
+				.expectBody(Book.class)
+				.returnResult().getResponseBody();
+	}
+}
@@ -0,0 +1,102 @@
+package com.cos.book.routing;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.cos.book.domain.Book;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 통합 테스트 (replica 프로필 : primary, replica 를 서로 다른 H2로 띄움)
+ * 복제가 없으므로 replica에만 넣은 데이터가 보이면 replica에서 읽은 것.
+ * 두번째 replica는 없는 주소 => 헬스체크에서 빠져야 한다.
+ * 라우팅은 커밋된 트랜잭션 기준이라 @Transactional(롤백) 을 쓰지 않는다.
+ */
+@ActiveProfiles("replica")
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+		"book.replica.replicas[0].url=" + ReplicaRoutingIntegreTest.REPLICA_URL,
+		"book.replica.replicas[0].username=sa",
+		"book.replica.replicas[1].url=jdbc:h2:tcp://localhost:1/dead",
+		"book.replica.replicas[1].username=sa",
+		"book.replica.replicas[1].connection-timeout-ms=250",
+		"book.search.rebuild-on-startup=false",
+		"spring.cache.type=none" })
+public class ReplicaRoutingIntegreTest {
+	static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+	
+	@Autowired
+	private MockMvc mockMvc;
+	
+	@Autowired
+	private DataSource dataSource;
+	
+	@BeforeAll
+	public static void initReplica() throws Exception {
+		try(Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "");
+				Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE IF NOT EXISTS book (id BIGINT PRIMARY KEY, title VARCHAR(255), author VARCHAR(255), version BIGINT)");
+			statement.execute("MERGE INTO book KEY(id) VALUES (1000, 'replica에만 있는 책', '코스', 0)");
+		}
+	}
+	
+	@Test
+	public void findById_replica_test() throws Exception {
+		//when, then (primary에는 없는 책)
+		mockMvc.perform(get("/book/{id}", 1000).header("X-Client-Id", "reader"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.title").value("replica에만 있는 책"));
+	}
+	
+	@Test
+	public void readYourWrites_test() throws Exception {
+		//given
+		String content = new ObjectMapper().writeValueAsString(new Book(null,"primary에 쓴 책","코스"));
+		String created = mockMvc.perform(post("/book").header("X-Client-Id", "writer")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(content))
+			.andExpect(status().isCreated())
+			.andReturn().getResponse().getContentAsString();
+		Long id = new ObjectMapper().readValue(created, Book.class).getId();
+		
+		//when, then (쓴 클라이언트는 primary에서 읽음)
+		mockMvc.perform(get("/book/{id}", id).header("X-Client-Id", "writer"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.title").value("primary에 쓴 책"));
+		//다른 클라이언트는 replica (복제가 안되어 있으니 replica 책만 보임)
+		mockMvc.perform(get("/book").header("X-Client-Id", "other"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(1))
+			.andExpect(jsonPath("$[0].id").value(1000));
+	}
+	
+	@Test
+	public void health_ejection_test() throws Exception {
+		//given
+		ReplicaRoutingDataSource routing = dataSource.unwrap(ReplicaRoutingDataSource.class);
+		
+		//then
+		assertTrue(routing.isHealthy(0));
+		assertFalse(routing.isHealthy(1));
+	}
+}
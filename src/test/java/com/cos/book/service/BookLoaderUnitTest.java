@@ -0,0 +1,134 @@
+package com.cos.book.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import com.cos.book.domain.Book;
+import com.cos.book.domain.BookRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+//단위 테스트 (창을 넉넉히 잡아서 동시에 들어온 요청이 한 배치로 묶이게 함)
+public class BookLoaderUnitTest {
+	
+	private BookRepository bookRepository;
+	private BookLoader bookLoader;
+	
+	@BeforeEach
+	public void init() {
+		bookRepository = mock(BookRepository.class);
+		bookLoader = new BookLoader(bookRepository, new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class),
+				true, 200_000, 100);
+	}
+	
+	@Test
+	public void findById_singleFlight_batch_test() throws Exception {
+		//given (100번 조회가 db 에 걸려있는 동안 => 리더가 창을 기다린다)
+		CountDownLatch slow = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(bookRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+			Iterable<Long> requested = invocation.getArgument(0);
+			if(requested.iterator().next() == 100L) {
+				slow.countDown();
+				release.await();
+				return List.of();
+			}
+			return List.of(new Book(1L,"책 제목1","책 저자1"), new Book(2L,"책 제목2","책 저자2"));
+		});
+		List<Long> ids = List.of(1L, 1L, 1L, 2L, 2L, 3L);
+		CountDownLatch start = new CountDownLatch(1);
+		
+		//when
+		List<Optional<Book>> results = new ArrayList<>();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<Optional<Book>> other = executor.submit(() -> bookLoader.findById(100L));
+			slow.await();
+			List<Future<Optional<Book>>> futures = new ArrayList<>();
+			for(Long id : ids) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return bookLoader.findById(id);
+				}));
+			}
+			start.countDown();
+			for(Future<Optional<Book>> future : futures) {
+				results.add(future.get());
+			}
+			release.countDown();
+			other.get();
+		}
+		
+		//then (없는 id는 빈 값, 6건의 db 조회는 한번)
+		assertEquals("책 제목1", results.get(0).get().getTitle());
+		assertEquals("책 제목1", results.get(2).get().getTitle());
+		assertEquals("책 제목2", results.get(4).get().getTitle());
+		assertTrue(results.get(5).isEmpty());
+		verify(bookRepository, times(2)).findAllById(anyIterable());
+		assertEquals(7L, bookLoader.stats().get("requests"));
+		assertEquals(3L, bookLoader.stats().get("coalesced"));
+		assertEquals(2L, bookLoader.stats().get("batches"));
+	}
+	
+	@Test
+	public void findById_alone_noWindow_test() {
+		//given (창은 5초)
+		BookLoader slowWindow = new BookLoader(bookRepository, new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class),
+				true, 5_000_000, 100);
+		when(bookRepository.findAllById(anyIterable())).thenReturn(List.of(new Book(1L,"책 제목1","책 저자1")));
+		
+		//when
+		long start = System.nanoTime();
+		Optional<Book> book = slowWindow.findById(1L);
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		
+		//then (혼자면 창을 기다리지 않음)
+		assertEquals("책 제목1", book.get().getTitle());
+		assertTrue(elapsedMs < 2_000, "기다린 시간 " + elapsedMs + "ms");
+	}
+	
+	@Test
+	public void findById_error_completesFollowers_test() throws Exception {
+		//given (조회 중 Error)
+		when(bookRepository.findAllById(anyIterable())).thenThrow(new StackOverflowError("테스트"));
+		CountDownLatch start = new CountDownLatch(1);
+		
+		//when
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<Optional<Book>>> futures = new ArrayList<>();
+			for(Long id : List.of(1L, 2L, 3L)) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return bookLoader.findById(id);
+				}));
+			}
+			start.countDown();
+			
+			//then (리더, 나머지 모두 멈추지 않고 같은 Error)
+			for(Future<Optional<Book>> future : futures) {
+				ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+				assertInstanceOf(StackOverflowError.class, e.getCause());
+			}
+		}
+	}
+}
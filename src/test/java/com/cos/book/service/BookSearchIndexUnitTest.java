@@ -0,0 +1,133 @@
+package com.cos.book.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.cos.book.domain.Book;
+import com.cos.book.domain.BookRepository;
+
+//단위 테스트 (색인만 메모리에 띄움, db 필요없음)
+public class BookSearchIndexUnitTest {
+	
+	private BookSearchIndex bookSearchIndex;
+	
+	@BeforeEach
+	public void init() {
+		bookSearchIndex = new BookSearchIndex(null, false);
+		bookSearchIndex.put(new Book(1L,"스프링부트 따라하기","코스"));
+		bookSearchIndex.put(new Book(2L,"리액트 따라하기","코스"));
+		bookSearchIndex.put(new Book(3L,"따라하기 스프링","홍길동"));
+		bookSearchIndex.put(new Book(4L,"Spring in Action","Craig Walls"));
+	}
+	
+	@Test
+	public void search_test() {
+		//when
+		List<Book> books = bookSearchIndex.search("스프링", false, 10);
+		
+		//then (맨 앞에서 일치하는 1번이 먼저)
+		assertEquals(2, books.size());
+		assertEquals(1L, books.get(0).getId());
+		assertEquals(3L, books.get(1).getId());
+	}
+	
+	@Test
+	public void search_prefix_test() {
+		//when
+		List<Book> middle = bookSearchIndex.search("부트", true, 10);
+		List<Book> wordStart = bookSearchIndex.search("act", true, 10);
+		
+		//then
+		assertTrue(middle.isEmpty());
+		assertEquals(4L, wordStart.get(0).getId());
+	}
+	
+	@Test
+	public void update_remove_test() {
+		//given
+		bookSearchIndex.put(new Book(2L,"뷰 따라하기","코스"));
+		bookSearchIndex.remove(1L);
+		
+		//when
+		List<Book> author = bookSearchIndex.search("코", false, 10);
+		
+		//then
+		assertEquals(1, author.size());
+		assertEquals("뷰 따라하기", author.get(0).getTitle());
+		assertTrue(bookSearchIndex.search("리액트", false, 10).isEmpty());
+	}
+	
+	@Test
+	public void search_bestMatchAmongAll_test() {
+		//given (낮은 id 에 중간 일치만 잔뜩, 완전 일치는 맨 뒤)
+		for(long id = 100; id < 5100; id++) {
+			bookSearchIndex.put(new Book(id,"오늘의 스프링 " + id,"저자"));
+		}
+		bookSearchIndex.put(new Book(99999L,"스프링","저자"));
+		
+		//when
+		List<Book> books = bookSearchIndex.search("스프링", false, 1);
+		
+		//then
+		assertEquals(99999L, books.get(0).getId());
+		assertEquals(BookSearchIndex.MAX_LIMIT, bookSearchIndex.search("스프링", false, 100000).size());
+	}
+	
+	@Test
+	public void search_shortFieldFirst_test() {
+		//given (저자 완전 일치 110 > 짧은 제목 맨앞 (50+4)*2 > 긴 제목 맨앞 (50+1)*2 > 제목 중간 일치)
+		bookSearchIndex.put(new Book(10L,"배치 완벽 가이드 개정판","코스"));
+		bookSearchIndex.put(new Book(11L,"배치 입문","코스"));
+		bookSearchIndex.put(new Book(12L,"하둡","배치"));
+		bookSearchIndex.put(new Book(13L,"스프링배치","코스"));
+		
+		//when
+		List<Book> books = bookSearchIndex.search("배치", false, 3);
+		
+		//then
+		assertEquals(List.of(12L, 11L, 10L), books.stream().map(Book::getId).toList());
+	}
+	
+	@Test
+	public void rebuild_offLock_replay_test() throws Exception {
+		//given (db 를 읽는 도중에 다른 스레드가 검색하고 1번을 지우고 5번을 저장)
+		BookRepository bookRepository = mock(BookRepository.class);
+		BookSearchIndex index = new BookSearchIndex(bookRepository, false);
+		index.put(new Book(1L,"스프링부트 따라하기","코스"));
+		doAnswer(invocation -> {
+			Consumer<Book> consumer = invocation.getArgument(1);
+			consumer.accept(new Book(1L,"스프링부트 따라하기","코스"));
+			List<Book> during = CompletableFuture.supplyAsync(() -> {
+				List<Book> found = index.search("스프링", false, 10);
+				index.remove(1L);
+				index.put(new Book(5L,"스프링 배치","코스"));
+				return found;
+			}).get(5, TimeUnit.SECONDS);
+			assertEquals(1L, during.get(0).getId()); //락을 잡고 있지 않아서 지금 색인으로 바로 답함
+			consumer.accept(new Book(2L,"스프링 시큐리티","코스"));
+			return null;
+		}).when(bookRepository).streamAll(anyInt(), any());
+		
+		//when
+		int size = index.rebuild();
+		
+		//then (읽는 동안 온 변경이 새 색인에도 있음)
+		List<Book> books = index.search("스프링", false, 10);
+		assertEquals(2, size);
+		assertEquals(2, books.size());
+		assertTrue(books.stream().noneMatch(book -> book.getId() == 1L));
+		assertTrue(books.stream().anyMatch(book -> book.getId() == 5L));
+	}
+}
@@ -8,6 +8,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import com.cos.book.domain.Book;
 import com.cos.book.domain.BookRepository;
@@ -26,6 +27,12 @@ public class BookServiceUnitTest {
 	@Mock//Ioc가 아닌 따른 공간에 생성..
 	private BookRepository bookRepository;
 	
+	@Mock
+	private ApplicationEventPublisher eventPublisher;
+	
+	@Mock
+	private BookLoader bookLoader;
+	
 	@Test
 	public void save_test() {
 		//BODMocikto 방식
@@ -0,0 +1,114 @@
+package com.cos.book.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.SliceImpl;
+
+import com.cos.book.domain.Book;
+import com.cos.book.domain.BookRepository;
+
+//단위 테스트 (db 대신 BookRepository mock, 스레드는 띄우지 않음)
+public class BookStatsUnitTest {
+	
+	private BookRepository bookRepository;
+	private BookStats bookStats;
+	
+	@BeforeEach
+	public void init() {
+		bookRepository = mock(BookRepository.class);
+		bookStats = new BookStats(bookRepository, false, 600000, 1000, 2);
+	}
+	
+	@Test
+	public void counts_test() {
+		//given
+		bookStats.on(BookChangedEvent.saved(new Book(1L, "스프링부트 따라하기", "코스", 0L))); //10자
+		bookStats.on(BookChangedEvent.saved(new Book(2L, "리액트", "코스", 0L)));
+		bookStats.on(BookChangedEvent.saved(new Book(3L, "Spring in Action", "Craig Walls", 0L)));
+		bookStats.on(BookChangedEvent.saved(new Book(4L, "저자 없음", null, 0L)));
+		
+		//when (저자 변경, 삭제)
+		bookStats.on(BookChangedEvent.saved(new Book(2L, "리액트", "홍길동", 1L), new Book(2L, "리액트", "코스", 0L)));
+		bookStats.on(BookChangedEvent.deleted(new Book(3L, "Spring in Action", "Craig Walls", 0L)));
+		bookStats.refreshTop();
+		
+		//then
+		assertEquals(3, bookStats.getTotal());
+		assertEquals(1, bookStats.countByAuthor("코스"));
+		assertEquals(1, bookStats.countByAuthor("홍길동"));
+		assertEquals(0, bookStats.countByAuthor("Craig Walls"));
+		assertEquals(1, bookStats.countByAuthor(null));
+		assertEquals(2, bookStats.titleLengths().get(0).count()); //리액트, 저자 없음
+		assertEquals(1, bookStats.titleLengths().get(1).count());
+		assertEquals(3, bookStats.summary(10).authors()); //다 지워진 Craig Walls 는 빠짐
+		assertEquals(2, bookStats.topAuthors(10).size()); //top-size 2
+	}
+	
+	@Test
+	public void outOfOrderEvents_test() {
+		//given
+		Book v0 = new Book(1L, "스프링", "코스", 0L);
+		Book v1 = new Book(1L, "스프링", "홍길동", 1L);
+		Book v2 = new Book(1L, "스프링 부트 따라하기", "홍길동", 2L);
+		
+		//when (커밋 순서와 다르게 : 두번째 수정이 첫번째 수정보다, 삭제가 두번째 수정보다 먼저 옴)
+		bookStats.on(BookChangedEvent.saved(v0));
+		bookStats.on(BookChangedEvent.deleted(v2));
+		bookStats.on(BookChangedEvent.saved(v2, v1));
+		bookStats.on(BookChangedEvent.saved(v1, v0));
+		
+		//then (다 오면 책마다 기억하지 않아도 맞는다)
+		assertEquals(0, bookStats.getTotal());
+		assertEquals(0, bookStats.countByAuthor("코스"));
+		assertEquals(0, bookStats.countByAuthor("홍길동"));
+		assertEquals(0, bookStats.titleLengths().get(1).count());
+	}
+	
+	@Test
+	public void unknownPrevious_test() {
+		//given
+		bookStats.on(BookChangedEvent.saved(new Book(1L, "스프링", "코스", 0L)));
+		
+		//when (캐시에 바로 앞 version 이 없던 PUT)
+		bookStats.on(BookChangedEvent.saved(new Book(1L, "스프링", "홍길동", 1L), null));
+		
+		//then (전체 수는 그대로, 저자는 reconcile 전까지 옛날 값)
+		assertEquals(1, bookStats.getTotal());
+		assertEquals(1, bookStats.countByAuthor("코스"));
+		assertEquals(0, bookStats.countByAuthor("홍길동"));
+	}
+	
+	@Test
+	public void reconcile_test() {
+		//given (메모리에만 있는 책 1, db 에만 있는 책 2, 3, 4)
+		bookStats.on(BookChangedEvent.saved(new Book(1L, "유실된 책", "코스", 0L)));
+		doAnswer(invocation -> new SliceImpl<>(List.of(new Book(2L, "스프링", "코스", 0L)), invocation.getArgument(1), true))
+				.when(bookRepository).findByIdGreaterThanOrderByIdAsc(eq(0L), any());
+		doAnswer(invocation -> {
+			//첫 페이지를 센 뒤에 커밋된 변경 : 이미 센 2번 수정, 아직 안 읽은 3번 삭제, 4번 수정
+			bookStats.on(BookChangedEvent.saved(new Book(2L, "스프링", "홍길동", 1L), new Book(2L, "스프링", "코스", 0L)));
+			bookStats.on(BookChangedEvent.deleted(new Book(3L, "리액트", "코스", 0L)));
+			bookStats.on(BookChangedEvent.saved(new Book(4L, "자바", "홍길동", 1L), new Book(4L, "자바", "코스", 0L)));
+			//3번은 지우기 전에, 4번은 고친 뒤에 읽힘
+			return new SliceImpl<>(List.of(new Book(3L, "리액트", "코스", 0L), new Book(4L, "자바", "홍길동", 1L)), invocation.getArgument(1), false);
+		}).when(bookRepository).findByIdGreaterThanOrderByIdAsc(eq(2L), any());
+		
+		//when
+		bookStats.reconcile();
+		
+		//then (읽은 2번은 이벤트대로 고치고, 건너뛴 3, 4번은 이벤트의 마지막 값만)
+		assertEquals(2, bookStats.getTotal());
+		assertEquals(0, bookStats.countByAuthor("코스"));
+		assertEquals(2, bookStats.countByAuthor("홍길동"));
+		assertEquals(2, bookStats.summary(10).lastDrift()); //db 에만 있던 2, 4번 (메모리에만 있던 1번은 3번 삭제 이벤트로 상쇄)
+		assertEquals(List.of(new BookStats.TopAuthor("홍길동", 2)), bookStats.topAuthors(10));
+	}
+}
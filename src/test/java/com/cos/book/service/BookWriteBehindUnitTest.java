@@ -0,0 +1,190 @@
+package com.cos.book.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.cos.book.config.CacheConfig;
+import com.cos.book.domain.Book;
+import com.cos.book.domain.BookIdAllocator;
+import com.cos.book.domain.BookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//단위 테스트 (flush 스레드는 띄우지 않고 flush()를 직접 부름)
+public class BookWriteBehindUnitTest {
+	
+	private BookRepository bookRepository;
+	private BookIdAllocator bookIdAllocator;
+	private CacheManager cacheManager;
+	private BookWriteBehind bookWriteBehind;
+	
+	@BeforeEach
+	public void init() throws Exception {
+		bookRepository = mock(BookRepository.class);
+		bookIdAllocator = mock(BookIdAllocator.class);
+		cacheManager = new ConcurrentMapCacheManager(CacheConfig.BOOK);
+		bookWriteBehind = new BookWriteBehind(bookRepository, bookIdAllocator, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+				mock(ApplicationEventPublisher.class), cacheManager, new ObjectMapper(), 4, 500, 50, 0, "", false);
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void flush_coalesce_test() {
+		//given
+		when(bookIdAllocator.next()).thenReturn(1L, 2L);
+		when(bookRepository.findForUpdateByIdIn(anyList())).thenReturn(List.of());
+		bookWriteBehind.save(new Book(null,"책 제목1","책 저자1"));
+		bookWriteBehind.update(1L, new Book(null,"책 제목1-수정","책 저자1")); //insert + update => insert
+		bookWriteBehind.save(new Book(null,"책 제목2","책 저자2"));
+		
+		//when
+		bookWriteBehind.delete(2L); //insert + delete => 취소
+		
+		//then (flush 전에도 캐시에서 읽힘)
+		assertEquals("책 제목1-수정", cacheManager.getCache(CacheConfig.BOOK).get(1L, Book.class).getTitle());
+		assertNull(cacheManager.getCache(CacheConfig.BOOK).get(2L));
+		
+		//when
+		bookWriteBehind.flush();
+		
+		//then
+		ArgumentCaptor<List<Book>> inserts = ArgumentCaptor.forClass(List.class);
+		ArgumentCaptor<List<Book>> updates = ArgumentCaptor.forClass(List.class);
+		ArgumentCaptor<List<Long>> deletes = ArgumentCaptor.forClass(List.class);
+		verify(bookRepository).batchWrite(inserts.capture(), updates.capture(), deletes.capture());
+		assertEquals(1, inserts.getValue().size());
+		assertEquals("책 제목1-수정", inserts.getValue().get(0).getTitle());
+		assertTrue(updates.getValue().isEmpty());
+		assertTrue(deletes.getValue().isEmpty());
+		assertEquals(0, bookWriteBehind.stats().get("depth"));
+	}
+	
+	@Test
+	public void capacity_test() {
+		//given
+		when(bookIdAllocator.next()).thenReturn(1L, 2L, 3L, 4L, 5L);
+		for(int i = 0; i < 4; i++) {
+			bookWriteBehind.save(new Book(null,"책 제목","책 저자"));
+		}
+		
+		//when, then
+		assertThrows(WriteBehindFullException.class, () -> bookWriteBehind.save(new Book(null,"책 제목","책 저자")));
+		assertEquals(1L, bookWriteBehind.stats().get("rejected"));
+		
+		//flush 하면 다시 받는다
+		bookWriteBehind.flush();
+		bookWriteBehind.save(new Book(null,"책 제목","책 저자"));
+		verify(bookRepository).batchWrite(anyList(), anyList(), any());
+	}
+	
+	@Test
+	public void update_version_notFound_test() {
+		//given (캐시에 버전 3 으로 있는 1번, 캐시에 없는 2번)
+		cacheManager.getCache(CacheConfig.BOOK).put(1L, new Book(1L,"책 제목1","책 저자1",3L));
+		when(bookRepository.findForUpdateByIdIn(anyList())).thenReturn(List.of(new Book(2L,"책 제목2","책 저자2",7L)));
+		
+		//when
+		Book updated = bookWriteBehind.update(1L, new Book(null,"책 제목1","책 저자1"));
+		Book updatedAgain = bookWriteBehind.update(1L, new Book(null,"책 제목1-수정","책 저자1"));
+		Book unknown = bookWriteBehind.update(2L, new Book(null,"책 제목2-수정","책 저자2"));
+		
+		//then (큐에 있는 마지막 쓰기나 캐시 +1, 모르면 db 를 읽지 않고 version 없이 => ETag 없음)
+		assertEquals(4L, updated.getVersion());
+		assertEquals(5L, updatedAgain.getVersion());
+		assertEquals(5L, cacheManager.getCache(CacheConfig.BOOK).get(1L, Book.class).getVersion());
+		assertNull(unknown.getVersion());
+		verify(bookRepository, never()).findVersionById(any());
+		
+		//when (flush 하면 db 에 쓴 version 이 캐시에 남는다)
+		bookWriteBehind.flush();
+		
+		//then
+		assertEquals(8L, cacheManager.getCache(CacheConfig.BOOK).get(2L, Book.class).getVersion());
+		assertEquals(9L, bookWriteBehind.update(2L, new Book(null,"책 제목2","책 저자2")).getVersion());
+		bookWriteBehind.delete(1L);
+		assertThrows(BookNotFoundException.class, () -> bookWriteBehind.update(1L, new Book(null,"책 제목1","책 저자1")));
+		assertEquals(2, bookWriteBehind.stats().get("depth")); //404 는 큐에 안 들어감
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void journal_replay_test(@TempDir Path dir) throws Exception {
+		//given (저널에 남기고 flush 전에 죽음)
+		String journal = dir.resolve("write-behind.ndjson").toString();
+		when(bookIdAllocator.next()).thenReturn(1L, 2L);
+		BookWriteBehind crashed = new BookWriteBehind(bookRepository, bookIdAllocator, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+				mock(ApplicationEventPublisher.class), cacheManager, new ObjectMapper(), 100, 500, 50, 0, journal, false);
+		crashed.save(new Book(null,"책 제목1","책 저자1"));
+		crashed.save(new Book(null,"책 제목2","책 저자2"));
+		crashed.update(1L, new Book(null,"책 제목1-수정","책 저자1"));
+		crashed.delete(2L);
+		
+		//when (같은 저널로 다시 뜸)
+		when(bookRepository.findForUpdateByIdIn(anyList())).thenReturn(List.of());
+		BookWriteBehind restarted = new BookWriteBehind(bookRepository, bookIdAllocator, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+				mock(ApplicationEventPublisher.class), cacheManager, new ObjectMapper(), 100, 500, 50, 0, journal, false);
+		
+		//then (저널 순서대로 되살아나서 같은 결과로 합쳐진다)
+		assertEquals(4, restarted.stats().get("depth"));
+		assertEquals(2L, restarted.update(1L, new Book(null,"책 제목1-재시작","책 저자1")).getVersion()); //복구한 쓰기 위에 +1
+		restarted.flush();
+		ArgumentCaptor<List<Book>> inserts = ArgumentCaptor.forClass(List.class);
+		verify(bookRepository).batchWrite(inserts.capture(), anyList(), anyList());
+		assertEquals(1, inserts.getValue().size());
+		assertEquals("책 제목1-재시작", inserts.getValue().get(0).getTitle());
+		assertEquals(2L, inserts.getValue().get(0).getVersion());
+		assertEquals(0, Files.size(Path.of(journal))); //다 커밋되면 비움
+		restarted.stop();
+	}
+	
+	@Test
+	public void deadLetter_test(@TempDir Path dir) throws Exception {
+		//given (2번만 계속 실패)
+		String journal = dir.resolve("write-behind.ndjson").toString();
+		when(bookIdAllocator.next()).thenReturn(1L, 2L);
+		when(bookRepository.findForUpdateByIdIn(anyList())).thenReturn(List.of());
+		doThrow(new DataIntegrityViolationException("too long")).when(bookRepository)
+				.batchWrite(argThat(books -> books.stream().anyMatch(book -> book.getId() == 2L)), anyList(), anyList());
+		BookWriteBehind buffer = new BookWriteBehind(bookRepository, bookIdAllocator, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+				mock(ApplicationEventPublisher.class), cacheManager, new ObjectMapper(), 100, 500, 50, 0, journal, false);
+		buffer.save(new Book(null,"책 제목1","책 저자1"));
+		buffer.save(new Book(null,"책 제목2","책 저자2"));
+		
+		//when
+		buffer.flush();
+		
+		//then (1번은 한 건씩 다시 써서 성공, 2번은 dead-letter 에 남는다)
+		assertEquals(1L, buffer.stats().get("written"));
+		assertEquals(1L, buffer.stats().get("deadLettered"));
+		List<String> dead = Files.readAllLines(Path.of(journal + ".dead"));
+		assertEquals(1, dead.size());
+		assertTrue(dead.get(0).contains("\"id\":2"));
+		assertEquals(0, Files.size(Path.of(journal)));
+		assertNull(cacheManager.getCache(CacheConfig.BOOK).get(2L)); //다음 조회는 db 에서
+		buffer.stop();
+	}
+}
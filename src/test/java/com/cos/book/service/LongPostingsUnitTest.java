@@ -0,0 +1,99 @@
+package com.cos.book.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+//단위 테스트 (HashSet, HashMap, TreeSet 과 같은 결과인지 무작위로 비교)
+public class LongPostingsUnitTest {
+	
+	@Test
+	public void addRemove_test() {
+		//given
+		LongPostings postings = new LongPostings();
+		Set<Long> expected = new HashSet<>();
+		Random random = new Random(1);
+		
+		//when (좁은 범위라서 충돌/삭제 후 당겨오기가 자주 일어남)
+		for(int i = 0; i < 100000; i++) {
+			long id = random.nextInt(2000);
+			if(random.nextInt(3) == 0) {
+				postings.remove(id);
+				expected.remove(id);
+			} else {
+				postings.add(id);
+				expected.add(id);
+			}
+		}
+		
+		//then
+		assertEquals(expected.size(), postings.size());
+		Set<Long> actual = new HashSet<>();
+		postings.forEach(actual::add);
+		assertEquals(expected, actual);
+		for(long id = 0; id < 2000; id++) {
+			assertEquals(expected.contains(id), postings.contains(id));
+		}
+	}
+	
+	@Test
+	public void longMap_test() {
+		//given
+		LongMap<String> map = new LongMap<>();
+		Map<Long, String> expected = new HashMap<>();
+		Random random = new Random(2);
+		
+		//when
+		for(int i = 0; i < 100000; i++) {
+			long key = random.nextInt(2000);
+			if(random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+			}
+		}
+		
+		//then
+		assertEquals(expected.size(), map.size());
+		for(long key = 0; key < 2000; key++) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+	}
+	
+	@Test
+	public void sortedLongs_test() {
+		//given
+		SortedLongs sorted = new SortedLongs();
+		TreeSet<Long> expected = new TreeSet<>();
+		Random random = new Random(3);
+		
+		//when (블록이 나눠지고 비는 만큼 넣고 뺀다)
+		for(int i = 0; i < 100000; i++) {
+			long id = random.nextInt(5000);
+			if(random.nextInt(3) == 0) {
+				sorted.remove(id);
+				expected.remove(id);
+			} else {
+				sorted.add(id);
+				expected.add(id);
+			}
+		}
+		
+		//then (작은 순서로)
+		assertEquals(expected.size(), sorted.size());
+		List<Long> actual = new ArrayList<>();
+		for(SortedLongs.Cursor cursor = sorted.cursor(); cursor.hasNext(); ) {
+			actual.add(cursor.next());
+		}
+		assertEquals(new ArrayList<>(expected), actual);
+	}
+}
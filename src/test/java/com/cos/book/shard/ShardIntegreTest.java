@@ -0,0 +1,222 @@
+package com.cos.book.shard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.cos.book.domain.Book;
+import com.cos.book.web.BookController;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 통합 테스트 (shard 프로필 : H2 3개)
+ * bucket 맵은 shard 2개였던 것처럼 미리 넣어둔다. => 3번째 shard는 리밸런싱 전까지 비어있어야 한다.
+ * 각 db에 커밋되어야 해서 @Transactional(롤백)을 쓰지 않는다.
+ */
+@ActiveProfiles("shard")
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+		"book.shard.shards[0].url=jdbc:h2:mem:shard-test-0;DB_CLOSE_DELAY=-1",
+		"book.shard.shards[0].username=sa",
+		"book.shard.shards[1].url=jdbc:h2:mem:shard-test-1;DB_CLOSE_DELAY=-1",
+		"book.shard.shards[1].username=sa",
+		"book.shard.shards[2].url=jdbc:h2:mem:shard-test-2;DB_CLOSE_DELAY=-1",
+		"book.shard.shards[2].username=sa",
+		"book.shard.rebalance-batch-buckets=100",
+		"spring.cache.type=none" })
+public class ShardIntegreTest {
+	
+	@Autowired
+	private MockMvc mockMvc;
+	
+	@Autowired
+	private ShardMap shardMap;
+	
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	
+	@BeforeAll
+	public static void initShardMap() throws Exception {
+		try(Connection connection = DriverManager.getConnection("jdbc:h2:mem:shard-test-0;DB_CLOSE_DELAY=-1", "sa", "");
+				Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE IF NOT EXISTS book_shard_map (bucket INT NOT NULL PRIMARY KEY, shard INT NOT NULL)");
+			try(PreparedStatement insert = connection.prepareStatement("MERGE INTO book_shard_map KEY(bucket) VALUES (?, ?)")) {
+				for(int bucket = 0; bucket < SnowflakeIdGenerator.BUCKETS; bucket++) {
+					insert.setInt(1, bucket);
+					insert.setInt(2, bucket % 2);
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+		}
+	}
+	
+	@Test
+	public void findAll_scatterGather_test() throws Exception {
+		//given
+		List<Long> ids = saveBooks(30, "페이지");
+		
+		//when (X-Next-After 를 따라 끝까지)
+		List<Long> found = new ArrayList<>();
+		String after = null;
+		do {
+			MvcResult result = mockMvc.perform(after == null ? get("/book").param("limit", "7") : get("/book").param("limit", "7").param("after", after))
+					.andExpect(status().isOk())
+					.andReturn();
+			objectMapper.readTree(result.getResponse().getContentAsString()).forEach(book -> found.add(book.get("id").asLong()));
+			after = result.getResponse().getHeader(BookController.NEXT_AFTER_HEADER);
+		} while(after != null);
+		
+		//then (모든 shard에서 id 순으로 합쳐짐)
+		assertTrue(found.containsAll(ids));
+		for(int i = 1; i < found.size(); i++) {
+			assertTrue(found.get(i - 1) < found.get(i));
+		}
+		assertTrue(ids.get(0) > (1L << 22)); //Snowflake
+		
+		//제목 앞부분 검색도 모든 shard에서 제목순으로 합쳐짐
+		MvcResult byPrefix = mockMvc.perform(get("/book").param("titlePrefix", "페이지").param("limit", "20"))
+				.andExpect(status().isOk())
+				.andReturn();
+		List<String> titles = new ArrayList<>();
+		objectMapper.readTree(byPrefix.getResponse().getContentAsString(StandardCharsets.UTF_8)).forEach(book -> titles.add(book.get("title").asText()));
+		assertEquals(20, titles.size());
+		assertEquals(titles.stream().sorted().toList(), titles);
+		//다음 페이지 (cursor) 는 앞 페이지 마지막 제목 뒤부터 나머지 10권
+		MvcResult nextPrefix = mockMvc.perform(get("/book").param("titlePrefix", "페이지").param("limit", "20")
+					.param("cursor", byPrefix.getResponse().getHeader(BookController.NEXT_CURSOR_HEADER)))
+				.andExpect(status().isOk())
+				.andReturn();
+		JsonNode next = objectMapper.readTree(nextPrefix.getResponse().getContentAsString(StandardCharsets.UTF_8));
+		assertEquals(10, next.size());
+		assertTrue(next.get(0).get("title").asText().compareTo(titles.get(19)) > 0);
+	}
+	
+	@Test
+	public void rebalance_test() throws Exception {
+		//given
+		List<Long> ids = saveBooks(60, "리밸런싱");
+		JsonNode before = shards();
+		assertEquals(0, before.get(2).get("buckets").asInt());
+		assertEquals(0, before.get(2).get("rows").asLong());
+		long rows = totalRows(before);
+		for(Long id : ids) { //계산 컬럼이 bucketOf 와 같아야 리밸런싱이 그 bucket 행을 다 찾는다.
+			assertEquals(SnowflakeIdGenerator.bucketOf(id), query(shardMap.shardOf(id), "SELECT bucket FROM book WHERE id = " + id));
+		}
+		
+		//when
+		mockMvc.perform(post("/book/_shards/rebalance"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.movedBuckets").value(341));
+		
+		//then (bucket이 고르게, 행 수는 그대로, 옮겨진 책도 id로 찾아짐)
+		JsonNode after = shards();
+		assertEquals(342, after.get(0).get("buckets").asInt());
+		assertEquals(341, after.get(2).get("buckets").asInt());
+		assertTrue(after.get(2).get("rows").asLong() > 0);
+		assertEquals(rows, totalRows(after));
+		for(Long id : ids) {
+			mockMvc.perform(get("/book/{id}", id))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id").value(id));
+		}
+	}
+	
+	@Test
+	public void write_bucketMovedByOtherInstance_test() throws Exception {
+		//given (다른 인스턴스가 bucket 을 옮김 : 이 인스턴스의 맵은 아직 예전 것)
+		long id = saveBooks(1, "다른 인스턴스").get(0);
+		int bucket = SnowflakeIdGenerator.bucketOf(id);
+		int from = query(0, "SELECT shard FROM book_shard_map WHERE bucket = " + bucket);
+		int to = (from + 1) % 3;
+		moveBucket(bucket, id, from, to);
+		
+		//when (예전 shard 에서 book_bucket 을 보고 맵을 다시 읽어서 새 shard 로)
+		String content = objectMapper.writeValueAsString(new Book(null, "다른 인스턴스-수정", "코스"));
+		mockMvc.perform(put("/book/{id}", id).contentType(MediaType.APPLICATION_JSON).content(content))
+			.andExpect(status().isOk());
+		
+		//then
+		assertEquals(1, query(to, "SELECT COUNT(*) FROM book WHERE id = " + id + " AND title = '다른 인스턴스-수정'"));
+		assertEquals(0, query(from, "SELECT COUNT(*) FROM book WHERE id = " + id));
+		moveBucket(bucket, id, to, from); //다른 테스트를 위해 되돌림
+		shardMap.reload();
+	}
+	
+	//리밸런싱이 하는 일을 db 에 직접 (행 복사, book_bucket, book_shard_map)
+	private static void moveBucket(int bucket, long id, int from, int to) throws Exception {
+		try(Connection source = shard(from); Connection target = shard(to); Connection metadata = shard(0)) {
+			try(Statement statement = source.createStatement(); ResultSet rs = statement.executeQuery("SELECT title, author, version FROM book WHERE id = " + id);
+					PreparedStatement insert = target.prepareStatement("INSERT INTO book (id, title, author, version) VALUES (?, ?, ?, ?)")) {
+				rs.next();
+				insert.setLong(1, id);
+				insert.setString(2, rs.getString(1));
+				insert.setString(3, rs.getString(2));
+				insert.setLong(4, rs.getLong(3));
+				insert.executeUpdate();
+			}
+			source.createStatement().execute("DELETE FROM book WHERE id = " + id);
+			target.createStatement().execute("UPDATE book_bucket SET shard = " + to + " WHERE bucket = " + bucket);
+			source.createStatement().execute("UPDATE book_bucket SET shard = " + to + " WHERE bucket = " + bucket);
+			metadata.createStatement().execute("UPDATE book_shard_map SET shard = " + to + " WHERE bucket = " + bucket);
+		}
+	}
+	
+	private static int query(int shard, String sql) throws Exception {
+		try(Connection connection = shard(shard); Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+	
+	private static Connection shard(int shard) throws Exception {
+		return DriverManager.getConnection("jdbc:h2:mem:shard-test-" + shard + ";DB_CLOSE_DELAY=-1", "sa", "");
+	}
+	
+	private List<Long> saveBooks(int count, String title) throws Exception {
+		List<Long> ids = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			String content = objectMapper.writeValueAsString(new Book(null, title + i, "코스"));
+			String created = mockMvc.perform(post("/book").contentType(MediaType.APPLICATION_JSON).content(content))
+					.andExpect(status().isCreated())
+					.andReturn().getResponse().getContentAsString();
+			ids.add(objectMapper.readValue(created, Book.class).getId());
+		}
+		return ids;
+	}
+	
+	private JsonNode shards() throws Exception {
+		return objectMapper.readTree(mockMvc.perform(get("/book/_shards")).andReturn().getResponse().getContentAsString());
+	}
+	
+	private static long totalRows(JsonNode shards) {
+		long rows = 0;
+		for(JsonNode shard : shards) {
+			rows += shard.get("rows").asLong();
+		}
+		return rows;
+	}
+}
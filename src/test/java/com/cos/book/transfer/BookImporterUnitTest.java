@@ -0,0 +1,95 @@
+package com.cos.book.transfer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.cos.book.domain.Book;
+import com.cos.book.service.BookService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//단위 테스트 (BookService 는 mock)
+public class BookImporterUnitTest {
+	
+	private BookImporter importer;
+	
+	@AfterEach
+	public void stop() {
+		if(importer != null) {
+			importer.stop();
+		}
+	}
+	
+	@Test
+	public void importBooks_chunkFailed_insertEach_test() throws Exception {
+		//given (chunk 저장은 실패, 한 행씩은 "깨진 책" 만 실패)
+		BookService bookService = mock(BookService.class);
+		when(bookService.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("테스트"));
+		when(bookService.save(any())).thenAnswer(invocation -> {
+			Book book = invocation.getArgument(0);
+			if(book.getTitle().equals("깨진 책")) {
+				throw new DataIntegrityViolationException("테스트");
+			}
+			return book;
+		});
+		TransferProperties properties = new TransferProperties();
+		importer = new BookImporter(bookService, new ObjectMapper(), new TransferJobs(properties), properties);
+		String csv = "title,author\n스프링따라하기,코스\n깨진 책,코스\nJPA 기본,코스\n";
+		
+		//when
+		TransferJob job = importer.importBooks(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), true, -1);
+		
+		//then (실패한 행만 거절)
+		assertEquals(TransferJob.Status.COMPLETED, job.getStatus());
+		assertEquals(2, job.getRowsWritten());
+		assertEquals(1, job.getRowsRejected());
+		assertEquals(3, job.getErrors().get(0).line());
+		verify(bookService, times(3)).save(any());
+	}
+	
+	@Test
+	public void importBooks_busy_test() throws Exception {
+		//given (max-imports=1, 첫 import 는 업로드가 끝나지 않음)
+		TransferProperties properties = new TransferProperties();
+		properties.setMaxImports(1);
+		TransferJobs jobs = new TransferJobs(properties);
+		importer = new BookImporter(mock(BookService.class), new ObjectMapper(), jobs, properties);
+		PipedOutputStream upload = new PipedOutputStream();
+		PipedInputStream body = new PipedInputStream(upload);
+		CompletableFuture<TransferJob> first = CompletableFuture.supplyAsync(() -> {
+			try {
+				return importer.importBooks(body, true, -1);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		upload.write("title,author\n".getBytes(StandardCharsets.UTF_8));
+		upload.flush();
+		
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while(jobs.list().isEmpty() && System.nanoTime() < deadline) { //첫 import 가 시작될때까지
+			Thread.onSpinWait();
+		}
+		
+		//when, then (두번째는 바로 거절, 첫번째는 업로드가 끝나면 끝남)
+		assertThrows(TransferBusyException.class, () -> importer.importBooks(new ByteArrayInputStream(new byte[0]), true, -1));
+		upload.close();
+		assertEquals(TransferJob.Status.COMPLETED, first.get(5, TimeUnit.SECONDS).getStatus());
+	}
+}
@@ -0,0 +1,137 @@
+package com.cos.book.transfer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.cos.book.domain.Book;
+import com.cos.book.web.BookController;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 통합 테스트 (POST /book/_import => GET /book/_export)
+ * insert 는 다른 스레드(insert-workers)에서 커밋되므로 @Transactional(롤백) 을 쓰지 않고 끝에 지운다.
+ * chunk, 버퍼를 작게 해서 여러 chunk 가 여러 워커로 나뉘어 들어가게 한다.
+ */
+@AutoConfigureMockMvc
+@SpringBootTest(properties = { "book.search.rebuild-on-startup=false", "book.transfer.chunk-size=2", "book.transfer.buffer-bytes=16" })
+public class BookTransferIntegreTest {
+	
+	@Autowired
+	private MockMvc mockMvc;
+	
+	private final ObjectMapper mapper = new ObjectMapper();
+	
+	@Test
+	public void importCsv_export_test() throws Exception {
+		//given (4번째 줄은 title 이 비어서 거절)
+		String author = "이관테스트";
+		String csv = "title,author\n"
+				+ "스프링따라하기," + author + "\n"
+				+ "\"쉼표, \"\"따옴표\"\"\"," + author + "\n"
+				+ "," + author + "\n"
+				+ "\"줄바꿈\n제목\"," + author + "\n"
+				+ "JPA 기본," + author + "\n";
+		
+		//when
+		String body = mockMvc.perform(post("/book/_import").contentType(BookTransferController.CSV)
+				.content(csv.getBytes(StandardCharsets.UTF_8)))
+			.andExpect(status().isOk())
+			.andExpect(header().string("Location", Matchers.startsWith("/book/_transfer/")))
+			.andExpect(jsonPath("$.status").value("COMPLETED"))
+			.andExpect(jsonPath("$.rowsRead").value(5))
+			.andExpect(jsonPath("$.rowsWritten").value(4))
+			.andExpect(jsonPath("$.rowsRejected").value(1))
+			.andExpect(jsonPath("$.errors[0].line").value(4))
+			.andExpect(jsonPath("$.errors[0].message").value("title 이 비어있습니다."))
+			.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+		String jobId = mapper.readTree(body).get("id").asText();
+		
+		//then (상태 조회)
+		mockMvc.perform(get("/book/_transfer/{id}", jobId))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.type").value("IMPORT"))
+			.andExpect(jsonPath("$.bytes").value(csv.getBytes(StandardCharsets.UTF_8).length));
+		mockMvc.perform(get("/book/_transfer/{id}", "없는작업")).andExpect(status().isNotFound());
+		
+		//then (export 한 csv 를 다시 읽으면 같은 값)
+		MvcResult result = mockMvc.perform(get("/book/_export").accept(BookTransferController.CSV))
+			.andExpect(request().asyncStarted())
+			.andReturn();
+		String exported = mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isOk())
+			.andExpect(header().exists(BookTransferController.JOB_ID_HEADER))
+			.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+		List<List<String>> records = new ArrayList<>();
+		new RecordReader(true, (line, fields) -> records.add(fields))
+				.read(Channels.newChannel(new ByteArrayInputStream(exported.getBytes(StandardCharsets.UTF_8))), 64, count -> {});
+		assertEquals(List.of("id", "title", "author", "version"), records.get(0));
+		List<String> titles = records.stream().filter(fields -> author.equals(fields.get(2))).map(fields -> fields.get(1)).sorted().toList();
+		assertEquals(List.of("JPA 기본", "쉼표, \"따옴표\"", "스프링따라하기", "줄바꿈\n제목"), titles);
+		
+		deleteByAuthor(author);
+	}
+	
+	@Test
+	public void importNdjson_invalid_test() throws Exception {
+		//given (두번째 줄은 JSON 이 아님)
+		String ndjson = "{\"id\":1,\"title\":\"ndjson 가져오기\",\"author\":\"이관테스트2\"}\n{\"title\":\n";
+		
+		//when, then
+		mockMvc.perform(post("/book/_import").contentType(BookController.NDJSON)
+				.content(ndjson.getBytes(StandardCharsets.UTF_8)))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.rowsWritten").value(1))
+			.andExpect(jsonPath("$.rowsRejected").value(1))
+			.andExpect(jsonPath("$.errors[0].line").value(2));
+		List<Book> books = findByAuthor("이관테스트2");
+		assertEquals(1, books.size()); //본문의 id 는 무시하고 새로 insert
+		assertEquals("ndjson 가져오기", books.get(0).getTitle());
+		
+		deleteByAuthor("이관테스트2");
+	}
+	
+	@Test
+	public void importCsv_badHeader_test() throws Exception {
+		//when, then (헤더가 없으면 작업 전체가 실패)
+		mockMvc.perform(post("/book/_import").contentType(BookTransferController.CSV)
+				.content("스프링,코스\n".getBytes(StandardCharsets.UTF_8)))
+			.andExpect(status().isBadRequest())
+			.andExpect(jsonPath("$.status").value("FAILED"))
+			.andExpect(jsonPath("$.rowsWritten").value(0));
+	}
+	
+	private List<Book> findByAuthor(String author) throws Exception {
+		String body = mockMvc.perform(get("/book").param("author", author).param("limit", "100"))
+			.andExpect(status().isOk())
+			.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+		return mapper.readValue(body, new TypeReference<List<Book>>() {});
+	}
+	
+	private void deleteByAuthor(String author) throws Exception {
+		for(Book book : findByAuthor(author)) {
+			mockMvc.perform(delete("/book/{id}", book.getId())).andExpect(status().isOk());
+		}
+	}
+}
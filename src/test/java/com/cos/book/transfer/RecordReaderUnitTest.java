@@ -0,0 +1,85 @@
+package com.cos.book.transfer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+//단위 테스트 (스프링 없이 RecordReader 만). 버퍼를 아주 작게 해서 글자/행이 버퍼 경계에서 잘리게 한다.
+public class RecordReaderUnitTest {
+	private static final int TINY_BUFFER = 5; //한글 한 글자 3바이트
+	
+	@Test
+	public void csv_quotedFields_test() throws Exception {
+		//given
+		String csv = "title,author\r\n"
+				+ "스프링따라하기,코스\r\n"
+				+ "\"쉼표, 있는 제목\",\"따옴표 \"\"인용\"\"\"\r\n"
+				+ "\r\n"
+				+ "\"줄바꿈\n있는 제목\",\n"
+				+ "마지막줄,줄바꿈없음";
+		List<Long> lines = new ArrayList<>();
+		List<List<String>> records = new ArrayList<>();
+		
+		//when
+		long bytes = new RecordReader(true, (line, fields) -> {
+			lines.add(line);
+			records.add(fields);
+		}).read(Channels.newChannel(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))), TINY_BUFFER, count -> {});
+		
+		//then
+		assertEquals(csv.getBytes(StandardCharsets.UTF_8).length, bytes);
+		assertEquals(List.of(
+				List.of("title", "author"),
+				List.of("스프링따라하기", "코스"),
+				List.of("쉼표, 있는 제목", "따옴표 \"인용\""),
+				List.of("줄바꿈\n있는 제목", ""),
+				List.of("마지막줄", "줄바꿈없음")), records);
+		assertEquals(List.of(1L, 2L, 3L, 5L, 7L), lines); //빈 줄(4)은 건너뛰고, 따옴표 안 줄바꿈도 줄 수에 센다.
+	}
+	
+	@Test
+	public void ndjson_test() throws Exception {
+		//given
+		String ndjson = "{\"title\":\"스프링\",\"author\":\"코스\"}\n\n{\"title\":\"a,\\\"b\\\"\"}\n";
+		List<List<String>> records = new ArrayList<>();
+		
+		//when
+		new RecordReader(false, (line, fields) -> records.add(fields))
+				.read(Channels.newChannel(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8))), TINY_BUFFER, count -> {});
+		
+		//then (csv 규칙은 적용하지 않고 한 줄 그대로)
+		assertEquals(List.of(
+				List.of("{\"title\":\"스프링\",\"author\":\"코스\"}"),
+				List.of("{\"title\":\"a,\\\"b\\\"\"}")), records);
+	}
+	
+	@Test
+	public void csv_unclosedQuote_test() {
+		//given
+		byte[] csv = "title,author\n\"닫히지 않음,코스\n".getBytes(StandardCharsets.UTF_8);
+		
+		//when
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new RecordReader(true, (line, fields) -> {})
+				.read(Channels.newChannel(new ByteArrayInputStream(csv)), TINY_BUFFER, count -> {}));
+		
+		//then
+		assertEquals("2번째 줄 : 따옴표가 닫히지 않았습니다.", e.getMessage());
+	}
+	
+	@Test
+	public void malformedUtf8_test() {
+		//given (한글 첫 바이트 뒤에 바로 줄바꿈)
+		byte[] csv = { 't', ',', 'a', '\n', (byte) 0xEC, '\n' };
+		
+		//when, then
+		assertThrows(IllegalArgumentException.class, () -> new RecordReader(true, (line, fields) -> {})
+				.read(Channels.newChannel(new ByteArrayInputStream(csv)), TINY_BUFFER, count -> {}));
+	}
+}
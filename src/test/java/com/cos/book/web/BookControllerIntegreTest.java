@@ -4,24 +4,27 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.options;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.persistence.EntityManager;
+import jakarta.persistence.EntityManager;
 
 import org.hamcrest.Matchers;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -31,7 +34,9 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.cos.book.domain.Book;
 import com.cos.book.domain.BookRepository;
+import com.cos.book.metrics.RequestTimingFilter;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 
 
 /**
@@ -56,11 +61,7 @@ public class BookControllerIntegreTest {
 	@Autowired
 	private EntityManager entityManager;
 	
-	@BeforeEach
-	public void init() {
-//		entityManager.createNativeQuery("ALTER TABLE book ALTER COLUMN ID RESTART WITH 1").executeUpdate();
-		entityManager.createNativeQuery("ALTER TABLE book AUTO_INCREMENT=1").executeUpdate();
-	}
+	//id는 시퀀스(pooled)로 바뀌어서 1부터 다시 시작하지 않는다. 테스트에서는 저장된 id를 그대로 쓴다.
 	
 	//BDDMockito 패턴
 		//given, when, then
@@ -73,9 +74,9 @@ public class BookControllerIntegreTest {
 			
 			//when (테스트 실행)
 			ResultActions resultAction = mockMvc.perform(post("/book")
-					.contentType(MediaType.APPLICATION_JSON_UTF8)
+					.contentType(MediaType.APPLICATION_JSON)
 					.content(content)
-					.accept(MediaType.APPLICATION_JSON_UTF8));
+					.accept(MediaType.APPLICATION_JSON));
 			
 			//then (검증)
 			resultAction
@@ -89,14 +90,14 @@ public class BookControllerIntegreTest {
 		public void findAll_test() throws Exception {
 			//given
 			List<Book> books = new ArrayList<Book>();
-			books.add(new Book(1L,"스프링부트 따라하기","코스"));
-			books.add(new Book(2L,"리액트 따라하기","코스"));
-			books.add(new Book(3L,"J유닛 따라하기","코스"));
+			books.add(new Book(null,"스프링부트 따라하기","코스"));
+			books.add(new Book(null,"리액트 따라하기","코스"));
+			books.add(new Book(null,"J유닛 따라하기","코스"));
 			bookRepository.saveAll(books);
 			
 			//when
 			ResultActions resultAction = mockMvc.perform(get("/book")
-					.accept(MediaType.APPLICATION_JSON_UTF8));
+					.accept(MediaType.APPLICATION_JSON));
 			
 			//then
 			resultAction
@@ -107,18 +108,96 @@ public class BookControllerIntegreTest {
 		}
 		
 		@Test
-		public void findById_test() throws Exception {
+		public void findByAuthor_test() throws Exception {
 			//given
-			Long id = 2L;
 			List<Book> books = new ArrayList<Book>();
-			books.add(new Book(1L,"스프링부트 따라하기","코스"));
-			books.add(new Book(2L,"리액트 따라하기","코스"));
-			books.add(new Book(3L,"J유닛 따라하기","코스"));
+			books.add(new Book(null,"스프링부트 따라하기","코스"));
+			books.add(new Book(null,"리액트 따라하기","코스"));
+			books.add(new Book(null,"J유닛 따라하기","메타코딩"));
 			bookRepository.saveAll(books);
 			
+			//when
+			ResultActions resultAction = mockMvc.perform(get("/book")
+					.param("author", "코스")
+					.param("limit", "1")
+					.accept(MediaType.APPLICATION_JSON));
+			
+			//then
+			String cursor = resultAction
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$",Matchers.hasSize(1)))
+				.andExpect(jsonPath("$.[0].title").value("리액트 따라하기"))
+				.andExpect(header().exists(BookController.NEXT_CURSOR_HEADER))
+				.andDo(MockMvcResultHandlers.print())
+				.andReturn().getResponse().getHeader(BookController.NEXT_CURSOR_HEADER);
+			mockMvc.perform(get("/book").param("author", "코스").param("limit", "1").param("cursor", cursor))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$",Matchers.hasSize(1)))
+				.andExpect(jsonPath("$.[0].title").value("스프링부트 따라하기"))
+				.andExpect(header().doesNotExist(BookController.NEXT_CURSOR_HEADER));
+		}
+		
+		@Test
+		public void findBy_conflictingParams_test() throws Exception {
+			//when, then (검색 조건은 하나만, cursor 는 X-Next-Cursor 값만)
+			mockMvc.perform(get("/book").param("author", "코스").param("titlePrefix", "스프링"))
+				.andExpect(status().isBadRequest());
+			mockMvc.perform(get("/book").param("author", "코스").param("ids", "1,2"))
+				.andExpect(status().isBadRequest());
+			mockMvc.perform(get("/book").param("author", "코스").param("cursor", "!!"))
+				.andExpect(status().isBadRequest());
+		}
+		
+		@Test
+		public void findAllById_test() throws Exception {
+			//given
+			List<Book> books = new ArrayList<Book>();
+			books.add(new Book(null,"스프링부트 따라하기","코스"));
+			books.add(new Book(null,"리액트 따라하기","코스"));
+			List<Book> saved = bookRepository.saveAll(books);
+			
+			//when (요청한 순서대로, 없는 id는 빠짐)
+			ResultActions resultAction = mockMvc.perform(get("/book")
+					.param("ids", saved.get(1).getId() + "," + saved.get(0).getId() + ",-1")
+					.accept(MediaType.APPLICATION_JSON));
+			
+			//then
+			resultAction
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$",Matchers.hasSize(2)))
+				.andExpect(jsonPath("$.[0].title").value("리액트 따라하기"))
+				.andExpect(jsonPath("$.[1].title").value("스프링부트 따라하기"))
+				.andDo(MockMvcResultHandlers.print());
+		}
+		
+		@Test
+		public void corsPreflight_test() throws Exception {
+			//when
+			ResultActions resultAction = mockMvc.perform(options("/book/{id}",1)
+					.header(HttpHeaders.ORIGIN, "http://localhost:3000")
+					.header(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, "PUT")
+					.header(HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS, HttpHeaders.IF_MATCH));
+			
+			//then (전역 설정 : 브라우저가 1시간 동안 다시 preflight 하지 않음)
+			resultAction
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "http://localhost:3000"))
+				.andExpect(header().string(HttpHeaders.ACCESS_CONTROL_MAX_AGE, "3600"))
+				.andDo(MockMvcResultHandlers.print());
+		}
+		
+		@Test
+		public void findById_test() throws Exception {
+			//given
+			List<Book> books = new ArrayList<Book>();
+			books.add(new Book(null,"스프링부트 따라하기","코스"));
+			books.add(new Book(null,"리액트 따라하기","코스"));
+			books.add(new Book(null,"J유닛 따라하기","코스"));
+			Long id = bookRepository.saveAll(books).get(1).getId();
+			
 			//when
 			ResultActions resultAction = mockMvc.perform(get("/book/{id}",id)
-					.accept(MediaType.APPLICATION_JSON_UTF8));
+					.accept(MediaType.APPLICATION_JSON));
 			
 			//then
 			resultAction
@@ -130,12 +209,11 @@ public class BookControllerIntegreTest {
 		@Test
 		public void update_test() throws Exception {
 			//given
-			Long id = 1L;
 			List<Book> books = new ArrayList<Book>();
-			books.add(new Book(1L,"스프링부트 따라하기","코스"));
-			books.add(new Book(2L,"리액트 따라하기","코스"));
-			books.add(new Book(3L,"J유닛 따라하기","코스"));
-			bookRepository.saveAll(books);
+			books.add(new Book(null,"스프링부트 따라하기","코스"));
+			books.add(new Book(null,"리액트 따라하기","코스"));
+			books.add(new Book(null,"J유닛 따라하기","코스"));
+			Long id = bookRepository.saveAll(books).get(0).getId();
 			
 			Book book = new Book(null,"c++따라하기","코스");
 			String content = new ObjectMapper().writeValueAsString(book);
@@ -143,9 +221,9 @@ public class BookControllerIntegreTest {
 			
 			//when
 			ResultActions resultAction = mockMvc.perform(put("/book/{id}",id)
-					.contentType(MediaType.APPLICATION_JSON_UTF8)
+					.contentType(MediaType.APPLICATION_JSON)
 					.content(content)
-					.accept(MediaType.APPLICATION_JSON_UTF8));
+					.accept(MediaType.APPLICATION_JSON));
 			
 			//then
 			resultAction
@@ -157,12 +235,11 @@ public class BookControllerIntegreTest {
 		@Test
 		public void delete_test() throws Exception {
 			//given
-			Long id = 1L;
 			List<Book> books = new ArrayList<Book>();
-			books.add(new Book(1L,"스프링부트 따라하기","코스"));
-			books.add(new Book(2L,"리액트 따라하기","코스"));
-			books.add(new Book(3L,"J유닛 따라하기","코스"));
-			bookRepository.saveAll(books);
+			books.add(new Book(null,"스프링부트 따라하기","코스"));
+			books.add(new Book(null,"리액트 따라하기","코스"));
+			books.add(new Book(null,"J유닛 따라하기","코스"));
+			Long id = bookRepository.saveAll(books).get(0).getId();
 			
 			//when
 			ResultActions resultAction = mockMvc.perform(delete("/book/{id}",id)
@@ -178,4 +255,218 @@ public class BookControllerIntegreTest {
 			
 			assertEquals("ok",result);
 		}
+		
+		@Test
+		public void findById_cache_test() throws Exception {
+			//given
+			Book bookEntity = bookRepository.save(new Book(null,"캐시 따라하기","코스"));
+			mockMvc.perform(get("/book/{id}",bookEntity.getId())); //miss -> 캐시에 올라감
+			long hitCount = cacheHitCount();
+			
+			//when
+			ResultActions resultAction = mockMvc.perform(get("/book/{id}",bookEntity.getId())
+					.accept(MediaType.APPLICATION_JSON));
+			
+			//then
+			resultAction
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.title").value("캐시 따라하기"));
+			assertEquals(hitCount + 1, cacheHitCount());
+		}
+		
+		@Test
+		public void findAll_serverTiming_test() throws Exception {
+			//given
+			bookRepository.saveAndFlush(new Book(null,"스프링부트 따라하기","코스"));
+			
+			//when
+			ResultActions resultAction = mockMvc.perform(get("/book")
+					.header(RequestTimingFilter.TIMING_HEADER, "1")
+					.accept(MediaType.APPLICATION_JSON));
+			
+			//then (controller/service/sql/직렬화 내역)
+			resultAction
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].title").value("스프링부트 따라하기"))
+			.andExpect(header().string("Server-Timing", Matchers.allOf(
+					Matchers.containsString("controller;dur="),
+					Matchers.containsString("service;dur="),
+					Matchers.containsString("sql;dur="),
+					Matchers.containsString("1 statements"),
+					Matchers.containsString("ser;dur="))));
+		}
+		
+		@Test
+		public void findAll_binaryFormat_test() throws Exception {
+			//given
+			bookRepository.saveAndFlush(new Book(null,"스프링부트 따라하기","코스"));
+			
+			//when
+			byte[] cbor = mockMvc.perform(get("/book").accept("application/cbor"))
+					.andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/cbor"))
+					.andReturn().getResponse().getContentAsByteArray();
+			byte[] protobuf = mockMvc.perform(get("/book/{id}",bookRepository.findAll().get(0).getId()).accept(BookProtobuf.MEDIA_TYPE))
+					.andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/x-protobuf"))
+					.andReturn().getResponse().getContentAsByteArray();
+			
+			//then
+			Book[] books = new ObjectMapper(new CBORFactory()).readValue(cbor, Book[].class);
+			assertEquals("스프링부트 따라하기", books[0].getTitle());
+			assertEquals("코스", BookProtobuf.read(new ByteArrayInputStream(protobuf)).getAuthor());
+		}
+		
+		@Test
+		public void protobuf_list_test() throws Exception {
+			//given
+			bookRepository.saveAndFlush(new Book(null,"스프링부트 따라하기","코스"));
+			
+			//when, then (Book 목록은 protobuf, Book 이 아닌 목록은 500 이 아니라 406)
+			mockMvc.perform(get("/book").accept(BookProtobuf.MEDIA_TYPE))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/x-protobuf"));
+			mockMvc.perform(get("/book/_jobs").accept(BookProtobuf.MEDIA_TYPE))
+				.andExpect(status().isNotAcceptable());
+		}
+		
+		private long cacheHitCount() throws Exception {
+			String result = mockMvc.perform(get("/book/_cache")).andReturn().getResponse().getContentAsString();
+			return new ObjectMapper().readTree(result).get("hitCount").asLong();
+		}
+		
+		@Test
+		public void saveAll_bulk_test() throws Exception {
+			//given
+			String content = "{\"title\":\"벌크1\",\"author\":\"코스\"}\n{\"title\":\"벌크2\",\"author\":\"코스\"}\n";
+			
+			//when
+			ResultActions resultAction = mockMvc.perform(post("/book/_bulk")
+					.contentType(BookController.NDJSON)
+					.content(content));
+			
+			//then
+			resultAction
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.total").value(2))
+			.andExpect(jsonPath("$.succeeded").value(2))
+			.andExpect(jsonPath("$.items[1].status").value("created"));
+			assertEquals(2, bookRepository.count());
+		}
+		
+		@Test
+		public void saveAll_bulk_badRow_test() throws Exception {
+			//given (2번째는 타입 오류, 4번째는 문법 오류)
+			String content = "{\"title\":\"벌크1\",\"author\":\"코스\"}\n"
+					+ "{\"title\":{\"a\":1},\"author\":\"코스\"}\n"
+					+ "{\"title\":\"벌크2\",\"author\":\"코스\"}\n"
+					+ "{\"title\": 벌크3\n";
+			
+			//when
+			ResultActions resultAction = mockMvc.perform(post("/book/_bulk")
+					.contentType(BookController.NDJSON)
+					.content(content));
+			
+			//then (앞에서 들어간 것은 그대로, 잘못된 항목은 순서대로 failed)
+			resultAction
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.total").value(4))
+			.andExpect(jsonPath("$.succeeded").value(2))
+			.andExpect(jsonPath("$.items[0].status").value("created"))
+			.andExpect(jsonPath("$.items[1].status").value("failed"))
+			.andExpect(jsonPath("$.items[2].status").value("created"))
+			.andExpect(jsonPath("$.items[3].status").value("failed"));
+			assertEquals(2, bookRepository.count());
+		}
+		
+		@Test
+		public void updateAll_bulk_test() throws Exception {
+			//given
+			Book bookEntity = bookRepository.save(new Book(null,"스프링부트 따라하기","코스"));
+			List<Book> books = new ArrayList<Book>();
+			books.add(new Book(bookEntity.getId(),"c++따라하기","코스"));
+			books.add(new Book(-1L,"없는책","코스"));
+			String content = new ObjectMapper().writeValueAsString(books);
+			
+			//when
+			ResultActions resultAction = mockMvc.perform(put("/book/_bulk")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content(content));
+			
+			//then
+			resultAction
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.succeeded").value(1))
+			.andExpect(jsonPath("$.items[0].status").value("updated"))
+			.andExpect(jsonPath("$.items[1].status").value("not_found"));
+			entityManager.flush();
+			entityManager.clear();
+			assertEquals("c++따라하기", bookRepository.findById(bookEntity.getId()).get().getTitle());
+		}
+		
+		@Test
+		public void deleteAll_bulk_test() throws Exception {
+			//given
+			Book bookEntity = bookRepository.save(new Book(null,"스프링부트 따라하기","코스"));
+			String content = "[" + bookEntity.getId() + ",-1]";
+			
+			//when
+			ResultActions resultAction = mockMvc.perform(delete("/book/_bulk")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content(content));
+			
+			//then
+			resultAction
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.items[0].status").value("deleted"))
+			.andExpect(jsonPath("$.items[1].status").value("not_found"));
+			assertEquals(0, bookRepository.count());
+		}
+		
+		@Test
+		public void update_ifMatch_test() throws Exception {
+			//given
+			Book bookEntity = bookRepository.saveAndFlush(new Book(null,"스프링부트 따라하기","코스"));
+			String content = new ObjectMapper().writeValueAsString(new Book(null,"c++따라하기","코스"));
+			
+			//when (처음 버전으로 수정 -> 성공, 같은 버전으로 한번 더 -> 412)
+			ResultActions first = mockMvc.perform(put("/book/{id}",bookEntity.getId())
+					.header(HttpHeaders.IF_MATCH, "\"" + bookEntity.getVersion() + "\"")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content(content));
+			ResultActions second = mockMvc.perform(put("/book/{id}",bookEntity.getId())
+					.header(HttpHeaders.IF_MATCH, "\"" + bookEntity.getVersion() + "\"")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content(content));
+			
+			//then
+			first
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.ETAG, "\"" + (bookEntity.getVersion() + 1) + "\""));
+			second.andExpect(status().isPreconditionFailed());
+			assertEquals("c++따라하기", bookRepository.findById(bookEntity.getId()).get().getTitle());
+		}
+		
+		@Test
+		public void update_notFound_test() throws Exception {
+			//given
+			Book bookEntity = bookRepository.saveAndFlush(new Book(null,"스프링부트 따라하기","코스"));
+			String content = new ObjectMapper().writeValueAsString(new Book(null,"c++따라하기","코스"));
+			
+			//when, then (없는 id 는 If-Match 가 있어도 412 가 아니라 404)
+			mockMvc.perform(put("/book/{id}",Long.MAX_VALUE)
+					.contentType(MediaType.APPLICATION_JSON)
+					.content(content))
+			.andExpect(status().isNotFound());
+			mockMvc.perform(put("/book/{id}",Long.MAX_VALUE)
+					.header(HttpHeaders.IF_MATCH, "\"0\"")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content(content))
+			.andExpect(status().isNotFound());
+			
+			//조건 없는 수정도 ETag 를 돌려준다.
+			mockMvc.perform(put("/book/{id}",bookEntity.getId())
+					.contentType(MediaType.APPLICATION_JSON)
+					.content(content))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.ETAG, "\"" + (bookEntity.getVersion() + 1) + "\""));
+		}
 }
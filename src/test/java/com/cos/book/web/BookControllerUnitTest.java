@@ -1,16 +1,23 @@
 package com.cos.book.web;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.hamcrest.Matcher;
 import org.hamcrest.Matchers;
@@ -18,6 +25,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -36,7 +47,7 @@ import lombok.extern.slf4j.Slf4j;
 
 
 @Slf4j
-@WebMvcTest //controller관련된 빈만 뜬다.
+@WebMvcTest(BookController.class) //controller관련된 빈만 뜬다.
 //@RunWith(SpringRunner.class) JUnit4에서 필요하다 
 //5에서는 WebMvcTest안에 @ExtendWith(SpringExtension.class) 가 있어서 필요없다
 public class BookControllerUnitTest {
@@ -59,9 +70,9 @@ public class BookControllerUnitTest {
 		
 		//when (테스트 실행)
 		ResultActions resultAction = mockMvc.perform(post("/book")
-				.contentType(MediaType.APPLICATION_JSON_UTF8)
+				.contentType(MediaType.APPLICATION_JSON)
 				.content(content)
-				.accept(MediaType.APPLICATION_JSON_UTF8));
+				.accept(MediaType.APPLICATION_JSON));
 		
 		//then (검증)
 		resultAction
@@ -77,20 +88,46 @@ public class BookControllerUnitTest {
 		List<Book> books = new ArrayList<Book>();
 		books.add(new Book(1L,"스프링부트 따라하기","코스"));
 		books.add(new Book(2L,"리액트 따라하기","코스"));
-		when(bookService.getAll()).thenReturn(books);
+		when(bookService.getPage(null, 2)).thenReturn(new SliceImpl<>(books, PageRequest.of(0, 2), true));
 		
 		//when
 		ResultActions resultAction = mockMvc.perform(get("/book")
-				.accept(MediaType.APPLICATION_JSON_UTF8));
+				.param("limit", "2")
+				.accept(MediaType.APPLICATION_JSON));
 		
 		//then
 		resultAction
 			.andExpect(status().isOk())
 			.andExpect(jsonPath("$",Matchers.hasSize(2)))
 			.andExpect(jsonPath("$.[0].title").value("스프링부트 따라하기"))
+			.andExpect(header().string(BookController.NEXT_AFTER_HEADER, "2"))
 			.andDo(MockMvcResultHandlers.print());
 	}
 	
+	@Test
+	public void streamAll_test() throws Exception {
+		//given
+		doAnswer(invocation -> {
+			Consumer<Book> consumer = invocation.getArgument(0);
+			consumer.accept(new Book(1L,"스프링부트 따라하기","코스"));
+			consumer.accept(new Book(2L,"리액트 따라하기","코스"));
+			return null;
+		}).when(bookService).streamAll(any());
+		
+		//when
+		MvcResult asyncResult = mockMvc.perform(get("/book")
+				.accept(BookController.NDJSON))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		
+		//then
+		String result = mockMvc.perform(asyncDispatch(asyncResult))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+		assertEquals(2, result.split("\n").length);
+		assertEquals(2L, new ObjectMapper().readValue(result.split("\n")[1], Book.class).getId());
+	}
+	
 	@Test
 	public void findById_test() throws Exception {
 		//given
@@ -99,7 +136,7 @@ public class BookControllerUnitTest {
 		
 		//when
 		ResultActions resultAction = mockMvc.perform(get("/book/{id}",id)
-				.accept(MediaType.APPLICATION_JSON_UTF8));
+				.accept(MediaType.APPLICATION_JSON));
 		
 		//then
 		resultAction
@@ -119,9 +156,9 @@ public class BookControllerUnitTest {
 		
 		//when
 		ResultActions resultAction = mockMvc.perform(put("/book/{id}",id)
-				.contentType(MediaType.APPLICATION_JSON_UTF8)
+				.contentType(MediaType.APPLICATION_JSON)
 				.content(content)
-				.accept(MediaType.APPLICATION_JSON_UTF8));
+				.accept(MediaType.APPLICATION_JSON));
 		
 		//then
 		resultAction
@@ -151,4 +188,59 @@ public class BookControllerUnitTest {
 		
 		assertEquals("ok",result);
 	}
+	
+	@Test
+	public void findById_etag_test() throws Exception {
+		//given
+		Long id = 1L;
+		when(bookService.getOne(id)).thenReturn(new Book(1L,"자바 공부하기","쌀",3L));
+		
+		//when
+		ResultActions resultAction = mockMvc.perform(get("/book/{id}",id)
+				.header(HttpHeaders.IF_NONE_MATCH, "\"3\""));
+		
+		//then (버전이 같으면 본문 없이 304)
+		resultAction
+		.andExpect(status().isNotModified())
+		.andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+	}
+	
+	@Test
+	public void update_ifMatch_test() throws Exception {
+		//given
+		Long id = 1L;
+		Book book = new Book(null,"c++따라하기","코스");
+		String content = new ObjectMapper().writeValueAsString(book);
+		when(bookService.updateIfMatch(id,3L,book)).thenReturn(new Book(1L,"c++따라하기","코스",4L));
+		
+		//when
+		ResultActions resultAction = mockMvc.perform(put("/book/{id}",id)
+				.header(HttpHeaders.IF_MATCH, "\"3\"")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(content));
+		
+		//then
+		resultAction
+		.andExpect(status().isOk())
+		.andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+		.andExpect(jsonPath("$.version").value(4));
+	}
+	
+	@Test
+	public void update_ifMatch_conflict_test() throws Exception {
+		//given
+		Long id = 1L;
+		Book book = new Book(null,"c++따라하기","코스");
+		String content = new ObjectMapper().writeValueAsString(book);
+		when(bookService.updateIfMatch(id,2L,book)).thenThrow(new OptimisticLockingFailureException("버전이 맞지 않습니다."));
+		
+		//when
+		ResultActions resultAction = mockMvc.perform(put("/book/{id}",id)
+				.header(HttpHeaders.IF_MATCH, "\"2\"")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(content));
+		
+		//then
+		resultAction.andExpect(status().isPreconditionFailed());
+	}
 }
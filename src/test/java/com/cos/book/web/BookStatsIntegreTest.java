@@ -0,0 +1,52 @@
+package com.cos.book.web;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.cos.book.domain.Book;
+import com.cos.book.service.BookService;
+
+/**
+ * 통합 테스트 (저장 => 커밋 후 이벤트 => GET /book/stats)
+ * 카운터는 커밋된 뒤에만 바뀌므로 @Transactional(롤백) 을 쓰지 않는다.
+ */
+@AutoConfigureMockMvc
+@SpringBootTest(webEnvironment = WebEnvironment.MOCK)
+public class BookStatsIntegreTest {
+	
+	@Autowired
+	private MockMvc mockMvc;
+	
+	@Autowired
+	private BookService bookService;
+	
+	@Test
+	public void stats_test() throws Exception {
+		//given
+		Book saved = bookService.save(new Book(null, "통계 테스트 책", "통계테스트"));
+		bookService.save(new Book(null, "통계 테스트 책2", "통계테스트"));
+		
+		//when (하나 지움)
+		bookService.delete(saved.getId());
+		
+		//then
+		mockMvc.perform(get("/book/stats").param("author", "통계테스트"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.author").value("통계테스트"))
+			.andExpect(jsonPath("$.count").value(1));
+		mockMvc.perform(get("/book/stats").param("top", "5"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.total").value(Matchers.greaterThanOrEqualTo(1)))
+			.andExpect(jsonPath("$.titleLengths.length()").value(26))
+			.andExpect(jsonPath("$.topAuthors.length()").value(Matchers.lessThanOrEqualTo(5)));
+	}
+}